@@ -0,0 +1,127 @@
+package projetoredes.rip;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import projetoredes.sim.VirtualScheduler;
+import projetoredes.unicast.UnicastProtocol;
+import projetoredes.unicast.UnicastServiceInterface;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Plano de dados de um no intermediario: decodificaçao da RIPDATA, consulta do
+// proximo salto, decremento do TTL e recodificaçao para o vizinho. O transporte
+// apenas consome a PDU, entao o resultado mede o custo do no e nao o da rede.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ForwardingBenchmark {
+
+    private static final short ORIGIN = 1;
+    private static final short SELF = 2;
+    private static final short NEXT_HOP = 3;
+
+    @Param({"64", "900"})
+    public int payloadSize;
+
+    @Param({"true", "false"})
+    public boolean binary;
+
+    private RIPNode node;
+    private VirtualScheduler scheduler;
+    private Blackhole blackhole;
+    private ByteBuffer transitPdu;
+    private ByteBuffer localPdu;
+    private ByteBuffer payload;
+
+    @Setup(Level.Trial)
+    public void setUp(Blackhole blackhole) throws IOException {
+        this.blackhole = blackhole;
+
+        // Linha 1 - 2 - 3: o no 2 encaminha de 1 para 3
+        Map<Short, Map<Short, Integer>> topology = new HashMap<>();
+        topology.put(ORIGIN, new HashMap<>(Map.of(SELF, 1)));
+        topology.put(SELF, new HashMap<>(Map.of(ORIGIN, 1, NEXT_HOP, 1)));
+        topology.put(NEXT_HOP, new HashMap<>(Map.of(SELF, 1)));
+
+        // O relogio virtual nunca avança: nao ha propagaçao durante a medida
+        scheduler = new VirtualScheduler();
+        node = new RIPNode(SELF, topology, RIPConfig.DEFAULT_PROP_TIME_MS, scheduler,
+                user -> new UnicastServiceInterface() {
+                    @Override
+                    public boolean UPDataReq(short destinationId, String data) {
+                        ForwardingBenchmark.this.blackhole.consume(data);
+                        return true;
+                    }
+
+                    @Override
+                    public boolean UPDataReq(short destinationId, ByteBuffer data) {
+                        ForwardingBenchmark.this.blackhole.consume(data);
+                        return true;
+                    }
+
+                    @Override
+                    public boolean isBinaryCapable(short destinationId) {
+                        return binary;
+                    }
+                }, scheduler, new Random(42));
+        node.setRoutedUser((sourceId, data) -> ForwardingBenchmark.this.blackhole.consume(data));
+
+        byte[] bytes = new byte[payloadSize];
+        new Random(42).nextBytes(bytes);
+        payload = ByteBuffer.wrap(bytes);
+        transitPdu = encodeData(NEXT_HOP, bytes);
+        localPdu = encodeData(SELF, bytes);
+    }
+
+    private ByteBuffer encodeData(short destinationId, byte[] bytes) {
+        ByteBuffer pdu = ByteBuffer.allocate(UnicastProtocol.MAX_PAYLOAD_SIZE);
+        RIPCodec.encodeData(pdu, binary, ORIGIN, destinationId, RIPConfig.DATA_TTL, ByteBuffer.wrap(bytes));
+        return pdu.flip().asReadOnlyBuffer();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        node.close();
+        scheduler.shutdown();
+    }
+
+    // RIPDATA recebida de 1 e repassada a 3
+    @Benchmark
+    public void forwardTransit() {
+        transitPdu.rewind();
+        node.UPDataInd(ORIGIN, transitPdu);
+    }
+
+    // RIPDATA destinada ao proprio no, entregue ao usuario
+    @Benchmark
+    public void deliverLocal() {
+        localPdu.rewind();
+        node.UPDataInd(ORIGIN, localPdu);
+    }
+
+    // Datagrama originado no no (RDataReq)
+    @Benchmark
+    public boolean originate() {
+        return node.RDataReq(NEXT_HOP, payload);
+    }
+}
@@ -0,0 +1,128 @@
+package projetoredes.rip;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import projetoredes.unicast.UnicastProtocol;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Codificaçao e decodificaçao das PDUs RIP (substitutos do antigo
+// formatVector/parseVector do RIPNode e do parsing de tabela do RIPManager.handleRIPRsp).
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RIPCodecBenchmark {
+
+    // Numero de nos da topologia (tamanho do vetor)
+    @Param({"16", "100", "1000"})
+    public int nodes;
+
+    private int[] vector;
+    private int[][] table;
+    private final ByteBuffer out = ByteBuffer.allocate(UnicastProtocol.MAX_PAYLOAD_SIZE);
+    private final RIPMessage message = new RIPMessage();
+
+    private ByteBuffer textInd;
+    private ByteBuffer binaryInd;
+    private ByteBuffer textRsp;
+    private ByteBuffer binaryRsp;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        vector = new int[nodes];
+        for (int i = 0; i < nodes; i++) {
+            vector[i] = random.nextInt(10) == 0 ? RIPConfig.INFINITY : random.nextInt(15);
+        }
+
+        // Tabela de um no com 4 vizinhos, limitada ao que cabe em uma RIPRSP
+        int columns = Math.min(nodes, 40);
+        table = new int[5][columns];
+        for (int[] row : table) {
+            for (int i = 0; i < columns; i++) {
+                row[i] = random.nextInt(15);
+            }
+        }
+
+        textInd = encodeFirstSegment(false);
+        binaryInd = encodeFirstSegment(true);
+        textRsp = encodeRsp(false);
+        binaryRsp = encodeRsp(true);
+    }
+
+    private ByteBuffer encodeFirstSegment(boolean binary) {
+        ByteBuffer pdu = ByteBuffer.allocate(UnicastProtocol.MAX_PAYLOAD_SIZE);
+        RIPCodec.encodeInd(pdu, binary, (short) 1, vector, 0, 0);
+        return pdu.flip();
+    }
+
+    private ByteBuffer encodeRsp(boolean binary) {
+        ByteBuffer pdu = ByteBuffer.allocate(UnicastProtocol.MAX_PAYLOAD_SIZE);
+        RIPCodec.encodeRsp(pdu, binary, (short) 1, table, RIPMessage.NO_REQUEST);
+        return pdu.flip();
+    }
+
+    // Vetor completo, em quantos segmentos forem necessarios
+    @Benchmark
+    public int encodeTextVector() {
+        return encodeVector(false);
+    }
+
+    @Benchmark
+    public int encodeBinaryVector() {
+        return encodeVector(true);
+    }
+
+    private int encodeVector(boolean binary) {
+        int offset = 0;
+        int bytes = 0;
+        while (offset < vector.length) {
+            out.clear();
+            offset = RIPCodec.encodeInd(out, binary, (short) 1, vector, offset, 0);
+            bytes += out.position();
+        }
+        return bytes;
+    }
+
+    @Benchmark
+    public int decodeTextVector() {
+        textInd.rewind();
+        return RIPCodec.decode(textInd, message) + message.columns();
+    }
+
+    @Benchmark
+    public int decodeBinaryVector() {
+        binaryInd.rewind();
+        return RIPCodec.decode(binaryInd, message) + message.columns();
+    }
+
+    // Parsing da tabela recebida pelo gerente, incluindo a copia para int[][]
+    @Benchmark
+    public int[][] decodeTextTable() {
+        textRsp.rewind();
+        RIPCodec.decode(textRsp, message);
+        return message.toTable();
+    }
+
+    @Benchmark
+    public int[][] decodeBinaryTable() {
+        binaryRsp.rewind();
+        RIPCodec.decode(binaryRsp, message);
+        return message.toTable();
+    }
+}
@@ -0,0 +1,109 @@
+package projetoredes.rip;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Recalculo do vetor de distancias (antigo recalculateDistanceVector) para
+// varios tamanhos de topologia: atualizaçao incremental com uma entrada
+// alterada, vetor inteiro alterado e mudança de custo de enlace (recalculo completo).
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RoutingTableBenchmark {
+
+    private static final short SELF_ID = 1;
+
+    @Param({"100", "1000", "5000"})
+    public int nodes;
+
+    @Param({"4"})
+    public int degree;
+
+    private RoutingTable table;
+    private RIPMessage[] fullVectors;   // Dois vetores completos alternados, de um vizinho
+    private RIPMessage[] singleChanges; // Uma unica entrada alternando entre dois custos
+    private int round;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        List<Short> ids = new ArrayList<>();
+        for (int id = 1; id <= nodes; id++) {
+            ids.add((short) id);
+        }
+        NodeIndex nodeIndex = new NodeIndex(ids);
+
+        Map<Short, Integer> neighbors = new HashMap<>();
+        for (int i = 0; i < degree; i++) {
+            neighbors.put((short) (SELF_ID + 1 + i), 1 + i);
+        }
+        table = new RoutingTable(nodeIndex, SELF_ID, neighbors);
+
+        // Vetores iniciais de todos os vizinhos
+        Random random = new Random(42);
+        for (int slot = 0; slot < degree; slot++) {
+            table.applyNeighborVector(slot, vectorMessage(randomVector(random), 0, nodes));
+        }
+
+        fullVectors = new RIPMessage[] {
+                vectorMessage(randomVector(random), 0, nodes),
+                vectorMessage(randomVector(random), 0, nodes)
+        };
+        int dest = nodes / 2;
+        singleChanges = new RIPMessage[] {
+                vectorMessage(new int[] {3}, dest, nodes),
+                vectorMessage(new int[] {9}, dest, nodes)
+        };
+    }
+
+    private int[] randomVector(Random random) {
+        int[] vector = new int[nodes];
+        for (int i = 0; i < nodes; i++) {
+            vector[i] = 1 + random.nextInt(RIPConfig.MAX_COST);
+        }
+        return vector;
+    }
+
+    private static RIPMessage vectorMessage(int[] costs, int offset, int total) {
+        RIPMessage message = new RIPMessage();
+        message.reset(RIPCodec.IND);
+        System.arraycopy(costs, 0, message.costStorage(costs.length), 0, costs.length);
+        message.setShape(1, costs.length);
+        message.setSegment(offset, total);
+        return message;
+    }
+
+    @Benchmark
+    public boolean applySingleChange() {
+        return table.applyNeighborVector(0, singleChanges[round++ & 1]);
+    }
+
+    @Benchmark
+    public boolean applyFullVector() {
+        return table.applyNeighborVector(0, fullVectors[round++ & 1]);
+    }
+
+    @Benchmark
+    public boolean setLinkCost() {
+        return table.setLinkCost(0, 1 + (round++ & 1));
+    }
+}
@@ -0,0 +1,67 @@
+package projetoredes.rip;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Carga de arquivos ripids.conf grandes (TopologyGraph.load)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TopologyGraphBenchmark {
+
+    // Numero de enlaces no arquivo (com o dobro de nos em enlaces)
+    @Param({"1000", "100000"})
+    public int links;
+
+    private Path topologyFile;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        topologyFile = Files.createTempFile("ripids", ".conf");
+        Random random = new Random(42);
+        int nodes = Math.max(2, Math.min(Short.MAX_VALUE, links / 2));
+
+        try (BufferedWriter writer = Files.newBufferedWriter(topologyFile)) {
+            for (int i = 0; i < links; i++) {
+                int a = 1 + random.nextInt(nodes);
+                int b = 1 + random.nextInt(nodes);
+                if (a == b) {
+                    b = (b % nodes) + 1;
+                }
+                writer.write(a + " " + b + " " + (1 + random.nextInt(15)));
+                writer.newLine();
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(topologyFile);
+    }
+
+    @Benchmark
+    public TopologyGraph load() throws IOException {
+        return TopologyGraph.load(topologyFile);
+    }
+}
@@ -0,0 +1,95 @@
+package projetoredes.unicast;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Recepçao de uma PDU ja lida do canal: validaçao do cabeçalho, decodificaçao
+// e entrega ao usuario (UnicastProtocol.processPDU), em texto e em binario.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UnicastProtocolBenchmark {
+
+    private static final short SELF_ID = 1;
+    private static final short PEER_ID = 2;
+
+    @Param({"32", "512"})
+    public int payloadSize;
+
+    private UnicastProtocol protocol;
+    private Blackhole blackhole;
+    private ByteBuffer binaryFrame;
+    private ByteBuffer textFrame;
+    private int binaryLength;
+    private int textLength;
+
+    @Setup(Level.Trial)
+    public void setUp(Blackhole blackhole) throws IOException {
+        this.blackhole = blackhole;
+
+        // Porta 0: o sistema escolhe uma porta livre
+        List<UCSAP> addresses = List.of(new UCSAP(SELF_ID, "127.0.0.1", 0), new UCSAP(PEER_ID, "127.0.0.1", 0));
+        protocol = new UnicastProtocol(new UnicastServiceUserInterface() {
+            @Override
+            public void UPDataInd(short sourceId, String data) {
+                UnicastProtocolBenchmark.this.blackhole.consume(data);
+            }
+
+            @Override
+            public void UPDataInd(short sourceId, ByteBuffer data) {
+                UnicastProtocolBenchmark.this.blackhole.consume(data);
+            }
+        }, SELF_ID, addresses, WireFormat.BINARY, null);
+
+        byte[] payload = "x".repeat(payloadSize).getBytes(StandardCharsets.ISO_8859_1);
+
+        binaryFrame = ByteBuffer.allocateDirect(UnicastProtocol.MAX_PDU_SIZE);
+        UnicastPDUCodec.encodeData(binaryFrame, PEER_ID, ByteBuffer.wrap(payload));
+        binaryFrame.flip();
+        binaryLength = binaryFrame.remaining();
+
+        textFrame = ByteBuffer.allocateDirect(UnicastProtocol.MAX_PDU_SIZE);
+        UnicastPDUCodec.encodeText(textFrame, ByteBuffer.wrap(payload), payload.length);
+        textFrame.flip();
+        textLength = textFrame.remaining();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        protocol.close();
+    }
+
+    @Benchmark
+    public void processBinaryPDU() {
+        // processPDU reduz o quadro a janela do payload; restaura o quadro inteiro
+        binaryFrame.limit(binaryLength).position(0);
+        protocol.processPDU(PEER_ID, binaryFrame);
+    }
+
+    @Benchmark
+    public void processTextPDU() {
+        textFrame.limit(textLength).position(0);
+        protocol.processPDU(PEER_ID, textFrame);
+    }
+}
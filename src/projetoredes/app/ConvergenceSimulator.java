@@ -0,0 +1,259 @@
+package projetoredes.app;
+
+import projetoredes.rip.NodeIndex;
+import projetoredes.rip.RIPCodec;
+import projetoredes.rip.RIPConfig;
+import projetoredes.rip.RIPMessage;
+import projetoredes.rip.RIPNode;
+import projetoredes.rip.TopologyGraph;
+import projetoredes.sim.SimulatedNetwork;
+import projetoredes.sim.VirtualScheduler;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+// Simulador de convergencia do RIP.
+//
+// Carrega um ripids.conf (possivelmente com milhares de nos), cria um RIPNode
+// por no sobre uma rede simulada em memoria e conduz tudo em um relogio
+// virtual, sem sockets nem threads extras. Para cada fase (convergencia
+// inicial e cada alteraçao de enlace pedida) informa o tempo de convergencia,
+// o numero de mensagens e de bytes e se as rotas finais batem com as menores
+// distancias calculadas por Dijkstra. Com a mesma semente, o resultado e sempre o mesmo.
+public class ConvergenceSimulator {
+
+    private record LinkChange(short nodeA, short nodeB, int cost) {}
+
+    // Topologia compartilhada por todos os nos; os comandos --set alteram so 'costs',
+    // copia dos custos indexada pela posiçao do enlace no grafo (ver Dijkstra)
+    private final TopologyGraph topology;
+    private final int[] costs;
+    private final long propagationTimeMs;
+    private final long maxPhaseMs;
+    private final VirtualScheduler scheduler = new VirtualScheduler();
+    private final SimulatedNetwork network;
+    private final NodeIndex nodeIndex;
+    private final List<RIPNode> nodes = new ArrayList<>();
+    private final PrintStream report;
+
+    public ConvergenceSimulator(TopologyGraph topology, long propagationTimeMs, long maxPhaseMs,
+                                SimulatedNetwork.LinkProfile profile, boolean binary, long seed, PrintStream report)
+            throws IOException {
+        this.topology = topology;
+        this.costs = topology.costsCopy();
+        this.propagationTimeMs = propagationTimeMs;
+        this.maxPhaseMs = maxPhaseMs;
+        this.network = new SimulatedNetwork(scheduler, profile, binary, seed);
+        this.nodeIndex = topology.nodeIndex();
+        this.report = report;
+
+        for (int i = 0; i < nodeIndex.size(); i++) {
+            short id = nodeIndex.idAt(i);
+            nodes.add(new RIPNode(id, topology, propagationTimeMs, scheduler, network.factory(id),
+                    scheduler, new Random(seed * 31 + id)));
+        }
+    }
+
+    // Roda ate que nenhum vetor mude por duas propagaçoes periodicas seguidas
+    // (ou ate o limite da fase) e imprime o resumo
+    public void runPhase(String name) {
+        long start = scheduler.millis();
+        long wallStart = System.nanoTime();
+        long quietPeriod = 2 * propagationTimeMs + RIPConfig.TRIGGERED_HOLD_DOWN_MS + RIPConfig.TRIGGERED_JITTER_MS;
+        long step = Math.max(1, propagationTimeMs / 4);
+
+        long lastChange = start;
+        while (scheduler.millis() - start < maxPhaseMs) {
+            scheduler.runUntil(scheduler.millis() + step);
+            for (RIPNode node : nodes) {
+                lastChange = Math.max(lastChange, node.getLastVectorChangeMillis());
+            }
+            if (scheduler.millis() - lastChange >= quietPeriod) {
+                break;
+            }
+        }
+
+        boolean converged = scheduler.millis() - lastChange >= quietPeriod;
+        long wallMs = (System.nanoTime() - wallStart) / 1_000_000;
+        report.println("Fase " + name + ":");
+        report.println("  Convergência:      " + (converged ? (lastChange - start) + " ms (virtual)"
+                : "não convergiu em " + maxPhaseMs + " ms"));
+        report.println("  Mensagens:         " + network.sentMessages() + " (" + network.sentBytes() + " bytes)");
+        report.println("  Entregues/perdidas: " + network.deliveredMessages() + "/" + network.droppedMessages()
+                + " (" + network.undeliverableMessages() + " sem destino)");
+        report.println("  Rotas incorretas:  " + countWrongRoutes());
+        report.println("  Tempo real:        " + wallMs + " ms");
+        network.resetCounters();
+    }
+
+    // Altera o custo de um enlace como o gerente faria: um RIPSET para cada ponta
+    public void setLinkCost(short nodeA, short nodeB, int cost) {
+        int position = topology.linkPosition(nodeA, nodeB);
+        if (position < 0) {
+            throw new IllegalArgumentException("Enlace inexistente: " + nodeA + "-" + nodeB);
+        }
+        costs[position] = cost;
+        costs[topology.linkPosition(nodeB, nodeA)] = cost;
+
+        ByteBuffer pdu = ByteBuffer.allocate(64);
+        for (short[] ends : new short[][] {{nodeA, nodeB}, {nodeB, nodeA}}) {
+            pdu.clear();
+            RIPCodec.encodeSet(pdu, false, ends[0], ends[1], cost, RIPMessage.NO_REQUEST);
+            pdu.flip();
+            network.send(RIPConfig.MANAGER_ID, ends[0], pdu);
+        }
+    }
+
+    // Compara o vetor de cada no com as menores distancias (Dijkstra) na topologia atual,
+    // com a mesma metrica maxima do RIP. Retorna o numero de entradas divergentes.
+    private long countWrongRoutes() {
+        long wrong = 0;
+        for (int i = 0; i < nodes.size(); i++) {
+            int[] expected = shortestDistances(i);
+            int[] actual = nodes.get(i).getDistanceVector();
+            for (int dest = 0; dest < expected.length; dest++) {
+                if (expected[dest] != actual[dest]) {
+                    wrong++;
+                }
+            }
+        }
+        return wrong;
+    }
+
+    private int[] shortestDistances(int source) {
+        long[] distances = new long[nodeIndex.size()];
+        Arrays.fill(distances, Long.MAX_VALUE);
+        distances[source] = 0;
+
+        PriorityQueue<long[]> queue = new PriorityQueue<>((a, b) -> Long.compare(a[0], b[0]));
+        queue.add(new long[] {0, source});
+        while (!queue.isEmpty()) {
+            long[] entry = queue.poll();
+            int index = (int) entry[1];
+            if (entry[0] > distances[index]) {
+                continue;
+            }
+            for (int link = topology.linkStart(index); link < topology.linkEnd(index); link++) {
+                if (costs[link] == RIPConfig.INFINITY) {
+                    continue;
+                }
+                int neighbor = topology.neighborAt(link);
+                long distance = entry[0] + costs[link];
+                if (distance < distances[neighbor]) {
+                    distances[neighbor] = distance;
+                    queue.add(new long[] {distance, neighbor});
+                }
+            }
+        }
+
+        int[] result = new int[distances.length];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = (distances[i] >= RIPConfig.MAX_METRIC) ? RIPConfig.INFINITY : (int) distances[i];
+        }
+        return result;
+    }
+
+    public void close() {
+        for (RIPNode node : nodes) {
+            node.close();
+        }
+        scheduler.shutdown();
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.err.println("Uso: java projetoredes.app.ConvergenceSimulator <ripids.conf> [opções]");
+            System.err.println("  --prop <ms>           Tempo de propagação periódica (padrão " + RIPConfig.DEFAULT_PROP_TIME_MS + ")");
+            System.err.println("  --latency <ms>        Latência de cada enlace (padrão 5)");
+            System.err.println("  --loss <p>            Probabilidade de perda de uma PDU (padrão 0)");
+            System.err.println("  --reorder <p>         Probabilidade de atraso extra/reordenação (padrão 0)");
+            System.err.println("  --bandwidth <bytes/s> Banda de saída de cada nó (padrão ilimitada)");
+            System.err.println("  --seed <n>            Semente da simulação (padrão 1)");
+            System.err.println("  --max-time <ms>       Limite de tempo virtual por fase (padrão 50 propagações)");
+            System.err.println("  --text                Usa o formato texto em vez do binário");
+            System.err.println("  --set <A> <B> <custo> Altera um enlace após a fase anterior (pode repetir)");
+            System.err.println("  --verbose             Mostra os logs dos nós");
+            System.exit(1);
+        }
+
+        long propTime = RIPConfig.DEFAULT_PROP_TIME_MS;
+        long latency = 5;
+        double loss = 0;
+        double reorder = 0;
+        long bandwidth = 0;
+        long seed = 1;
+        long maxTime = -1;
+        boolean binary = true;
+        boolean verbose = false;
+        List<LinkChange> changes = new ArrayList<>();
+
+        try {
+            for (int i = 1; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--prop" -> propTime = Long.parseLong(args[++i]);
+                    case "--latency" -> latency = Long.parseLong(args[++i]);
+                    case "--loss" -> loss = Double.parseDouble(args[++i]);
+                    case "--reorder" -> reorder = Double.parseDouble(args[++i]);
+                    case "--bandwidth" -> bandwidth = Long.parseLong(args[++i]);
+                    case "--seed" -> seed = Long.parseLong(args[++i]);
+                    case "--max-time" -> maxTime = Long.parseLong(args[++i]);
+                    case "--text" -> binary = false;
+                    case "--verbose" -> verbose = true;
+                    case "--set" -> changes.add(new LinkChange(Short.parseShort(args[++i]),
+                            Short.parseShort(args[++i]), Integer.parseInt(args[++i])));
+                    default -> throw new IllegalArgumentException("Opção desconhecida: " + args[i]);
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException | IllegalArgumentException e) {
+            System.err.println("Erro: argumentos inválidos (" + e.getMessage() + ").");
+            System.exit(1);
+        }
+        if (maxTime < 0) {
+            maxTime = 50 * propTime;
+        }
+
+        TopologyGraph topology;
+        try {
+            topology = TopologyGraph.load(args[0]);
+        } catch (IOException e) {
+            System.err.println("Erro ao carregar a topologia: " + e.getMessage());
+            System.exit(1);
+            return;
+        }
+
+        PrintStream report = System.out;
+        if (!verbose) {
+            System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        }
+
+        report.println("Simulando " + topology.nodeCount() + " nós (propagação " + propTime + " ms, latência " + latency
+                + " ms, perda " + loss + ", reordenação " + reorder + ", semente " + seed + ")");
+
+        ConvergenceSimulator simulator = null;
+        try {
+            simulator = new ConvergenceSimulator(topology, propTime, maxTime,
+                    new SimulatedNetwork.LinkProfile(latency, loss, reorder, bandwidth), binary, seed, report);
+            simulator.runPhase("inicial");
+
+            for (LinkChange change : changes) {
+                simulator.setLinkCost(change.nodeA(), change.nodeB(), change.cost());
+                simulator.runPhase(change.nodeA() + "-" + change.nodeB() + " = " + change.cost());
+            }
+        } catch (Exception e) {
+            System.err.println("Erro fatal na simulação: " + e.getMessage());
+            e.printStackTrace();
+        } finally {
+            if (simulator != null) {
+                simulator.close();
+            }
+            System.setOut(report);
+        }
+    }
+}
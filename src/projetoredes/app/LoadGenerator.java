@@ -0,0 +1,224 @@
+package projetoredes.app;
+
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import projetoredes.utils.LatencyHistogram;
+
+// Gerador de carga do SimpleUnicastApp (modo --load). Envia mensagens de tamanho fixo
+// a uma taxa configuravel, em rodizio entre os destinos, e mede as que recebe:
+// latencia (histograma), perdas e reordenaçao por origem, pacotes/s e bytes/s.
+//
+// Cada mensagem leva [marca:4][seq:8][envio:8] seguidos de preenchimento. 'seq' e
+// contado por destino; 'envio' e o instante de envio em nanossegundos desde a epoca,
+// entao a latencia so e confiavel entre hosts com relogios sincronizados (no mesmo
+// host, sempre).
+public class LoadGenerator {
+
+    // Como as mensagens sao enviadas (UnicastProtocol.UPDataReq ou RIPNode.RDataReq)
+    public interface Transmitter {
+        boolean send(short destinationId, ByteBuffer data);
+    }
+
+    private static final int MAGIC = 0x4C4F4144; // "LOAD"
+    public static final int HEADER_SIZE = 20;
+    // Tempo de espera, apos o fim dos envios, pelas mensagens ainda em transito
+    private static final long DRAIN_MS = 1_000;
+
+    private final Transmitter transmitter;
+    private final short[] destinations;
+    private final long intervalNanos; // 0: o mais rapido possivel
+    private final int size;
+
+    private final AtomicLong sentPackets = new AtomicLong();
+    private final AtomicLong sentBytes = new AtomicLong();
+    private final AtomicLong sendFailures = new AtomicLong();
+    private final AtomicLong receivedPackets = new AtomicLong();
+    private final AtomicLong receivedBytes = new AtomicLong();
+    private final LatencyHistogram latencies = new LatencyHistogram();
+    private final Map<Short, SourceStats> sources = new TreeMap<>();
+
+    private volatile boolean running;
+
+    // Recepçao de uma origem (protegida por 'sources')
+    private static final class SourceStats {
+        long received;
+        long highestSeq = -1;
+        long reordered; // Chegaram depois de uma mensagem com seq maior
+    }
+
+    // 'rate' em mensagens/s (0 para enviar sem limite); 'destinations' pode ser vazio (so recebe)
+    public LoadGenerator(Transmitter transmitter, short[] destinations, int rate, int size) {
+        if (size < HEADER_SIZE) {
+            throw new IllegalArgumentException("Tamanho mínimo da mensagem de carga: " + HEADER_SIZE + " bytes");
+        }
+        if (rate < 0) {
+            throw new IllegalArgumentException("Taxa inválida: " + rate);
+        }
+        this.transmitter = transmitter;
+        this.destinations = destinations.clone();
+        this.intervalNanos = (rate > 0) ? TimeUnit.SECONDS.toNanos(1) / rate : 0;
+        this.size = size;
+    }
+
+    // Registra uma mensagem recebida. Retorna false se ela nao for do gerador de carga.
+    public boolean accept(short sourceId, ByteBuffer data) {
+        int start = data.position();
+        if (data.remaining() < HEADER_SIZE || data.getInt(start) != MAGIC) {
+            return false;
+        }
+        long seq = data.getLong(start + 4);
+        long sentAt = data.getLong(start + 12);
+        latencies.record(epochNanos() - sentAt);
+        receivedPackets.incrementAndGet();
+        receivedBytes.addAndGet(data.remaining());
+
+        synchronized (sources) {
+            SourceStats stats = sources.computeIfAbsent(sourceId, k -> new SourceStats());
+            stats.received++;
+            if (seq > stats.highestSeq) {
+                stats.highestSeq = seq;
+            } else {
+                stats.reordered++;
+            }
+        }
+        return true;
+    }
+
+    // Envia durante 'durationMs' (se houver destinos), mostrando as taxas a cada segundo,
+    // espera as mensagens em transito e mostra o relatorio final
+    public void run(long durationMs) throws InterruptedException {
+        running = true;
+        Thread sender = null;
+        if (destinations.length > 0) {
+            sender = new Thread(this::sendLoop, "LoadGenerator-Sender");
+            sender.setDaemon(true);
+            sender.start();
+        }
+
+        System.out.println("Gerador de carga: " + destinations.length + " destino(s), "
+                + (intervalNanos > 0 ? TimeUnit.SECONDS.toNanos(1) / intervalNanos + " msg/s" : "sem limite de taxa")
+                + ", " + size + " bytes por mensagem, " + durationMs + " ms.");
+
+        long start = System.nanoTime();
+        long lastPackets = 0, lastBytes = 0, lastRxPackets = 0, lastRxBytes = 0;
+        long elapsedMs = 0;
+        while (elapsedMs < durationMs) {
+            Thread.sleep(Math.min(1_000, durationMs - elapsedMs));
+            long now = System.nanoTime();
+            long intervalMs = TimeUnit.NANOSECONDS.toMillis(now - start) - elapsedMs;
+            elapsedMs += intervalMs;
+
+            long packets = sentPackets.get(), bytes = sentBytes.get();
+            long rxPackets = receivedPackets.get(), rxBytes = receivedBytes.get();
+            System.out.printf("[%5.1fs] enviados: %s msg/s %s B/s | recebidos: %s msg/s %s B/s%n",
+                    elapsedMs / 1000.0,
+                    perSecond(packets - lastPackets, intervalMs), perSecond(bytes - lastBytes, intervalMs),
+                    perSecond(rxPackets - lastRxPackets, intervalMs), perSecond(rxBytes - lastRxBytes, intervalMs));
+            lastPackets = packets;
+            lastBytes = bytes;
+            lastRxPackets = rxPackets;
+            lastRxBytes = rxBytes;
+        }
+
+        running = false;
+        if (sender != null) {
+            sender.join();
+        }
+        Thread.sleep(DRAIN_MS);
+        report(elapsedMs);
+    }
+
+    private void sendLoop() {
+        ByteBuffer message = ByteBuffer.allocate(size);
+        long[] sequences = new long[destinations.length];
+        long next = System.nanoTime();
+        int d = 0;
+
+        while (running) {
+            if (intervalNanos > 0) {
+                long wait = next - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                    continue;
+                }
+                // Atrasado: envia sem esperar ate alcançar o horario (sem acumular mais de 1s)
+                next = Math.max(next + intervalNanos, System.nanoTime() - TimeUnit.SECONDS.toNanos(1));
+            }
+
+            message.clear();
+            message.putInt(MAGIC).putLong(sequences[d]).putLong(epochNanos());
+            message.position(0).limit(size);
+            if (transmitter.send(destinations[d], message)) {
+                sequences[d]++;
+                sentPackets.incrementAndGet();
+                sentBytes.addAndGet(size);
+            } else {
+                sendFailures.incrementAndGet();
+            }
+            d = (d + 1 == destinations.length) ? 0 : d + 1;
+        }
+    }
+
+    private void report(long elapsedMs) {
+        System.out.println("---------------------------------------------------------");
+        System.out.println("Enviados: " + sentPackets.get() + " mensagens, " + sentBytes.get() + " bytes ("
+                + perSecond(sentPackets.get(), elapsedMs) + " msg/s, " + perSecond(sentBytes.get(), elapsedMs)
+                + " B/s); falhas de envio: " + sendFailures.get());
+        System.out.println("Recebidos: " + receivedPackets.get() + " mensagens, " + receivedBytes.get() + " bytes ("
+                + perSecond(receivedPackets.get(), elapsedMs) + " msg/s, " + perSecond(receivedBytes.get(), elapsedMs)
+                + " B/s)");
+
+        synchronized (sources) {
+            for (Map.Entry<Short, SourceStats> entry : sources.entrySet()) {
+                SourceStats stats = entry.getValue();
+                // Perdas estimadas pelo maior seq recebido (perdas no fim do envio nao aparecem)
+                long expected = stats.highestSeq + 1;
+                long lost = Math.max(0, expected - stats.received);
+                System.out.printf("  de %d: %d recebidas, %d perdidas (%.2f%%), %d fora de ordem%n",
+                        entry.getKey(), stats.received, lost, expected == 0 ? 0.0 : 100.0 * lost / expected,
+                        stats.reordered);
+            }
+        }
+
+        if (latencies.count() > 0) {
+            System.out.printf("Latência (us): média %.1f | p50 %.1f | p90 %.1f | p99 %.1f | p99.9 %.1f | máx %.1f%n",
+                    latencies.mean() / 1000.0, micros(latencies.percentile(50)), micros(latencies.percentile(90)),
+                    micros(latencies.percentile(99)), micros(latencies.percentile(99.9)), micros(latencies.max()));
+        }
+        System.out.println("---------------------------------------------------------");
+    }
+
+    private static long perSecond(long amount, long intervalMs) {
+        return (intervalMs <= 0) ? 0 : amount * 1000 / intervalMs;
+    }
+
+    private static double micros(long nanos) {
+        return nanos / 1000.0;
+    }
+
+    private static long epochNanos() {
+        Instant now = Instant.now();
+        return now.getEpochSecond() * 1_000_000_000L + now.getNano();
+    }
+
+    public long sentPackets() {
+        return sentPackets.get();
+    }
+
+    public long receivedPackets() {
+        return receivedPackets.get();
+    }
+
+    public long sendFailures() {
+        return sendFailures.get();
+    }
+
+    public LatencyHistogram latencies() {
+        return latencies;
+    }
+}
@@ -0,0 +1,131 @@
+package projetoredes.app;
+
+import projetoredes.rip.RIPConfig;
+import projetoredes.rip.NodeIndex;
+import projetoredes.rip.RIPNode;
+import projetoredes.rip.TopologyGraph;
+import projetoredes.unicast.UCSAP;
+import projetoredes.unicast.UnicastEventLoop;
+import projetoredes.unicast.UnicastProtocol;
+import projetoredes.unicast.WireFormat;
+import projetoredes.utils.Utils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Hospeda varios RIPNodes em um unico processo.
+// Todos os nos compartilham a topologia carregada, a configuraçao de UCSAPs,
+// um agendador e um unico laço de eventos de I/O; o estado de roteamento de
+// cada no continua isolado na sua propria instancia de RIPNode.
+public class NodeHost implements AutoCloseable {
+
+    private final ScheduledExecutorService scheduler;
+    private final UnicastEventLoop eventLoop;
+    private final Map<Short, RIPNode> nodes = new TreeMap<>();
+
+    // Usados para recarregar a configuraçao (ver reloadConfiguration)
+    private final String unicastConfigPath;
+    private final String ripConfigPath;
+    private final long propagationTimeMs;
+    private final boolean hostsAll;
+
+    // Se 'nodeIds' for vazio, hospeda todos os nos da topologia
+    public NodeHost(Collection<Short> nodeIds, String unicastConfigPath, String ripConfigPath, long propagationTimeMs)
+            throws IOException {
+        this.unicastConfigPath = unicastConfigPath;
+        this.ripConfigPath = ripConfigPath;
+        this.propagationTimeMs = propagationTimeMs;
+        this.hostsAll = nodeIds.isEmpty();
+        TopologyGraph topology = TopologyGraph.load(ripConfigPath);
+        List<UCSAP> addresses = Utils.loadConfiguration(unicastConfigPath);
+
+        List<Short> hostedIds = new ArrayList<>(nodeIds);
+        if (hostsAll) {
+            NodeIndex allNodes = topology.nodeIndex();
+            for (int index = 0; index < allNodes.size(); index++) {
+                hostedIds.add(allNodes.idAt(index));
+            }
+        }
+        hostedIds.remove((Short) RIPConfig.MANAGER_ID);
+        Collections.sort(hostedIds);
+
+        int threads = Math.max(1, Math.min(hostedIds.size(), Runtime.getRuntime().availableProcessors()));
+        AtomicInteger threadCount = new AtomicInteger();
+        this.scheduler = Executors.newScheduledThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "NodeHost-Scheduler-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.eventLoop = new UnicastEventLoop("NodeHost-EventLoop");
+
+        try {
+            for (short id : hostedIds) {
+                startNode(id, topology, addresses);
+            }
+        } catch (IOException | RuntimeException e) {
+            close();
+            throw e;
+        }
+    }
+
+    private void startNode(short id, TopologyGraph topology, List<UCSAP> addresses)
+            throws IOException {
+        nodes.put(id, new RIPNode(id, topology, propagationTimeMs, scheduler,
+                user -> new UnicastProtocol(user, id, addresses, WireFormat.AUTO, eventLoop)));
+    }
+
+    public synchronized int size() {
+        return nodes.size();
+    }
+
+    // Relê os arquivos de configuraçao e aplica as mudanças em todos os nos hospedados,
+    // sem reinicia-los (ver RIPNode.reloadConfiguration). Hospedando toda a topologia,
+    // os nos que entraram nela sao iniciados; os que sairam continuam com a configuraçao
+    // anterior (os vizinhos deixam de falar com eles).
+    public synchronized void reloadConfiguration() {
+        TopologyGraph topology;
+        List<UCSAP> addresses;
+        try {
+            topology = TopologyGraph.load(ripConfigPath);
+            addresses = Utils.loadConfiguration(unicastConfigPath);
+        } catch (IOException e) {
+            System.err.println("Erro ao recarregar a configuração: " + e.getMessage() + ". Mantendo a atual.");
+            return;
+        }
+
+        for (RIPNode node : nodes.values()) {
+            node.reloadConfiguration(addresses, topology);
+        }
+        if (hostsAll) {
+            NodeIndex allNodes = topology.nodeIndex();
+            for (int index = 0; index < allNodes.size(); index++) {
+                short id = allNodes.idAt(index);
+                if (id != RIPConfig.MANAGER_ID && !nodes.containsKey(id)) {
+                    try {
+                        startNode(id, topology, addresses);
+                    } catch (IOException | RuntimeException e) {
+                        System.err.println("Erro ao iniciar o nó " + id + ": " + e.getMessage());
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        for (RIPNode node : nodes.values()) {
+            node.close();
+        }
+        nodes.clear();
+        scheduler.shutdown();
+        eventLoop.close();
+    }
+}
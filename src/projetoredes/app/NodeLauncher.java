@@ -2,33 +2,28 @@ package projetoredes.app;
 
 import projetoredes.rip.RIPConfig;
 import projetoredes.rip.RIPNode;
+import projetoredes.rip.TopologyGraph;
+
+import projetoredes.utils.ConfigWatcher;
+import projetoredes.utils.Utils;
 
 import java.io.IOException;
+import java.util.Collections;
 
 public class NodeLauncher {
 
     public static void main(String[] args) {
         if (args.length < 1) {
             System.err.println("Erro: ID do nó não fornecido.");
-            System.err.println("Uso: java projetoredes.app.NodeLauncher <nodeId>");
-            System.exit(1);
-        }
-
-        short nodeId = -1;
-        try {
-            nodeId = Short.parseShort(args[0]);
-            if (nodeId == RIPConfig.MANAGER_ID || nodeId > RIPConfig.MAX_NODES) {
-                throw new NumberFormatException("ID do nó deve estar entre 1 e " + RIPConfig.MAX_NODES);
-            }
-        } catch (NumberFormatException e) {
-            System.err.println("Erro: ID do nó inválido: " + args[0]);
+            System.err.println("Uso: java projetoredes.app.NodeLauncher <nodeId> [tempo_propagacao_ms]");
+            System.err.println("     java projetoredes.app.NodeLauncher --all [tempo_propagacao_ms]");
             System.exit(1);
         }
 
         // Caminhos para os arquivos de configuraçao
         String ucsapsPath = "config/ucsaps.conf";
         String ripidsPath = "config/ripids.conf";
-        
+
         long propTime = RIPConfig.DEFAULT_PROP_TIME_MS;
         if (args.length > 1) {
             try {
@@ -39,25 +34,45 @@ public class NodeLauncher {
             }
         }
 
+        if (args[0].equals("--all")) {
+            runAllNodes(ucsapsPath, ripidsPath, propTime);
+            return;
+        }
+
+        short nodeId = -1;
+        try {
+            nodeId = Short.parseShort(args[0]);
+            if (nodeId == RIPConfig.MANAGER_ID || nodeId > RIPConfig.MAX_NODES) {
+                throw new NumberFormatException("ID do nó deve estar entre 1 e " + RIPConfig.MAX_NODES);
+            }
+        } catch (NumberFormatException e) {
+            System.err.println("Erro: ID do nó inválido: " + args[0]);
+            System.exit(1);
+        }
+
         System.out.println("Iniciando Nó RIP com ID: " + nodeId);
         
         // Usa try-with-resources para garantir que o node.close() seja chamado
         // ao final da execuçao
         try (RIPNode node = new RIPNode(nodeId, ucsapsPath, ripidsPath, propTime)) {
-            
-            System.out.println("Nó " + nodeId + " está rodando.");
-            System.out.println("Pressione [Enter] para encerrar este nó");
-            
-            // Trava a thread principal aqui.
-            // Os threads do UnicastProtocol e do Timer do RIPNode continuarao rodando.
+            ConfigWatcher watcher = watchConfiguration(ucsapsPath, ripidsPath,
+                    () -> reloadConfiguration(node, ucsapsPath, ripidsPath));
             try {
-                System.in.read();
-            } catch (IOException e) {
-                // Ignora
+                System.out.println("Nó " + nodeId + " está rodando.");
+                System.out.println("Pressione [Enter] para encerrar este nó");
+
+                // Trava a thread principal aqui.
+                // Os threads do UnicastProtocol e do Timer do RIPNode continuarao rodando.
+                try {
+                    System.in.read();
+                } catch (IOException e) {
+                    // Ignora
+                }
+
+                System.out.println("Encerrando nó " + nodeId);
+            } finally {
+                closeWatcher(watcher);
             }
-            
-            System.out.println("Encerrando nó " + nodeId);
-            
         } catch (Exception e) {
             System.err.println("Erro fatal no nó " + nodeId + ": " + e.getMessage());
             e.printStackTrace();
@@ -65,4 +80,60 @@ public class NodeLauncher {
         
         System.out.println("Nó " + nodeId + " desligado.");
     }
-}
\ No newline at end of file
+
+    // Inicia todos os nos da topologia no mesmo processo, compartilhando
+    // agendador e laço de eventos (ver NodeHost)
+    private static void runAllNodes(String ucsapsPath, String ripidsPath, long propTime) {
+        System.out.println("Iniciando todos os nós RIP da topologia em um único processo.");
+
+        try (NodeHost host = new NodeHost(Collections.emptyList(), ucsapsPath, ripidsPath, propTime)) {
+            ConfigWatcher watcher = watchConfiguration(ucsapsPath, ripidsPath, host::reloadConfiguration);
+            try {
+                System.out.println(host.size() + " nós estão rodando.");
+                System.out.println("Pressione [Enter] para encerrar todos os nós");
+
+                try {
+                    System.in.read();
+                } catch (IOException e) {
+                    // Ignora
+                }
+
+                System.out.println("Encerrando todos os nós");
+            } finally {
+                closeWatcher(watcher);
+            }
+        } catch (Exception e) {
+            System.err.println("Erro fatal ao hospedar os nós: " + e.getMessage());
+            e.printStackTrace();
+        }
+
+        System.out.println("Todos os nós desligados.");
+    }
+
+    // Com RIPConfig.WATCH_CONFIG, as mudanças nos arquivos de configuraçao sao aplicadas
+    // aos nos em execuçao; sem ela retorna null (nada a fechar)
+    static ConfigWatcher watchConfiguration(String ucsapsPath, String ripidsPath, Runnable reload) throws IOException {
+        if (!RIPConfig.WATCH_CONFIG) {
+            return null;
+        }
+        System.out.println("Observando " + ucsapsPath + " e " + ripidsPath + " para recarga automática.");
+        return new ConfigWatcher("ConfigWatcher", reload, ucsapsPath, ripidsPath);
+    }
+
+    // Fecha o observador devolvido por watchConfiguration, que pode ser null. Fica fora do
+    // try-with-resources porque o corpo nunca o referencia (aviso [try] do javac)
+    static void closeWatcher(ConfigWatcher watcher) {
+        if (watcher != null) {
+            watcher.close();
+        }
+    }
+
+    private static void reloadConfiguration(RIPNode node, String ucsapsPath, String ripidsPath) {
+        try {
+            TopologyGraph topology = TopologyGraph.load(ripidsPath);
+            node.reloadConfiguration(Utils.loadConfiguration(ucsapsPath), topology);
+        } catch (IOException e) {
+            System.err.println("Erro ao recarregar a configuração: " + e.getMessage() + ". Mantendo a atual.");
+        }
+    }
+}
@@ -1,13 +1,22 @@
 package projetoredes.app;
 
+import projetoredes.rip.LinkCostChange;
+import projetoredes.rip.NetworkSnapshot;
 import projetoredes.rip.RIPManager;
 import projetoredes.rip.RIPConfig;
 import projetoredes.rip.RoutingProtocolManagementInterface;
 import projetoredes.rip.RoutingProtocolManagementServiceUserInterface;
+import projetoredes.rip.TopologyGraph;
+import projetoredes.utils.ConfigWatcher;
+import projetoredes.utils.Utils;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
 import java.util.Scanner;
+import java.util.concurrent.CompletionException;
 import java.util.stream.Collectors;
 
 
@@ -15,12 +24,29 @@ public class RoutingManagementApp implements RoutingProtocolManagementServiceUse
 
     private final RoutingProtocolManagementInterface manager;
     private final Scanner scanner;
+    private final String unicastConfigPath;
+    private final String ripConfigPath;
 
     public RoutingManagementApp(String unicastConfigPath, String ripConfigPath) throws IOException {
         this.scanner = new Scanner(System.in);
+        this.unicastConfigPath = unicastConfigPath;
+        this.ripConfigPath = ripConfigPath;
         this.manager = new RIPManager(this, unicastConfigPath, ripConfigPath);
     }
 
+    // Relê os arquivos de configuraçao no gerente (os nos recarregam a sua copia)
+    public void reloadConfiguration() {
+        if (!(manager instanceof RIPManager)) {
+            return;
+        }
+        try {
+            TopologyGraph topology = TopologyGraph.load(ripConfigPath);
+            ((RIPManager) manager).reloadConfiguration(Utils.loadConfiguration(unicastConfigPath), topology);
+        } catch (IOException e) {
+            System.err.println("Erro ao recarregar a configuração: " + e.getMessage() + ". Mantendo a atual.");
+        }
+    }
+
 
     @Override
     public synchronized void distanceTableIndication(short nodeId, int[][] distanceTable) {
@@ -65,11 +91,14 @@ public class RoutingManagementApp implements RoutingProtocolManagementServiceUse
                         if (parts.length == 3) {
                             short id1 = Short.parseShort(parts[1]);
                             short id2 = Short.parseShort(parts[2]);
-                            if (manager.getLinkCost(id1, id2)) {
-                                System.out.println("... Requisição [getLinkCost] enviada para o nó " + id1);
-                            } else {
-                                System.err.println("Erro: Não foi possível enviar a requisição (verifique IDs/topologia).");
-                            }
+                            manager.getLinkCostAsync(id1, id2).whenComplete((cost, error) -> {
+                                if (error == null) {
+                                    linkCostIndication(id1, id2, cost);
+                                } else {
+                                    reportFailure("getLinkCost", error);
+                                }
+                            });
+                            System.out.println("... Requisição [getLinkCost] enviada para o nó " + id1);
                         } else {
                             System.err.println("Uso: getcost <nodeId1> <nodeId2>");
                         }
@@ -80,29 +109,81 @@ public class RoutingManagementApp implements RoutingProtocolManagementServiceUse
                             short id1 = Short.parseShort(parts[1]);
                             short id2 = Short.parseShort(parts[2]);
                             int cost = Integer.parseInt(parts[3]);
-                            if (manager.setLinkCost(id1, id2, cost)) {
-                                System.out.println("... Requisição [setLinkCost] enviada para os nós " + id1 + " e " + id2);
-                            } else {
-                                System.err.println("Erro: Não foi possível enviar a requisição (verifique IDs/custo/topologia).");
-                            }
+                            manager.setLinkCostAsync(id1, id2, cost).whenComplete((ignored, error) -> {
+                                if (error == null) {
+                                    linkCostIndication(id1, id2, cost);
+                                } else {
+                                    reportFailure("setLinkCost", error);
+                                }
+                            });
+                            System.out.println("... Requisição [setLinkCost] enviada para os nós " + id1 + " e " + id2);
                         } else {
                             System.err.println("Uso: setcost <nodeId1> <nodeId2> <custo>");
                         }
                         break;
 
+                    case "setcosts":
+                        if (parts.length >= 4 && (parts.length - 1) % 3 == 0) {
+                            List<LinkCostChange> changes = new ArrayList<>();
+                            for (int i = 1; i < parts.length; i += 3) {
+                                changes.add(new LinkCostChange(Short.parseShort(parts[i]),
+                                        Short.parseShort(parts[i + 1]), Integer.parseInt(parts[i + 2])));
+                            }
+                            manager.setLinkCostsAsync(changes).whenComplete((ignored, error) -> {
+                                if (error == null) {
+                                    for (LinkCostChange change : changes) {
+                                        linkCostIndication(change.id1(), change.id2(), change.cost());
+                                    }
+                                } else {
+                                    reportFailure("setLinkCosts", error);
+                                }
+                            });
+                            System.out.println("... Requisição [setLinkCosts] enviada para " + changes.size() + " enlace(s)");
+                        } else {
+                            System.err.println("Uso: setcosts <id1> <id2> <custo> [<id1> <id2> <custo> ...]");
+                        }
+                        break;
+
                     case "gettable":
+                        if (parts.length == 2 && parts[1].equalsIgnoreCase("all")) {
+                            manager.getNetworkSnapshotAsync(RIPConfig.SNAPSHOT_DEADLINE_MS).whenComplete((snapshot, error) -> {
+                                if (error == null) {
+                                    printSnapshot(snapshot);
+                                } else {
+                                    reportFailure("getNetworkSnapshot", error);
+                                }
+                            });
+                            System.out.println("... Requisição [getDistanceTable] enviada para todos os nós");
+                        } else if (parts.length == 2) {
+                            short nodeId = Short.parseShort(parts[1]);
+                            manager.getDistanceTableAsync(nodeId).whenComplete((table, error) -> {
+                                if (error == null) {
+                                    distanceTableIndication(nodeId, table);
+                                } else {
+                                    reportFailure("getDistanceTable", error);
+                                }
+                            });
+                            System.out.println("... Requisição [getDistanceTable] enviada para o nó " + nodeId);
+                        } else {
+                            System.err.println("Uso: gettable <nodeId>|all");
+                        }
+                        break;
+
+                    case "trace":
                         if (parts.length == 2) {
                             short nodeId = Short.parseShort(parts[1]);
-                            if (manager.getDistanceTable(nodeId)) {
-                                System.out.println("... Requisição [getDistanceTable] enviada para o nó " + nodeId);
-                            } else {
-                                System.err.println("Erro: Não foi possível enviar a requisição (verifique o ID).");
+                            if (manager.dumpTrace(nodeId)) {
+                                System.out.println("... Requisição [dumpTrace] enviada para o nó " + nodeId);
                             }
                         } else {
-                            System.err.println("Uso: gettable <nodeId>");
+                            System.err.println("Uso: trace <nodeId>");
                         }
                         break;
 
+                    case "reload":
+                        reloadConfiguration();
+                        break;
+
                     case "help":
                         printHelp();
                         break;
@@ -124,13 +205,37 @@ public class RoutingManagementApp implements RoutingProtocolManagementServiceUse
         System.out.println("Encerrando aplicação de gerenciamento.");
     }
 
+    private synchronized void printSnapshot(NetworkSnapshot snapshot) {
+        System.out.println("\n[SNAPSHOT DA REDE]: " + snapshot.distanceTables().size() + " tabela(s) em "
+                + snapshot.elapsedMillis() + " ms");
+        for (Map.Entry<Short, int[][]> entry : snapshot.distanceTables().entrySet()) {
+            int[][] table = entry.getValue();
+            System.out.println("  Nó " + entry.getKey() + " -> " + (table.length > 0 ? formatVector(table[0]) : ""));
+        }
+        if (!snapshot.isComplete()) {
+            System.out.println("  Sem resposta: " + snapshot.missingNodes());
+        }
+        System.out.print("> ");
+    }
+
+    // Falha de uma requisiçao assincrona: parametros invalidos, erro de envio ou tempo esgotado
+    private synchronized void reportFailure(String operation, Throwable error) {
+        Throwable cause = (error instanceof CompletionException && error.getCause() != null) ? error.getCause() : error;
+        System.err.println("\nErro [" + operation + "]: " + cause.getMessage());
+        System.out.print("> ");
+    }
+
     private void printHelp() {
         System.out.println("-------------------------------------------------");
         System.out.println("Aplicação de Roteamento");
         System.out.println("Comandos disponíveis:");
         System.out.println("  getcost <id1> <id2>      - Requisita o custo do enlace entre os nós 1 e 2.");
         System.out.println("  setcost <id1> <id2> <custo> - Define o custo do enlace (use -1 para infinito).");
+        System.out.println("  setcosts <id1> <id2> <custo> ... - Altera vários enlaces de uma vez (um lote por nó).");
         System.out.println("  gettable <id>            - Requisita a tabela de distância completa do nó.");
+        System.out.println("  gettable all             - Coleta o vetor de distâncias de todos os nós de uma vez.");
+        System.out.println("  trace <id>               - Pede ao nó que grave em arquivo o registro de eventos da tabela.");
+        System.out.println("  reload                   - Relê ucsaps.conf e ripids.conf no gerente.");
         System.out.println("  help                     - Mostra esta ajuda.");
         System.out.println("  exit                     - Fecha a aplicação.");
         System.out.println("-------------------------------------------------");
@@ -153,7 +258,12 @@ public class RoutingManagementApp implements RoutingProtocolManagementServiceUse
         System.out.println("Iniciando Aplicação de Gerenciamento (ID 0)");
 
         try (RoutingManagementApp app = new RoutingManagementApp(ucsapsPath, ripidsPath)) {
-            app.run(); // Inicia o loop da interface de comando
+            ConfigWatcher watcher = NodeLauncher.watchConfiguration(ucsapsPath, ripidsPath, app::reloadConfiguration);
+            try {
+                app.run(); // Inicia o loop da interface de comando
+            } finally {
+                NodeLauncher.closeWatcher(watcher);
+            }
         } catch (Exception e) {
             System.err.println("Erro fatal ao iniciar o Gerente: " + e.getMessage());
             e.printStackTrace();
@@ -2,28 +2,50 @@ package projetoredes.app;
 
 import java.io.IOException;
 import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Scanner;
+import projetoredes.rip.RIPConfig;
+import projetoredes.rip.RIPNode;
+import projetoredes.rip.RoutedServiceUserInterface;
+import projetoredes.unicast.Delivery;
 import projetoredes.unicast.UCSAP;
 import projetoredes.unicast.UnicastProtocol;
 import projetoredes.unicast.UnicastServiceUserInterface;
 import projetoredes.utils.Utils;
 
 
-public class SimpleUnicastApp implements UnicastServiceUserInterface, AutoCloseable {
+public class SimpleUnicastApp implements UnicastServiceUserInterface, RoutedServiceUserInterface, AutoCloseable {
 
+    // Apenas um dos dois e usado: envio direto pelo Unicast ou roteado pelo RIPNode
     private final UnicastProtocol protocol;
+    private final RIPNode node;
     private final short selfId;
+    // Modo --load: mensagens do gerador de carga sao medidas em vez de impressas
+    private volatile LoadGenerator load;
 
     public SimpleUnicastApp(short selfId, String configPath) throws IOException {
         this.selfId = selfId;
 
         // Iniciar a thread receptora
         this.protocol = new UnicastProtocol(this, selfId, configPath);
+        this.node = null;
 
         System.out.println("Aplicação iniciada com ID " + selfId);
     }
-    
+
+    // Modo roteado: a aplicaçao hospeda o no RIP com o seu ID e as mensagens sao
+    // encaminhadas salto a salto, podendo ter como destino qualquer no da topologia
+    public SimpleUnicastApp(short selfId, String configPath, String ripConfigPath, long propagationTimeMs) throws IOException {
+        this.selfId = selfId;
+        this.protocol = null;
+        this.node = new RIPNode(selfId, configPath, ripConfigPath, propagationTimeMs);
+        this.node.setRoutedUser(this);
+
+        System.out.println("Aplicação iniciada com ID " + selfId + " (modo roteado)");
+    }
+
     @Override
     public void UPDataInd(short sourceId, String data) {
         // Esse e um app simples de teste, entao vamos 
@@ -32,6 +54,47 @@ public class SimpleUnicastApp implements UnicastServiceUserInterface, AutoClosea
         System.out.print("> ");
     }
 
+    @Override
+    public void UPDataInd(short sourceId, ByteBuffer data) {
+        LoadGenerator generator = load;
+        if (generator != null && generator.accept(sourceId, data)) {
+            return;
+        }
+        UPDataInd(sourceId, StandardCharsets.ISO_8859_1.decode(data).toString());
+    }
+
+    @Override
+    public void RDataInd(short sourceId, ByteBuffer data) {
+        LoadGenerator generator = load;
+        if (generator != null && generator.accept(sourceId, data)) {
+            return;
+        }
+        UPDataInd(sourceId, StandardCharsets.ISO_8859_1.decode(data).toString());
+    }
+
+    private boolean send(short destinationId, ByteBuffer data) {
+        return (node != null) ? node.RDataReq(destinationId, data) : protocol.UPDataReq(destinationId, data);
+    }
+
+    // Modo nao interativo: gera carga para 'destinations' (pode ser vazio, so recebendo)
+    // durante 'durationMs' e mostra as taxas, perdas e latencias medidas
+    public void runLoad(short[] destinations, int rate, int size, long durationMs) throws InterruptedException {
+        for (short destinationId : destinations) {
+            if (destinationId == this.selfId) {
+                throw new IllegalArgumentException("O destino da carga não pode ser a própria aplicação.");
+            }
+            int maxSize = (node != null) ? node.maxRoutedPayloadSize()
+                    : protocol.maxPayloadSize(destinationId, Delivery.BEST_EFFORT);
+            if (size > maxSize) {
+                throw new IllegalArgumentException("Mensagens de " + size + " bytes não cabem no envio para "
+                        + destinationId + " (máximo " + maxSize + ").");
+            }
+        }
+        LoadGenerator generator = new LoadGenerator(this::send, destinations, rate, size);
+        load = generator;
+        generator.run(durationMs);
+    }
+
     public void run() {
         Scanner scanner = new Scanner(System.in);
         System.out.println("---------------------------------------------------------");
@@ -60,11 +123,15 @@ public class SimpleUnicastApp implements UnicastServiceUserInterface, AutoClosea
                         continue;
                     }
 
-                    boolean success = protocol.UPDataReq(destinationId, message);
+                    boolean success = (node != null)
+                            ? node.RDataReq(destinationId, ByteBuffer.wrap(message.getBytes(StandardCharsets.ISO_8859_1)))
+                            : protocol.UPDataReq(destinationId, message);
                     if (success) {
                         System.out.println("-> Mensagem enviada para o ID " + destinationId + ".");
                     } else {
-                        System.out.println("-> Falha ao enviar mensagem. Verifique o ID inserido.");
+                        System.out.println((node != null)
+                                ? "-> Falha ao enviar mensagem. Destino sem rota no momento ou mensagem muito longa."
+                                : "-> Falha ao enviar mensagem. Verifique o ID inserido.");
                     }
                 } catch (NumberFormatException e) {
                     // Unico erro que pode acontecer aqui e parsing de numero.
@@ -82,22 +149,70 @@ public class SimpleUnicastApp implements UnicastServiceUserInterface, AutoClosea
         if(protocol != null) {
             protocol.close();
         }
+        if(node != null) {
+            node.close();
+        }
         System.out.println("Aplicação encerrada.");
     }
 
     public static void main(String[] args){
-        if(args.length != 1) {
-            System.err.println("Uso: java projetoredes.app.SimpleUnicastApp <id>");
-            System.exit(1);
+        if(args.length < 1) {
+            printUsage();
         }
 
         // Caminho para arquivo de config.
         // Vamos sempre rodar da raiz do projeto.
         final String CONFIG_PATH = "config/ucsaps.conf";
+        final String RIP_CONFIG_PATH = "config/ripids.conf";
+
+        boolean routed = false;
+        long propTime = RIPConfig.DEFAULT_PROP_TIME_MS;
+        boolean loadMode = false;
+        short[] loadDestinations = new short[0];
+        int loadRate = 1000;
+        int loadSize = 64;
+        long loadDurationMs = 10_000;
 
         try {
             short selfId = Short.parseShort(args[0]);
 
+            for (int i = 1; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--routed":
+                        routed = true;
+                        // Tempo de propagaçao opcional logo apos a opçao
+                        if (i + 1 < args.length && !args[i + 1].startsWith("--")) {
+                            try {
+                                propTime = Long.parseLong(args[++i]);
+                            } catch (NumberFormatException e) {
+                                System.err.println("Aviso: Tempo de propagação inválido, usando padrão (" + propTime + "ms).");
+                            }
+                        }
+                        break;
+                    case "--load":
+                        loadMode = true;
+                        break;
+                    case "--to":
+                        String[] ids = optionValue(args, ++i).split(",");
+                        loadDestinations = new short[ids.length];
+                        for (int d = 0; d < ids.length; d++) {
+                            loadDestinations[d] = Short.parseShort(ids[d].trim());
+                        }
+                        break;
+                    case "--rate":
+                        loadRate = Integer.parseInt(optionValue(args, ++i));
+                        break;
+                    case "--size":
+                        loadSize = Integer.parseInt(optionValue(args, ++i));
+                        break;
+                    case "--duration":
+                        loadDurationMs = Long.parseLong(optionValue(args, ++i)) * 1000;
+                        break;
+                    default:
+                        printUsage();
+                }
+            }
+
             // Encontrar o ID na lista de config e garantir que é do usuario
             List<UCSAP> ucsapList = Utils.loadConfiguration(CONFIG_PATH);
             for (UCSAP ucsap : ucsapList) {
@@ -113,12 +228,21 @@ public class SimpleUnicastApp implements UnicastServiceUserInterface, AutoClosea
             }
 
             // Usando try-with-resources nos garante que o close() vai ser chamado.
-            try (SimpleUnicastApp app = new SimpleUnicastApp(selfId, CONFIG_PATH)){
-                app.run();
+            try (SimpleUnicastApp app = routed
+                    ? new SimpleUnicastApp(selfId, CONFIG_PATH, RIP_CONFIG_PATH, propTime)
+                    : new SimpleUnicastApp(selfId, CONFIG_PATH)){
+                if (loadMode) {
+                    app.runLoad(loadDestinations, loadRate, loadSize, loadDurationMs);
+                } else {
+                    app.run();
+                }
             }
 
         } catch (NumberFormatException e){
-            System.err.println("ERRO: O ID fornecido '" + args[0] + "' não é um número válido.");
+            System.err.println("ERRO: Número inválido nos argumentos: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.err.println("Gerador de carga interrompido.");
         } catch (IllegalArgumentException e) {
             System.err.println("ERRO: " + e.getMessage());
         // Essa vem do protocolo
@@ -127,4 +251,18 @@ public class SimpleUnicastApp implements UnicastServiceUserInterface, AutoClosea
             e.printStackTrace();
         }
     }
+
+    private static String optionValue(String[] args, int i) {
+        if (i >= args.length) {
+            printUsage();
+        }
+        return args[i];
+    }
+
+    private static void printUsage() {
+        System.err.println("Uso: java projetoredes.app.SimpleUnicastApp <id> [--routed [tempo_propagacao_ms]]");
+        System.err.println("     java projetoredes.app.SimpleUnicastApp <id> [--routed [tempo_propagacao_ms]] --load");
+        System.err.println("          [--to <id,id,...>] [--rate <msg/s, 0 = sem limite>] [--size <bytes>] [--duration <s>]");
+        System.exit(1);
+    }
 }
\ No newline at end of file
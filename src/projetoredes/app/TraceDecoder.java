@@ -0,0 +1,88 @@
+package projetoredes.app;
+
+import projetoredes.rip.RIPConfig;
+import projetoredes.rip.RIPTrace;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+// Decodifica os arquivos de trace gravados pelos nos (RIPTRC ou encerramento com
+// -Dprojetoredes.rip.traceDir). Com varios arquivos, os eventos de todos os nos sao
+// intercalados pelo instante, para acompanhar uma mudança se espalhando pela rede.
+//
+// Uso: java projetoredes.app.TraceDecoder <arquivo>... [--dest <id>] [--peer <id>]
+public class TraceDecoder {
+
+    private record NodeEvent(short nodeId, RIPTrace.Event event) {}
+
+    public static void main(String[] args) {
+        List<Path> files = new ArrayList<>();
+        int dest = -1;
+        int peer = -1;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--dest" -> dest = Short.parseShort(args[++i]);
+                    case "--peer" -> peer = Short.parseShort(args[++i]);
+                    default -> files.add(Path.of(args[i]));
+                }
+            }
+        } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            files.clear();
+        }
+        if (files.isEmpty()) {
+            System.err.println("Uso: java projetoredes.app.TraceDecoder <arquivo>... [--dest <id>] [--peer <id>]");
+            System.exit(1);
+        }
+
+        List<NodeEvent> events = new ArrayList<>();
+        for (Path file : files) {
+            RIPTrace.Dump dump;
+            try {
+                dump = RIPTrace.read(file);
+            } catch (IOException e) {
+                System.err.println("Erro ao ler " + file + ": " + e.getMessage());
+                System.exit(1);
+                return;
+            }
+            long lost = dump.recorded() - dump.events().size();
+            System.out.println("# Nó " + dump.nodeId() + ": " + dump.events().size() + " evento(s) de "
+                    + dump.recorded() + " registrados" + (lost > 0 ? " (" + lost + " mais antigos sobrescritos)" : ""));
+            for (RIPTrace.Event event : dump.events()) {
+                if ((dest < 0 || event.destination() == dest) && (peer < 0 || event.peer() == peer)) {
+                    events.add(new NodeEvent(dump.nodeId(), event));
+                }
+            }
+        }
+
+        // Estavel: a ordem de sequencia de cada no e mantida dentro do mesmo milissegundo
+        events.sort(Comparator.comparingLong(e -> e.event().timestampMillis()));
+        for (NodeEvent nodeEvent : events) {
+            System.out.println(format(nodeEvent.nodeId(), nodeEvent.event()));
+        }
+    }
+
+    private static String format(short nodeId, RIPTrace.Event event) {
+        String prefix = Instant.ofEpochMilli(event.timestampMillis()) + " nó " + nodeId + " #" + event.sequence() + " "
+                + RIPTrace.typeName(event.type()) + " ";
+        return switch (event.type()) {
+            case RIPTrace.LINK_COST -> prefix + "enlace " + nodeId + "-" + event.peer() + ": "
+                    + cost(event.oldCost()) + " -> " + cost(event.newCost());
+            case RIPTrace.NEIGHBOR_COST -> prefix + "vizinho " + event.peer() + " anuncia " + event.destination() + ": "
+                    + cost(event.oldCost()) + " -> " + cost(event.newCost());
+            case RIPTrace.ROUTE -> prefix + "destino " + event.destination() + ": " + cost(event.oldCost()) + " -> "
+                    + cost(event.newCost()) + (event.peer() >= 0 ? " via " + event.peer() : " sem rota");
+            case RIPTrace.SYNC_REQUEST -> prefix + "lacuna nos deltas de " + event.peer() + " (RIPSYN)";
+            default -> prefix + "vizinho " + event.peer() + " destino " + event.destination() + " "
+                    + event.oldCost() + " -> " + event.newCost();
+        };
+    }
+
+    private static String cost(int cost) {
+        return (cost == RIPConfig.INFINITY) ? "INF" : Integer.toString(cost);
+    }
+}
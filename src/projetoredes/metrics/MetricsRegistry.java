@@ -0,0 +1,146 @@
+package projetoredes.metrics;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+// Registro das metricas dos componentes do processo. Cada componente e registrado
+// como MXBean (projetoredes:type=<tipo>,id=<id>, visivel no jconsole/VisualVM) e como
+// fonte do endpoint de texto no formato do Prometheus.
+//
+// O endpoint so e aberto com -Dprojetoredes.metrics.port=<porta>, em 127.0.0.1, no
+// caminho /metrics. O registro JMX pode ser desligado com -Dprojetoredes.metrics.jmx=false.
+// Falhas aqui nunca interrompem o protocolo: sao apenas registradas no log.
+public final class MetricsRegistry {
+    public static final int HTTP_PORT = Integer.getInteger("projetoredes.metrics.port", 0);
+    public static final boolean JMX_ENABLED = !"false".equalsIgnoreCase(System.getProperty("projetoredes.metrics.jmx"));
+
+    // Ordenado pelo nome, para uma saida estavel entre coletas
+    private static final Map<String, MetricsSource> sources = new ConcurrentSkipListMap<>();
+    private static boolean serverStarted; // Protegido pela classe
+
+    private MetricsRegistry() {}
+
+    // Registra o componente 'type' de ID 'id'. Um registro anterior com o mesmo nome
+    // (ex.: componente recriado no mesmo processo) e substituido.
+    public static void register(String type, short id, Object mxBean, MetricsSource source) {
+        String name = objectName(type, id);
+        sources.put(name, source);
+        if (JMX_ENABLED) {
+            registerMBean(name, mxBean);
+        }
+        if (HTTP_PORT > 0) {
+            startServer();
+        }
+    }
+
+    // Remove o registro, se ele ainda for de 'source' (e nao de um substituto)
+    public static void unregister(String type, short id, MetricsSource source) {
+        String name = objectName(type, id);
+        if (!sources.remove(name, source)) {
+            return;
+        }
+        if (JMX_ENABLED) {
+            try {
+                MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer();
+                ObjectName objectName = new ObjectName(name);
+                if (mbeanServer.isRegistered(objectName)) {
+                    mbeanServer.unregisterMBean(objectName);
+                }
+            } catch (JMException e) {
+                System.err.println("Aviso: Falha ao remover o MBean " + name + ": " + e.getMessage());
+            }
+        }
+    }
+
+    // Texto no formato do Prometheus com as metricas de todos os componentes registrados
+    public static String scrape() {
+        MetricsWriter writer = new MetricsWriter();
+        for (MetricsSource source : sources.values()) {
+            try {
+                source.writeMetrics(writer);
+            } catch (RuntimeException e) {
+                System.err.println("Aviso: Falha ao coletar métricas: " + e.getMessage());
+            }
+        }
+        return writer.toString();
+    }
+
+    private static String objectName(String type, short id) {
+        return "projetoredes:type=" + type + ",id=" + id;
+    }
+
+    private static void registerMBean(String name, Object mxBean) {
+        try {
+            MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName(name);
+            try {
+                mbeanServer.registerMBean(mxBean, objectName);
+            } catch (InstanceAlreadyExistsException e) {
+                mbeanServer.unregisterMBean(objectName);
+                mbeanServer.registerMBean(mxBean, objectName);
+            }
+        } catch (JMException e) {
+            System.err.println("Aviso: Falha ao registrar o MBean " + name + ": " + e.getMessage());
+        }
+    }
+
+    private static synchronized void startServer() {
+        if (serverStarted) {
+            return;
+        }
+        serverStarted = true; // Uma unica tentativa, mesmo que falhe
+        HttpServer server;
+        try {
+            server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), HTTP_PORT), 0);
+        } catch (IOException e) {
+            System.err.println("Aviso: Não foi possível abrir o endpoint de métricas na porta " + HTTP_PORT
+                    + ": " + e.getMessage());
+            return;
+        }
+        server.createContext("/metrics", MetricsRegistry::handleScrape);
+        server.setExecutor(Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "MetricsEndpoint");
+            thread.setDaemon(true);
+            return thread;
+        }));
+        // A thread de despacho do HttpServer herda o daemon da thread que chama start();
+        // iniciando-o de uma thread daemon o endpoint nao impede o fim do processo
+        Thread starter = new Thread(server::start, "MetricsEndpoint-Start");
+        starter.setDaemon(true);
+        starter.start();
+        try {
+            starter.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        System.out.println("Métricas disponíveis em http://127.0.0.1:" + HTTP_PORT + "/metrics");
+    }
+
+    private static void handleScrape(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            byte[] body = scrape().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+}
@@ -0,0 +1,7 @@
+package projetoredes.metrics;
+
+// Componente com metricas expostas no endpoint de texto (ver MetricsRegistry)
+@FunctionalInterface
+public interface MetricsSource {
+    void writeMetrics(MetricsWriter out);
+}
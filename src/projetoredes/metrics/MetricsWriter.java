@@ -0,0 +1,93 @@
+package projetoredes.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import projetoredes.utils.LatencyHistogram;
+
+// Monta a resposta no formato de texto do Prometheus (versao 0.0.4). As amostras de
+// uma mesma metrica sao agrupadas sob um unico HELP/TYPE, mesmo quando vem de
+// varias fontes (ex.: varios nos no mesmo processo).
+public final class MetricsWriter {
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private static final class Family {
+        final String type;
+        final String help;
+        final StringBuilder samples = new StringBuilder();
+
+        Family(String type, String help) {
+            this.type = type;
+            this.help = help;
+        }
+    }
+
+    private final Map<String, Family> families = new LinkedHashMap<>();
+
+    // Rotulo pronto para os metodos abaixo, ex.: label("node", 1) -> node="1"
+    public static String label(String name, Object value) {
+        String text = String.valueOf(value).replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+        return name + "=\"" + text + "\"";
+    }
+
+    public static String labels(String... labels) {
+        return String.join(",", labels);
+    }
+
+    public void counter(String name, String help, String labels, long value) {
+        sample(family(name, "counter", help), name, labels, Long.toString(value));
+    }
+
+    public void gauge(String name, String help, String labels, double value) {
+        sample(family(name, "gauge", help), name, labels, format(value));
+    }
+
+    // Resumo com quantis de um histograma em nanossegundos, exposto em segundos
+    public void summary(String name, String help, String labels, LatencyHistogram histogram) {
+        Family family = family(name, "summary", help);
+        for (double quantile : QUANTILES) {
+            String quantileLabel = label("quantile", format(quantile));
+            sample(family, name, labels.isEmpty() ? quantileLabel : labels + "," + quantileLabel,
+                    format(histogram.percentile(quantile * 100) / 1e9));
+        }
+        sample(family, name + "_sum", labels, format(histogram.sum() / 1e9));
+        sample(family, name + "_count", labels, Long.toString(histogram.count()));
+    }
+
+    // Resumo sem quantis (apenas soma e contagem)
+    public void summary(String name, String help, String labels, long count, long sum) {
+        Family family = family(name, "summary", help);
+        sample(family, name + "_sum", labels, Long.toString(sum));
+        sample(family, name + "_count", labels, Long.toString(count));
+    }
+
+    private Family family(String name, String type, String help) {
+        return families.computeIfAbsent(name, k -> new Family(type, help));
+    }
+
+    private static void sample(Family family, String name, String labels, String value) {
+        family.samples.append(name);
+        if (!labels.isEmpty()) {
+            family.samples.append('{').append(labels).append('}');
+        }
+        family.samples.append(' ').append(value).append('\n');
+    }
+
+    private static String format(double value) {
+        if (value == Math.rint(value) && !Double.isInfinite(value) && Math.abs(value) < 1e15) {
+            return Long.toString((long) value);
+        }
+        return Double.toString(value);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder out = new StringBuilder();
+        for (Map.Entry<String, Family> entry : families.entrySet()) {
+            Family family = entry.getValue();
+            out.append("# HELP ").append(entry.getKey()).append(' ').append(family.help).append('\n');
+            out.append("# TYPE ").append(entry.getKey()).append(' ').append(family.type).append('\n');
+            out.append(family.samples);
+        }
+        return out.toString();
+    }
+}
@@ -0,0 +1,4 @@
+package projetoredes.rip;
+
+// Novo custo de um enlace, para as alteraçoes em lote (setLinkCosts)
+public record LinkCostChange(short id1, short id2, int cost) {}
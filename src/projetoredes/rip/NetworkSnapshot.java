@@ -0,0 +1,21 @@
+package projetoredes.rip;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+// Tabelas de distancia de todos os nos coletadas em uma unica rodada de RIPRQT
+// (RIPManager.getNetworkSnapshotAsync). Os nos que nao responderam ate o prazo
+// ficam em missingNodes; elapsedMillis e o tempo total da coleta.
+public record NetworkSnapshot(SortedMap<Short, int[][]> distanceTables, List<Short> missingNodes, long elapsedMillis) {
+
+    public NetworkSnapshot {
+        distanceTables = Collections.unmodifiableSortedMap(new TreeMap<>(distanceTables));
+        missingNodes = List.copyOf(missingNodes);
+    }
+
+    public boolean isComplete() {
+        return missingNodes.isEmpty();
+    }
+}
@@ -0,0 +1,62 @@
+package projetoredes.rip;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+// Traduçao entre IDs de no e indices nos vetores de distancia, usando arrays
+// primitivos densos em vez de mapas com chaves boxed. Os indices seguem a ordem
+// crescente dos IDs, garantindo a mesma ordem de vetor em todos os nos.
+public final class NodeIndex {
+    private final int[] indexById; // -1 para IDs fora da topologia
+    private final short[] idByIndex;
+
+    public NodeIndex(Collection<Short> nodeIds) {
+        this(toArray(nodeIds));
+    }
+
+    // 'nodeIds' nao e alterado (os IDs sao copiados e ordenados)
+    public NodeIndex(short[] nodeIds) {
+        this.idByIndex = nodeIds.clone();
+        int maxId = 0;
+        for (short id : idByIndex) {
+            if (id < 0) {
+                throw new IllegalArgumentException("ID de nó inválido: " + id);
+            }
+            maxId = Math.max(maxId, id);
+        }
+        Arrays.sort(idByIndex);
+
+        this.indexById = new int[maxId + 1];
+        Arrays.fill(indexById, -1);
+        for (int index = 0; index < idByIndex.length; index++) {
+            indexById[idByIndex[index]] = index;
+        }
+    }
+
+    private static short[] toArray(Collection<Short> nodeIds) {
+        short[] ids = new short[nodeIds.size()];
+        int i = 0;
+        for (short id : nodeIds) {
+            ids[i++] = id;
+        }
+        return ids;
+    }
+
+    // Indica se os dois indices tem os mesmos nos (e portanto os mesmos indices)
+    public boolean sameNodes(NodeIndex other) {
+        return Arrays.equals(idByIndex, other.idByIndex);
+    }
+
+    // Retorna o indice do no ou -1 se o ID nao faz parte da topologia
+    public int indexOf(short nodeId) {
+        return (nodeId >= 0 && nodeId < indexById.length) ? indexById[nodeId] : -1;
+    }
+
+    public short idAt(int index) {
+        return idByIndex[index];
+    }
+
+    public int size() {
+        return idByIndex.length;
+    }
+}
@@ -0,0 +1,768 @@
+package projetoredes.rip;
+
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+// Codificador/decodificador das PDUs RIP.
+//
+// Formato texto (legado), como descrito no LEIAME:
+//   RIPIND <SourceID> <c0:c1:...>     RIPSET <A> <B> <Custo>
+//   RIPGET <A> <B>                    RIPNTF <A> <B> <Custo>
+//   RIPRQT                            RIPRSP <NodeID> <v0> <v1> ...
+//
+// Vetores que nao cabem em uma PDU sao enviados em segmentos, cada um com o
+// indice do primeiro custo e o tamanho total do vetor:
+//   RIPIND <SourceID> <offset>/<total> <ci:ci+1:...>
+//
+// Atualizaçoes incrementais (so entre nos que falam o formato binario, mas
+// com forma de texto para depuraçao):
+//   RIPDLT <SourceID> <seq> <total> <destino:custo> <destino:custo> ...
+//   RIPSYN <SourceID>                 (pede um vetor completo ao vizinho)
+//
+// Alteraçao de varios enlaces de um no de uma vez (aplicada atomicamente, com um
+// unico recalculo), e a confirmaçao correspondente:
+//   RIPSETBATCH <A> <B:custo> <B:custo> ...
+//   RIPNTFBATCH <A> <B:custo> <B:custo> ...
+//
+// Datagrama da aplicaçao encaminhado salto a salto (plano de dados), com o no de
+// origem, o destino final e o numero de saltos restantes. O payload vai ate o fim
+// da PDU e, em texto, segue o ultimo espaço sem conversao:
+//   RIPDATA <Origem> <Destino> <TTL> <payload>
+//
+// Pedido do gerente para o no gravar em arquivo o seu registro de eventos (RIPTrace):
+//   RIPTRC
+//
+// Formato binario: [versao:1][tipo:1][id:2][corpo]
+//   RIPIND: [total:varint][offset:varint][seq:varint][custos:varint ate o fim da PDU]
+//   RIPDLT: [seq:varint][total:varint][(destino:varint, custo:varint) ate o fim da PDU]
+//   RIPSYN: sem corpo
+//   RIPSETBATCH/RIPNTFBATCH: [n:varint][(B:2, custo:varint) * n]
+//   RIPDATA: [destino:2][ttl:1][payload ate o fim da PDU]  (id do cabeçalho = origem)
+//   RIPTRC: sem corpo
+//
+// Requisiçoes do gerente (RIPGET, RIPSET, RIPSETBATCH, RIPRQT, RIPTRC) e as respostas dos nos
+// (RIPNTF, RIPNTFBATCH, RIPRSP) podem levar um identificador de requisiçao opcional, que o no repete na
+// resposta: em texto, um ultimo token "#<id>" (ignorado pelos nos legados); em
+// binario, um varint apos o corpo. Sem ele, a PDU e identica ao formato original.
+//   RIPSET/RIPNTF: [B:2][custo:varint]   RIPGET: [B:2]
+//   RIPRSP: [linhas:varint][colunas:varint][custos:varint * linhas * colunas]
+//
+// Custos sao gravados como (custo + 1), de modo que INFINITY (-1) ocupa um byte.
+// Nenhum dos formatos passa por Strings intermediarias.
+public final class RIPCodec {
+
+    public static final byte VERSION = 0x01;
+
+    public static final int MALFORMED = -1;
+    public static final int UNKNOWN = 0;
+    public static final int IND = 1;
+    public static final int SET = 2;
+    public static final int GET = 3;
+    public static final int RQT = 4;
+    public static final int NTF = 5;
+    public static final int RSP = 6;
+    public static final int DLT = 7;
+    public static final int SYN = 8;
+    public static final int SET_BATCH = 9;
+    public static final int NTF_BATCH = 10;
+    public static final int DATA = 11;
+    public static final int TRC = 12;
+
+    // Maior cabeçalho de uma RIPDATA (em texto, "RIPDATA 32767 32767 255 "; em binario, 7 bytes)
+    public static final int MAX_DATA_HEADER_SIZE = 24;
+
+    private static final byte[][] TEXT_TYPES = {
+            null,
+            ascii("RIPIND"), ascii("RIPSET"), ascii("RIPGET"),
+            ascii("RIPRQT"), ascii("RIPNTF"), ascii("RIPRSP"),
+            ascii("RIPDLT"), ascii("RIPSYN"),
+            ascii("RIPSETBATCH"), ascii("RIPNTFBATCH"),
+            ascii("RIPDATA"), ascii("RIPTRC")
+    };
+
+    private RIPCodec() {}
+
+    // Nome do tipo para logs e metricas (o token do formato texto, ex.: "RIPIND")
+    public static String typeName(int type) {
+        if (type >= IND && type < TEXT_TYPES.length) {
+            return new String(TEXT_TYPES[type], StandardCharsets.ISO_8859_1);
+        }
+        return (type == MALFORMED) ? "MALFORMED" : "UNKNOWN";
+    }
+
+    // Codificaçao
+
+    // Maior representaçao de um custo: "-2147483648:" em texto, 5 bytes em varint
+    private static final int MAX_ENCODED_COST = 12;
+
+    // Codifica o vetor a partir de 'offset' ate encher o buffer ou chegar ao fim.
+    // Retorna o indice do proximo custo a enviar (vector.length quando terminou).
+    // O numero de sequencia so e enviado no formato binario.
+    public static int encodeInd(ByteBuffer out, boolean binary, short sourceId, int[] vector, int offset, int sequence) {
+        int total = vector.length;
+        int i = offset;
+
+        if (binary) {
+            putHeader(out, IND, sourceId);
+            putVarint(out, total);
+            putVarint(out, offset);
+            putVarint(out, sequence);
+            while (i < total && out.remaining() >= MAX_ENCODED_COST) {
+                putCost(out, vector[i++]);
+            }
+            return i;
+        }
+
+        putTextHeader(out, IND);
+        out.put((byte) ' ');
+        putAsciiInt(out, sourceId);
+        out.put((byte) ' ');
+
+        // O formato original (vetor inteiro, sem offset) e usado sempre que possivel
+        if (offset == 0 && textVectorLength(vector) <= out.remaining()) {
+            putTextVector(out, vector);
+            return total;
+        }
+
+        putAsciiInt(out, offset);
+        out.put((byte) '/');
+        putAsciiInt(out, total);
+        out.put((byte) ' ');
+        while (i < total && out.remaining() >= MAX_ENCODED_COST) {
+            if (i > offset) {
+                out.put((byte) ':');
+            }
+            putAsciiInt(out, vector[i++]);
+        }
+        return i;
+    }
+
+    // Codifica os pares (destinations[i], costs[i]), i < count, de um vetor de tamanho 'total'
+    // como uma atualizaçao incremental. Lança BufferOverflowException se nao couberem no buffer.
+    public static void encodeDelta(ByteBuffer out, boolean binary, short sourceId, int sequence, int total,
+                                   int[] destinations, int[] costs, int count) {
+        if (binary) {
+            putHeader(out, DLT, sourceId);
+            putVarint(out, sequence);
+            putVarint(out, total);
+            for (int i = 0; i < count; i++) {
+                putVarint(out, destinations[i]);
+                putCost(out, costs[i]);
+            }
+            return;
+        }
+
+        putTextHeader(out, DLT);
+        out.put((byte) ' ');
+        putAsciiInt(out, sourceId);
+        out.put((byte) ' ');
+        putAsciiInt(out, sequence);
+        out.put((byte) ' ');
+        putAsciiInt(out, total);
+        for (int i = 0; i < count; i++) {
+            out.put((byte) ' ');
+            putAsciiInt(out, destinations[i]);
+            out.put((byte) ':');
+            putAsciiInt(out, costs[i]);
+        }
+    }
+
+    public static void encodeSyn(ByteBuffer out, boolean binary, short sourceId) {
+        if (binary) {
+            putHeader(out, SYN, sourceId);
+        } else {
+            putTextHeader(out, SYN);
+            out.put((byte) ' ');
+            putAsciiInt(out, sourceId);
+        }
+    }
+
+    // Copia o payload (entre position e limit, sem altera-los) apos o cabeçalho.
+    // Lança BufferOverflowException se nao couber no buffer.
+    public static void encodeData(ByteBuffer out, boolean binary, short originId, short destinationId, int ttl,
+                                  ByteBuffer payload) {
+        if (binary) {
+            putHeader(out, DATA, originId);
+            out.putShort(destinationId);
+            out.put((byte) ttl);
+        } else {
+            putTextHeader(out, DATA);
+            out.put((byte) ' ');
+            putAsciiInt(out, originId);
+            out.put((byte) ' ');
+            putAsciiInt(out, destinationId);
+            out.put((byte) ' ');
+            putAsciiInt(out, ttl);
+            out.put((byte) ' ');
+        }
+        int length = payload.remaining();
+        if (out.remaining() < length) {
+            throw new BufferOverflowException();
+        }
+        out.put(out.position(), payload, payload.position(), length);
+        out.position(out.position() + length);
+    }
+
+    // 'requestId' pode ser RIPMessage.NO_REQUEST nas funçoes abaixo
+
+    public static void encodeSet(ByteBuffer out, boolean binary, short nodeA, short nodeB, int cost, int requestId) {
+        encodeLinkCost(out, binary, SET, nodeA, nodeB, cost);
+        putRequestId(out, binary, requestId);
+    }
+
+    public static void encodeNtf(ByteBuffer out, boolean binary, short nodeA, short nodeB, int cost, int requestId) {
+        encodeLinkCost(out, binary, NTF, nodeA, nodeB, cost);
+        putRequestId(out, binary, requestId);
+    }
+
+    // Pares (peers[i], costs[i]), i < count. Lança BufferOverflowException se nao couberem no buffer.
+    public static void encodeSetBatch(ByteBuffer out, boolean binary, short nodeA, int[] peers, int[] costs, int count,
+                                      int requestId) {
+        encodeLinkCosts(out, binary, SET_BATCH, nodeA, peers, costs, count);
+        putRequestId(out, binary, requestId);
+    }
+
+    public static void encodeNtfBatch(ByteBuffer out, boolean binary, short nodeA, int[] peers, int[] costs, int count,
+                                      int requestId) {
+        encodeLinkCosts(out, binary, NTF_BATCH, nodeA, peers, costs, count);
+        putRequestId(out, binary, requestId);
+    }
+
+    public static void encodeGet(ByteBuffer out, boolean binary, short nodeA, short nodeB, int requestId) {
+        if (binary) {
+            putHeader(out, GET, nodeA);
+            out.putShort(nodeB);
+        } else {
+            putTextHeader(out, GET);
+            out.put((byte) ' ');
+            putAsciiInt(out, nodeA);
+            out.put((byte) ' ');
+            putAsciiInt(out, nodeB);
+        }
+        putRequestId(out, binary, requestId);
+    }
+
+    public static void encodeRqt(ByteBuffer out, boolean binary, short senderId, int requestId) {
+        if (binary) {
+            putHeader(out, RQT, senderId);
+        } else {
+            putTextHeader(out, RQT);
+        }
+        putRequestId(out, binary, requestId);
+    }
+
+    public static void encodeTrc(ByteBuffer out, boolean binary, short senderId, int requestId) {
+        if (binary) {
+            putHeader(out, TRC, senderId);
+        } else {
+            putTextHeader(out, TRC);
+        }
+        putRequestId(out, binary, requestId);
+    }
+
+    public static void encodeRsp(ByteBuffer out, boolean binary, short nodeId, int[][] table, int requestId) {
+        int columns = (table.length > 0) ? table[0].length : 0;
+        if (binary) {
+            putHeader(out, RSP, nodeId);
+            putVarint(out, table.length);
+            putVarint(out, columns);
+            for (int[] row : table) {
+                for (int cost : row) {
+                    putCost(out, cost);
+                }
+            }
+        } else {
+            putTextHeader(out, RSP);
+            out.put((byte) ' ');
+            putAsciiInt(out, nodeId);
+            for (int[] row : table) {
+                out.put((byte) ' ');
+                putTextVector(out, row);
+            }
+        }
+        putRequestId(out, binary, requestId);
+    }
+
+    private static void putRequestId(ByteBuffer out, boolean binary, int requestId) {
+        if (requestId == RIPMessage.NO_REQUEST) {
+            return;
+        }
+        if (binary) {
+            putVarint(out, requestId);
+        } else {
+            out.put((byte) ' ');
+            out.put((byte) '#');
+            putAsciiInt(out, requestId);
+        }
+    }
+
+    private static void encodeLinkCost(ByteBuffer out, boolean binary, int type, short nodeA, short nodeB, int cost) {
+        if (binary) {
+            putHeader(out, type, nodeA);
+            out.putShort(nodeB);
+            putCost(out, cost);
+        } else {
+            putTextHeader(out, type);
+            out.put((byte) ' ');
+            putAsciiInt(out, nodeA);
+            out.put((byte) ' ');
+            putAsciiInt(out, nodeB);
+            out.put((byte) ' ');
+            putAsciiInt(out, cost);
+        }
+    }
+
+    private static void encodeLinkCosts(ByteBuffer out, boolean binary, int type, short nodeA,
+                                        int[] peers, int[] costs, int count) {
+        if (binary) {
+            putHeader(out, type, nodeA);
+            putVarint(out, count);
+            for (int i = 0; i < count; i++) {
+                out.putShort((short) peers[i]);
+                putCost(out, costs[i]);
+            }
+            return;
+        }
+
+        putTextHeader(out, type);
+        out.put((byte) ' ');
+        putAsciiInt(out, nodeA);
+        for (int i = 0; i < count; i++) {
+            out.put((byte) ' ');
+            putAsciiInt(out, peers[i]);
+            out.put((byte) ':');
+            putAsciiInt(out, costs[i]);
+        }
+    }
+
+    // Decodificaçao
+
+    // Decodifica a PDU entre position e limit de 'in' para 'out' e retorna o seu tipo.
+    // O formato (texto ou binario) e detectado pelo primeiro byte.
+    // Em uma RIPDATA, 'in' fica posicionado no inicio do payload (que nao e copiado).
+    public static int decode(ByteBuffer in, RIPMessage out) {
+        out.reset(MALFORMED);
+        if (!in.hasRemaining()) {
+            return MALFORMED;
+        }
+
+        try {
+            int type = (in.get(in.position()) == VERSION) ? decodeBinary(in, out) : decodeText(in, out);
+            out.setType(type);
+            return type;
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            out.setType(MALFORMED);
+            return MALFORMED;
+        }
+    }
+
+    private static int decodeBinary(ByteBuffer in, RIPMessage out) {
+        in.get(); // versao
+        int type = in.get();
+        out.setNodeId(in.getShort());
+
+        switch (type) {
+            case IND: {
+                int total = getVarint(in);
+                int offset = getVarint(in);
+                out.setSequence(getVarint(in));
+                // Os custos vao ate o fim da PDU (ao menos um byte cada)
+                int[] costs = out.costStorage(in.remaining());
+                int n = 0;
+                while (in.hasRemaining()) {
+                    costs[n++] = getCost(in);
+                }
+                checkSegment(offset, n, total);
+                out.setShape(1, n);
+                out.setSegment(offset, total);
+                break;
+            }
+            case DLT: {
+                out.setSequence(getVarint(in));
+                int total = getVarint(in);
+                // Cada entrada ocupa ao menos dois bytes
+                int[] entries = out.costStorage(in.remaining());
+                int n = 0;
+                while (in.hasRemaining()) {
+                    entries[2 * n] = checkDestination(getVarint(in), total);
+                    entries[2 * n + 1] = getCost(in);
+                    n++;
+                }
+                out.setDelta(n);
+                out.setSegment(0, total);
+                break;
+            }
+            case SYN:
+                break;
+            case SET:
+            case NTF:
+                out.setPeerId(in.getShort());
+                out.setCost(getCost(in));
+                readBinaryRequestId(in, out);
+                break;
+            case GET:
+                out.setPeerId(in.getShort());
+                readBinaryRequestId(in, out);
+                break;
+            case RQT:
+            case TRC:
+                readBinaryRequestId(in, out);
+                break;
+            case SET_BATCH:
+            case NTF_BATCH: {
+                int count = getVarint(in);
+                // Cada par ocupa ao menos tres bytes
+                if (count < 0 || (long) count * 3 > in.remaining()) {
+                    throw new IllegalArgumentException("Contagem de enlaces inválida");
+                }
+                int[] entries = out.costStorage(2 * count);
+                for (int i = 0; i < count; i++) {
+                    entries[2 * i] = in.getShort();
+                    entries[2 * i + 1] = getCost(in);
+                }
+                out.setDelta(count);
+                readBinaryRequestId(in, out);
+                break;
+            }
+            case RSP: {
+                int rows = getVarint(in);
+                int columns = getVarint(in);
+                readCosts(in, out, rows, columns);
+                readBinaryRequestId(in, out);
+                break;
+            }
+            case DATA:
+                out.setPeerId(in.getShort());
+                out.setTtl(in.get() & 0xFF);
+                break;
+            default:
+                return UNKNOWN;
+        }
+        return type;
+    }
+
+    private static void readBinaryRequestId(ByteBuffer in, RIPMessage out) {
+        if (in.hasRemaining()) {
+            out.setRequestId(getVarint(in));
+        }
+    }
+
+    private static void readCosts(ByteBuffer in, RIPMessage out, int rows, int columns) {
+        // Cada custo ocupa ao menos um byte: evita alocar para contagens absurdas
+        if (rows < 0 || columns < 0 || (long) rows * columns > in.remaining()) {
+            throw new IllegalArgumentException("Contagem de custos inválida");
+        }
+        int count = rows * columns;
+        int[] costs = out.costStorage(count);
+        for (int i = 0; i < count; i++) {
+            costs[i] = getCost(in);
+        }
+        out.setShape(rows, columns);
+    }
+
+    private static int decodeText(ByteBuffer in, RIPMessage out) {
+        int type = matchTextType(in);
+        if (type == UNKNOWN) {
+            return UNKNOWN;
+        }
+
+        switch (type) {
+            case IND: {
+                out.setNodeId((short) parseAsciiInt(in, ' '));
+                int offset = 0;
+                int total = -1;
+                if (nextTokenContains(in, (byte) '/')) {
+                    offset = parseAsciiInt(in, '/');
+                    total = parseAsciiInt(in, ' ');
+                }
+                readTextVectors(in, out);
+                if (out.rows() != 1) {
+                    throw new IllegalArgumentException("RIPIND com mais de um vetor");
+                }
+                if (total == -1) {
+                    total = out.columns();
+                }
+                checkSegment(offset, out.columns(), total);
+                out.setSegment(offset, total);
+                break;
+            }
+            case SET:
+            case NTF:
+                out.setNodeId((short) parseAsciiInt(in, ' '));
+                out.setPeerId((short) parseAsciiInt(in, ' '));
+                out.setCost(parseAsciiInt(in, ' '));
+                readTextRequestId(in, out);
+                break;
+            case GET:
+                out.setNodeId((short) parseAsciiInt(in, ' '));
+                out.setPeerId((short) parseAsciiInt(in, ' '));
+                readTextRequestId(in, out);
+                break;
+            case RQT:
+            case TRC:
+                readTextRequestId(in, out);
+                break;
+            case RSP:
+                out.setNodeId((short) parseAsciiInt(in, ' '));
+                readTextVectors(in, out);
+                readTextRequestId(in, out);
+                break;
+            case DLT: {
+                out.setNodeId((short) parseAsciiInt(in, ' '));
+                out.setSequence(parseAsciiInt(in, ' '));
+                int total = parseAsciiInt(in, ' ');
+                int n = 0;
+                while (in.hasRemaining()) {
+                    int[] entries = out.costStorage(2 * n + 2);
+                    entries[2 * n] = checkDestination(parseAsciiInt(in, ':'), total);
+                    entries[2 * n + 1] = parseAsciiInt(in, ' ');
+                    n++;
+                }
+                out.setDelta(n);
+                out.setSegment(0, total);
+                break;
+            }
+            case SYN:
+                out.setNodeId((short) parseAsciiInt(in, ' '));
+                break;
+            case SET_BATCH:
+            case NTF_BATCH: {
+                out.setNodeId((short) parseAsciiInt(in, ' '));
+                int n = 0;
+                while (in.hasRemaining() && in.get(in.position()) != '#') {
+                    int[] entries = out.costStorage(2 * n + 2);
+                    entries[2 * n] = (short) parseAsciiInt(in, ':');
+                    entries[2 * n + 1] = parseAsciiInt(in, ' ');
+                    n++;
+                }
+                out.setDelta(n);
+                readTextRequestId(in, out);
+                break;
+            }
+            case DATA:
+                out.setNodeId((short) parseAsciiInt(in, ' '));
+                out.setPeerId((short) parseAsciiInt(in, ' '));
+                out.setTtl(parseAsciiInt(in, ' '));
+                break;
+            default:
+                return UNKNOWN;
+        }
+        return type;
+    }
+
+    private static int matchTextType(ByteBuffer in) {
+        int start = in.position();
+        for (int type = IND; type < TEXT_TYPES.length; type++) {
+            byte[] token = TEXT_TYPES[type];
+            if (in.remaining() < token.length) {
+                continue;
+            }
+            boolean matches = true;
+            for (int i = 0; i < token.length && matches; i++) {
+                matches = in.get(start + i) == token[i];
+            }
+            int next = start + token.length;
+            if (matches && (next == in.limit() || in.get(next) == ' ')) {
+                in.position(Math.min(next + 1, in.limit()));
+                return type;
+            }
+        }
+        return UNKNOWN;
+    }
+
+    // Le o token opcional "#<id>"; outros tokens extras continuam sendo ignorados
+    private static void readTextRequestId(ByteBuffer in, RIPMessage out) {
+        if (in.hasRemaining() && in.get(in.position()) == '#') {
+            in.get();
+            out.setRequestId(parseAsciiInt(in, ' '));
+        }
+    }
+
+    private static boolean nextTokenContains(ByteBuffer in, byte value) {
+        for (int i = in.position(); i < in.limit(); i++) {
+            byte b = in.get(i);
+            if (b == value) {
+                return true;
+            }
+            if (b == ' ') {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    private static void checkSegment(int offset, int count, int total) {
+        if (offset < 0 || total < 0 || (long) offset + count > total) {
+            throw new IllegalArgumentException("Segmento de vetor inválido");
+        }
+    }
+
+    private static int checkDestination(int destination, int total) {
+        if (destination < 0 || destination >= total) {
+            throw new IllegalArgumentException("Destino inválido na atualização incremental");
+        }
+        return destination;
+    }
+
+    // Le vetores "c0:c1:..." separados por espaco ate o fim do buffer
+    private static void readTextVectors(ByteBuffer in, RIPMessage out) {
+        int rows = 0;
+        int columns = -1;
+        int count = 0;
+        int rowLength = 0;
+
+        while (in.hasRemaining() && in.get(in.position()) != '#') {
+            int value = parseAsciiInt(in, ':', ' ');
+            int[] costs = out.costStorage(count + 1);
+            costs[count++] = value;
+            rowLength++;
+
+            byte separator = in.get(in.position() - 1);
+            boolean endOfRow = separator != ':' && (!in.hasRemaining() || separator == ' ');
+            if (endOfRow) {
+                if (columns == -1) {
+                    columns = rowLength;
+                } else if (rowLength != columns) {
+                    throw new IllegalArgumentException("Vetores de tamanhos diferentes");
+                }
+                rows++;
+                rowLength = 0;
+            }
+        }
+
+        if (rows == 0 || rowLength != 0) {
+            throw new IllegalArgumentException("Vetor incompleto na PDU");
+        }
+        out.setShape(rows, columns);
+    }
+
+    // Utilitarios binarios
+
+    private static void putHeader(ByteBuffer out, int type, short id) {
+        out.put(VERSION).put((byte) type).putShort(id);
+    }
+
+    private static void putCost(ByteBuffer out, int cost) {
+        putVarint(out, cost + 1);
+    }
+
+    private static int getCost(ByteBuffer in) {
+        return getVarint(in) - 1;
+    }
+
+    static void putVarint(ByteBuffer out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    static int getVarint(ByteBuffer in) {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            byte b = in.get();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Varint muito longo");
+    }
+
+    // Utilitarios de texto
+
+    private static void putTextHeader(ByteBuffer out, int type) {
+        out.put(TEXT_TYPES[type]);
+    }
+
+    // Tamanho do vetor em texto, para decidir se ele cabe inteiro na PDU
+    private static int textVectorLength(int[] vector) {
+        int length = Math.max(0, vector.length - 1); // separadores
+        for (int cost : vector) {
+            length += asciiLength(cost);
+        }
+        return length;
+    }
+
+    private static int asciiLength(int value) {
+        int length = (value < 0) ? 2 : 1;
+        long magnitude = Math.abs((long) value);
+        while (magnitude >= 10) {
+            magnitude /= 10;
+            length++;
+        }
+        return length;
+    }
+
+    private static void putTextVector(ByteBuffer out, int[] vector) {
+        for (int i = 0; i < vector.length; i++) {
+            if (i > 0) {
+                out.put((byte) ':');
+            }
+            putAsciiInt(out, vector[i]);
+        }
+    }
+
+    static void putAsciiInt(ByteBuffer out, int value) {
+        // Trabalha com a magnitude negativa: -Integer.MIN_VALUE nao cabe em um int
+        if (value < 0) {
+            out.put((byte) '-');
+        } else {
+            value = -value;
+        }
+        int divisor = 1;
+        while (value / divisor <= -10) {
+            divisor *= 10;
+        }
+        while (divisor > 0) {
+            out.put((byte) ('0' - (value / divisor) % 10));
+            divisor /= 10;
+        }
+    }
+
+    // Le um inteiro ASCII ate um dos separadores (consumido) ou o fim do buffer
+    private static int parseAsciiInt(ByteBuffer in, char separator) {
+        return parseAsciiInt(in, separator, separator);
+    }
+
+    private static int parseAsciiInt(ByteBuffer in, char separator1, char separator2) {
+        boolean negative = false;
+        long value = 0;
+        int digits = 0;
+
+        while (in.hasRemaining()) {
+            byte b = in.get();
+            if (b == separator1 || b == separator2) {
+                break;
+            }
+            if (b == '-' && digits == 0 && !negative) {
+                negative = true;
+            } else if (b >= '0' && b <= '9' && digits < 10) {
+                value = value * 10 + (b - '0');
+                digits++;
+            } else {
+                throw new IllegalArgumentException("Número inválido na PDU");
+            }
+        }
+
+        if (digits == 0) {
+            throw new IllegalArgumentException("Número ausente na PDU");
+        }
+        value = negative ? -value : value;
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Número fora do intervalo na PDU");
+        }
+        return (int) value;
+    }
+
+    private static byte[] ascii(String token) {
+        byte[] bytes = new byte[token.length()];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) token.charAt(i);
+        }
+        return bytes;
+    }
+}
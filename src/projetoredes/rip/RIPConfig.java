@@ -3,7 +3,44 @@ package projetoredes.rip;
 public record RIPConfig() {
     public static final short MANAGER_ID = 0;
     public static final int INFINITY = -1;
-    public static final int MAX_NODES = 15;
+    // Maior ID de no aceito. Pode ser alterado com -Dprojetoredes.rip.maxNodes=<n>
+    public static final int MAX_NODES = Math.min(Short.MAX_VALUE, Integer.getInteger("projetoredes.rip.maxNodes", 15));
     public static final int MAX_COST = 15;
+    // Metrica maxima de um caminho, como no RIP (16): custos somados que chegam a este
+    // valor sao tratados como infinitos. Quanto menor o limite, menos rodadas leva a
+    // contagem ao infinito depois de uma falha (com 16, poucas propagaçoes). O padrao
+    // cobre os custos usuais dos enlaces (poucas unidades); topologias com caminhos
+    // mais caros devem aumenta-lo com -Dprojetoredes.rip.maxMetric=<n>
+    public static final int MAX_METRIC = Math.max(MAX_COST + 1, Integer.getInteger("projetoredes.rip.maxMetric", 16));
     public static final long DEFAULT_PROP_TIME_MS = 10_000;
+    // Saltos que um datagrama encaminhado (RIPDATA) pode dar antes de ser descartado.
+    // Pode ser alterado com -Dprojetoredes.rip.dataTtl=<saltos> (1 a 255)
+    public static final int DATA_TTL = Math.min(255, Math.max(1, Integer.getInteger("projetoredes.rip.dataTtl", 64)));
+    // Numero maximo de faixas de destinos com trava propria na tabela de roteamento
+    // (atualizaçoes de vizinhos diferentes em faixas diferentes rodam em paralelo).
+    // Pode ser alterado com -Dprojetoredes.rip.routingStripes=<n>
+    public static final int ROUTING_STRIPES = Math.max(1, Integer.getInteger("projetoredes.rip.routingStripes", 16));
+    // Requisiçoes assincronas do gerente: espera por resposta em cada tentativa e numero de tentativas.
+    // Podem ser alterados com -Dprojetoredes.rip.requestTimeoutMs=<ms> e -Dprojetoredes.rip.requestAttempts=<n>
+    public static final long REQUEST_TIMEOUT_MS = Math.max(1, Long.getLong("projetoredes.rip.requestTimeoutMs", 1_000));
+    public static final int REQUEST_ATTEMPTS = Math.max(1, Integer.getInteger("projetoredes.rip.requestAttempts", 3));
+    // Prazo padrao da coleta das tabelas de todos os nos. Pode ser alterado com -Dprojetoredes.rip.snapshotDeadlineMs=<ms>
+    public static final long SNAPSHOT_DEADLINE_MS = Math.max(1, Long.getLong("projetoredes.rip.snapshotDeadlineMs", 2_000));
+    // Atualizaçoes disparadas: intervalo minimo entre dois envios do vetor (hold-down)
+    // e atraso aleatorio adicional (jitter). Mudanças dentro da janela sao agrupadas.
+    // Podem ser alterados com -Dprojetoredes.rip.holdDownMs=<ms> e -Dprojetoredes.rip.jitterMs=<ms>
+    public static final long TRIGGERED_HOLD_DOWN_MS = Math.max(0, Long.getLong("projetoredes.rip.holdDownMs", 1_000));
+    public static final long TRIGGERED_JITTER_MS = Math.max(0, Long.getLong("projetoredes.rip.jitterMs", 500));
+    // Eventos guardados no registro circular de cada no (RIPTrace); 0 desliga o registro.
+    // Pode ser alterado com -Dprojetoredes.rip.traceSize=<eventos>
+    public static final int TRACE_SIZE = Math.max(0, Integer.getInteger("projetoredes.rip.traceSize", 4096));
+    // Diretorio dos arquivos de trace (pedidos pelo gerente com RIPTRC). Se definido com
+    // -Dprojetoredes.rip.traceDir=<dir>, o registro tambem e gravado ao encerrar o no.
+    public static final String TRACE_DIR = System.getProperty("projetoredes.rip.traceDir");
+    // Diretorio do estado de roteamento de cada no (reinicio a quente, ver RoutingStateFile).
+    // So e usado se definido com -Dprojetoredes.rip.stateDir=<dir>
+    public static final String STATE_DIR = System.getProperty("projetoredes.rip.stateDir");
+    // Observa ucsaps.conf e ripids.conf e recarrega as mudanças nos nos e no gerente em
+    // execuçao, sem reinicia-los. Ligado com -Dprojetoredes.rip.watchConfig=true
+    public static final boolean WATCH_CONFIG = Boolean.getBoolean("projetoredes.rip.watchConfig");
 }
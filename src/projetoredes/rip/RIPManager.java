@@ -1,13 +1,32 @@
 package projetoredes.rip;
 
+import projetoredes.unicast.Delivery;
+import projetoredes.unicast.UCSAP;
 import projetoredes.unicast.UnicastProtocol;
 import projetoredes.unicast.UnicastServiceUserInterface;
-import projetoredes.utils.Utils;
 
 import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 
 public class RIPManager implements RoutingProtocolManagementInterface, UnicastServiceUserInterface, AutoCloseable {
@@ -15,10 +34,29 @@ public class RIPManager implements RoutingProtocolManagementInterface, UnicastSe
     private final UnicastProtocol unicastLayer;
     private final RoutingProtocolManagementServiceUserInterface applicationUser;
 
-    // Topologia carregada para validar requisicoes
-    private final Map<Short, Map<Short, Integer>> topology;
-    private final Set<Short> allNodeIds;
-    private final int numNodes;
+    // Topologia carregada para validar requisicoes. Uma recarga publica um grafo novo;
+    // cada requisiçao le o campo uma vez e usa sempre a mesma versao.
+    private volatile TopologyGraph topology;
+
+    // Buffer de codificaçao reutilizado (protegido pelo monitor do gerente)
+    private final ByteBuffer txBuffer = ByteBuffer.allocate(UnicastProtocol.MAX_PDU_SIZE);
+
+    // Mensagem reutilizada na decodificaçao (protegida pelo seu proprio monitor)
+    private final RIPMessage rxMessage = new RIPMessage();
+
+    // Requisiçoes assincronas em andamento, pelo identificador levado nas PDUs
+    private final Map<Integer, PendingRequest<?>> pendingRequests = new ConcurrentHashMap<>();
+    private final AtomicInteger lastRequestId = new AtomicInteger();
+    private final ScheduledExecutorService requestTimer;
+
+    // Completa os futuros das requisiçoes. As respostas chegam na thread de recepçao,
+    // que no modo INLINE e o laço de eventos compartilhado, e os timeouts no timer:
+    // estagios encadeados pelo usuario nao devem rodar em nenhuma das duas.
+    private final Executor callbackExecutor = ForkJoinPool.commonPool();
+
+    // Politica aplicada as novas requisiçoes (cada uma guarda a sua)
+    private volatile long requestTimeoutMs = RIPConfig.REQUEST_TIMEOUT_MS;
+    private volatile int requestAttempts = RIPConfig.REQUEST_ATTEMPTS;
 
 
     public RIPManager(RoutingProtocolManagementServiceUserInterface applicationUser,
@@ -31,12 +69,7 @@ public class RIPManager implements RoutingProtocolManagementInterface, UnicastSe
         this.applicationUser = applicationUser;
 
         // Carrega a topologia para validaçao
-        this.topology = Utils.loadTopology(ripConfigPath);
-        if (this.topology == null) {
-            throw new IOException("Falha ao carregar a topologia " + ripConfigPath);
-        }
-        this.allNodeIds = this.topology.keySet();
-        this.numNodes = this.allNodeIds.size();
+        this.topology = TopologyGraph.load(ripConfigPath);
 
         // Inicia a camada de Unicast com o ID de gerente
         try {
@@ -44,139 +77,587 @@ public class RIPManager implements RoutingProtocolManagementInterface, UnicastSe
         } catch (IOException e) {
             throw new RuntimeException("Erro ao inicializar UnicastProtocol para o Gerente: " + e.getMessage(), e);
         }
-        
+
+        this.requestTimer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "RIPManager-Timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+
         System.out.println("Gerente RIP (ID " + RIPConfig.MANAGER_ID + ") inicializado.");
     }
 
 
+    // Recarrega os UCSAPs e a topologia usada na validaçao, sem reiniciar o gerente
+    // (as requisiçoes em andamento continuam). Os nos recarregam a sua propria copia.
+    public void reloadConfiguration(List<UCSAP> addresses, TopologyGraph topology) {
+        if (topology == null) {
+            System.err.println("Gerente: Topologia inválida. Mantendo a configuração atual.");
+            return;
+        }
+        if (addresses != null) {
+            unicastLayer.reloadAddresses(addresses);
+        }
+        this.topology = topology;
+        System.out.println("Gerente: Topologia recarregada com " + topology.nodeCount() + " nós.");
+    }
+
     @Override
     public boolean getDistanceTable(short nodeId) {
-        if (!allNodeIds.contains(nodeId)) {
-            System.err.println("Gerente: getDistanceTable para nó inválido " + nodeId);
+        String error = checkNode(nodeId);
+        if (error != null) {
+            System.err.println("Gerente: getDistanceTable " + error);
             return false;
         }
 
-        String pdu = "RIPRQT";
-        return unicastLayer.UPDataReq(nodeId, pdu);
+        return sendRIPRqt(nodeId, RIPMessage.NO_REQUEST);
     }
 
     @Override
-    public boolean getLinkCost(short id1, short id2) {
-        if (!allNodeIds.contains(id1) || !allNodeIds.contains(id2)) {
-            System.err.println("Gerente: getLinkCost para nós inválidos " + id1 + ", " + id2);
+    public boolean dumpTrace(short nodeId) {
+        String error = checkNode(nodeId);
+        if (error != null) {
+            System.err.println("Gerente: dumpTrace " + error);
             return false;
         }
 
-        // Valida se o enlace existe na topologia original
-        if (!topology.get(id1).containsKey(id2)) {
-            System.err.println("Gerente: getLinkCost para enlace inexistente " + id1 + "-" + id2);
+        return sendRIPTrc(nodeId);
+    }
+
+    @Override
+    public boolean getLinkCost(short id1, short id2) {
+        String error = checkLink(id1, id2);
+        if (error != null) {
+            System.err.println("Gerente: getLinkCost " + error);
             return false;
         }
 
-        String pdu = String.format("RIPGET %d %d", id1, id2);
-        return unicastLayer.UPDataReq(id1, pdu);
+        return sendRIPGet(id1, id2, RIPMessage.NO_REQUEST);
     }
 
     @Override
     public boolean setLinkCost(short id1, short id2, int cost) {
-        if (!allNodeIds.contains(id1) || !allNodeIds.contains(id2)) {
-            System.err.println("Gerente: setLinkCost para nós inválidos " + id1 + ", " + id2);
+        String error = checkLinkCost(id1, id2, cost);
+        if (error != null) {
+            System.err.println("Gerente: setLinkCost " + error);
             return false;
         }
 
-        // Valida se o enlace existe na topologia original
-        if (!topology.get(id1).containsKey(id2)) {
-            System.err.println("Gerente: setLinkCost para enlace inexistente " + id1 + "-" + id2);
+        // Enviamos para os dois nos envolvidos
+        boolean ok1 = sendRIPSet(id1, id2, cost, RIPMessage.NO_REQUEST);
+        boolean ok2 = sendRIPSet(id2, id1, cost, RIPMessage.NO_REQUEST);
+
+        return ok1 && ok2;
+    }
+
+    @Override
+    public boolean setLinkCosts(List<LinkCostChange> changes) {
+        Map<Short, Map<Short, Integer>> batches = new TreeMap<>();
+        String error = groupByNode(changes, batches);
+        if (error != null) {
+            System.err.println("Gerente: setLinkCosts " + error);
             return false;
         }
 
-        // Valida o custo
-        if (cost != RIPConfig.INFINITY && (cost < 1 || cost > RIPConfig.MAX_COST)) {
-            System.err.println("Gerente: setLinkCost com custo inválido " + cost);
-            return false;
+        boolean ok = true;
+        for (Map.Entry<Short, Map<Short, Integer>> batch : batches.entrySet()) {
+            int[][] entries = toEntries(batch.getValue());
+            ok &= sendRIPSetBatch(batch.getKey(), entries[0], entries[1], RIPMessage.NO_REQUEST);
         }
+        return ok;
+    }
 
-        // Enviamos para os dois nos envolvidos
-        String pdu1 = String.format("RIPSET %d %d %d", id1, id2, cost);
-        String pdu2 = String.format("RIPSET %d %d %d", id2, id1, cost);
+    // API assincrona
 
-        boolean ok1 = unicastLayer.UPDataReq(id1, pdu1);
-        boolean ok2 = unicastLayer.UPDataReq(id2, pdu2);
+    @Override
+    public CompletableFuture<int[][]> getDistanceTableAsync(short nodeId) {
+        String error = checkNode(nodeId);
+        if (error != null) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("getDistanceTable " + error));
+        }
+        return start(new PendingRequest<int[][]>(RIPCodec.RQT, nodeId, (short) 0, RIPConfig.INFINITY));
+    }
 
-        return ok1 && ok2;
+    @Override
+    public CompletableFuture<Integer> getLinkCostAsync(short id1, short id2) {
+        String error = checkLink(id1, id2);
+        if (error != null) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("getLinkCost " + error));
+        }
+        return start(new PendingRequest<Integer>(RIPCodec.GET, id1, id2, RIPConfig.INFINITY));
+    }
+
+    @Override
+    public CompletableFuture<Void> setLinkCostAsync(short id1, short id2, int cost) {
+        String error = checkLinkCost(id1, id2, cost);
+        if (error != null) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("setLinkCost " + error));
+        }
+        // Uma requisiçao (com identificador proprio) para cada ponta do enlace
+        return CompletableFuture.allOf(
+                start(new PendingRequest<Integer>(RIPCodec.SET, id1, id2, cost)),
+                start(new PendingRequest<Integer>(RIPCodec.SET, id2, id1, cost)));
+    }
+
+    @Override
+    public CompletableFuture<Void> setLinkCostsAsync(List<LinkCostChange> changes) {
+        Map<Short, Map<Short, Integer>> batches = new TreeMap<>();
+        String error = groupByNode(changes, batches);
+        if (error != null) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("setLinkCosts " + error));
+        }
+
+        List<CompletableFuture<Object>> confirmations = new ArrayList<>(batches.size());
+        for (Map.Entry<Short, Map<Short, Integer>> batch : batches.entrySet()) {
+            int[][] entries = toEntries(batch.getValue());
+            confirmations.add(start(new PendingRequest<>(batch.getKey(), entries[0], entries[1])));
+        }
+        return CompletableFuture.allOf(confirmations.toArray(CompletableFuture[]::new));
+    }
+
+    @Override
+    public CompletableFuture<NetworkSnapshot> getNetworkSnapshotAsync(long deadlineMs) {
+        if (deadlineMs <= 0) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("Prazo inválido " + deadlineMs));
+        }
+        long startNanos = System.nanoTime();
+
+        // Dispara todas as requisiçoes antes de esperar qualquer resposta
+        NodeIndex allNodes = topology.nodeIndex();
+        List<PendingRequest<int[][]>> requests = new ArrayList<>(allNodes.size());
+        for (int index = 0; index < allNodes.size(); index++) {
+            short nodeId = allNodes.idAt(index);
+            PendingRequest<int[][]> request = new PendingRequest<>(RIPCodec.RQT, nodeId, (short) 0, RIPConfig.INFINITY);
+            start(request);
+            requests.add(request);
+        }
+
+        // Reune quando todas terminarem ou quando o prazo acabar, o que vier primeiro
+        CompletableFuture<NetworkSnapshot> snapshot = new CompletableFuture<>();
+        AtomicBoolean gathered = new AtomicBoolean();
+        Runnable gather = () -> {
+            if (!gathered.compareAndSet(false, true)) {
+                return;
+            }
+            SortedMap<Short, int[][]> tables = new TreeMap<>();
+            List<Short> missing = new ArrayList<>();
+            for (PendingRequest<int[][]> request : requests) {
+                // Respostas que chegarem depois do prazo sao descartadas. O resultado de uma
+                // resposta ja associada fica registrado mesmo antes de o futuro ser completado
+                request.abandon();
+                int[][] table = request.result();
+                if (table != null) {
+                    tables.put(request.destination, table);
+                } else {
+                    missing.add(request.destination);
+                }
+            }
+            Collections.sort(missing);
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+            snapshot.completeAsync(() -> new NetworkSnapshot(tables, missing, elapsedMillis), callbackExecutor);
+        };
+
+        ScheduledFuture<?> deadline = requestTimer.schedule(gather, deadlineMs, TimeUnit.MILLISECONDS);
+        CompletableFuture.allOf(requests.stream().map(r -> r.future).toArray(CompletableFuture[]::new))
+                .whenComplete((ignored, error) -> {
+                    deadline.cancel(false);
+                    gather.run();
+                });
+        return snapshot;
+    }
+
+    // Altera o tempo de espera por tentativa e o numero de tentativas das proximas requisiçoes
+    public void setRequestPolicy(long timeoutMs, int attempts) {
+        if (timeoutMs <= 0 || attempts < 1) {
+            throw new IllegalArgumentException("Política de requisição inválida");
+        }
+        this.requestTimeoutMs = timeoutMs;
+        this.requestAttempts = attempts;
+    }
+
+    public int pendingRequestCount() {
+        return pendingRequests.size();
+    }
+
+    private <T> CompletableFuture<T> start(PendingRequest<T> request) {
+        pendingRequests.put(request.id, request);
+        if (!request.send()) {
+            pendingRequests.remove(request.id);
+            request.future.completeExceptionally(
+                    new IOException("Falha ao enviar a requisição #" + request.id + " para o nó " + request.destination));
+            return request.future;
+        }
+        request.scheduleTimeout();
+        return request.future;
+    }
+
+    // Validaçoes: retornam a descriçao do erro, ou null se a requisiçao e valida
+
+    private String checkNode(short nodeId) {
+        return topology.contains(nodeId) ? null : "para nó inválido " + nodeId;
+    }
+
+    private String checkLink(short id1, short id2) {
+        TopologyGraph topology = this.topology;
+        if (!topology.contains(id1) || !topology.contains(id2)) {
+            return "para nós inválidos " + id1 + ", " + id2;
+        }
+        // Valida se o enlace existe na topologia original
+        if (topology.linkPosition(id1, id2) < 0) {
+            return "para enlace inexistente " + id1 + "-" + id2;
+        }
+        return null;
+    }
+
+    private String checkLinkCost(short id1, short id2, int cost) {
+        String error = checkLink(id1, id2);
+        if (error == null && cost != RIPConfig.INFINITY && (cost < 1 || cost > RIPConfig.MAX_COST)) {
+            error = "com custo inválido " + cost;
+        }
+        return error;
+    }
+
+    // Agrupa as alteraçoes por no: cada enlace A-B entra no lote de A (como B) e no de B
+    // (como A). Se o mesmo enlace aparecer mais de uma vez, vale a ultima alteraçao.
+    private String groupByNode(List<LinkCostChange> changes, Map<Short, Map<Short, Integer>> batches) {
+        if (changes == null || changes.isEmpty()) {
+            return "sem alterações";
+        }
+        for (LinkCostChange change : changes) {
+            String error = checkLinkCost(change.id1(), change.id2(), change.cost());
+            if (error != null) {
+                return error;
+            }
+            batches.computeIfAbsent(change.id1(), k -> new TreeMap<>()).put(change.id2(), change.cost());
+            batches.computeIfAbsent(change.id2(), k -> new TreeMap<>()).put(change.id1(), change.cost());
+        }
+        return null;
+    }
+
+    // {NodeBs, custos} de um lote
+    private static int[][] toEntries(Map<Short, Integer> batch) {
+        int[][] entries = new int[2][batch.size()];
+        int i = 0;
+        for (Map.Entry<Short, Integer> entry : batch.entrySet()) {
+            entries[0][i] = entry.getKey();
+            entries[1][i] = entry.getValue();
+            i++;
+        }
+        return entries;
+    }
+
+    // Metodos de envio de PDU (com entrega confiavel, quando o no fala o formato binario)
+    private Delivery delivery(short destId) {
+        return unicastLayer.supportsReliable(destId) ? Delivery.RELIABLE : Delivery.BEST_EFFORT;
+    }
+
+    private synchronized boolean sendRIPRqt(short destId, int requestId) {
+        boolean binary = unicastLayer.isBinaryCapable(destId);
+        txBuffer.clear();
+        RIPCodec.encodeRqt(txBuffer, binary, RIPConfig.MANAGER_ID, requestId);
+        txBuffer.flip();
+        return unicastLayer.UPDataReq(destId, txBuffer, delivery(destId));
+    }
+
+    private synchronized boolean sendRIPTrc(short destId) {
+        boolean binary = unicastLayer.isBinaryCapable(destId);
+        txBuffer.clear();
+        RIPCodec.encodeTrc(txBuffer, binary, RIPConfig.MANAGER_ID, RIPMessage.NO_REQUEST);
+        txBuffer.flip();
+        return unicastLayer.UPDataReq(destId, txBuffer, delivery(destId));
+    }
+
+    private synchronized boolean sendRIPGet(short nodeA, short nodeB, int requestId) {
+        boolean binary = unicastLayer.isBinaryCapable(nodeA);
+        txBuffer.clear();
+        RIPCodec.encodeGet(txBuffer, binary, nodeA, nodeB, requestId);
+        txBuffer.flip();
+        return unicastLayer.UPDataReq(nodeA, txBuffer, delivery(nodeA));
+    }
+
+    private synchronized boolean sendRIPSet(short nodeA, short nodeB, int cost, int requestId) {
+        boolean binary = unicastLayer.isBinaryCapable(nodeA);
+        txBuffer.clear();
+        RIPCodec.encodeSet(txBuffer, binary, nodeA, nodeB, cost, requestId);
+        txBuffer.flip();
+        return unicastLayer.UPDataReq(nodeA, txBuffer, delivery(nodeA));
+    }
+
+    // Um lote que nao cabe em uma PDU nao e enviado
+    private synchronized boolean sendRIPSetBatch(short nodeA, int[] peers, int[] costs, int requestId) {
+        boolean binary = unicastLayer.isBinaryCapable(nodeA);
+        txBuffer.clear().limit(UnicastProtocol.MAX_PAYLOAD_SIZE);
+        try {
+            RIPCodec.encodeSetBatch(txBuffer, binary, nodeA, peers, costs, peers.length, requestId);
+        } catch (BufferOverflowException e) {
+            System.err.println("Gerente: lote com " + peers.length + " enlaces muito grande para uma PDU do nó " + nodeA);
+            return false;
+        }
+        txBuffer.flip();
+        return unicastLayer.UPDataReq(nodeA, txBuffer, delivery(nodeA));
     }
 
     @Override
     public void UPDataInd(short sourceId, String data) {
-        String[] parts = data.split(" ", 2);
-        if (parts.length == 0) return;
+        // PDUs RIP de texto sao ASCII
+        UPDataInd(sourceId, ByteBuffer.wrap(data.getBytes(StandardCharsets.ISO_8859_1)));
+    }
 
-        String pduType = parts[0];
-        String payload = (parts.length > 1) ? parts[1] : "";
+    @Override
+    public void UPDataInd(short sourceId, ByteBuffer data) {
+        // rxMessage e reaproveitada entre PDUs; a entrega pode vir de varias threads (DispatchMode)
+        synchronized (rxMessage) {
+            dispatchPDU(sourceId, data);
+        }
+    }
+
+    private void dispatchPDU(short sourceId, ByteBuffer data) {
+        int pduType = RIPCodec.decode(data, rxMessage);
 
         try {
             switch (pduType) {
-                case "RIPNTF":
-                    handleRIPNtf(payload);
+                case RIPCodec.NTF:
+                    handleRIPNtf(sourceId, rxMessage);
+                    break;
+                case RIPCodec.NTF_BATCH:
+                    handleRIPNtfBatch(sourceId, rxMessage);
+                    break;
+                case RIPCodec.RSP:
+                    handleRIPRsp(sourceId, rxMessage);
                     break;
-                case "RIPRSP":
-                    handleRIPRsp(payload);
+                case RIPCodec.MALFORMED:
+                    System.err.println("Gerente: PDU mal formatada de " + sourceId + ". Ignorando.");
                     break;
                 default:
-                    System.err.println("Gerente: PDU inesperada '" + pduType + "' de " + sourceId + ". Ignorando.");
+                    System.err.println("Gerente: PDU inesperada (tipo " + pduType + ") de " + sourceId + ". Ignorando.");
             }
         } catch (Exception e) {
             System.err.println("Gerente: Erro ao processar PDU " + pduType + " de " + sourceId + ": " + e.getMessage());
         }
     }
 
-    // Trata RIPNTF e notifica a aplicaçao
-    private void handleRIPNtf(String payload) {
-        String[] parts = payload.split(" ");
-        short nodeA = Short.parseShort(parts[0]);
-        short nodeB = Short.parseShort(parts[1]);
-        int cost = Integer.parseInt(parts[2]);
-
-        applicationUser.linkCostIndication(nodeA, nodeB, cost);
+    // Trata RIPNTF: completa a requisiçao correspondente ou notifica a aplicaçao
+    private void handleRIPNtf(short sourceId, RIPMessage message) {
+        PendingRequest<?> request = matchRequest(sourceId, message);
+        if (request != null) {
+            request.complete(message.cost());
+        } else if (message.requestId() == RIPMessage.NO_REQUEST) {
+            applicationUser.linkCostIndication(message.nodeId(), message.peerId(), message.cost());
+        }
     }
 
-    // Trata RIPRSP e notifica a aplicaçao
-    private void handleRIPRsp(String payload) {
-        String[] parts = payload.split(" ", 2);
-        short nodeId = Short.parseShort(parts[0]);
-        String tableString = parts[1];
+    // Trata RIPNTFBATCH: completa a requisiçao correspondente ou notifica a aplicaçao de cada enlace
+    private void handleRIPNtfBatch(short sourceId, RIPMessage message) {
+        PendingRequest<?> request = matchRequest(sourceId, message);
+        if (request != null) {
+            request.complete(null);
+        } else if (message.requestId() == RIPMessage.NO_REQUEST) {
+            for (int i = 0; i < message.batchEntries(); i++) {
+                applicationUser.linkCostIndication(message.nodeId(), message.batchPeer(i), message.batchCost(i));
+            }
+        }
+    }
 
-        String[] vectorStrings = tableString.split(" ");
-        int numRows = vectorStrings.length;
+    // Trata RIPRSP: completa a requisiçao correspondente ou notifica a aplicaçao
+    private void handleRIPRsp(short sourceId, RIPMessage message) {
+        short nodeId = message.nodeId();
+        int numRows = message.rows();
 
+        // Uma requisiçao nao pode confundir a resposta invalida com um no sem rotas: falha
+        // de imediato, em vez de esperar o tempo limite e as novas tentativas
+        PendingRequest<?> request = matchRequest(sourceId, message);
         if (numRows == 0) {
             System.err.println("Gerente: RIPRSP de " + nodeId + " veio com tabela vazia.");
+            if (request != null) {
+                request.fail(new IllegalStateException("RIPRSP do nó " + nodeId + " com tabela vazia"));
+            }
             return;
         }
 
-        // Aloca a tabela
-        int[][] distanceTable = new int[numRows][this.numNodes];
-        
-        // Faz o parse de cada vetor (linha)
-        for (int i = 0; i < numRows; i++) {
-            int[] vector = Arrays.stream(vectorStrings[i].split(":"))
-                                 .mapToInt(Integer::parseInt)
-                                 .toArray();
-            
-            if (vector.length == this.numNodes) {
-                distanceTable[i] = vector;
+        int numNodes = topology.nodeCount();
+        boolean malformed = message.columns() != numNodes;
+        if (malformed) {
+            System.err.println("Gerente: RIPRSP de " + nodeId + " com vetores de tamanho incorreto.");
+        }
+
+        if (request != null) {
+            if (malformed) {
+                request.fail(new IllegalStateException("RIPRSP do nó " + nodeId + " com " + message.columns()
+                        + " colunas (esperadas " + numNodes + ")"));
+            } else {
+                request.complete(message.toTable());
+            }
+        } else if (message.requestId() == RIPMessage.NO_REQUEST) {
+            int[][] distanceTable;
+            if (malformed) {
+                // Preenche com infinito para indicar erro
+                distanceTable = new int[numRows][numNodes];
+                for (int[] row : distanceTable) {
+                    Arrays.fill(row, RIPConfig.INFINITY);
+                }
             } else {
-                 System.err.println("Gerente: RIPRSP de " + nodeId + " com vetor de tamanho incorreto. Linha " + i);
-                 // Preenche com infinito para indicar erro
-                 Arrays.fill(distanceTable[i], RIPConfig.INFINITY);
+                distanceTable = message.toTable();
             }
+            applicationUser.distanceTableIndication(nodeId, distanceTable);
+        }
+    }
+
+    // Encontra a requisiçao respondida pela PDU; complete/fail a retiram das pendentes.
+    // Respostas sem identificador (nos legados) sao associadas a requisiçao mais antiga do
+    // mesmo tipo para o mesmo no. Respostas repetidas de requisiçoes ja concluidas retornam null.
+    private PendingRequest<?> matchRequest(short sourceId, RIPMessage message) {
+        if (message.requestId() != RIPMessage.NO_REQUEST) {
+            PendingRequest<?> request = pendingRequests.get(message.requestId());
+            return (request != null && request.answeredBy(sourceId, message)) ? request : null;
         }
 
-        applicationUser.distanceTableIndication(nodeId, distanceTable);
+        PendingRequest<?> oldest = null;
+        for (PendingRequest<?> request : pendingRequests.values()) {
+            if (request.answeredBy(sourceId, message) && (oldest == null || request.id - oldest.id < 0)) {
+                oldest = request;
+            }
+        }
+        return oldest;
+    }
+
+    // Requisiçao assincrona em andamento. O timer reenvia a PDU (com o mesmo
+    // identificador) a cada tempo de espera, ate acabarem as tentativas.
+    private final class PendingRequest<T> {
+        private final int id;
+        private final int type;          // RIPCodec.RQT, GET, SET ou SET_BATCH
+        private final short destination;
+        private final short peer;        // NodeB (GET/SET)
+        private final int cost;          // SET
+        private final int[] batchPeers;  // SET_BATCH
+        private final int[] batchCosts;
+        private final long timeoutMs = requestTimeoutMs;
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+        private final int attempts = requestAttempts;
+        private int attemptsLeft = attempts;
+        private ScheduledFuture<?> timeout;
+        private volatile T result;       // Registrado na resposta, antes dos callbacks do futuro
+
+        PendingRequest(int type, short destination, short peer, int cost) {
+            this.id = nextRequestId();
+            this.type = type;
+            this.destination = destination;
+            this.peer = peer;
+            this.cost = cost;
+            this.batchPeers = null;
+            this.batchCosts = null;
+        }
+
+        PendingRequest(short destination, int[] batchPeers, int[] batchCosts) {
+            this.id = nextRequestId();
+            this.type = RIPCodec.SET_BATCH;
+            this.destination = destination;
+            this.peer = 0;
+            this.cost = RIPConfig.INFINITY;
+            this.batchPeers = batchPeers;
+            this.batchCosts = batchCosts;
+        }
+
+        boolean send() {
+            switch (type) {
+                case RIPCodec.RQT:
+                    return sendRIPRqt(destination, id);
+                case RIPCodec.GET:
+                    return sendRIPGet(destination, peer, id);
+                case RIPCodec.SET_BATCH:
+                    return sendRIPSetBatch(destination, batchPeers, batchCosts, id);
+                default:
+                    return sendRIPSet(destination, peer, cost, id);
+            }
+        }
+
+        synchronized void scheduleTimeout() {
+            attemptsLeft--;
+            timeout = requestTimer.schedule(this::onTimeout, timeoutMs, TimeUnit.MILLISECONDS);
+        }
+
+        private void onTimeout() {
+            if (pendingRequests.get(id) != this) {
+                return; // Respondida nesse meio tempo
+            }
+            if (attemptsLeft > 0) {
+                send(); // Uma falha local aqui conta como perda: tenta de novo no proximo timeout
+                scheduleTimeout();
+            } else {
+                fail(new TimeoutException("Sem resposta do nó " + destination
+                        + " para a requisição #" + id + " após " + attempts + " tentativa(s)"));
+            }
+        }
+
+        // Desiste da requisiçao se ela ainda estiver em andamento
+        synchronized void abandon() {
+            if (pendingRequests.remove(id, this)) {
+                if (timeout != null) {
+                    timeout.cancel(false);
+                }
+                future.cancel(false);
+            }
+        }
+
+        // Resultado registrado por complete; null se a requisiçao falhou ou nao foi respondida
+        T result() {
+            return result;
+        }
+
+        boolean answeredBy(short sourceId, RIPMessage message) {
+            if (sourceId != destination) {
+                return false;
+            }
+            if (message.type() == RIPCodec.RSP) {
+                return type == RIPCodec.RQT;
+            }
+            if (message.type() == RIPCodec.NTF_BATCH) {
+                return type == RIPCodec.SET_BATCH && message.nodeId() == destination;
+            }
+            // RIPNTF: resposta a RIPGET ou RIPSET para o mesmo enlace
+            return (type == RIPCodec.GET || type == RIPCodec.SET)
+                    && message.nodeId() == destination && message.peerId() == peer;
+        }
+
+        // Retira a requisiçao das pendentes e registra o resultado sob a mesma trava de
+        // abandon: quem desiste dela depois ja encontra o resultado, mesmo que os callbacks
+        // ainda nao tenham rodado. Retorna false se ela ja havia sido concluida.
+        @SuppressWarnings("unchecked")
+        synchronized boolean complete(Object value) {
+            if (!pendingRequests.remove(id, this)) {
+                return false;
+            }
+            result = (T) value;
+            if (timeout != null) {
+                timeout.cancel(false);
+            }
+            future.completeAsync(() -> (T) value, callbackExecutor);
+            return true;
+        }
+
+        synchronized boolean fail(Throwable error) {
+            if (!pendingRequests.remove(id, this)) {
+                return false;
+            }
+            if (timeout != null) {
+                timeout.cancel(false);
+            }
+            callbackExecutor.execute(() -> future.completeExceptionally(error));
+            return true;
+        }
+    }
+
+    // Identificadores positivos e crescentes (NO_REQUEST = 0 nunca e usado)
+    private int nextRequestId() {
+        return lastRequestId.updateAndGet(id -> (id == Integer.MAX_VALUE) ? 1 : id + 1);
     }
 
     @Override
     public void close() {
+        requestTimer.shutdownNow();
+        for (PendingRequest<?> request : pendingRequests.values()) {
+            request.future.completeExceptionally(new IllegalStateException("Gerente encerrado"));
+        }
+        pendingRequests.clear();
         if (unicastLayer != null) {
             unicastLayer.close();
         }
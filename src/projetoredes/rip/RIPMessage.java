@@ -0,0 +1,179 @@
+package projetoredes.rip;
+
+import java.util.Arrays;
+
+// PDU RIP decodificada. Uma instancia e reutilizada pelo receptor a cada PDU,
+// evitando alocar Strings e arrays para cada mensagem recebida.
+public final class RIPMessage {
+    public static final int NO_SEQUENCE = -1;
+    public static final int NO_REQUEST = 0;
+
+    private int type = RIPCodec.MALFORMED;
+    private short nodeId;   // Origem (RIPIND/RIPRSP/RIPDATA) ou NodeA (RIPGET/RIPSET/RIPNTF)
+    private short peerId;   // NodeB (RIPGET/RIPSET/RIPNTF) ou destino final (RIPDATA)
+    private int cost;       // RIPSET/RIPNTF
+    private int rows;
+    private int columns;
+    private int offset;     // RIPIND: indice do primeiro custo do segmento
+    private int total;      // RIPIND/RIPDLT: tamanho do vetor completo
+    private int sequence;   // RIPIND/RIPDLT binarios: numero de sequencia do remetente
+    private int entries;    // RIPDLT: numero de pares (destino, custo); RIPSETBATCH/RIPNTFBATCH: (NodeB, custo)
+    private int requestId;  // PDUs de gerenciamento: identificador opcional da requisiçao
+    private int ttl;        // RIPDATA: saltos restantes
+    private int[] costs = new int[64]; // RIPDLT e lotes: pares intercalados [destino ou NodeB, custo, ...]
+
+    public int type() {
+        return type;
+    }
+
+    public short nodeId() {
+        return nodeId;
+    }
+
+    public short peerId() {
+        return peerId;
+    }
+
+    public int cost() {
+        return cost;
+    }
+
+    public int rows() {
+        return rows;
+    }
+
+    public int columns() {
+        return columns;
+    }
+
+    public int offset() {
+        return offset;
+    }
+
+    public int total() {
+        return total;
+    }
+
+    // NO_SEQUENCE quando a PDU nao tem numero de sequencia (formato texto)
+    public int sequence() {
+        return sequence;
+    }
+
+    // NO_REQUEST quando a PDU nao tem identificador de requisiçao
+    public int requestId() {
+        return requestId;
+    }
+
+    public int ttl() {
+        return ttl;
+    }
+
+    public int deltaEntries() {
+        return entries;
+    }
+
+    public int deltaDestination(int entry) {
+        return costs[2 * entry];
+    }
+
+    public int deltaCost(int entry) {
+        return costs[2 * entry + 1];
+    }
+
+    // RIPSETBATCH/RIPNTFBATCH: os pares usam o mesmo armazenamento do RIPDLT
+    public int batchEntries() {
+        return entries;
+    }
+
+    public short batchPeer(int entry) {
+        return (short) costs[2 * entry];
+    }
+
+    public int batchCost(int entry) {
+        return costs[2 * entry + 1];
+    }
+
+    public int cost(int row, int column) {
+        return costs[row * columns + column];
+    }
+
+    // Copia uma linha (vetor) da mensagem para 'dest'
+    public void copyRow(int row, int[] dest) {
+        System.arraycopy(costs, row * columns, dest, 0, columns);
+    }
+
+    public int[][] toTable() {
+        int[][] table = new int[rows][];
+        for (int i = 0; i < rows; i++) {
+            table[i] = Arrays.copyOfRange(costs, i * columns, (i + 1) * columns);
+        }
+        return table;
+    }
+
+    // Metodos usados pelo RIPCodec durante a decodificaçao
+
+    void reset(int type) {
+        this.type = type;
+        this.nodeId = 0;
+        this.peerId = 0;
+        this.cost = RIPConfig.INFINITY;
+        this.rows = 0;
+        this.columns = 0;
+        this.offset = 0;
+        this.total = 0;
+        this.sequence = NO_SEQUENCE;
+        this.entries = 0;
+        this.requestId = NO_REQUEST;
+        this.ttl = 0;
+    }
+
+    void setType(int type) {
+        this.type = type;
+    }
+
+    void setNodeId(short nodeId) {
+        this.nodeId = nodeId;
+    }
+
+    void setPeerId(short peerId) {
+        this.peerId = peerId;
+    }
+
+    void setCost(int cost) {
+        this.cost = cost;
+    }
+
+    void setShape(int rows, int columns) {
+        this.rows = rows;
+        this.columns = columns;
+    }
+
+    void setSegment(int offset, int total) {
+        this.offset = offset;
+        this.total = total;
+    }
+
+    void setSequence(int sequence) {
+        this.sequence = sequence;
+    }
+
+    void setRequestId(int requestId) {
+        this.requestId = requestId;
+    }
+
+    void setTtl(int ttl) {
+        this.ttl = ttl;
+    }
+
+    void setDelta(int entries) {
+        this.entries = entries;
+    }
+
+    // Garante espaco para 'count' custos (preservando os ja lidos) e retorna o array interno
+    int[] costStorage(int count) {
+        if (costs.length < count) {
+            costs = Arrays.copyOf(costs, Math.max(count, costs.length * 2));
+        }
+        return costs;
+    }
+}
@@ -0,0 +1,67 @@
+package projetoredes.rip;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import projetoredes.utils.LatencyHistogram;
+
+// Contadores do RIPNode, por tipo de PDU (indice = tipo do RIPCodec). Sao LongAdders
+// para que as threads de entrega nao disputem a mesma variavel.
+final class RIPMetrics {
+    static final int TYPES = RIPCodec.TRC + 1;
+
+    final LongAdder[] pdusSent = adders(TYPES);
+    final LongAdder[] bytesSent = adders(TYPES);
+    final LongAdder[] pdusReceived = adders(TYPES);
+    final LongAdder[] bytesReceived = adders(TYPES);
+    // PDUs descartadas: origem que nao e vizinho (ou gerente) ou nao bate com a PDU,
+    // PDUs mal formatadas ou de tipo desconhecido, e conteudo maior que uma PDU
+    final LongAdder droppedUnknownSender = new LongAdder();
+    final LongAdder droppedMalformed = new LongAdder();
+    final LongAdder droppedOversize = new LongAdder();
+    // Duraçao (ns) de cada atualizaçao da tabela (recalculo do vetor de distancias)
+    final LatencyHistogram recalculation = new LatencyHistogram();
+    final LongAdder vectorChanges = new LongAdder();
+    // Propagaçoes do vetor e vizinhos alcançados em cada uma (fan-out)
+    final LongAdder propagations = new LongAdder();
+    final LongAdder propagationTargets = new LongAdder();
+
+    private static LongAdder[] adders(int count) {
+        LongAdder[] adders = new LongAdder[count];
+        for (int i = 0; i < count; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+
+    void sent(int type, int bytes) {
+        pdusSent[type].increment();
+        bytesSent[type].add(bytes);
+    }
+
+    void received(int type, int bytes) {
+        pdusReceived[type].increment();
+        bytesReceived[type].add(bytes);
+    }
+
+    void recalculated(long nanos, boolean changed) {
+        recalculation.record(nanos);
+        if (changed) {
+            vectorChanges.increment();
+        }
+    }
+
+    void propagated(int targets) {
+        propagations.increment();
+        propagationTargets.add(targets);
+    }
+
+    // Totais por nome do tipo (ex.: "RIPIND"), na ordem dos tipos
+    static Map<String, Long> byType(LongAdder[] adders) {
+        Map<String, Long> totals = new LinkedHashMap<>();
+        for (int type = RIPCodec.IND; type < adders.length; type++) {
+            totals.put(RIPCodec.typeName(type), adders[type].sum());
+        }
+        return totals;
+    }
+}
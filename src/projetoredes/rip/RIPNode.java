@@ -1,136 +1,593 @@
 package projetoredes.rip;
 
+import projetoredes.metrics.MetricsRegistry;
+import projetoredes.metrics.MetricsSource;
+import projetoredes.metrics.MetricsWriter;
+import projetoredes.unicast.Delivery;
+import projetoredes.unicast.UnicastServiceFactory;
+import projetoredes.unicast.UnicastServiceInterface;
 import projetoredes.unicast.UnicastServiceUserInterface;
+import projetoredes.unicast.UCSAP;
 import projetoredes.unicast.UnicastProtocol;
-import projetoredes.utils.Utils;
 
 import java.io.IOException;
-import java.util.ArrayList;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
-import java.util.Map;
-import java.util.Timer;
-import java.util.TimerTask;
-import java.util.stream.Collectors;
-import java.util.Collections;
-import java.util.HashMap;
+import java.time.InstantSource;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.random.RandomGenerator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+public class RIPNode implements UnicastServiceUserInterface, RoutedServiceInterface, RIPNodeMXBean, AutoCloseable {
+    private static final int ALL_NEIGHBORS = -1;
 
-public class RIPNode implements UnicastServiceUserInterface, AutoCloseable {
     private final short nodeId;
-    private final UnicastProtocol unicastLayer;
+    private final UnicastServiceInterface unicastLayer;
+
+    // Estruturas de dados do roteamento. Dependem da topologia e sao trocadas quando a
+    // configuraçao e recarregada (ver reloadTopology): so sao escritas com a trava de
+    // escrita de 'topologyLock' e, fora do construtor, so sao lidas com a de leitura
+    // (PDUs de controle, envios e tarefas agendadas). O plano de dados le apenas
+    // 'routingTable', que traz o proprio indice de nos, sem travas.
+    private final ReentrantReadWriteLock topologyLock = new ReentrantReadWriteLock();
+    private int numNodes;
+
+    // Traduz ID do no para indice do vetor (e vice-versa) com arrays primitivos.
+    // Precisamos disso pq os IDs dos nos nao sao necessariamente sequenciais
+    private NodeIndex nodeIndex;
+
+    // Vetor de distancias, vetores dos vizinhos e proximos saltos (recalculo incremental).
+    // Thread-safe: vetores de vizinhos diferentes sao aplicados em paralelo.
+    private volatile RoutingTable routingTable;
+
+    // Serializa as atualizaçoes de um mesmo vizinho (e protege o seu numero de sequencia)
+    private Object[] neighborLocks;
+
+    // Ultima topologia lida (compartilhada com os outros nos do processo): a recarga
+    // aplica so o que mudou nela
+    private TopologyGraph configuredTopology;
+    private final AtomicLong topologyReloads = new AtomicLong();
+
+    // Agendador da propagaçao periodica; pode ser compartilhado entre varios nos
+    private final ScheduledExecutorService scheduler;
+    private final boolean ownsScheduler;
+    private final ScheduledFuture<?> propagationTask;
+
+    // Atualizaçoes disparadas (RFC 2453, seçao 3.10.1), com timer proprio.
+    // Uma mudança agenda um unico envio apos o hold-down + jitter; as mudanças
+    // seguintes, ate o envio, sao agrupadas nele. Protegidos por 'triggerLock'.
+    private final Object triggerLock = new Object();
+    private ScheduledFuture<?> triggeredTask;
+    private boolean triggeredPending;
+    private volatile long lastUpdateMillis;
+
+    // Relogio e gerador do jitter. Um simulador pode fornecer um relogio virtual e
+    // uma semente fixa para que a execuçao seja deterministica.
+    private final InstantSource clock;
+    private final RandomGenerator random;
+    private volatile long lastVectorChangeMillis;
+
+    // Metricas das atualizaçoes disparadas (protegidas por 'triggerLock')
+    private long triggeredUpdates;  // Envios disparados realizados
+    private long coalescedChanges;  // Mudanças agrupadas em um envio ja agendado
+    private long suppressedUpdates; // Envios disparados absorvidos pela propagaçao periodica
 
-    // Estruturas de dados do roteamento
-    private final Map<Short, Map<Short, Integer>> fullTopology;
-    private final Map<Short, Integer> neighbors; // Vizinhos diretos e seus custos
-    private final int numNodes;
-    private final int[][] distanceTable; // Distance table
-    private final int[] distanceVector; // Atalho para distanceTable[0]
+    // Estado de envio. O monitor do no (this) protege os buffers e o estado da
+    // propagaçao abaixo; as atualizaçoes da tabela nao o usam, para que um envio
+    // em andamento nao as bloqueie.
 
-    // Mapas para traduzir ID do no para indice do array
-    // precisamos disso pq os IDs dos nos nao sao necessariamente sequenciais
-    private final Map<Short, Integer> nodeIdToIndex = new HashMap<>();
-    private final Map<Integer, Short> indexToNodeId = new HashMap<>();
+    // Buffers de codificaçao reutilizados (um por formato)
+    private final ByteBuffer binaryTxBuffer = ByteBuffer.allocate(UnicastProtocol.MAX_PAYLOAD_SIZE);
+    private final ByteBuffer textTxBuffer = ByteBuffer.allocate(UnicastProtocol.MAX_PAYLOAD_SIZE);
+    private boolean[] binaryNeighbors;
 
-    // Mapa para traduzir ID do vizinho para a LINHA na distanceTable
-    private final Map<Short, Integer> neighborToRowIndex = new HashMap<>();
+    // Copia consistente das rotas feita no inicio de cada envio (ver captureRoutes),
+    // e os vizinhos que sao proximo salto de algum destino nessa copia
+    private int[] currentVector;
+    private int[] currentNextHops;
+    private boolean[] poisonedTargets;
 
-    private final Timer propagationTimer;
+    // Atualizaçoes incrementais (RIPDLT), enviadas apenas aos vizinhos binarios.
+    // 'lastSentVector' e o vetor do ultimo envio; a diferença para o atual forma o delta.
+    // Cada envio com mudanças recebe um novo numero de sequencia; vetores completos
+    // levam o numero atual. Do lado receptor guardamos o ultimo numero de cada vizinho.
+    private int[] lastSentVector;
+    private int[] lastSentNextHops;
+    private int[] changedDestinations;
+    private int[] deltaCosts;
+    private int[] advertisedVector; // Vetor anunciado a um vizinho especifico (poisoned reverse)
+    private int updateSequence;
+    private int[] neighborSequences; // Protegidos por neighborLocks
+    // Vizinhos que enviaram um vetor completo mais antigo que o ultimo numero aceito e
+    // receberam um RIPSYN por isso (protegidos por neighborLocks); ver handleRIPInd
+    private boolean[] olderSnapshotSeen;
+    private long deltaUpdates;  // PDUs RIPDLT enviadas
+    private final AtomicLong syncRequests = new AtomicLong(); // RIPSYN enviados por lacunas detectadas
+
+    // Mensagens reutilizadas na decodificaçao: a entrega pode vir de varias threads
+    // (DispatchMode), cada uma usa uma mensagem do pool durante a PDU
+    private static final int RX_MESSAGE_POOL = 8;
+    private final ArrayBlockingQueue<RIPMessage> rxMessages = new ArrayBlockingQueue<>(RX_MESSAGE_POOL);
+
+    // Plano de dados: datagramas da aplicaçao (RIPDATA) encaminhados pelo proximo salto
+    // de cada destino, lido da tabela de roteamento sem travas (ver RoutingTable.nextHop).
+    // Os buffers de codificaçao vem de um pool proprio, para que o encaminhamento nao
+    // espere pelo estado de envio (this) durante uma propagaçao.
+    private static final int MAX_ROUTED_PAYLOAD = UnicastProtocol.MAX_PAYLOAD_SIZE - RIPCodec.MAX_DATA_HEADER_SIZE;
+    private static final int DATA_TX_BUFFERS = 8;
+    private final ArrayBlockingQueue<ByteBuffer> dataTxBuffers = new ArrayBlockingQueue<>(DATA_TX_BUFFERS);
+    private volatile RoutedServiceUserInterface routedUser;
+    private final AtomicLong dataSent = new AtomicLong();        // Datagramas originados neste no
+    private final AtomicLong dataForwarded = new AtomicLong();   // Encaminhados para outro no
+    private final AtomicLong dataDelivered = new AtomicLong();   // Entregues a aplicaçao local
+    private final AtomicLong dataTtlExpired = new AtomicLong();  // Descartados por TTL
+    private final AtomicLong dataUnreachable = new AtomicLong(); // Descartados sem rota
+
+    // Metricas expostas via JMX e no endpoint de texto (ver projetoredes.metrics)
+    private final RIPMetrics metrics = new RIPMetrics();
+    private final MetricsSource metricsSource = this::writeMetrics;
+
+    // Registro circular das mudanças da tabela, gravado em arquivo quando o gerente
+    // pede (RIPTRC) ou ao encerrar, se houver RIPConfig.TRACE_DIR
+    private final RIPTrace trace;
+
+    // Reinicio a quente: com RIPConfig.STATE_DIR, enlaces, vetores dos vizinhos e
+    // sequencias sao mantidos em um arquivo mapeado (ver RoutingStateFile). Os vetores
+    // restaurados sao usados de imediato, mas ficam marcados como antigos ate que o
+    // vizinho os confirme (vetor completo ou delta na sequencia); os nao confirmados
+    // em STALE_ROUNDS periodos de propagaçao sao descartados.
+    private static final int STALE_ROUNDS = 3;
+    private RoutingStateFile stateFile; // Nulo sem RIPConfig.STATE_DIR
+    private boolean[] staleNeighbors;   // Protegidos por neighborLocks
+    private ScheduledFuture<?> staleTask;
 
 
     public RIPNode(short nodeId, String unicastConfigPath, String ripConfigPath, long propagationTimeMs) throws IOException {
+        this(nodeId, TopologyGraph.load(ripConfigPath), propagationTimeMs, null,
+                user -> new UnicastProtocol(user, nodeId, unicastConfigPath));
+    }
+
+    // Topologia em mapas (ex.: montada por um benchmark), convertida para um TopologyGraph
+    // proprio do no. Com varios nos no processo, prefira compartilhar um unico TopologyGraph.
+    public RIPNode(short nodeId, Map<Short, Map<Short, Integer>> topology, long propagationTimeMs,
+                   ScheduledExecutorService scheduler, UnicastServiceFactory transportFactory) throws IOException {
+        this(nodeId, graphOf(topology), propagationTimeMs, scheduler, transportFactory);
+    }
+
+    public RIPNode(short nodeId, Map<Short, Map<Short, Integer>> topology, long propagationTimeMs,
+                   ScheduledExecutorService scheduler, UnicastServiceFactory transportFactory,
+                   InstantSource clock, RandomGenerator random) throws IOException {
+        this(nodeId, graphOf(topology), propagationTimeMs, scheduler, transportFactory, clock, random);
+    }
+
+    // Construtor usado para hospedar varios nos no mesmo processo: a topologia ja
+    // carregada, o agendador e o transporte sao fornecidos por quem cria o no.
+    // Se 'scheduler' for nulo, o no cria (e encerra) o seu proprio agendador.
+    public RIPNode(short nodeId, TopologyGraph topology, long propagationTimeMs,
+                   ScheduledExecutorService scheduler, UnicastServiceFactory transportFactory) throws IOException {
+        this(nodeId, topology, propagationTimeMs, scheduler, transportFactory, InstantSource.system(), new Random());
+    }
+
+    // O agendador deve seguir o mesmo relogio 'clock' (ver projetoredes.sim.VirtualScheduler)
+    public RIPNode(short nodeId, TopologyGraph topology, long propagationTimeMs,
+                   ScheduledExecutorService scheduler, UnicastServiceFactory transportFactory,
+                   InstantSource clock, RandomGenerator random) throws IOException {
         if (nodeId == RIPConfig.MANAGER_ID || nodeId > RIPConfig.MAX_NODES) {
             throw new IllegalArgumentException("ID de nó inválido: " + nodeId);
         }
 
         this.nodeId = nodeId;
+        this.clock = clock;
+        this.random = random;
 
-        // Carregar topologia
-        this.fullTopology = Utils.loadTopology(ripConfigPath);
-        if (this.fullTopology == null || !this.fullTopology.containsKey(nodeId)) {
-            throw new IOException("Nó " + nodeId + " não encontrado na topologia ou falha ao carregar.");
+        // Topologia (compartilhada, usada apenas para leitura)
+        if (topology == null || !topology.contains(nodeId)) {
+            throw new IOException("Nó " + nodeId + " não encontrado na topologia.");
         }
-        
-        // Clona o mapa de vizinhos para poder alterar custos dinamicamente
-        this.neighbors = new HashMap<>(this.fullTopology.get(nodeId));
-        this.numNodes = this.fullTopology.size();
 
-        // Garantir uma ordem consistente (importante para os vetores) antes de mapear IDs para indices
-        List<Short> sortedNodeIds = new ArrayList<>(this.fullTopology.keySet());
-        Collections.sort(sortedNodeIds);
-        for (int i = 0; i < sortedNodeIds.size(); i++) {
-            short id = sortedNodeIds.get(i);
-            this.nodeIdToIndex.put(id, i);
-            this.indexToNodeId.put(i, id);
+        this.nodeIndex = topology.nodeIndex();
+        this.numNodes = nodeIndex.size();
+
+        // Copia os custos dos vizinhos para poder altera-los dinamicamente
+        short[] neighborIds = topology.neighborIds(nodeId);
+        int[] linkCosts = topology.neighborCosts(nodeId);
+        this.trace = new RIPTrace(nodeId, RIPConfig.TRACE_SIZE, clock);
+        this.stateFile = openStateFile(neighborIds, linkCosts);
+        this.routingTable = new RoutingTable(nodeIndex, nodeId, neighborIds, linkCosts, trace, stateFile);
+        this.configuredTopology = topology;
+        this.lastVectorChangeMillis = clock.millis();
+        allocateTopologyArrays();
+        boolean restored = stateFile != null && stateFile.restored();
+        if (restored) {
+            this.updateSequence = stateFile.updateSequence();
+            for (int slot = 0; slot < neighborSequences.length; slot++) {
+                neighborSequences[slot] = stateFile.neighborSequence(slot);
+                staleNeighbors[slot] = routingTable.linkCost(slot) != RIPConfig.INFINITY;
+            }
         }
 
-        // Tabela de distancia
-        // Linha 0: vetor do proprio no
-        // Linhas 1..N: vetores dos N vizinhos
-        this.distanceTable = new int[neighbors.size() + 1][numNodes];
-        for (int[] row : distanceTable) {
-            Arrays.fill(row, RIPConfig.INFINITY);
+        // O agendador vem antes do transporte: com um laço de eventos compartilhado, uma
+        // PDU dos vizinhos ja em execuçao pode chegar (e agendar uma atualizaçao
+        // disparada) antes de open() retornar
+        this.ownsScheduler = (scheduler == null);
+        this.scheduler = ownsScheduler
+                ? Executors.newSingleThreadScheduledExecutor(r -> new Thread(r, "RIPNode-Timer-" + nodeId))
+                : scheduler;
+
+        // Iniciar camada de Unicast
+        try {
+            this.unicastLayer = transportFactory.open(this);
+        } catch (IOException | RuntimeException e) {
+            if (ownsScheduler) {
+                this.scheduler.shutdown();
+            }
+            if (e instanceof RuntimeException) {
+                throw (RuntimeException) e;
+            }
+            throw new RuntimeException("Erro ao inicializar UnicastProtocol: " + e.getMessage(), e);
         }
 
-        // Mapeia IDs de vizinhos para linhas da tabela
-        int rowIndex = 1;
-        for (short neighborId : neighbors.keySet()) {
-            this.neighborToRowIndex.put(neighborId, rowIndex++);
+        // Iniciar timer de propagaçao
+        this.propagationTask = this.scheduler.scheduleAtFixedRate(
+                this::propagatePeriodically, propagationTimeMs, propagationTimeMs, TimeUnit.MILLISECONDS);
+
+        MetricsRegistry.register("RIPNode", nodeId, this, metricsSource);
+        System.out.println("Nó RIP " + nodeId + " inicializado. Vetor inicial: " + formatVector(routingTable.distanceVector()));
+        propagateVectorToNeighbors(true); // Propaga o vetor inicial
+        if (restored) {
+            // Uma troca basta: cada vizinho responde ao RIPSYN com o vetor completo
+            System.out.println("Nó " + nodeId + ": Estado restaurado de " + stateFile.path() + ". Pedindo confirmação aos vizinhos.");
+            for (int slot = 0; slot < staleNeighbors.length; slot++) {
+                if (staleNeighbors[slot]) {
+                    sendRIPSyn(routingTable.neighborId(slot));
+                }
+            }
+            synchronized (triggerLock) {
+                staleTask = this.scheduler.schedule(this::expireStaleNeighbors, STALE_ROUNDS * propagationTimeMs,
+                        TimeUnit.MILLISECONDS);
+            }
         }
+    }
 
-        // Inicializar vetor de distancia
-        this.distanceVector = this.distanceTable[0];
-        int selfIndex = this.nodeIdToIndex.get(this.nodeId);
-        this.distanceVector[selfIndex] = 0;
+    private static TopologyGraph graphOf(Map<Short, Map<Short, Integer>> topology) {
+        return (topology == null) ? null : TopologyGraph.of(topology);
+    }
 
-        for (Map.Entry<Short, Integer> neighborEntry : neighbors.entrySet()) {
-            int neighborIndex = this.nodeIdToIndex.get(neighborEntry.getKey());
-            this.distanceVector[neighborIndex] = neighborEntry.getValue();
+    // Aloca os arrays que dependem do numero de nos e de vizinhos da tabela atual
+    private void allocateTopologyArrays() {
+        int neighbors = routingTable.neighborCount();
+        neighborLocks = new Object[neighbors];
+        for (int slot = 0; slot < neighbors; slot++) {
+            neighborLocks[slot] = new Object();
         }
+        currentVector = new int[numNodes];
+        currentNextHops = new int[numNodes];
+        poisonedTargets = new boolean[neighbors];
+        binaryNeighbors = new boolean[neighbors];
+        lastSentVector = new int[numNodes];
+        lastSentNextHops = new int[numNodes];
+        changedDestinations = new int[numNodes];
+        deltaCosts = new int[numNodes];
+        advertisedVector = new int[numNodes];
+        neighborSequences = new int[neighbors];
+        staleNeighbors = new boolean[neighbors];
+        olderSnapshotSeen = new boolean[neighbors];
+        Arrays.fill(lastSentVector, RIPConfig.INFINITY);
+        Arrays.fill(lastSentNextHops, RoutingTable.NO_NEXT_HOP);
+        Arrays.fill(neighborSequences, RIPMessage.NO_SEQUENCE);
+    }
 
-        // Iniciar camada de Unicast
+    private RoutingStateFile openStateFile(short[] neighborIds, int[] linkCosts) {
+        if (RIPConfig.STATE_DIR == null) {
+            return null;
+        }
+        Path path = Path.of(RIPConfig.STATE_DIR, "rip-state-" + nodeId + ".bin");
         try {
-            this.unicastLayer = new UnicastProtocol(this, nodeId, unicastConfigPath);
+            return new RoutingStateFile(path, nodeId, nodeIndex, neighborIds, linkCosts);
         } catch (IOException e) {
-            throw new RuntimeException("Erro ao inicializar UnicastProtocol: " + e.getMessage(), e);
+            System.err.println("Nó " + nodeId + ": Estado de roteamento indisponível (" + path + "): " + e.getMessage());
+            return null;
         }
+    }
 
-        // Iniciar timer de propagaçao
-        this.propagationTimer = new Timer("RIPNode-Timer-" + nodeId);
-        this.propagationTimer.schedule(new PropagationTask(), propagationTimeMs, propagationTimeMs);
+    // Descarta os vetores restaurados que os vizinhos nao confirmaram a tempo
+    private void expireStaleNeighbors() {
+        topologyLock.readLock().lock();
+        try {
+            boolean changed = false;
+            for (int slot = 0; slot < staleNeighbors.length; slot++) {
+                synchronized (neighborLocks[slot]) {
+                    if (staleNeighbors[slot]) {
+                        staleNeighbors[slot] = false;
+                        setNeighborSequence(slot, RIPMessage.NO_SEQUENCE);
+                        changed |= routingTable.clearNeighbor(slot);
+                        System.out.println("Nó " + nodeId + ": Vetor restaurado de " + routingTable.neighborId(slot)
+                                + " não confirmado. Descartando.");
+                    }
+                }
+            }
+            onDistanceVectorRecalculated(changed);
+        } catch (Exception e) {
+            System.err.println("Nó " + nodeId + ": Erro ao descartar vetores restaurados: " + e.getMessage());
+        } finally {
+            topologyLock.readLock().unlock();
+        }
+    }
+
+    // Chamado com neighborLocks[slot]
+    private void setNeighborSequence(int slot, int sequence) {
+        neighborSequences[slot] = sequence;
+        if (stateFile != null) {
+            stateFile.setNeighborSequence(slot, sequence);
+        }
+    }
+
+    // Vizinhos cujo vetor restaurado ainda nao foi confirmado
+    public int getStaleNeighbors() {
+        topologyLock.readLock().lock();
+        try {
+            int stale = 0;
+            for (int slot = 0; slot < staleNeighbors.length; slot++) {
+                synchronized (neighborLocks[slot]) {
+                    if (staleNeighbors[slot]) {
+                        stale++;
+                    }
+                }
+            }
+            return stale;
+        } finally {
+            topologyLock.readLock().unlock();
+        }
+    }
 
-        System.out.println("Nó RIP " + nodeId + " inicializado. Vetor inicial: " + formatVector(distanceVector));
-        propagateVectorToNeighbors(); // Propaga o vetor inicial
+    // Recarrega a configuraçao sem reiniciar o no: primeiro os UCSAPs (para que vizinhos
+    // novos ja tenham endereço), depois a topologia. Retorna false se o no saiu da topologia.
+    public boolean reloadConfiguration(List<UCSAP> addresses, TopologyGraph topology) {
+        if (addresses != null) {
+            unicastLayer.reloadAddresses(addresses);
+        }
+        return reloadTopology(topology);
+    }
+
+    // Aplica uma nova topologia mantendo o estado aprendido. So as diferenças para a
+    // ultima configuraçao lida sao aplicadas:
+    //  - enlaces cujo custo mudou no arquivo recebem o novo custo, com um unico recalculo
+    //    (os demais mantem o custo atual, inclusive um alterado pelo gerente);
+    //  - vizinhos ou nos adicionados ou removidos trocam a tabela por uma nova, para a
+    //    qual os vetores dos vizinhos que continuam sao copiados (RoutingTable.migrateFrom).
+    //    O vetor completo e enviado e os vizinhos que precisam recebem um RIPSYN.
+    // As PDUs de controle esperam a troca da tabela terminar; o encaminhamento nao. Os
+    // envios acontecem depois, so com a trava de leitura (como em expireStaleNeighbors).
+    public boolean reloadTopology(TopologyGraph topology) {
+        if (topology == null || !topology.contains(nodeId)) {
+            System.err.println("Nó " + nodeId + ": Ausente da nova topologia. Mantendo a configuração atual.");
+            return false;
+        }
+
+        boolean changed;
+        short[] syncTargets = null;
+        topologyLock.writeLock().lock();
+        try {
+            // Enlaces que o arquivo nao mudou ficam com o custo atual
+            short[] neighborIds = topology.neighborIds(nodeId);
+            int[] costs = topology.neighborCosts(nodeId);
+            for (int i = 0; i < neighborIds.length; i++) {
+                int slot = routingTable.neighborSlot(neighborIds[i]);
+                if (slot >= 0 && costs[i] == configuredTopology.linkCost(nodeId, neighborIds[i])) {
+                    costs[i] = routingTable.linkCost(slot);
+                }
+            }
+
+            boolean sameNodes = nodeIndex.sameNodes(topology.nodeIndex());
+            if (sameNodes && Arrays.equals(neighborIds, configuredTopology.neighborIds(nodeId))) {
+                changed = reloadLinkCosts(costs);
+            } else {
+                TableReplacement replacement = replaceRoutingTable(topology, neighborIds, costs, sameNodes);
+                changed = replacement.changed();
+                syncTargets = replacement.syncTargets();
+            }
+            configuredTopology = topology;
+            topologyReloads.incrementAndGet();
+        } finally {
+            topologyLock.writeLock().unlock();
+        }
+
+        topologyLock.readLock().lock();
+        try {
+            if (syncTargets != null) {
+                propagateVectorToNeighbors(true);
+                for (short neighborId : syncTargets) {
+                    sendRIPSyn(neighborId);
+                }
+            }
+            onDistanceVectorRecalculated(changed);
+        } catch (Exception e) {
+            System.err.println("Nó " + nodeId + ": Erro ao propagar a configuração recarregada: " + e.getMessage());
+        } finally {
+            topologyLock.readLock().unlock();
+        }
+        return true;
+    }
+
+    // Resultado da troca da tabela: se o vetor mudou e os vizinhos que devem receber um RIPSYN
+    private record TableReplacement(boolean changed, short[] syncTargets) {}
+
+    // Mesmos nos e vizinhos: so os custos que mudaram, em lote (como RIPSETBATCH).
+    // Chamado com a trava de escrita da topologia.
+    private boolean reloadLinkCosts(int[] costs) {
+        // Mesmos vizinhos, na mesma ordem: o slot e a posiçao no array
+        int[] slots = new int[costs.length];
+        int[] values = new int[costs.length];
+        int count = 0;
+        for (int slot = 0; slot < costs.length; slot++) {
+            if (routingTable.linkCost(slot) != costs[slot]) {
+                slots[count] = slot;
+                values[count++] = costs[slot];
+            }
+        }
+        if (count == 0) {
+            System.out.println("Nó " + nodeId + ": Configuração recarregada sem mudanças na topologia.");
+            return false;
+        }
+
+        long start = System.nanoTime();
+        boolean changed = routingTable.setLinkCosts(slots, values, count);
+        metrics.recalculated(System.nanoTime() - start, changed);
+        for (int i = 0; i < count; i++) {
+            if (values[i] == RIPConfig.INFINITY) {
+                setNeighborSequence(slots[i], RIPMessage.NO_SEQUENCE);
+                staleNeighbors[slots[i]] = false;
+            }
+        }
+        System.out.println("Nó " + nodeId + ": Configuração recarregada, " + count + " enlace(s) com custo alterado.");
+        return changed;
+    }
+
+    // Nos ou vizinhos mudaram: nova tabela (e novo estado em disco) com os vetores
+    // aprendidos copiados da anterior. Chamado com a trava de escrita da topologia; nao
+    // envia nada, o chamador propaga o vetor depois de liberar a trava.
+    private TableReplacement replaceRoutingTable(TopologyGraph topology, short[] neighborIds, int[] costs,
+                                                 boolean sameNodes) {
+        RoutingTable previous = routingTable;
+        int[] previousSequences = neighborSequences;
+        boolean[] previousStale = staleNeighbors;
+        if (!sameNodes) {
+            nodeIndex = topology.nodeIndex();
+            numNodes = nodeIndex.size();
+        }
+        if (stateFile != null) {
+            stateFile.close();
+            stateFile = openStateFile(neighborIds, costs);
+        }
+
+        RoutingTable table = new RoutingTable(nodeIndex, nodeId, neighborIds, costs, trace, stateFile);
+        long start = System.nanoTime();
+        table.migrateFrom(previous);
+        boolean changed = !sameNodes || !Arrays.equals(table.distanceVector(), previous.distanceVector());
+        metrics.recalculated(System.nanoTime() - start, changed);
+        routingTable = table;
+        allocateTopologyArrays();
+
+        // Com outros nos os vetores mudam de tamanho: a sequencia recomeça com o
+        // proximo vetor completo de cada vizinho
+        for (int slot = 0; slot < table.neighborCount(); slot++) {
+            int previousSlot = previous.neighborSlot(table.neighborId(slot));
+            if (previousSlot >= 0) {
+                setNeighborSequence(slot, sameNodes ? previousSequences[previousSlot] : RIPMessage.NO_SEQUENCE);
+                staleNeighbors[slot] = previousStale[previousSlot];
+            }
+        }
+        if (stateFile != null) {
+            stateFile.setUpdateSequence(updateSequence);
+        }
+        System.out.println("Nó " + nodeId + ": Configuração recarregada, tabela reconstruída com " + numNodes
+                + " nós e " + table.neighborCount() + " vizinho(s).");
+
+        short[] syncTargets = new short[table.neighborCount()];
+        int syncCount = 0;
+        for (int slot = 0; slot < table.neighborCount(); slot++) {
+            if (table.linkCost(slot) != RIPConfig.INFINITY
+                    && (!sameNodes || previous.neighborSlot(table.neighborId(slot)) < 0)) {
+                syncTargets[syncCount++] = table.neighborId(slot);
+            }
+        }
+        return new TableReplacement(changed, Arrays.copyOf(syncTargets, syncCount));
+    }
+
+    // Recargas da configuraçao aplicadas
+    @Override
+    public long getTopologyReloads() {
+        return topologyReloads.get();
     }
 
     @Override
     public void UPDataInd(short sourceId, String data) {
-        String[] parts = data.split(" ", 2);
-        if (parts.length == 0) return;
+        // PDUs RIP de texto sao ASCII
+        UPDataInd(sourceId, ByteBuffer.wrap(data.getBytes(StandardCharsets.ISO_8859_1)));
+    }
+
+    @Override
+    public void UPDataInd(short sourceId, ByteBuffer data) {
+        RIPMessage rxMessage = rxMessages.poll();
+        if (rxMessage == null) {
+            rxMessage = new RIPMessage();
+        }
+        try {
+            dispatchPDU(sourceId, data, rxMessage);
+        } finally {
+            rxMessages.offer(rxMessage);
+        }
+    }
 
-        String pduType = parts[0];
-        String payload = (parts.length > 1) ? parts[1] : "";
+    private void dispatchPDU(short sourceId, ByteBuffer data, RIPMessage rxMessage) {
+        int bytes = data.remaining();
+        int pduType = RIPCodec.decode(data, rxMessage);
+        if (pduType > RIPCodec.UNKNOWN) {
+            metrics.received(pduType, bytes);
+        } else {
+            metrics.droppedMalformed.increment();
+        }
 
         // System.out.println("Nó " + nodeId + " recebeu PDU: " + pduType + " de " + sourceId);
 
+        // Os datagramas encaminhados nao dependem da trava da topologia (ver forwardData)
+        boolean control = (pduType != RIPCodec.DATA);
+        if (control) {
+            topologyLock.readLock().lock();
+        }
         try {
             switch (pduType) {
-                case "RIPGET":
-                    handleRIPGet(sourceId, payload);
+                case RIPCodec.GET:
+                    handleRIPGet(sourceId, rxMessage);
+                    break;
+                case RIPCodec.SET:
+                    handleRIPSet(sourceId, rxMessage);
+                    break;
+                case RIPCodec.SET_BATCH:
+                    handleRIPSetBatch(sourceId, rxMessage);
+                    break;
+                case RIPCodec.IND:
+                    handleRIPInd(sourceId, rxMessage);
+                    break;
+                case RIPCodec.DLT:
+                    handleRIPDlt(sourceId, rxMessage);
+                    break;
+                case RIPCodec.SYN:
+                    handleRIPSyn(sourceId, rxMessage);
                     break;
-                case "RIPSET":
-                    handleRIPSet(sourceId, payload);
+                case RIPCodec.RQT:
+                    handleRIPRqt(sourceId, rxMessage);
                     break;
-                case "RIPIND":
-                    handleRIPInd(sourceId, payload);
+                case RIPCodec.DATA:
+                    handleRIPData(rxMessage, data);
                     break;
-                case "RIPRQT":
-                    handleRIPRqt(sourceId);
+                case RIPCodec.TRC:
+                    handleRIPTrc(sourceId);
+                    break;
+                case RIPCodec.MALFORMED:
+                    System.err.println("Nó " + nodeId + ": PDU mal formatada de " + sourceId + ". Ignorando.");
                     break;
                 default:
-                    System.err.println("Nó " + nodeId + ": PDU desconhecida '" + pduType + "' de " + sourceId);
+                    System.err.println("Nó " + nodeId + ": PDU desconhecida (tipo " + pduType + ") de " + sourceId);
             }
         } catch (Exception e) {
             System.err.println("Nó " + nodeId + ": Erro ao processar PDU " + pduType + ": " + e.getMessage());
+        } finally {
+            if (control) {
+                topologyLock.readLock().unlock();
+            }
         }
     }
 
@@ -138,15 +595,15 @@ public class RIPNode implements UnicastServiceUserInterface, AutoCloseable {
 
     // RIPGET <NodeA> <NodeB>
     // Resposta: RIPNTF <NodeA> <NodeB> <Cost>
-    private void handleRIPGet(short sourceId, String payload) {
+    private void handleRIPGet(short sourceId, RIPMessage message) {
         if (sourceId != RIPConfig.MANAGER_ID) {
+            metrics.droppedUnknownSender.increment();
             System.err.println("Nó " + nodeId + ": RIPGET recebido de não-gerente (ID: " + sourceId + "). Ignorando.");
             return;
         }
 
-        String[] parts = payload.split(" ");
-        short nodeA = Short.parseShort(parts[0]);
-        short nodeB = Short.parseShort(parts[1]);
+        short nodeA = message.nodeId();
+        short nodeB = message.peerId();
 
         if (nodeA != this.nodeId) {
             System.err.println("Nó " + nodeId + ": RIPGET para nó " + nodeA + " recebido. Ignorando.");
@@ -154,23 +611,24 @@ public class RIPNode implements UnicastServiceUserInterface, AutoCloseable {
         }
 
         // Pega o custo atual do enlace
-        int cost = this.neighbors.getOrDefault(nodeB, RIPConfig.INFINITY);
-        sendRIPNtf(RIPConfig.MANAGER_ID, this.nodeId, nodeB, cost);
+        int slot = routingTable.neighborSlot(nodeB);
+        int cost = (slot >= 0) ? routingTable.linkCost(slot) : RIPConfig.INFINITY;
+        sendRIPNtf(RIPConfig.MANAGER_ID, this.nodeId, nodeB, cost, message.requestId());
     }
 
 
     // RIPSET <NodeA> <NodeB> <NewCost>
     // Resposta: RIPNTF <NodeA> <NodeB> <NewCost>
-    private void handleRIPSet(short sourceId, String payload) {
+    private void handleRIPSet(short sourceId, RIPMessage message) {
         if (sourceId != RIPConfig.MANAGER_ID) {
+            metrics.droppedUnknownSender.increment();
             System.err.println("Nó " + nodeId + ": RIPSET recebido de não-gerente (ID: " + sourceId + "). Ignorando.");
             return;
         }
 
-        String[] parts = payload.split(" ");
-        short nodeA = Short.parseShort(parts[0]);
-        short nodeB = Short.parseShort(parts[1]);
-        int newCost = Integer.parseInt(parts[2]);
+        short nodeA = message.nodeId();
+        short nodeB = message.peerId();
+        int newCost = message.cost();
 
         if (nodeA != this.nodeId) {
             System.err.println("Nó " + nodeId + ": RIPSET para nó " + nodeA + " recebido. Ignorando.");
@@ -178,190 +636,904 @@ public class RIPNode implements UnicastServiceUserInterface, AutoCloseable {
         }
 
         // O enlace deve existir na topologia original.
-        if (!this.fullTopology.get(this.nodeId).containsKey(nodeB)) {
+        int slot = routingTable.neighborSlot(nodeB);
+        if (slot < 0) {
             System.err.println("Nó " + nodeId + ": RIPSET para enlace inexistente (" + nodeA + "-" + nodeB + "). Ignorando.");
             return;
         }
 
-        // Atualiza o custo do vizinho
-        this.neighbors.put(nodeB, newCost);
+        // Atualiza o custo do vizinho. Se o custo for infinito, a linha do
+        // vizinho na tabela e invalidada.
+        long start = System.nanoTime();
+        boolean changed = routingTable.setLinkCost(slot, newCost);
+        metrics.recalculated(System.nanoTime() - start, changed);
         System.out.println("Nó " + nodeId + ": Custo do enlace para " + nodeB + " alterado para " + newCost);
-
-        // Se o custo for infinito, invalida a linha do vizinho na tabela
         if (newCost == RIPConfig.INFINITY) {
-            int neighborRow = this.neighborToRowIndex.get(nodeB);
-            Arrays.fill(this.distanceTable[neighborRow], RIPConfig.INFINITY);
+            // Ao restaurar o enlace, o primeiro delta do vizinho pedira um vetor completo.
+            // Com o enlace infinito nenhuma atualizaçao do vizinho altera a sequencia.
+            synchronized (neighborLocks[slot]) {
+                setNeighborSequence(slot, RIPMessage.NO_SEQUENCE);
+                staleNeighbors[slot] = false;
+            }
             System.out.println("Nó " + nodeId + ": Enlace para " + nodeB + " é infinito. Invalidando seu vetor.");
         }
 
-        // Recalcula o vetor e propaga se houver mudança
-        recalculateDistanceVector();
+        // Propaga se houver mudança
+        onDistanceVectorRecalculated(changed);
 
         // Confirma a alteraçao para o gerente
-        sendRIPNtf(RIPConfig.MANAGER_ID, this.nodeId, nodeB, newCost);
+        sendRIPNtf(RIPConfig.MANAGER_ID, this.nodeId, nodeB, newCost, message.requestId());
+    }
+
+    // RIPSETBATCH <NodeA> <NodeB:Cost> ...
+    // Resposta: RIPNTFBATCH <NodeA> <NodeB:Cost> ...
+    // Todos os enlaces sao alterados juntos (ou nenhum, se algum for invalido),
+    // com um unico recalculo e uma unica propagaçao.
+    private void handleRIPSetBatch(short sourceId, RIPMessage message) {
+        if (sourceId != RIPConfig.MANAGER_ID) {
+            metrics.droppedUnknownSender.increment();
+            System.err.println("Nó " + nodeId + ": RIPSETBATCH recebido de não-gerente (ID: " + sourceId + "). Ignorando.");
+            return;
+        }
+        if (message.nodeId() != this.nodeId) {
+            System.err.println("Nó " + nodeId + ": RIPSETBATCH para nó " + message.nodeId() + " recebido. Ignorando.");
+            return;
+        }
+
+        int count = message.batchEntries();
+        int[] slots = new int[count];
+        int[] peers = new int[count];
+        int[] costs = new int[count];
+        for (int i = 0; i < count; i++) {
+            slots[i] = routingTable.neighborSlot(message.batchPeer(i));
+            if (slots[i] < 0) {
+                System.err.println("Nó " + nodeId + ": RIPSETBATCH com enlace inexistente (" + nodeId + "-"
+                        + message.batchPeer(i) + "). Ignorando o lote.");
+                return;
+            }
+            peers[i] = message.batchPeer(i);
+            costs[i] = message.batchCost(i);
+        }
+
+        long start = System.nanoTime();
+        boolean changed = routingTable.setLinkCosts(slots, costs, count);
+        metrics.recalculated(System.nanoTime() - start, changed);
+        for (int i = 0; i < count; i++) {
+            if (costs[i] == RIPConfig.INFINITY) {
+                synchronized (neighborLocks[slots[i]]) {
+                    setNeighborSequence(slots[i], RIPMessage.NO_SEQUENCE);
+                    staleNeighbors[slots[i]] = false;
+                }
+            }
+        }
+        System.out.println("Nó " + nodeId + ": Custos de " + count + " enlace(s) alterados em lote");
+        onDistanceVectorRecalculated(changed);
+
+        sendRIPNtfBatch(RIPConfig.MANAGER_ID, peers, costs, count, message.requestId());
     }
 
     // RIPIND <SourceNodeID> <Vector>
-    // Atualiza a tabela e recalcula o vetor se necessário
-    private void handleRIPInd(short sourceId, String payload) {
-        if (!this.neighbors.containsKey(sourceId)) {
+    // Atualiza a tabela e recalcula o vetor se necessário.
+    // Vetores grandes chegam em varios segmentos, aplicados um de cada vez.
+    private void handleRIPInd(short sourceId, RIPMessage message) {
+        int slot = routingTable.neighborSlot(sourceId);
+        if (slot < 0) {
+            metrics.droppedUnknownSender.increment();
             System.err.println("Nó " + nodeId + ": RIPIND recebido de não-vizinho (ID: " + sourceId + "). Ignorando.");
             return;
         }
 
-        String[] parts = payload.split(" ", 2);
-        short sendingNodeId = Short.parseShort(parts[0]);
-        String vectorString = parts[1];
+        short sendingNodeId = message.nodeId();
 
         if (sendingNodeId != sourceId) {
+            metrics.droppedUnknownSender.increment();
             System.err.println("Nó " + nodeId + ": ID de origem (" + sourceId + ") não bate com ID na PDU (" + sendingNodeId + "). Ignorando.");
             return;
         }
 
-        // Se o enlace para este vizinho é infinito, ignoramos sua IND
-        if (this.neighbors.get(sourceId) == RIPConfig.INFINITY) {
-            System.out.println("Nó " + nodeId + ": RIPIND de " + sourceId + " ignorado (custo do enlace é infinito).");
+        if (message.total() != this.numNodes) {
+            System.err.println("Nó " + nodeId + ": Vetor de " + sourceId + " com tamanho incorreto. Ignorando.");
             return;
         }
 
-        int[] receivedVector = parseVector(vectorString);
-        if (receivedVector.length != this.numNodes) {
-            System.err.println("Nó " + nodeId + ": Vetor de " + sourceId + " com tamanho incorreto. Ignorando.");
+        boolean changed;
+        boolean rejected = false;
+        boolean requestSync = false;
+        synchronized (neighborLocks[slot]) {
+            // Se o enlace para este vizinho é infinito, ignoramos sua IND
+            if (routingTable.linkCost(slot) == RIPConfig.INFINITY) {
+                System.out.println("Nó " + nodeId + ": RIPIND de " + sourceId + " ignorado (custo do enlace é infinito).");
+                return;
+            }
+
+            // Um vetor completo passa a ser a base para os deltas, desde que nao seja mais
+            // antigo que o ultimo numero aceito (comparaçao circular, como nos deltas): um
+            // vetor atrasado desfaria deltas ja aplicados. Ele e descartado (com os seus
+            // demais segmentos) e pedimos o vetor atual. Se o vetor seguinte ainda vier com
+            // um numero menor, o vizinho recomeçou a numeraçao (reiniciou sem estado) e ele
+            // e aceito como nova base.
+            int sequence = message.sequence();
+            if (sequence != RIPMessage.NO_SEQUENCE) {
+                int last = neighborSequences[slot];
+                if (last != RIPMessage.NO_SEQUENCE && sequence - last < 0
+                        && (!olderSnapshotSeen[slot] || message.offset() > 0)) {
+                    rejected = true;
+                    requestSync = !olderSnapshotSeen[slot];
+                    olderSnapshotSeen[slot] = true;
+                } else {
+                    olderSnapshotSeen[slot] = false;
+                    setNeighborSequence(slot, sequence);
+                }
+            }
+
+            if (rejected) {
+                changed = false;
+            } else {
+                // So o ultimo segmento completa o vetor (e confirma um vetor restaurado)
+                if (message.offset() + message.columns() == message.total()) {
+                    staleNeighbors[slot] = false;
+                }
+
+                // Atualiza a linha do vizinho na tabela e reavalia apenas as
+                // entradas que mudaram
+                long start = System.nanoTime();
+                changed = routingTable.applyNeighborVector(slot, message);
+                metrics.recalculated(System.nanoTime() - start, changed);
+            }
+        }
+        if (requestSync) {
+            syncRequests.incrementAndGet();
+            trace.record(RIPTrace.SYNC_REQUEST, sourceId, this.nodeId, RIPConfig.INFINITY, RIPConfig.INFINITY);
+            System.out.println("Nó " + nodeId + ": Vetor atrasado de " + sourceId + ". Pedindo vetor completo.");
+            sendRIPSyn(sourceId);
+        }
+        // Propaga se houver mudança
+        onDistanceVectorRecalculated(changed);
+    }
+
+    // RIPDLT <SourceNodeID> <Seq> <Total> <Destino:Custo>...
+    // Aplica as entradas alteradas direto na linha do vizinho. Deltas repetidos ou
+    // atrasados sao descartados; se faltar algum, o delta e aplicado e pedimos um
+    // vetor completo (RIPSYN) para corrigir as entradas perdidas.
+    private void handleRIPDlt(short sourceId, RIPMessage message) {
+        int slot = routingTable.neighborSlot(sourceId);
+        if (slot < 0 || message.nodeId() != sourceId) {
+            metrics.droppedUnknownSender.increment();
+            System.err.println("Nó " + nodeId + ": RIPDLT inválido de " + sourceId + ". Ignorando.");
             return;
         }
 
-        // Atualiza a linha do vizinho na tabela
-        int neighborRow = this.neighborToRowIndex.get(sourceId);
-        System.arraycopy(receivedVector, 0, this.distanceTable[neighborRow], 0, this.numNodes);
+        if (message.total() != this.numNodes) {
+            System.err.println("Nó " + nodeId + ": Delta de " + sourceId + " com tamanho incorreto. Ignorando.");
+            return;
+        }
+
+        boolean gap;
+        boolean changed;
+        synchronized (neighborLocks[slot]) {
+            if (routingTable.linkCost(slot) == RIPConfig.INFINITY) {
+                return;
+            }
+
+            int last = neighborSequences[slot];
+            int sequence = message.sequence();
+            if (last != RIPMessage.NO_SEQUENCE && sequence - last <= 0) {
+                return; // Duplicado ou fora de ordem: ja temos um estado mais novo
+            }
+
+            gap = (last == RIPMessage.NO_SEQUENCE || sequence != last + 1);
+            setNeighborSequence(slot, sequence);
+            olderSnapshotSeen[slot] = false;
+            if (!gap) {
+                staleNeighbors[slot] = false; // Na sequencia: o vetor guardado esta em dia
+            }
+            long start = System.nanoTime();
+            changed = routingTable.applyNeighborDelta(slot, message);
+            metrics.recalculated(System.nanoTime() - start, changed);
+        }
+        onDistanceVectorRecalculated(changed);
+
+        if (gap) {
+            syncRequests.incrementAndGet();
+            trace.record(RIPTrace.SYNC_REQUEST, sourceId, this.nodeId, RIPConfig.INFINITY, RIPConfig.INFINITY);
+            System.out.println("Nó " + nodeId + ": Lacuna na sequência de " + sourceId + ". Pedindo vetor completo.");
+            sendRIPSyn(sourceId);
+        }
+    }
+
+    // RIPSYN <SourceNodeID>
+    // O vizinho perdeu atualizaçoes: envia o vetor completo apenas para ele
+    private void handleRIPSyn(short sourceId, RIPMessage message) {
+        int slot = routingTable.neighborSlot(sourceId);
+        if (slot < 0 || message.nodeId() != sourceId) {
+            metrics.droppedUnknownSender.increment();
+            System.err.println("Nó " + nodeId + ": RIPSYN inválido de " + sourceId + ". Ignorando.");
+            return;
+        }
 
-        // Recalcula o vetor e propaga se houver mudança
-        recalculateDistanceVector();
+        if (routingTable.linkCost(slot) == RIPConfig.INFINITY) {
+            return;
+        }
+        synchronized (this) {
+            captureRoutes();
+            binaryNeighbors[slot] = unicastLayer.isBinaryCapable(sourceId);
+            sendVectorSegments(binaryNeighbors[slot], slot);
+        }
     }
 
 
-    private void handleRIPRqt(short sourceId) {
+    private void handleRIPRqt(short sourceId, RIPMessage message) {
         if (sourceId != RIPConfig.MANAGER_ID) {
+            metrics.droppedUnknownSender.increment();
             System.err.println("Nó " + nodeId + ": RIPRQT recebido de não-gerente (ID: " + sourceId + "). Ignorando.");
             return;
         }
-        
-        sendRIPRsp(RIPConfig.MANAGER_ID);
+
+        sendRIPRsp(RIPConfig.MANAGER_ID, message.requestId());
     }
 
-    // Logica do algoritmo
-    private synchronized void recalculateDistanceVector() {
-        boolean changed = false;
-        int selfIndex = nodeIdToIndex.get(this.nodeId);
+    // RIPTRC: grava o registro de eventos em RIPConfig.TRACE_DIR (ou no diretorio atual)
+    private void handleRIPTrc(short sourceId) {
+        if (sourceId != RIPConfig.MANAGER_ID) {
+            metrics.droppedUnknownSender.increment();
+            System.err.println("Nó " + nodeId + ": RIPTRC recebido de não-gerente (ID: " + sourceId + "). Ignorando.");
+            return;
+        }
+        dumpTrace(Path.of(RIPConfig.TRACE_DIR != null ? RIPConfig.TRACE_DIR : "."));
+    }
 
-        // Itera por todas as COLUNAS
-        for (int j = 0; j < this.numNodes; j++) {
-            
-            // Custo para si mesmo e sempre 0
-            if (j == selfIndex) {
-                if (this.distanceVector[j] != 0) {
-                    this.distanceVector[j] = 0;
-                    changed = true;
-                }
-                continue;
+    // Grava o registro de eventos em 'directory' e retorna o arquivo criado (null em caso de erro).
+    // O arquivo pode ser lido com projetoredes.app.TraceDecoder.
+    public Path dumpTrace(Path directory) {
+        Path file = directory.resolve("rip-trace-" + nodeId + "-" + clock.millis() + ".bin");
+        try {
+            Files.createDirectories(directory);
+            trace.dump(file);
+        } catch (IOException e) {
+            System.err.println("Nó " + nodeId + ": Erro ao gravar o trace em " + file + ": " + e.getMessage());
+            return null;
+        }
+        System.out.println("Nó " + nodeId + ": Trace com " + Math.min(trace.recorded(), trace.capacity())
+                + " evento(s) gravado em " + file);
+        return file;
+    }
+
+    // RIPDATA <Origem> <Destino> <TTL> <payload>, com 'payload' posicionado no inicio dos dados.
+    // Entrega a aplicaçao se o destino for este no; senao decrementa o TTL e encaminha.
+    private void handleRIPData(RIPMessage message, ByteBuffer payload) {
+        if (message.peerId() == this.nodeId) {
+            deliverData(message.nodeId(), payload);
+            return;
+        }
+        int ttl = message.ttl() - 1;
+        if (ttl <= 0) {
+            dataTtlExpired.incrementAndGet();
+            return;
+        }
+        if (forwardData(message.nodeId(), message.peerId(), ttl, payload)) {
+            dataForwarded.incrementAndGet();
+        }
+    }
+
+    private void deliverData(short originId, ByteBuffer payload) {
+        RoutedServiceUserInterface user = routedUser;
+        if (user != null) {
+            user.RDataInd(originId, payload);
+        }
+        dataDelivered.incrementAndGet();
+    }
+
+    // Envia o datagrama ao proximo salto para 'destId'. A consulta e O(1): indice do
+    // destino e slot do vizinho, ambos em arrays. A tabela e lida uma unica vez, para
+    // que uma recarga da topologia nao misture o slot de uma tabela com a outra.
+    private boolean forwardData(short originId, short destId, int ttl, ByteBuffer payload) {
+        RoutingTable table = routingTable;
+        int slot = table.nextHopTo(destId);
+        if (payload.remaining() > MAX_ROUTED_PAYLOAD) {
+            metrics.droppedOversize.increment();
+            return false;
+        }
+        if (slot == RoutingTable.NO_NEXT_HOP) {
+            dataUnreachable.incrementAndGet();
+            return false;
+        }
+        short neighborId = table.neighborId(slot);
+
+        ByteBuffer pdu = dataTxBuffers.poll();
+        if (pdu == null) {
+            pdu = ByteBuffer.allocate(UnicastProtocol.MAX_PAYLOAD_SIZE);
+        }
+        try {
+            pdu.clear();
+            RIPCodec.encodeData(pdu, unicastLayer.isBinaryCapable(neighborId), originId, destId, ttl, payload);
+            pdu.flip();
+            return transmit(neighborId, pdu, RIPCodec.DATA, Delivery.BEST_EFFORT);
+        } finally {
+            dataTxBuffers.offer(pdu);
+        }
+    }
+
+    // Logica do algoritmo (recalculo feito pela RoutingTable)
+    private void onDistanceVectorRecalculated(boolean changed) {
+        if (changed) {
+            lastVectorChangeMillis = clock.millis();
+            System.out.println("Nó " + nodeId + ": Vetor recalculado (" + routingTable.lastRecomputedColumns()
+                    + " colunas reavaliadas): " + formatVector(routingTable.distanceVector()));
+            scheduleTriggeredUpdate();
+        }
+    }
+
+    // Agenda uma atualizaçao disparada, respeitando o hold-down desde o ultimo envio.
+    // Se ja houver uma agendada, a mudança sera enviada junto com ela.
+    private void scheduleTriggeredUpdate() {
+        synchronized (triggerLock) {
+            if (triggeredPending) {
+                coalescedChanges++;
+                return;
+            }
+
+            long elapsedMs = clock.millis() - lastUpdateMillis;
+            long delayMs = Math.max(0, RIPConfig.TRIGGERED_HOLD_DOWN_MS - elapsedMs);
+            if (RIPConfig.TRIGGERED_JITTER_MS > 0) {
+                delayMs += random.nextLong(RIPConfig.TRIGGERED_JITTER_MS + 1);
             }
 
-            int minCost = RIPConfig.INFINITY;
+            // So marca como pendente depois de agendar: se o agendamento falhar, a
+            // propagaçao periodica nao fica presa a uma tarefa inexistente
+            triggeredTask = scheduler.schedule(this::sendTriggeredUpdate, delayMs, TimeUnit.MILLISECONDS);
+            triggeredPending = true;
+        }
+    }
 
-            // Itera por todos os VIZINHOS (linhas > 0)
-            for (short neighborId : this.neighbors.keySet()) {
-                int costToNeighbor = this.neighbors.get(neighborId);
-                if (costToNeighbor == RIPConfig.INFINITY) {
-                    continue; // Enlace para este vizinho esta rompido
+    // Tarefa agendada da atualizaçao disparada
+    private void sendTriggeredUpdate() {
+        topologyLock.readLock().lock();
+        try {
+            synchronized (triggerLock) {
+                // A propagaçao periodica pode ter enviado o vetor nesse meio tempo
+                if (!triggeredPending) {
+                    return;
                 }
+                triggeredPending = false;
+                triggeredUpdates++;
+            }
+            propagateVectorToNeighbors(false);
+        } catch (Exception e) {
+            System.err.println("Nó " + nodeId + ": Erro na atualização disparada: " + e.getMessage());
+        } finally {
+            topologyLock.readLock().unlock();
+        }
+    }
 
-                int neighborRow = this.neighborToRowIndex.get(neighborId);
-                int costFromNeighborToDest = this.distanceTable[neighborRow][j];
+    // Plano de dados
 
-                if (costFromNeighborToDest != RIPConfig.INFINITY) {
-                    int totalCost = costToNeighbor + costFromNeighborToDest;
-                    
-                    if (minCost == RIPConfig.INFINITY || totalCost < minCost) {
-                        minCost = totalCost;
-                    }
+    // Registra quem recebe os datagramas destinados a este no (null para descarta-los)
+    public void setRoutedUser(RoutedServiceUserInterface user) {
+        this.routedUser = user;
+    }
+
+    @Override
+    public boolean RDataReq(short destinationId, ByteBuffer data) {
+        if (destinationId == this.nodeId) {
+            deliverData(this.nodeId, data.asReadOnlyBuffer());
+            dataSent.incrementAndGet();
+            return true;
+        }
+        boolean sent = forwardData(this.nodeId, destinationId, RIPConfig.DATA_TTL, data);
+        if (sent) {
+            dataSent.incrementAndGet();
+        }
+        return sent;
+    }
+
+    @Override
+    public int maxRoutedPayloadSize() {
+        return MAX_ROUTED_PAYLOAD;
+    }
+
+    // Vizinho usado atualmente para chegar a 'destinationId', ou -1 se nao houver rota
+    public short getNextHop(short destinationId) {
+        RoutingTable table = routingTable;
+        int slot = table.nextHopTo(destinationId);
+        return (slot == RoutingTable.NO_NEXT_HOP) ? -1 : table.neighborId(slot);
+    }
+
+    // Datagramas originados, encaminhados e entregues por este no, e os descartados
+    // por TTL esgotado ou por falta de rota (os grandes demais contam em getDroppedOversize)
+    public long getDataSent() {
+        return dataSent.get();
+    }
+
+    @Override
+    public long getDataForwarded() {
+        return dataForwarded.get();
+    }
+
+    @Override
+    public long getDataDelivered() {
+        return dataDelivered.get();
+    }
+
+    public long getDataTtlExpired() {
+        return dataTtlExpired.get();
+    }
+
+    public long getDataUnreachable() {
+        return dataUnreachable.get();
+    }
+
+    // Copia do vetor de distancias atual, na ordem dos IDs dos nos (sem bloquear as atualizaçoes)
+    public int[] getDistanceVector() {
+        return routingTable.distanceVector();
+    }
+
+    // Instante (no relogio do no) da ultima mudança do vetor de distancias
+    public long getLastVectorChangeMillis() {
+        return lastVectorChangeMillis;
+    }
+
+    // Colunas do vetor reavaliadas na ultima atualizaçao e desde o inicio
+    public int getLastRecomputedColumns() {
+        return routingTable.lastRecomputedColumns();
+    }
+
+    public long getTotalRecomputedColumns() {
+        return routingTable.totalRecomputedColumns();
+    }
+
+    // Atualizaçoes disparadas enviadas, mudanças agrupadas em um envio pendente
+    // e envios disparados suprimidos pela propagaçao periodica
+    @Override
+    public long getTriggeredUpdates() {
+        synchronized (triggerLock) {
+            return triggeredUpdates;
+        }
+    }
+
+    @Override
+    public long getCoalescedChanges() {
+        synchronized (triggerLock) {
+            return coalescedChanges;
+        }
+    }
+
+    @Override
+    public long getSuppressedUpdates() {
+        synchronized (triggerLock) {
+            return suppressedUpdates;
+        }
+    }
+
+    // PDUs RIPDLT enviadas e vetores completos pedidos por lacunas de sequencia
+    @Override
+    public synchronized long getDeltaUpdates() {
+        return deltaUpdates;
+    }
+
+    @Override
+    public long getSyncRequests() {
+        return syncRequests.get();
+    }
+
+    // PDUs e bytes enviados e recebidos por tipo (RIPIND, RIPSET, ...)
+    @Override
+    public Map<String, Long> getPdusSentByType() {
+        return RIPMetrics.byType(metrics.pdusSent);
+    }
+
+    @Override
+    public Map<String, Long> getBytesSentByType() {
+        return RIPMetrics.byType(metrics.bytesSent);
+    }
+
+    @Override
+    public Map<String, Long> getPdusReceivedByType() {
+        return RIPMetrics.byType(metrics.pdusReceived);
+    }
+
+    @Override
+    public Map<String, Long> getBytesReceivedByType() {
+        return RIPMetrics.byType(metrics.bytesReceived);
+    }
+
+    // PDUs descartadas: remetente que nao e vizinho/gerente (ou nao bate com a PDU),
+    // PDU mal formatada ou de tipo desconhecido, e conteudo que nao cabe em uma PDU
+    @Override
+    public long getDroppedUnknownSender() {
+        return metrics.droppedUnknownSender.sum();
+    }
+
+    @Override
+    public long getDroppedMalformed() {
+        return metrics.droppedMalformed.sum();
+    }
+
+    @Override
+    public long getDroppedOversize() {
+        return metrics.droppedOversize.sum();
+    }
+
+    // Atualizaçoes da tabela (recalculos), as que mudaram o vetor e a sua duraçao
+    @Override
+    public long getRecalculations() {
+        return metrics.recalculation.count();
+    }
+
+    @Override
+    public long getVectorChanges() {
+        return metrics.vectorChanges.sum();
+    }
+
+    @Override
+    public double getRecalculationMeanMicros() {
+        return metrics.recalculation.mean() / 1000.0;
+    }
+
+    @Override
+    public double getRecalculationP99Micros() {
+        return metrics.recalculation.percentile(99) / 1000.0;
+    }
+
+    // Propagaçoes do vetor e media de vizinhos alcançados por propagaçao
+    @Override
+    public long getPropagations() {
+        return metrics.propagations.sum();
+    }
+
+    @Override
+    public double getPropagationFanoutMean() {
+        long propagations = metrics.propagations.sum();
+        return (propagations == 0) ? 0 : (double) metrics.propagationTargets.sum() / propagations;
+    }
+
+    private void writeMetrics(MetricsWriter out) {
+        String node = MetricsWriter.label("node", nodeId);
+        for (int type = RIPCodec.IND; type < RIPMetrics.TYPES; type++) {
+            String labels = MetricsWriter.labels(node, MetricsWriter.label("type", RIPCodec.typeName(type)));
+            out.counter("projetoredes_rip_pdus_sent_total", "PDUs RIP enviadas por tipo", labels,
+                    metrics.pdusSent[type].sum());
+            out.counter("projetoredes_rip_bytes_sent_total", "Bytes de PDUs RIP enviadas por tipo", labels,
+                    metrics.bytesSent[type].sum());
+            out.counter("projetoredes_rip_pdus_received_total", "PDUs RIP recebidas por tipo", labels,
+                    metrics.pdusReceived[type].sum());
+            out.counter("projetoredes_rip_bytes_received_total", "Bytes de PDUs RIP recebidas por tipo", labels,
+                    metrics.bytesReceived[type].sum());
+        }
+        String dropped = "projetoredes_rip_dropped_total";
+        String droppedHelp = "PDUs RIP descartadas por motivo";
+        out.counter(dropped, droppedHelp, MetricsWriter.labels(node, MetricsWriter.label("reason", "unknown_sender")),
+                getDroppedUnknownSender());
+        out.counter(dropped, droppedHelp, MetricsWriter.labels(node, MetricsWriter.label("reason", "malformed")),
+                getDroppedMalformed());
+        out.counter(dropped, droppedHelp, MetricsWriter.labels(node, MetricsWriter.label("reason", "oversize")),
+                getDroppedOversize());
+        out.summary("projetoredes_rip_recalculation_seconds", "Duracao das atualizacoes da tabela de distancias", node,
+                metrics.recalculation);
+        out.counter("projetoredes_rip_vector_changes_total", "Atualizacoes que mudaram o vetor de distancias", node,
+                getVectorChanges());
+        out.summary("projetoredes_rip_propagation_fanout", "Vizinhos alcancados por propagacao do vetor", node,
+                metrics.propagations.sum(), metrics.propagationTargets.sum());
+        out.counter("projetoredes_rip_triggered_updates_total", "Atualizacoes disparadas enviadas", node,
+                getTriggeredUpdates());
+        out.counter("projetoredes_rip_coalesced_changes_total", "Mudancas agrupadas em um envio pendente", node,
+                getCoalescedChanges());
+        out.counter("projetoredes_rip_suppressed_updates_total",
+                "Envios disparados absorvidos pela propagacao periodica", node, getSuppressedUpdates());
+        out.counter("projetoredes_rip_delta_updates_total", "PDUs RIPDLT enviadas", node, getDeltaUpdates());
+        out.counter("projetoredes_rip_sync_requests_total", "RIPSYN enviados por lacunas de sequencia", node,
+                getSyncRequests());
+        out.counter("projetoredes_rip_topology_reloads_total", "Recargas da configuracao aplicadas", node,
+                getTopologyReloads());
+        out.counter("projetoredes_rip_data_forwarded_total", "Datagramas encaminhados", node, getDataForwarded());
+        out.counter("projetoredes_rip_data_delivered_total", "Datagramas entregues localmente", node,
+                getDataDelivered());
+        out.counter("projetoredes_rip_data_ttl_expired_total", "Datagramas descartados por TTL esgotado", node,
+                getDataTtlExpired());
+        out.counter("projetoredes_rip_data_unreachable_total", "Datagramas descartados sem rota", node,
+                getDataUnreachable());
+    }
+
+    // Tarefa agendada para propagar periodicamente o vetor de distancias.
+    // Excecoes sao tratadas aqui para nao cancelar o agendamento.
+    private void propagatePeriodically() {
+        topologyLock.readLock().lock();
+        try {
+            // System.out.println("Nó " + nodeId + ": Timer de propagação disparado.");
+            synchronized (triggerLock) {
+                // O envio periodico ja leva as mudanças pendentes
+                if (triggeredPending) {
+                    triggeredPending = false;
+                    triggeredTask.cancel(false);
+                    suppressedUpdates++;
                 }
             }
+            propagateVectorToNeighbors(true);
+        } catch (Exception e) {
+            System.err.println("Nó " + nodeId + ": Erro na propagação periódica: " + e.getMessage());
+        } finally {
+            topologyLock.readLock().unlock();
+        }
+    }
 
-            // Atualiza o vetor do no se o custo mudou
-            if (this.distanceVector[j] != minCost) {
-                this.distanceVector[j] = minCost;
-                changed = true;
+    // Metodo que envia o vetor de distancias atual para todos os vizinhos.
+    // Cada formato e codificado uma unica vez e reaproveitado para todos os vizinhos
+    // que o usam; vetores que nao cabem em uma PDU sao enviados em segmentos.
+    // Fora dos envios completos (periodico e inicial), os vizinhos binarios recebem
+    // apenas as entradas alteradas, quando elas cabem em uma unica RIPDLT.
+    private synchronized void propagateVectorToNeighbors(boolean fullSnapshot) {
+        captureRoutes();
+        int changedCount = collectChangedDestinations();
+        if (!fullSnapshot && changedCount == 0) {
+            return; // As mudanças se desfizeram antes do envio
+        }
+        if (changedCount > 0) {
+            updateSequence++;
+            if (stateFile != null) {
+                stateFile.setUpdateSequence(updateSequence);
             }
         }
 
-        if (changed) {
-            System.out.println("Nó " + nodeId + ": Vetor recalculado: " + formatVector(this.distanceVector));
-            propagateVectorToNeighbors();
+        int targets = 0;
+        for (int slot = 0; slot < binaryNeighbors.length; slot++) {
+            binaryNeighbors[slot] = unicastLayer.isBinaryCapable(routingTable.neighborId(slot));
+            if (routingTable.linkCost(slot) != RIPConfig.INFINITY) {
+                targets++;
+            }
+        }
+        metrics.propagated(targets);
+        if (fullSnapshot || !sendDelta(changedCount)) {
+            sendVectorSegments(true, ALL_NEIGHBORS);
         }
+        sendVectorSegments(false, ALL_NEIGHBORS);
+        lastUpdateMillis = clock.millis();
     }
 
-    // Classe interna extendendo TimerTask para propagar periodicamente o vetor de distancias
-    private class PropagationTask extends TimerTask {
-        @Override
-        public void run() {
-            try {
-                // System.out.println("Nó " + nodeId + ": Timer de propagação disparado.");
-                propagateVectorToNeighbors();
-            } catch (Exception e) {
-                System.err.println("Nó " + nodeId + ": Erro na propagação periódica: " + e.getMessage());
+    // Copia as rotas atuais para 'currentVector'/'currentNextHops' sem bloquear as
+    // atualizaçoes; o envio usa so essa copia, que nunca mistura estados de uma faixa.
+    private void captureRoutes() {
+        routingTable.copyRoutes(currentVector, currentNextHops);
+        Arrays.fill(poisonedTargets, false);
+        for (int dest = 0; dest < numNodes; dest++) {
+            if (currentNextHops[dest] != RoutingTable.NO_NEXT_HOP) {
+                poisonedTargets[currentNextHops[dest]] = true;
             }
         }
     }
 
-    // Metodo que envia o vetor de distancias atual para todos os vizinhos
-    private void propagateVectorToNeighbors() {
-            String pdu = "RIPIND " + this.nodeId + " " + formatVector(this.distanceVector);
+    // Lista as entradas que mudaram desde o ultimo envio e atualiza 'lastSentVector'.
+    // Uma troca de proximo salto tambem conta, pois muda o custo envenenado anunciado.
+    private int collectChangedDestinations() {
+        int count = 0;
+        for (int dest = 0; dest < numNodes; dest++) {
+            int nextHop = currentNextHops[dest];
+            if (currentVector[dest] != lastSentVector[dest] || nextHop != lastSentNextHops[dest]) {
+                lastSentVector[dest] = currentVector[dest];
+                lastSentNextHops[dest] = nextHop;
+                changedDestinations[count++] = dest;
+            }
+        }
+        return count;
+    }
+
+    // Envia as entradas alteradas aos vizinhos binarios. Retorna false se o delta
+    // nao compensar (metade do vetor ou mais) ou nao couber em uma PDU.
+    private boolean sendDelta(int changedCount) {
+        if (2 * changedCount >= numNodes) {
+            return false;
+        }
+
+        // Delta sem envenenamento, compartilhado pelos vizinhos que nao sao proximo
+        // salto de nenhum destino. Nenhum delta envenenado e maior que ele.
+        ByteBuffer pdu = binaryTxBuffer;
+        for (int i = 0; i < changedCount; i++) {
+            deltaCosts[i] = currentVector[changedDestinations[i]];
+        }
+        if (!encodeDelta(pdu, changedCount)) {
+            return false;
+        }
 
-            for (short neighborId : this.neighbors.keySet()) {
-                // Nao envia para vizinhos com custo infinito
-                if (this.neighbors.get(neighborId) != RIPConfig.INFINITY) {
-                    unicastLayer.UPDataReq(neighborId, pdu);
+        for (int slot = 0; slot < binaryNeighbors.length; slot++) {
+            if (isVectorTarget(slot, true, ALL_NEIGHBORS) && !poisonedTargets[slot]) {
+                pdu.rewind();
+                transmit(routingTable.neighborId(slot), pdu, RIPCodec.DLT, Delivery.BEST_EFFORT);
+                deltaUpdates++;
+            }
+        }
+
+        // Split horizon com poisoned reverse: um delta proprio para cada proximo salto
+        for (int slot = 0; slot < binaryNeighbors.length; slot++) {
+            if (isVectorTarget(slot, true, ALL_NEIGHBORS) && poisonedTargets[slot]) {
+                for (int i = 0; i < changedCount; i++) {
+                    deltaCosts[i] = RoutingTable.advertisedCost(currentVector, currentNextHops, slot,
+                            changedDestinations[i]);
                 }
+                encodeDelta(pdu, changedCount);
+                transmit(routingTable.neighborId(slot), pdu, RIPCodec.DLT, Delivery.BEST_EFFORT);
+                deltaUpdates++;
             }
+        }
+        return true;
     }
 
-    // Metodos de envio de PDU
-    private void sendRIPNtf(short destId, short nodeA, short nodeB, int cost) {
-        String pdu = String.format("RIPNTF %d %d %d", nodeA, nodeB, cost);
-        unicastLayer.UPDataReq(destId, pdu);
+    private boolean encodeDelta(ByteBuffer pdu, int changedCount) {
+        pdu.clear();
+        try {
+            RIPCodec.encodeDelta(pdu, true, this.nodeId, updateSequence, numNodes,
+                    changedDestinations, deltaCosts, changedCount);
+        } catch (BufferOverflowException e) {
+            return false;
+        }
+        pdu.flip();
+        return true;
     }
 
-    private void sendRIPRsp(short destId) {
-        StringBuilder pduBuilder = new StringBuilder();
-        pduBuilder.append("RIPRSP ").append(this.nodeId).append(" ");
-        
-        for (int i = 0; i < this.distanceTable.length; i++) {
-            pduBuilder.append(formatVector(this.distanceTable[i]));
-            if (i < this.distanceTable.length - 1) {
-                pduBuilder.append(" ");
+    // Envia o vetor completo a todos os vizinhos do formato dado, ou apenas ao vizinho 'targetSlot'.
+    // Vizinhos que sao proximo salto de algum destino recebem o vetor com poisoned reverse;
+    // os demais compartilham o vetor sem alteraçoes, codificado uma unica vez.
+    private void sendVectorSegments(boolean binary, int targetSlot) {
+        boolean plainTargets = false;
+        for (int slot = 0; slot < binaryNeighbors.length; slot++) {
+            if (!isVectorTarget(slot, binary, targetSlot)) {
+                continue;
             }
+            if (poisonedTargets[slot]) {
+                for (int dest = 0; dest < numNodes; dest++) {
+                    advertisedVector[dest] = RoutingTable.advertisedCost(currentVector, currentNextHops, slot, dest);
+                }
+                sendVectorSegments(binary, advertisedVector, slot);
+            } else {
+                plainTargets = true;
+            }
+        }
+
+        if (plainTargets) {
+            sendVectorSegments(binary, currentVector, targetSlot);
         }
-        
-        unicastLayer.UPDataReq(destId, pduBuilder.toString());
     }
 
-    // Utilitarios para formatar os vetores de distancia como strings e vice-versa
-    private String formatVector(int[] vector) {
-        return Arrays.stream(vector)
-                     .mapToObj(String::valueOf)
-                     .collect(Collectors.joining(":"));
+    // Envia 'vector' em segmentos. Com ALL_NEIGHBORS, vai para todos os vizinhos
+    // do formato que nao precisam de um vetor proprio.
+    private void sendVectorSegments(boolean binary, int[] vector, int targetSlot) {
+        ByteBuffer pdu = binary ? binaryTxBuffer : textTxBuffer;
+        int offset = 0;
+
+        while (offset < numNodes) {
+            pdu.clear();
+            int next = RIPCodec.encodeInd(pdu, binary, this.nodeId, vector, offset, updateSequence);
+            pdu.flip();
+
+            for (int slot = 0; slot < binaryNeighbors.length; slot++) {
+                if (!isVectorTarget(slot, binary, targetSlot)
+                        || (targetSlot == ALL_NEIGHBORS && poisonedTargets[slot])) {
+                    continue;
+                }
+                pdu.rewind();
+                transmit(routingTable.neighborId(slot), pdu, RIPCodec.IND, Delivery.BEST_EFFORT);
+            }
+            offset = next;
+        }
+    }
+
+    // Nao envia para vizinhos com custo infinito nem de outro formato
+    private boolean isVectorTarget(int slot, boolean binary, int targetSlot) {
+        return (targetSlot == ALL_NEIGHBORS || slot == targetSlot)
+                && binaryNeighbors[slot] == binary
+                && routingTable.linkCost(slot) != RIPConfig.INFINITY;
+    }
+
+    // Metodos de envio de PDU
+
+    // Todo envio passa por aqui para ser contado por tipo
+    private boolean transmit(short destId, ByteBuffer pdu, int type, Delivery delivery) {
+        int bytes = pdu.remaining();
+        boolean sent = unicastLayer.UPDataReq(destId, pdu, delivery);
+        if (sent) {
+            metrics.sent(type, bytes);
+        }
+        return sent;
+    }
+    private synchronized void sendRIPSyn(short destId) {
+        boolean binary = unicastLayer.isBinaryCapable(destId);
+        ByteBuffer pdu = binary ? binaryTxBuffer : textTxBuffer;
+        pdu.clear();
+        RIPCodec.encodeSyn(pdu, binary, this.nodeId);
+        pdu.flip();
+        transmit(destId, pdu, RIPCodec.SYN, Delivery.BEST_EFFORT);
+    }
+
+    // Respostas ao gerente: confiaveis quando o destino permite (os vetores sao reenviados
+    // periodicamente, as respostas nao); com um destino somente texto, best-effort
+    private Delivery managerDelivery(short destId) {
+        return unicastLayer.supportsReliable(destId) ? Delivery.RELIABLE : Delivery.BEST_EFFORT;
     }
 
-    private int[] parseVector(String vectorString) {
-        return Arrays.stream(vectorString.split(":"))
-                     .mapToInt(Integer::parseInt)
-                     .toArray();
+    // As respostas ao gerente repetem o identificador da requisiçao, se houver, e usam a
+    // entrega confiavel: os vetores sao reenviados periodicamente, as respostas nao
+    private synchronized void sendRIPNtf(short destId, short nodeA, short nodeB, int cost, int requestId) {
+        boolean binary = unicastLayer.isBinaryCapable(destId);
+        ByteBuffer pdu = binary ? binaryTxBuffer : textTxBuffer;
+        pdu.clear();
+        RIPCodec.encodeNtf(pdu, binary, nodeA, nodeB, cost, requestId);
+        pdu.flip();
+        transmit(destId, pdu, RIPCodec.NTF, managerDelivery(destId));
+    }
+
+    private synchronized void sendRIPNtfBatch(short destId, int[] peers, int[] costs, int count, int requestId) {
+        boolean binary = unicastLayer.isBinaryCapable(destId);
+        ByteBuffer pdu = binary ? binaryTxBuffer : textTxBuffer;
+        pdu.clear();
+        RIPCodec.encodeNtfBatch(pdu, binary, this.nodeId, peers, costs, count, requestId);
+        pdu.flip();
+        transmit(destId, pdu, RIPCodec.NTF_BATCH, managerDelivery(destId));
+    }
+
+    // Tabelas maiores que uma PDU sao fragmentadas pela camada Unicast, se o destino permitir.
+    // A copia da tabela e feita antes de travar o estado de envio.
+    private void sendRIPRsp(short destId, int requestId) {
+        int[][] table = routingTable.snapshot();
+        synchronized (this) {
+            boolean binary = unicastLayer.isBinaryCapable(destId);
+            int maxSize = unicastLayer.maxPayloadSize(destId, managerDelivery(destId));
+            ByteBuffer pdu = (maxSize > binaryTxBuffer.capacity()) ? ByteBuffer.allocate(maxSize)
+                    : (binary ? binaryTxBuffer : textTxBuffer);
+            pdu.clear();
+            try {
+                RIPCodec.encodeRsp(pdu, binary, this.nodeId, table, requestId);
+            } catch (BufferOverflowException e) {
+                metrics.droppedOversize.increment();
+                System.err.println("Nó " + nodeId + ": Tabela de distâncias muito grande para a RIPRSP.");
+                return;
+            }
+            pdu.flip();
+            transmit(destId, pdu, RIPCodec.RSP, managerDelivery(destId));
+        }
+    }
+
+    // Formata o vetor de distancias para os logs
+    private String formatVector(int[] vector) {
+        StringBuilder builder = new StringBuilder(vector.length * 3);
+        for (int i = 0; i < vector.length; i++) {
+            if (i > 0) {
+                builder.append(':');
+            }
+            builder.append(vector[i]);
+        }
+        return builder.toString();
     }
 
     @Override
     public void close() {
-        propagationTimer.cancel();
-        if (unicastLayer != null) {
-            unicastLayer.close();
+        MetricsRegistry.unregister("RIPNode", nodeId, metricsSource);
+        propagationTask.cancel(false);
+        synchronized (triggerLock) {
+            if (triggeredTask != null) {
+                triggeredTask.cancel(false);
+            }
+            if (staleTask != null) {
+                staleTask.cancel(false);
+            }
+            triggeredPending = false;
+        }
+        if (ownsScheduler) {
+            scheduler.shutdown();
+        }
+        if (RIPConfig.TRACE_DIR != null) {
+            dumpTrace(Path.of(RIPConfig.TRACE_DIR));
+        }
+        if (unicastLayer instanceof AutoCloseable) {
+            try {
+                ((AutoCloseable) unicastLayer).close();
+            } catch (Exception e) {
+                System.err.println("Nó " + nodeId + ": Erro ao fechar a camada de Unicast: " + e.getMessage());
+            }
+        }
+        topologyLock.writeLock().lock();
+        try {
+            if (stateFile != null) {
+                stateFile.close();
+            }
+        } finally {
+            topologyLock.writeLock().unlock();
         }
         System.out.println("Nó RIP " + nodeId + " encerrado.");
     }
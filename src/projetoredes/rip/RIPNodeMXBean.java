@@ -0,0 +1,49 @@
+package projetoredes.rip;
+
+import java.util.Map;
+
+// Metricas de um RIPNode via JMX (projetoredes:type=RIPNode,id=<id>)
+public interface RIPNodeMXBean {
+    // Por tipo de PDU (RIPIND, RIPSET, ...)
+    Map<String, Long> getPdusSentByType();
+
+    Map<String, Long> getBytesSentByType();
+
+    Map<String, Long> getPdusReceivedByType();
+
+    Map<String, Long> getBytesReceivedByType();
+
+    long getDroppedUnknownSender();
+
+    long getDroppedMalformed();
+
+    long getDroppedOversize();
+
+    long getRecalculations();
+
+    long getVectorChanges();
+
+    double getRecalculationMeanMicros();
+
+    double getRecalculationP99Micros();
+
+    long getPropagations();
+
+    double getPropagationFanoutMean();
+
+    long getTriggeredUpdates();
+
+    long getCoalescedChanges();
+
+    long getSuppressedUpdates();
+
+    long getDeltaUpdates();
+
+    long getSyncRequests();
+
+    long getTopologyReloads();
+
+    long getDataForwarded();
+
+    long getDataDelivered();
+}
@@ -0,0 +1,173 @@
+package projetoredes.rip;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.invoke.VarHandle;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.InstantSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Registro circular, em memoria, dos eventos que mudam a tabela de roteamento de um no
+// (custo de enlace, entrada do vetor de um vizinho, rota para um destino). Serve para
+// reconstruir depois como as tabelas evoluiram (ex.: uma contagem ao infinito), sem o
+// custo de imprimir cada mudança.
+//
+// O registro nao aloca e nao usa travas: cada evento reserva uma posiçao com um
+// contador atomico e grava os campos em arrays primitivos. A posiçao e publicada com
+// o numero de sequencia do evento, como em um seqlock: a leitura (snapshot) descarta
+// eventos sobrescritos ou ainda sendo gravados. Quando o anel enche, os eventos mais
+// antigos sao sobrescritos.
+//
+// Arquivo (big-endian): [marca "RIPT":4][versao:1][no:2][eventos registrados:8][n:4]
+// seguidos de n eventos [seq:8][instante ms:8][tipo:1][vizinho:2][destino:2][custo antigo:4][custo novo:4].
+public final class RIPTrace {
+
+    // Tipos de evento
+    public static final int LINK_COST = 1;     // vizinho = enlace, destino = proprio no
+    public static final int NEIGHBOR_COST = 2; // Custo anunciado pelo vizinho para o destino
+    public static final int ROUTE = 3;         // Custo (e proximo salto = vizinho) do proprio no para o destino
+    public static final int SYNC_REQUEST = 4;  // Lacuna nos deltas do vizinho (RIPSYN enviado)
+
+    private static final int MAGIC = 0x52495054; // "RIPT"
+    private static final byte VERSION = 1;
+    private static final long BUSY = -1;         // Posiçao sendo gravada
+
+    // Registro desligado (tamanho 0): record() retorna imediatamente
+    static final RIPTrace DISABLED = new RIPTrace((short) 0, 0, InstantSource.system());
+
+    private final short nodeId;
+    private final InstantSource clock;
+    private final int mask; // -1 quando desligado
+
+    private final long[] timestamps;
+    private final long[] events; // [tipo:16][vizinho:16][destino:16]
+    private final long[] costs;  // [antigo:32][novo:32]
+    private final AtomicLongArray published;
+    private final AtomicLong next = new AtomicLong();
+
+    public record Event(long sequence, long timestampMillis, int type, short peer, short destination,
+                        int oldCost, int newCost) {}
+
+    public record Dump(short nodeId, long recorded, List<Event> events) {}
+
+    // 'capacity' e arredondada para a proxima potencia de 2
+    public RIPTrace(short nodeId, int capacity, InstantSource clock) {
+        this.nodeId = nodeId;
+        this.clock = clock;
+        int size = (capacity <= 0) ? 0 : Integer.highestOneBit(Math.min(capacity, 1 << 24) * 2 - 1);
+        this.mask = size - 1;
+        this.timestamps = new long[size];
+        this.events = new long[size];
+        this.costs = new long[size];
+        this.published = new AtomicLongArray(size);
+        for (int slot = 0; slot < size; slot++) {
+            published.set(slot, BUSY);
+        }
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+
+    // Total de eventos registrados desde o inicio (inclusive os ja sobrescritos)
+    public long recorded() {
+        return next.get();
+    }
+
+    // 'peer' e 'destination' sao IDs de no (-1 quando nao se aplicam)
+    public void record(int type, short peer, short destination, int oldCost, int newCost) {
+        if (mask < 0) {
+            return;
+        }
+        long sequence = next.getAndIncrement();
+        int slot = (int) sequence & mask;
+        published.setOpaque(slot, BUSY);
+        VarHandle.storeStoreFence();
+        timestamps[slot] = clock.millis();
+        events[slot] = ((long) (type & 0xFFFF) << 32) | ((long) (peer & 0xFFFF) << 16) | (destination & 0xFFFF);
+        costs[slot] = ((long) oldCost << 32) | (newCost & 0xFFFFFFFFL);
+        published.setRelease(slot, sequence);
+    }
+
+    // Copia dos eventos ainda no anel, do mais antigo para o mais recente. Pode rodar
+    // junto com record(); eventos sobrescritos durante a copia ficam de fora.
+    public List<Event> snapshot() {
+        long end = next.get();
+        long start = Math.max(0, end - capacity());
+        List<Event> copy = new ArrayList<>((int) (end - start));
+        for (long sequence = start; sequence < end; sequence++) {
+            int slot = (int) sequence & mask;
+            if (published.getAcquire(slot) != sequence) {
+                continue;
+            }
+            long timestamp = timestamps[slot];
+            long event = events[slot];
+            long cost = costs[slot];
+            VarHandle.loadLoadFence();
+            if (published.getOpaque(slot) != sequence) {
+                continue;
+            }
+            copy.add(new Event(sequence, timestamp, (int) (event >>> 32) & 0xFFFF, (short) (event >>> 16),
+                    (short) event, (int) (cost >>> 32), (int) cost));
+        }
+        return copy;
+    }
+
+    // Grava o conteudo atual do anel em 'path'
+    public void dump(Path path) throws IOException {
+        List<Event> snapshot = snapshot();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeShort(nodeId);
+            out.writeLong(recorded());
+            out.writeInt(snapshot.size());
+            for (Event event : snapshot) {
+                out.writeLong(event.sequence());
+                out.writeLong(event.timestampMillis());
+                out.writeByte(event.type());
+                out.writeShort(event.peer());
+                out.writeShort(event.destination());
+                out.writeInt(event.oldCost());
+                out.writeInt(event.newCost());
+            }
+        }
+    }
+
+    public static Dump read(Path path) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != MAGIC || in.readByte() != VERSION) {
+                throw new IOException("Arquivo de trace inválido: " + path);
+            }
+            short nodeId = in.readShort();
+            long recorded = in.readLong();
+            int count = in.readInt();
+            if (count < 0) {
+                throw new IOException("Arquivo de trace inválido: " + path);
+            }
+            List<Event> events = new ArrayList<>(Math.min(count, 1 << 16));
+            for (int i = 0; i < count; i++) {
+                events.add(new Event(in.readLong(), in.readLong(), in.readUnsignedByte(), in.readShort(),
+                        in.readShort(), in.readInt(), in.readInt()));
+            }
+            return new Dump(nodeId, recorded, events);
+        }
+    }
+
+    public static String typeName(int type) {
+        return switch (type) {
+            case LINK_COST -> "LINK";
+            case NEIGHBOR_COST -> "NEIGHBOR";
+            case ROUTE -> "ROUTE";
+            case SYNC_REQUEST -> "SYNC";
+            default -> "?" + type;
+        };
+    }
+}
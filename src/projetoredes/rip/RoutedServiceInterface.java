@@ -0,0 +1,15 @@
+package projetoredes.rip;
+
+import java.nio.ByteBuffer;
+
+// Envio de datagramas da aplicaçao para qualquer no da topologia, encaminhados salto
+// a salto pelos proximos saltos calculados pelo RIP (melhor esforço).
+public interface RoutedServiceInterface {
+    // Envia os bytes entre position e limit de 'data' (que nao sao alterados).
+    // Retorna false se o destino for desconhecido ou inalcançavel no momento, ou se
+    // o payload nao couber em uma PDU para o proximo salto.
+    boolean RDataReq(short destinationId, ByteBuffer data);
+
+    // Maior payload aceito por RDataReq
+    int maxRoutedPayloadSize();
+}
@@ -0,0 +1,9 @@
+package projetoredes.rip;
+
+import java.nio.ByteBuffer;
+
+public interface RoutedServiceUserInterface {
+    // Entrega um datagrama enviado por 'sourceId' (a origem, nao o ultimo salto). Como
+    // no UPDataInd, o buffer e somente leitura e so e valido durante a chamada.
+    void RDataInd(short sourceId, ByteBuffer data);
+}
@@ -1,9 +1,42 @@
 package projetoredes.rip;
 
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
 public interface RoutingProtocolManagementInterface {
     boolean getDistanceTable(short nodeId);
 
     boolean getLinkCost(short id1, short id2);
 
     boolean setLinkCost(short id1, short id2, int cost);
+
+    // Altera varios enlaces de uma vez: cada no recebe uma unica PDU com todos os seus
+    // enlaces alterados e recalcula (e propaga) o vetor uma so vez. Se algum enlace for
+    // invalido, nada e enviado.
+    boolean setLinkCosts(List<LinkCostChange> changes);
+
+    // Pede ao no que grave em arquivo o seu registro de eventos da tabela (RIPTRC).
+    // Nao ha resposta: o arquivo fica no host do no (ver projetoredes.app.TraceDecoder).
+    boolean dumpTrace(short nodeId);
+
+    // Versoes assincronas. Cada requisiçao leva um identificador que o no repete na
+    // resposta, entao varias podem estar em andamento ao mesmo tempo. As respostas
+    // completam o futuro (e nao chegam pelas indicaçoes da interface de usuario).
+    // Sem resposta apos todas as tentativas, o futuro falha com TimeoutException.
+    // Os futuros sao completados em threads do ForkJoinPool.commonPool(), nunca na thread
+    // de recepçao da camada Unicast: estagios nao assincronos encadeados rodam nelas.
+    CompletableFuture<int[][]> getDistanceTableAsync(short nodeId);
+
+    CompletableFuture<Integer> getLinkCostAsync(short id1, short id2);
+
+    // Completa quando os dois nos confirmarem o novo custo
+    CompletableFuture<Void> setLinkCostAsync(short id1, short id2, int cost);
+
+    // Completa quando todos os nos envolvidos confirmarem os seus lotes
+    CompletableFuture<Void> setLinkCostsAsync(List<LinkCostChange> changes);
+
+    // Envia RIPRQT a todos os nos de uma vez e reune as respostas que chegarem ate o prazo
+    // (ou ate todos responderem). Nunca falha por falta de resposta: os nos que nao
+    // responderam aparecem em NetworkSnapshot.missingNodes().
+    CompletableFuture<NetworkSnapshot> getNetworkSnapshotAsync(long deadlineMs);
 }
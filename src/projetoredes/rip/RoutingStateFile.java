@@ -0,0 +1,166 @@
+package projetoredes.rip;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Copia em disco, mapeada em memoria, do estado de roteamento de um no: custos dos
+// enlaces, vetores recebidos dos vizinhos (densos) e numeros de sequencia. Cada
+// mudança e uma escrita de poucos bytes em uma posiçao fixa do mapeamento, que o
+// sistema operacional leva ao disco; nao ha serializaçao nem travas proprias.
+// Sobrevive ao fim do processo (inclusive abrupto), mas nao a uma queda do host
+// antes do force() feito em close().
+//
+// Layout (big-endian):
+//   [marca "RIPS":4][versao:4][no:2][reservado:2][nos:4][vizinhos:4][seq. propria:4]
+//   [hash da topologia:8][ultimo fechamento ms:8]
+//   vizinhos * [id:2][reservado:2][custo do enlace:4][ultima seq. recebida:4]
+//   vizinhos * nos * [custo anunciado:4]
+//
+// As escritas em posiçoes diferentes podem vir de threads diferentes (faixas da
+// RoutingTable): escritas absolutas em um buffer direto nao interferem entre si.
+final class RoutingStateFile implements AutoCloseable {
+    private static final int MAGIC = 0x52495053; // "RIPS"
+    private static final int VERSION = 1;
+    private static final int UPDATE_SEQUENCE = 20;
+    private static final int TOPOLOGY_HASH = 24;
+    private static final int CLOSED_MILLIS = 32;
+    private static final int HEADER_SIZE = 40;
+    private static final int NEIGHBOR_SIZE = 12;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final MappedByteBuffer map;
+    private final int numNodes;
+    private final int neighbors;
+    private final int rowsOffset;
+    private final boolean restored;
+
+    // 'neighborIds' (em ordem crescente, como os slots da RoutingTable) e 'linkCosts' sao
+    // os enlaces da topologia, usados quando nao ha estado valido.
+    RoutingStateFile(Path path, short nodeId, NodeIndex nodeIndex, short[] neighborIds, int[] linkCosts)
+            throws IOException {
+        this.path = path;
+        this.numNodes = nodeIndex.size();
+        this.neighbors = neighborIds.length;
+        this.rowsOffset = HEADER_SIZE + neighbors * NEIGHBOR_SIZE;
+        long size = rowsOffset + (long) neighbors * numNodes * Integer.BYTES;
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Estado de roteamento grande demais para " + path);
+        }
+        long topologyHash = topologyHash(nodeIndex, neighborIds);
+
+        Files.createDirectories(path.toAbsolutePath().getParent());
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            boolean sameSize = channel.size() == size;
+            if (channel.size() > size) {
+                channel.truncate(size); // Topologia menor (ex.: apos uma recarga)
+            }
+            this.map = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            this.restored = sameSize && map.getInt(0) == MAGIC && map.getInt(4) == VERSION
+                    && map.getShort(8) == nodeId && map.getInt(12) == numNodes && map.getInt(16) == neighbors
+                    && map.getLong(TOPOLOGY_HASH) == topologyHash;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+
+        if (!restored) {
+            // Sem estado, ou de outra topologia: começa do zero
+            map.putInt(0, MAGIC).putInt(4, VERSION).putShort(8, nodeId).putShort(10, (short) 0);
+            map.putInt(12, numNodes).putInt(16, neighbors).putInt(UPDATE_SEQUENCE, 0);
+            map.putLong(TOPOLOGY_HASH, topologyHash).putLong(CLOSED_MILLIS, 0);
+            for (int slot = 0; slot < neighbors; slot++) {
+                int offset = HEADER_SIZE + slot * NEIGHBOR_SIZE;
+                map.putShort(offset, neighborIds[slot]).putShort(offset + 2, (short) 0);
+                map.putInt(offset + 4, linkCosts[slot]);
+                map.putInt(offset + 8, RIPMessage.NO_SEQUENCE);
+                clearNeighbor(slot);
+            }
+        }
+    }
+
+    // Os IDs de todos os nos e dos vizinhos: um estado de outra topologia nao e aproveitado
+    private static long topologyHash(NodeIndex nodeIndex, short[] neighborIds) {
+        long hash = 1125899906842597L;
+        for (int index = 0; index < nodeIndex.size(); index++) {
+            hash = 31 * hash + nodeIndex.idAt(index);
+        }
+        for (short neighborId : neighborIds) {
+            hash = 31 * hash + neighborId + 0x10000;
+        }
+        return hash;
+    }
+
+    Path path() {
+        return path;
+    }
+
+    // Indica se o estado foi lido de um arquivo valido (e nao criado agora)
+    boolean restored() {
+        return restored;
+    }
+
+    // Instante do ultimo fechamento normal (0 se o no nao foi encerrado normalmente)
+    long closedMillis() {
+        return map.getLong(CLOSED_MILLIS);
+    }
+
+    int linkCost(int slot) {
+        return map.getInt(HEADER_SIZE + slot * NEIGHBOR_SIZE + 4);
+    }
+
+    void setLinkCost(int slot, int cost) {
+        map.putInt(HEADER_SIZE + slot * NEIGHBOR_SIZE + 4, cost);
+    }
+
+    int neighborSequence(int slot) {
+        return map.getInt(HEADER_SIZE + slot * NEIGHBOR_SIZE + 8);
+    }
+
+    void setNeighborSequence(int slot, int sequence) {
+        map.putInt(HEADER_SIZE + slot * NEIGHBOR_SIZE + 8, sequence);
+    }
+
+    int updateSequence() {
+        return map.getInt(UPDATE_SEQUENCE);
+    }
+
+    void setUpdateSequence(int sequence) {
+        map.putInt(UPDATE_SEQUENCE, sequence);
+    }
+
+    int neighborCost(int slot, int dest) {
+        return map.getInt(rowOffset(slot, dest));
+    }
+
+    void setNeighborCost(int slot, int dest, int cost) {
+        map.putInt(rowOffset(slot, dest), cost);
+    }
+
+    void clearNeighbor(int slot) {
+        for (int dest = 0; dest < numNodes; dest++) {
+            map.putInt(rowOffset(slot, dest), RIPConfig.INFINITY);
+        }
+    }
+
+    private int rowOffset(int slot, int dest) {
+        return rowsOffset + (slot * numNodes + dest) * Integer.BYTES;
+    }
+
+    @Override
+    public void close() {
+        try {
+            map.putLong(CLOSED_MILLIS, System.currentTimeMillis());
+            map.force();
+            channel.close();
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Aviso: Falha ao gravar o estado de roteamento em " + path + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,543 @@
+package projetoredes.rip;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.StampedLock;
+
+// Estado de roteamento de um no: o vetor de distancias proprio, os ultimos
+// vetores recebidos dos vizinhos e o melhor proximo salto de cada destino.
+//
+// O recalculo e incremental: quando chega o vetor de um vizinho, apenas os
+// destinos cujas entradas mudaram sao reavaliados. Como guardamos o proximo
+// salto atual de cada destino, so e preciso varrer todos os vizinhos quando o
+// custo pelo proximo salto atual aumenta. O custo por atualizaçao fica em
+// O(entradas alteradas x grau do no).
+//
+// Thread-safe. Os destinos sao divididos em faixas contiguas, cada uma com uma
+// StampedLock que protege as suas colunas: o custo e o proximo salto do destino e
+// as entradas de todos os vizinhos para ele (as linhas dos vizinhos tambem sao
+// divididas por faixa). Vetores de vizinhos diferentes sao aplicados em paralelo,
+// desde que em faixas diferentes. Os custos dos enlaces so mudam com todas as
+// faixas travadas. Os leitores (copyRoutes, nextHop, linkCost) fazem leituras
+// otimistas de cada faixa e nao bloqueiam as atualizaçoes; cada faixa copiada e
+// consistente (custo e proximo salto de um destino nunca vem de versoes diferentes).
+//
+// Cada mudança de enlace, de entrada de vizinho ou de rota e registrada em 'trace',
+// ainda com a faixa travada (ver RIPTrace). Com um 'state', os enlaces e as entradas
+// dos vizinhos tambem sao copiados para o arquivo de estado a cada mudança, e um
+// estado restaurado e carregado na construçao (ver RoutingStateFile).
+final class RoutingTable {
+    static final int NO_NEXT_HOP = -1;
+
+    // Menor faixa: topologias pequenas ficam com uma unica trava
+    private static final int MIN_STRIPE_SIZE = 64;
+
+    private final NodeIndex nodeIndex;
+    private final int numNodes;
+    private final int selfIndex;
+    private final RIPTrace trace;
+    private final RoutingStateFile state; // Pode ser nulo
+
+    // Vizinhos diretos, indexados pela posiçao do vizinho ("slot"), em ordem de ID.
+    // Os vetores recebidos dos vizinhos sao esparsos: guardam so os destinos alcançaveis.
+    private final short[] neighborIds;
+    private final int[] neighborIndexes; // Indice de cada vizinho no vetor de distancias
+    private final int[] linkCosts;
+    private final SparseCostRow[][] neighborRows; // [slot][faixa]
+
+    private final int[] distanceVector; // Vetor de distancias do proprio no (denso)
+    private final int[] nextHopSlot;    // Slot do vizinho usado para cada destino
+
+    private final int stripeSize;
+    private final StampedLock[] stripes;
+
+    // Colunas reavaliadas: na ultima atualizaçao e no total
+    private volatile int lastRecomputedColumns;
+    private final AtomicLong totalRecomputedColumns = new AtomicLong();
+
+    RoutingTable(NodeIndex nodeIndex, short selfId, Map<Short, Integer> neighborCosts) {
+        this(nodeIndex, selfId, sortedIds(neighborCosts), null, neighborCosts, RIPTrace.DISABLED, null);
+    }
+
+    // 'neighborIds' em ordem crescente e 'linkCosts' na mesma ordem (ver TopologyGraph.neighborIds)
+    RoutingTable(NodeIndex nodeIndex, short selfId, short[] neighborIds, int[] linkCosts, RIPTrace trace,
+                 RoutingStateFile state) {
+        this(nodeIndex, selfId, neighborIds, linkCosts, null, trace, state);
+    }
+
+    private RoutingTable(NodeIndex nodeIndex, short selfId, short[] neighborIds, int[] linkCosts,
+                         Map<Short, Integer> neighborCosts, RIPTrace trace, RoutingStateFile state) {
+        this.nodeIndex = nodeIndex;
+        this.numNodes = nodeIndex.size();
+        this.selfIndex = nodeIndex.indexOf(selfId);
+        this.trace = trace;
+        this.state = state;
+
+        int stripeCount = Math.min(RIPConfig.ROUTING_STRIPES, Math.max(1, numNodes / MIN_STRIPE_SIZE));
+        this.stripeSize = Math.max(1, (numNodes + stripeCount - 1) / stripeCount);
+        this.stripes = new StampedLock[Math.max(1, (numNodes + stripeSize - 1) / stripeSize)];
+        for (int stripe = 0; stripe < stripes.length; stripe++) {
+            this.stripes[stripe] = new StampedLock();
+        }
+
+        this.neighborIds = neighborIds.clone();
+        this.neighborIndexes = new int[neighborIds.length];
+        this.linkCosts = new int[neighborIds.length];
+        this.neighborRows = new SparseCostRow[neighborIds.length][stripes.length];
+        for (int slot = 0; slot < neighborIds.length; slot++) {
+            this.neighborIndexes[slot] = nodeIndex.indexOf(neighborIds[slot]);
+            this.linkCosts[slot] = (linkCosts != null) ? linkCosts[slot] : neighborCosts.get(neighborIds[slot]);
+            for (int stripe = 0; stripe < stripes.length; stripe++) {
+                this.neighborRows[slot][stripe] = new SparseCostRow();
+            }
+        }
+
+        this.distanceVector = new int[numNodes];
+        this.nextHopSlot = new int[numNodes];
+        Arrays.fill(this.distanceVector, RIPConfig.INFINITY);
+        Arrays.fill(this.nextHopSlot, NO_NEXT_HOP);
+
+        if (state != null && state.restored()) {
+            restore(state);
+        }
+
+        // Sem vetores dos vizinhos, o resultado sao apenas os enlaces diretos
+        recomputeAll();
+    }
+
+    static short[] sortedIds(Map<Short, Integer> neighborCosts) {
+        short[] ids = new short[neighborCosts.size()];
+        int slot = 0;
+        for (short neighborId : neighborCosts.keySet()) {
+            ids[slot++] = neighborId;
+        }
+        Arrays.sort(ids);
+        return ids;
+    }
+
+    // Custos dos enlaces e vetores dos vizinhos gravados antes do reinicio
+    private void restore(RoutingStateFile state) {
+        for (int slot = 0; slot < neighborIds.length; slot++) {
+            linkCosts[slot] = state.linkCost(slot);
+            if (linkCosts[slot] == RIPConfig.INFINITY) {
+                continue;
+            }
+            for (int dest = 0; dest < numNodes; dest++) {
+                int cost = state.neighborCost(slot, dest);
+                if (cost != RIPConfig.INFINITY) {
+                    neighborRows[slot][stripeOf(dest)].put(dest, cost);
+                }
+            }
+        }
+    }
+
+    int numNodes() {
+        return numNodes;
+    }
+
+    int neighborCount() {
+        return neighborIds.length;
+    }
+
+    short neighborId(int slot) {
+        return neighborIds[slot];
+    }
+
+    // Retorna a posiçao do vizinho nos arrays de vizinhos, ou -1 se nao for vizinho
+    int neighborSlot(short id) {
+        int slot = Arrays.binarySearch(neighborIds, id);
+        return (slot >= 0) ? slot : -1;
+    }
+
+    // Os custos dos enlaces so mudam com todas as faixas travadas: basta validar a primeira
+    int linkCost(int slot) {
+        StampedLock lock = stripes[0];
+        long stamp = lock.tryOptimisticRead();
+        int cost = linkCosts[slot];
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                cost = linkCosts[slot];
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return cost;
+    }
+
+    // Slot do vizinho usado para chegar a 'dest', ou NO_NEXT_HOP
+    int nextHop(int dest) {
+        StampedLock lock = stripes[stripeOf(dest)];
+        long stamp = lock.tryOptimisticRead();
+        int slot = nextHopSlot[dest];
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                slot = nextHopSlot[dest];
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return slot;
+    }
+
+    // Slot do vizinho usado para chegar ao no 'destId', ou NO_NEXT_HOP (tambem para IDs
+    // fora da topologia). Usa o indice da propria tabela: quem guarda so a tabela tem
+    // indice e rotas sempre da mesma topologia, mesmo durante uma recarga.
+    int nextHopTo(short destId) {
+        int dest = nodeIndex.indexOf(destId);
+        return (dest >= 0) ? nextHop(dest) : NO_NEXT_HOP;
+    }
+
+    // Custo anunciado ao vizinho 'slot' para 'dest', com split horizon e poisoned
+    // reverse: rotas que passam pelo proprio vizinho sao anunciadas como infinitas
+    static int advertisedCost(int[] costs, int[] nextHops, int slot, int dest) {
+        return (nextHops[dest] == slot) ? RIPConfig.INFINITY : costs[dest];
+    }
+
+    // Copia o vetor de distancias e os proximos saltos ('nextHops' pode ser nulo).
+    // Cada faixa e lida de forma otimista e, se for alterada durante a copia, relida
+    // com a trava de leitura, que so espera a atualizaçao daquela faixa terminar.
+    void copyRoutes(int[] costs, int[] nextHops) {
+        for (int stripe = 0; stripe < stripes.length; stripe++) {
+            int from = stripe * stripeSize;
+            int length = Math.min(numNodes, from + stripeSize) - from;
+            StampedLock lock = stripes[stripe];
+            long stamp = lock.tryOptimisticRead();
+            copyStripe(from, length, costs, nextHops);
+            if (!lock.validate(stamp)) {
+                stamp = lock.readLock();
+                try {
+                    copyStripe(from, length, costs, nextHops);
+                } finally {
+                    lock.unlockRead(stamp);
+                }
+            }
+        }
+    }
+
+    private void copyStripe(int from, int length, int[] costs, int[] nextHops) {
+        System.arraycopy(distanceVector, from, costs, from, length);
+        if (nextHops != null) {
+            System.arraycopy(nextHopSlot, from, nextHops, from, length);
+        }
+    }
+
+    // Copia do vetor de distancias atual
+    int[] distanceVector() {
+        int[] costs = new int[numNodes];
+        copyRoutes(costs, null);
+        return costs;
+    }
+
+    int lastRecomputedColumns() {
+        return lastRecomputedColumns;
+    }
+
+    long totalRecomputedColumns() {
+        return totalRecomputedColumns.get();
+    }
+
+    // Altera o custo do enlace para um vizinho. Um enlace infinito invalida o
+    // vetor do vizinho. Como todos os destinos podem ser afetados, reavalia o vetor inteiro.
+    boolean setLinkCost(int slot, int cost) {
+        return setLinkCosts(new int[] {slot}, new int[] {cost}, 1);
+    }
+
+    // Altera o custo de varios enlaces (pares slots[i], costs[i]) com um unico recalculo
+    boolean setLinkCosts(int[] slots, int[] costs, int count) {
+        long[] stamps = lockAll();
+        try {
+            for (int i = 0; i < count; i++) {
+                if (linkCosts[slots[i]] != costs[i]) {
+                    trace.record(RIPTrace.LINK_COST, neighborIds[slots[i]], nodeIndex.idAt(selfIndex),
+                            linkCosts[slots[i]], costs[i]);
+                }
+                linkCosts[slots[i]] = costs[i];
+                if (state != null) {
+                    state.setLinkCost(slots[i], costs[i]);
+                }
+                if (costs[i] == RIPConfig.INFINITY) {
+                    clearNeighborRows(slots[i]);
+                }
+            }
+            return recomputeAll();
+        } finally {
+            unlockAll(stamps);
+        }
+    }
+
+    // Copia os vetores dos vizinhos de 'previous' (tabela da topologia anterior) que
+    // continuam vizinhos, traduzindo os destinos pelo ID; destinos que sairam da
+    // topologia ficam de fora, e os que entraram ficam infinitos ate o vizinho anunciar.
+    // Chamado antes de a tabela ser publicada. Retorna true se alguma rota mudou.
+    boolean migrateFrom(RoutingTable previous) {
+        int[][] table = previous.snapshot();
+        long[] stamps = lockAll();
+        try {
+            for (int oldSlot = 0; oldSlot < previous.neighborIds.length; oldSlot++) {
+                int slot = neighborSlot(previous.neighborIds[oldSlot]);
+                if (slot < 0 || linkCosts[slot] == RIPConfig.INFINITY) {
+                    continue;
+                }
+                int[] row = table[oldSlot + 1];
+                for (int oldDest = 0; oldDest < row.length; oldDest++) {
+                    int dest = nodeIndex.indexOf(previous.nodeIndex.idAt(oldDest));
+                    if (row[oldDest] != RIPConfig.INFINITY && dest >= 0) {
+                        putNeighborCost(neighborRows[slot][stripeOf(dest)], slot, dest, row[oldDest]);
+                    }
+                }
+            }
+            return recomputeAll();
+        } finally {
+            unlockAll(stamps);
+        }
+    }
+
+    // Descarta o vetor do vizinho (ex.: restaurado e nao confirmado) sem mudar o enlace
+    boolean clearNeighbor(int slot) {
+        long[] stamps = lockAll();
+        try {
+            clearNeighborRows(slot);
+            return recomputeAll();
+        } finally {
+            unlockAll(stamps);
+        }
+    }
+
+    // Chamado com todas as faixas travadas
+    private void clearNeighborRows(int slot) {
+        for (SparseCostRow row : neighborRows[slot]) {
+            row.clear();
+        }
+        if (state != null) {
+            state.clearNeighbor(slot);
+        }
+    }
+
+    // Aplica um segmento de vetor recebido do vizinho e reavalia so as entradas que mudaram.
+    // Retorna true se alguma rota propria (custo ou proximo salto) mudou. Vetores de um vizinho cujo
+    // enlace e infinito sao ignorados.
+    boolean applyNeighborVector(int slot, RIPMessage message) {
+        int offset = message.offset();
+        int columns = message.columns();
+        int recomputed = 0;
+        boolean changed = false;
+
+        // Uma faixa travada de cada vez
+        int i = 0;
+        while (i < columns) {
+            int stripe = stripeOf(offset + i);
+            int end = Math.min(columns, (stripe + 1) * stripeSize - offset);
+            StampedLock lock = stripes[stripe];
+            long stamp = lock.writeLock();
+            try {
+                if (linkCosts[slot] == RIPConfig.INFINITY) {
+                    return changed; // Enlace rompido durante a aplicaçao
+                }
+                SparseCostRow row = neighborRows[slot][stripe];
+                for (; i < end; i++) {
+                    int dest = offset + i;
+                    int cost = message.cost(0, i);
+                    if (!putNeighborCost(row, slot, dest, cost) || dest == neighborIndexes[slot]) {
+                        continue; // Entrada igual, ou a distancia do vizinho a ele mesmo
+                    }
+                    changed |= updateColumn(dest, slot);
+                    recomputed++;
+                }
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        recordRecomputed(recomputed);
+        return changed;
+    }
+
+    // Aplica uma atualizaçao incremental (pares destino, custo) diretamente na linha do vizinho
+    boolean applyNeighborDelta(int slot, RIPMessage message) {
+        int entries = message.deltaEntries();
+        int recomputed = 0;
+        boolean changed = false;
+
+        // Entradas consecutivas da mesma faixa sao aplicadas com uma unica trava
+        int i = 0;
+        while (i < entries) {
+            int stripe = stripeOf(message.deltaDestination(i));
+            StampedLock lock = stripes[stripe];
+            long stamp = lock.writeLock();
+            try {
+                if (linkCosts[slot] == RIPConfig.INFINITY) {
+                    return changed; // Enlace rompido durante a aplicaçao
+                }
+                SparseCostRow row = neighborRows[slot][stripe];
+                for (; i < entries && stripeOf(message.deltaDestination(i)) == stripe; i++) {
+                    int dest = message.deltaDestination(i);
+                    int cost = message.deltaCost(i);
+                    if (!putNeighborCost(row, slot, dest, cost) || dest == neighborIndexes[slot]) {
+                        continue;
+                    }
+                    changed |= updateColumn(dest, slot);
+                    recomputed++;
+                }
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        recordRecomputed(recomputed);
+        return changed;
+    }
+
+    // Grava a entrada do vizinho e retorna true se ela mudou
+    private boolean putNeighborCost(SparseCostRow row, int slot, int dest, int cost) {
+        int previous = row.put(dest, cost);
+        if (previous == cost) {
+            return false;
+        }
+        trace.record(RIPTrace.NEIGHBOR_COST, neighborIds[slot], nodeIndex.idAt(dest), previous, cost);
+        if (state != null) {
+            state.setNeighborCost(slot, dest, cost);
+        }
+        return true;
+    }
+
+    private void recordRecomputed(int recomputed) {
+        lastRecomputedColumns = recomputed;
+        totalRecomputedColumns.addAndGet(recomputed);
+    }
+
+    private int stripeOf(int dest) {
+        return dest / stripeSize;
+    }
+
+    // Trava todas as faixas, sempre na mesma ordem
+    private long[] lockAll() {
+        long[] stamps = new long[stripes.length];
+        for (int stripe = 0; stripe < stripes.length; stripe++) {
+            stamps[stripe] = stripes[stripe].writeLock();
+        }
+        return stamps;
+    }
+
+    private void unlockAll(long[] stamps) {
+        for (int stripe = stripes.length - 1; stripe >= 0; stripe--) {
+            stripes[stripe].unlockWrite(stamps[stripe]);
+        }
+    }
+
+    // Reavalia um destino apos a mudança da entrada do vizinho 'slot'.
+    // Chamado com a faixa de 'dest' travada.
+    private boolean updateColumn(int dest, int slot) {
+        if (dest == selfIndex) {
+            return false;
+        }
+
+        int viaNeighbor = costVia(slot, dest);
+        int current = distanceVector[dest];
+
+        if (nextHopSlot[dest] == slot) {
+            // O caminho atual passa por este vizinho
+            if (viaNeighbor != RIPConfig.INFINITY && viaNeighbor <= current) {
+                return setDistance(dest, viaNeighbor, slot);
+            }
+            // Piorou: outro vizinho pode ser melhor agora
+            return recomputeColumn(dest);
+        }
+
+        if (viaNeighbor != RIPConfig.INFINITY && (current == RIPConfig.INFINITY || viaNeighbor < current)) {
+            return setDistance(dest, viaNeighbor, slot);
+        }
+        return false;
+    }
+
+    // Chamado com todas as faixas travadas (ou durante a construçao)
+    private boolean recomputeAll() {
+        boolean changed = false;
+        for (int dest = 0; dest < numNodes; dest++) {
+            changed |= recomputeColumn(dest);
+        }
+        recordRecomputed(numNodes);
+        return changed;
+    }
+
+    // Varre todos os vizinhos para um destino (Bellman-Ford)
+    private boolean recomputeColumn(int dest) {
+        // Custo para si mesmo e sempre 0
+        if (dest == selfIndex) {
+            return setDistance(dest, 0, NO_NEXT_HOP);
+        }
+
+        int minCost = RIPConfig.INFINITY;
+        int bestSlot = NO_NEXT_HOP;
+
+        for (int slot = 0; slot < neighborIds.length; slot++) {
+            int totalCost = costVia(slot, dest);
+            if (totalCost != RIPConfig.INFINITY && (minCost == RIPConfig.INFINITY || totalCost < minCost)) {
+                minCost = totalCost;
+                bestSlot = slot;
+            }
+        }
+
+        return setDistance(dest, minCost, bestSlot);
+    }
+
+    // Custo ate 'dest' passando pelo vizinho 'slot'
+    private int costVia(int slot, int dest) {
+        int costToNeighbor = linkCosts[slot];
+        if (costToNeighbor == RIPConfig.INFINITY) {
+            return RIPConfig.INFINITY; // Enlace para este vizinho esta rompido
+        }
+
+        int costFromNeighborToDest = (dest == neighborIndexes[slot]) ? 0
+                : neighborRows[slot][stripeOf(dest)].get(dest);
+        if (costFromNeighborToDest == RIPConfig.INFINITY) {
+            return RIPConfig.INFINITY;
+        }
+
+        // Caminhos que atingem a metrica maxima sao inalcançaveis
+        long totalCost = (long) costToNeighbor + costFromNeighborToDest;
+        return (totalCost >= RIPConfig.MAX_METRIC) ? RIPConfig.INFINITY : (int) totalCost;
+    }
+
+    // Retorna true se o custo ou o proximo salto mudou. Uma troca de proximo salto com o
+    // mesmo custo tambem precisa ser anunciada: com o reverso envenenado, o vizinho antigo
+    // passa a receber o custo real e o novo passa a receber infinito.
+    private boolean setDistance(int dest, int cost, int slot) {
+        int nextHop = (cost == RIPConfig.INFINITY) ? NO_NEXT_HOP : slot;
+        if (nextHopSlot[dest] == nextHop && distanceVector[dest] == cost) {
+            return false;
+        }
+        trace.record(RIPTrace.ROUTE, (nextHop == NO_NEXT_HOP) ? -1 : neighborIds[nextHop], nodeIndex.idAt(dest),
+                distanceVector[dest], cost);
+        nextHopSlot[dest] = nextHop;
+        distanceVector[dest] = cost;
+        return true;
+    }
+
+    // Expande a tabela de distancias em forma densa:
+    // Linha 0: vetor do proprio no
+    // Linhas 1..N: vetores dos N vizinhos
+    // Cada faixa e copiada com a sua trava de leitura, uma de cada vez.
+    int[][] snapshot() {
+        int[][] table = new int[neighborIds.length + 1][numNodes];
+        for (int slot = 0; slot < neighborIds.length; slot++) {
+            Arrays.fill(table[slot + 1], RIPConfig.INFINITY);
+        }
+        for (int stripe = 0; stripe < stripes.length; stripe++) {
+            int from = stripe * stripeSize;
+            StampedLock lock = stripes[stripe];
+            long stamp = lock.readLock();
+            try {
+                System.arraycopy(distanceVector, from, table[0], from, Math.min(numNodes, from + stripeSize) - from);
+                for (int slot = 0; slot < neighborIds.length; slot++) {
+                    neighborRows[slot][stripe].copyEntriesTo(table[slot + 1], numNodes);
+                }
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return table;
+    }
+}
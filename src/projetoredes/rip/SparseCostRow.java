@@ -0,0 +1,142 @@
+package projetoredes.rip;
+
+import java.util.Arrays;
+
+// Vetor de distancias esparso: guarda apenas os destinos alcançaveis (custo
+// diferente de INFINITY) em uma tabela hash de enderecamento aberto com chaves
+// e valores primitivos. A memoria cresce com o numero de destinos alcançaveis,
+// nao com o numero total de nos.
+public final class SparseCostRow {
+    private static final int EMPTY = -1;
+    private static final int MIN_CAPACITY = 8;
+
+    private int[] keys;
+    private int[] values;
+    private int size;
+
+    public SparseCostRow() {
+        this(MIN_CAPACITY);
+    }
+
+    public SparseCostRow(int expectedEntries) {
+        int capacity = MIN_CAPACITY;
+        while (capacity < expectedEntries * 2) {
+            capacity <<= 1;
+        }
+        allocate(capacity);
+    }
+
+    public int get(int index) {
+        int mask = keys.length - 1;
+        for (int slot = hash(index) & mask; ; slot = (slot + 1) & mask) {
+            int key = keys[slot];
+            if (key == index) {
+                return values[slot];
+            }
+            if (key == EMPTY) {
+                return RIPConfig.INFINITY;
+            }
+        }
+    }
+
+    // Define o custo para o destino (INFINITY remove a entrada) e retorna o custo anterior
+    public int put(int index, int cost) {
+        if (cost == RIPConfig.INFINITY) {
+            return remove(index);
+        }
+
+        int mask = keys.length - 1;
+        for (int slot = hash(index) & mask; ; slot = (slot + 1) & mask) {
+            int key = keys[slot];
+            if (key == index) {
+                int previous = values[slot];
+                values[slot] = cost;
+                return previous;
+            }
+            if (key == EMPTY) {
+                keys[slot] = index;
+                values[slot] = cost;
+                if (++size * 2 > keys.length) {
+                    rehash(keys.length << 1);
+                }
+                return RIPConfig.INFINITY;
+            }
+        }
+    }
+
+    public void clear() {
+        if (size > 0) {
+            Arrays.fill(keys, EMPTY);
+            size = 0;
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // Expande para um vetor denso de 'length' posiçoes
+    public void copyTo(int[] dense, int length) {
+        Arrays.fill(dense, 0, length, RIPConfig.INFINITY);
+        copyEntriesTo(dense, length);
+    }
+
+    // Escreve apenas as entradas presentes (abaixo de 'length') no vetor denso
+    public void copyEntriesTo(int[] dense, int length) {
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != EMPTY && keys[slot] < length) {
+                dense[keys[slot]] = values[slot];
+            }
+        }
+    }
+
+    private int remove(int index) {
+        int mask = keys.length - 1;
+        int slot = hash(index) & mask;
+        while (keys[slot] != index) {
+            if (keys[slot] == EMPTY) {
+                return RIPConfig.INFINITY;
+            }
+            slot = (slot + 1) & mask;
+        }
+        int previous = values[slot];
+
+        // Remoçao com deslocamento para tras, preservando as sequencias de sondagem
+        int free = slot;
+        for (int next = (free + 1) & mask; keys[next] != EMPTY; next = (next + 1) & mask) {
+            int home = hash(keys[next]) & mask;
+            boolean movable = (free <= next) ? (home <= free || home > next) : (home <= free && home > next);
+            if (movable) {
+                keys[free] = keys[next];
+                values[free] = values[next];
+                free = next;
+            }
+        }
+        keys[free] = EMPTY;
+        size--;
+        return previous;
+    }
+
+    private void rehash(int capacity) {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(capacity);
+        for (int slot = 0; slot < oldKeys.length; slot++) {
+            if (oldKeys[slot] != EMPTY) {
+                put(oldKeys[slot], oldValues[slot]);
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new int[capacity];
+        Arrays.fill(keys, EMPTY);
+        size = 0;
+    }
+
+    private static int hash(int index) {
+        int h = index * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,329 @@
+package projetoredes.rip;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Map;
+
+// Topologia da rede (ripids.conf) imutavel e compacta, no formato CSR (compressed
+// sparse row): os enlaces de cada no ficam contiguos em 'neighbors' e 'costs', na
+// faixa [offsets[i], offsets[i + 1]) do no de indice i, em ordem crescente de vizinho.
+// Os nos sao identificados pelo indice do NodeIndex (ordem crescente de ID), o mesmo
+// usado nos vetores de distancia. Cada enlace A-B aparece nas duas linhas.
+//
+// Sem mapas nem objetos por enlace: uma instancia pode ser compartilhada por todos os
+// nos (e pelo gerente) de um processo, e so e trocada inteira em uma recarga.
+public final class TopologyGraph {
+
+    // Retornado por linkCost quando os nos nao sao vizinhos
+    public static final int NO_LINK = Integer.MIN_VALUE;
+
+    private final NodeIndex nodeIndex;
+    private final int[] offsets;   // nos + 1
+    private final int[] neighbors; // Indice do vizinho
+    private final int[] costs;
+
+    private TopologyGraph(NodeIndex nodeIndex, int[] offsets, int[] neighbors, int[] costs) {
+        this.nodeIndex = nodeIndex;
+        this.offsets = offsets;
+        this.neighbors = neighbors;
+        this.costs = costs;
+    }
+
+    // Lê um arquivo no formato do ripids.conf: linhas "<id1> <id2> <custo>", linhas
+    // vazias e comentarios iniciados por '#'. Se o mesmo enlace aparecer mais de uma
+    // vez, vale a ultima linha. O arquivo e mapeado em memoria e lido byte a byte,
+    // sem criar uma String por linha.
+    public static TopologyGraph load(String path) throws IOException {
+        return load(Path.of(path));
+    }
+
+    public static TopologyGraph load(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Arquivo de topologia grande demais: " + path);
+            }
+            return parse(channel.map(FileChannel.MapMode.READ_ONLY, 0, size), path.toString());
+        } catch (NoSuchFileException e) {
+            throw new IOException("Arquivo de topologia não encontrado: " + path, e);
+        }
+    }
+
+    // Lê a topologia do conteudo entre position e limit de 'data'; 'source' so aparece nos erros
+    public static TopologyGraph parse(ByteBuffer data, String source) throws IOException {
+        Parser parser = new Parser(data, source);
+        Builder builder = new Builder();
+        while (parser.nextLine()) {
+            int id1 = parser.nextId();
+            int id2 = parser.nextId();
+            long cost = parser.nextNumber();
+            if (!parser.atEndOfLine()) {
+                throw parser.error("esperados 3 campos (<id1> <id2> <custo>)");
+            }
+            if (cost < Integer.MIN_VALUE || cost > Integer.MAX_VALUE) {
+                throw parser.error("custo fora do intervalo");
+            }
+            if (id1 == id2) {
+                throw parser.error("enlace do nó " + id1 + " para ele mesmo");
+            }
+            builder.add(id1, id2, (int) cost);
+            builder.add(id2, id1, (int) cost);
+        }
+        if (builder.size == 0) {
+            throw new IOException(source + ": topologia sem enlaces");
+        }
+        return builder.build();
+    }
+
+    // Converte uma topologia em mapas (ex.: montada por um simulador ou benchmark).
+    // Cada sentido do enlace e lido da linha do seu no.
+    public static TopologyGraph of(Map<Short, Map<Short, Integer>> topology) {
+        Builder builder = new Builder();
+        for (Map.Entry<Short, Map<Short, Integer>> node : topology.entrySet()) {
+            builder.node(node.getKey());
+            for (Map.Entry<Short, Integer> link : node.getValue().entrySet()) {
+                builder.add(node.getKey(), link.getKey(), link.getValue());
+            }
+        }
+        return builder.build();
+    }
+
+    public NodeIndex nodeIndex() {
+        return nodeIndex;
+    }
+
+    public int nodeCount() {
+        return nodeIndex.size();
+    }
+
+    // Enlaces (cada par A-B conta uma vez)
+    public int linkCount() {
+        return neighbors.length / 2;
+    }
+
+    public boolean contains(short id) {
+        return nodeIndex.indexOf(id) >= 0;
+    }
+
+    // Enlaces do no de indice 'index': posiçoes [linkStart(index), linkEnd(index))
+    public int linkStart(int index) {
+        return offsets[index];
+    }
+
+    public int linkEnd(int index) {
+        return offsets[index + 1];
+    }
+
+    // Indice do vizinho e custo do enlace na posiçao 'position'
+    public int neighborAt(int position) {
+        return neighbors[position];
+    }
+
+    public int costAt(int position) {
+        return costs[position];
+    }
+
+    // Posiçao do enlace id1 -> id2, ou -1 se nao existir (busca binaria na linha de id1)
+    public int linkPosition(short id1, short id2) {
+        int from = nodeIndex.indexOf(id1);
+        int to = nodeIndex.indexOf(id2);
+        if (from < 0 || to < 0) {
+            return -1;
+        }
+        int position = Arrays.binarySearch(neighbors, offsets[from], offsets[from + 1], to);
+        return (position >= 0) ? position : -1;
+    }
+
+    // Custo do enlace id1 - id2, ou NO_LINK
+    public int linkCost(short id1, short id2) {
+        int position = linkPosition(id1, id2);
+        return (position >= 0) ? costs[position] : NO_LINK;
+    }
+
+    // IDs dos vizinhos de 'id', em ordem crescente (vazio se o no nao existir)
+    public short[] neighborIds(short id) {
+        int index = nodeIndex.indexOf(id);
+        if (index < 0) {
+            return new short[0];
+        }
+        short[] ids = new short[offsets[index + 1] - offsets[index]];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = nodeIndex.idAt(neighbors[offsets[index] + i]);
+        }
+        return ids;
+    }
+
+    // Custos dos enlaces de 'id', na ordem de neighborIds
+    public int[] neighborCosts(short id) {
+        int index = nodeIndex.indexOf(id);
+        return (index < 0) ? new int[0] : Arrays.copyOfRange(costs, offsets[index], offsets[index + 1]);
+    }
+
+    // Copia dos custos de todos os enlaces, indexada pela posiçao (para quem precisa
+    // altera-los, como um simulador, sem mudar a topologia compartilhada)
+    public int[] costsCopy() {
+        return costs.clone();
+    }
+
+    // Acumula os enlaces (em um sentido) em arrays primitivos e monta o CSR
+    private static final class Builder {
+        private final boolean[] present = new boolean[Short.MAX_VALUE + 1];
+        private int nodes;
+        private int[] from = new int[1024];
+        private int[] to = new int[1024];
+        private int[] cost = new int[1024];
+        private int size;
+
+        void node(int id) {
+            if (id < 0 || id > Short.MAX_VALUE) {
+                throw new IllegalArgumentException("ID de nó inválido: " + id);
+            }
+            if (!present[id]) {
+                present[id] = true;
+                nodes++;
+            }
+        }
+
+        void add(int id1, int id2, int linkCost) {
+            node(id1);
+            node(id2);
+            if (size == from.length) {
+                from = Arrays.copyOf(from, size * 2);
+                to = Arrays.copyOf(to, size * 2);
+                cost = Arrays.copyOf(cost, size * 2);
+            }
+            from[size] = id1;
+            to[size] = id2;
+            cost[size++] = linkCost;
+        }
+
+        TopologyGraph build() {
+            short[] ids = new short[nodes];
+            int count = 0;
+            for (int id = 0; id < present.length; id++) {
+                if (present[id]) {
+                    ids[count++] = (short) id;
+                }
+            }
+            NodeIndex nodeIndex = new NodeIndex(ids);
+
+            // Ordena por (origem, destino, ordem de leitura): a ultima ocorrencia de
+            // cada par fica no fim do seu grupo. Indices e ordem cabem em um long.
+            long[] keys = new long[size];
+            for (int i = 0; i < size; i++) {
+                keys[i] = ((long) nodeIndex.indexOf((short) from[i]) << 47)
+                        | ((long) nodeIndex.indexOf((short) to[i]) << 32) | i;
+            }
+            Arrays.sort(keys);
+
+            int[] offsets = new int[ids.length + 1];
+            int[] neighbors = new int[size];
+            int[] costs = new int[size];
+            int links = 0;
+            for (int i = 0; i < size; i++) {
+                if (i + 1 < size && (keys[i + 1] >>> 32) == (keys[i] >>> 32)) {
+                    continue; // Par repetido: fica a ultima ocorrencia
+                }
+                offsets[(int) (keys[i] >>> 47) + 1]++;
+                neighbors[links] = (int) (keys[i] >>> 32) & 0x7FFF;
+                costs[links++] = cost[(int) keys[i]];
+            }
+            for (int index = 0; index < ids.length; index++) {
+                offsets[index + 1] += offsets[index];
+            }
+            return new TopologyGraph(nodeIndex, offsets, Arrays.copyOf(neighbors, links), Arrays.copyOf(costs, links));
+        }
+    }
+
+    // Leitura de numeros e fim de linha direto dos bytes (ASCII)
+    private static final class Parser {
+        private final ByteBuffer data;
+        private final String source;
+        private int position;
+        private int lineEnd;
+        private int nextLine; // Inicio da proxima linha
+        private int line;
+
+        Parser(ByteBuffer data, String source) {
+            this.data = data;
+            this.source = source;
+            this.nextLine = data.position();
+        }
+
+        // Avança para a proxima linha com conteudo (pula vazias e comentarios)
+        boolean nextLine() {
+            int limit = data.limit();
+            while (nextLine < limit) {
+                position = nextLine;
+                lineEnd = position;
+                while (lineEnd < limit && data.get(lineEnd) != '\n') {
+                    lineEnd++;
+                }
+                nextLine = lineEnd + 1;
+                line++;
+                skipSpaces();
+                if (position < lineEnd && data.get(position) != '#') {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        int nextId() throws IOException {
+            long id = nextNumber();
+            if (id < 0 || id > Short.MAX_VALUE) {
+                throw error("ID de nó inválido " + id);
+            }
+            return (int) id;
+        }
+
+        long nextNumber() throws IOException {
+            skipSpaces();
+            boolean negative = position < lineEnd && data.get(position) == '-';
+            if (negative) {
+                position++;
+            }
+            int start = position;
+            long value = 0;
+            while (position < lineEnd) {
+                byte b = data.get(position);
+                if (b < '0' || b > '9') {
+                    break;
+                }
+                value = value * 10 + (b - '0');
+                if (value > Integer.MAX_VALUE + 1L) {
+                    throw error("número grande demais");
+                }
+                position++;
+            }
+            if (position == start || (position < lineEnd && !isSpace(data.get(position)))) {
+                throw error("esperados 3 campos numéricos (<id1> <id2> <custo>)");
+            }
+            return negative ? -value : value;
+        }
+
+        boolean atEndOfLine() {
+            skipSpaces();
+            return position >= lineEnd;
+        }
+
+        private void skipSpaces() {
+            while (position < lineEnd && isSpace(data.get(position))) {
+                position++;
+            }
+        }
+
+        private static boolean isSpace(byte b) {
+            return b == ' ' || b == '\t' || b == '\r' || b == '\f';
+        }
+
+        IOException error(String message) {
+            return new IOException(source + ", linha " + line + ": " + message);
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package projetoredes.sim;
+
+import projetoredes.unicast.UnicastProtocol;
+import projetoredes.unicast.UnicastServiceFactory;
+import projetoredes.unicast.UnicastServiceInterface;
+import projetoredes.unicast.UnicastServiceUserInterface;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Rede simulada em memoria, no lugar dos sockets UDP do UnicastProtocol.
+//
+// Cada entidade conectada recebe um SimulatedTransport (UnicastServiceInterface).
+// As PDUs enviadas sao copiadas e entregues por tarefas do VirtualScheduler,
+// aplicando o perfil de enlace: latencia, perda, reordenaçao e banda do remetente.
+// Toda a aleatoriedade vem de uma semente, entao a simulaçao e reproduzivel.
+public class SimulatedNetwork {
+
+    // Perfil aplicado a todos os enlaces.
+    // bandwidthBytesPerSecond <= 0 indica banda ilimitada.
+    public record LinkProfile(long latencyMs, double lossRate, double reorderRate, long bandwidthBytesPerSecond) {
+        public LinkProfile {
+            if (latencyMs < 0 || lossRate < 0 || lossRate > 1 || reorderRate < 0 || reorderRate > 1) {
+                throw new IllegalArgumentException("Perfil de enlace inválido");
+            }
+        }
+    }
+
+    private final VirtualScheduler scheduler;
+    private final LinkProfile profile;
+    private final boolean binary;
+    private final Random random;
+    private final Map<Short, SimulatedTransport> endpoints = new HashMap<>();
+
+    // Contadores (desde o ultimo resetCounters)
+    private long sentMessages;
+    private long sentBytes;
+    private long deliveredMessages;
+    private long droppedMessages;     // Perdidas pelo perfil de enlace
+    private long undeliverableMessages; // Destino sem entidade conectada
+
+    // 'binary' indica se as entidades negociam o formato binario (como em WireFormat.AUTO
+    // entre implementaçoes atuais) ou ficam no formato texto
+    public SimulatedNetwork(VirtualScheduler scheduler, LinkProfile profile, boolean binary, long seed) {
+        this.scheduler = scheduler;
+        this.profile = profile;
+        this.binary = binary;
+        this.random = new Random(seed);
+    }
+
+    // Fabrica de transporte para a entidade 'id', no formato esperado pelo RIPNode
+    public UnicastServiceFactory factory(short id) {
+        return user -> attach(id, user);
+    }
+
+    // Um ID cujo transporte ja foi fechado pode ser conectado de novo (reinicio do no)
+    public UnicastServiceInterface attach(short id, UnicastServiceUserInterface user) {
+        SimulatedTransport existing = endpoints.get(id);
+        if (existing != null && !existing.closed) {
+            throw new IllegalArgumentException("ID " + id + " já conectado à rede simulada.");
+        }
+        SimulatedTransport transport = new SimulatedTransport(id, user);
+        endpoints.put(id, transport);
+        return transport;
+    }
+
+    // Envia uma PDU em nome de 'sourceId', que nao precisa estar conectado
+    // (usado, por exemplo, para injetar comandos do gerente)
+    public boolean send(short sourceId, short destinationId, ByteBuffer data) {
+        if (data.remaining() > UnicastProtocol.MAX_PAYLOAD_SIZE) {
+            System.err.println("ERRO: Mensagem muito longa para ser enviada.");
+            return false;
+        }
+
+        byte[] payload = new byte[data.remaining()];
+        data.get(payload);
+        sentMessages++;
+        sentBytes += payload.length;
+
+        // A PDU ocupa a banda do remetente mesmo que se perca no caminho
+        long departure = scheduler.nowNanos();
+        SimulatedTransport sender = endpoints.get(sourceId);
+        if (sender != null && profile.bandwidthBytesPerSecond() > 0) {
+            long transmission = TimeUnit.SECONDS.toNanos(payload.length) / profile.bandwidthBytesPerSecond();
+            sender.linkFreeAtNanos = Math.max(sender.linkFreeAtNanos, departure) + transmission;
+            departure = sender.linkFreeAtNanos;
+        }
+
+        if (profile.lossRate() > 0 && random.nextDouble() < profile.lossRate()) {
+            droppedMessages++;
+            return true; // Como no UDP, a perda nao e percebida pelo remetente
+        }
+
+        long latency = TimeUnit.MILLISECONDS.toNanos(profile.latencyMs());
+        if (profile.reorderRate() > 0 && random.nextDouble() < profile.reorderRate()) {
+            // Atraso extra para que PDUs enviadas depois cheguem antes
+            latency += 1 + (long) (random.nextDouble() * Math.max(latency, TimeUnit.MILLISECONDS.toNanos(1)));
+        }
+
+        long delay = departure + latency - scheduler.nowNanos();
+        scheduler.schedule(() -> deliver(sourceId, destinationId, payload), delay, TimeUnit.NANOSECONDS);
+        return true;
+    }
+
+    private void deliver(short sourceId, short destinationId, byte[] payload) {
+        SimulatedTransport destination = endpoints.get(destinationId);
+        if (destination == null || destination.closed) {
+            undeliverableMessages++;
+            return;
+        }
+        deliveredMessages++;
+        destination.user.UPDataInd(sourceId, ByteBuffer.wrap(payload).asReadOnlyBuffer());
+    }
+
+    public long sentMessages() {
+        return sentMessages;
+    }
+
+    public long sentBytes() {
+        return sentBytes;
+    }
+
+    public long deliveredMessages() {
+        return deliveredMessages;
+    }
+
+    public long droppedMessages() {
+        return droppedMessages;
+    }
+
+    public long undeliverableMessages() {
+        return undeliverableMessages;
+    }
+
+    public void resetCounters() {
+        sentMessages = 0;
+        sentBytes = 0;
+        deliveredMessages = 0;
+        droppedMessages = 0;
+        undeliverableMessages = 0;
+    }
+
+    // Ponto de acesso de uma entidade a rede simulada
+    private final class SimulatedTransport implements UnicastServiceInterface, AutoCloseable {
+        private final short id;
+        private final UnicastServiceUserInterface user;
+        private long linkFreeAtNanos;
+        private boolean closed;
+
+        SimulatedTransport(short id, UnicastServiceUserInterface user) {
+            this.id = id;
+            this.user = user;
+        }
+
+        @Override
+        public boolean UPDataReq(short destinationId, String data) {
+            return UPDataReq(destinationId, ByteBuffer.wrap(data.getBytes(StandardCharsets.ISO_8859_1)));
+        }
+
+        @Override
+        public boolean UPDataReq(short destinationId, ByteBuffer data) {
+            return !closed && send(id, destinationId, data);
+        }
+
+        @Override
+        public boolean isBinaryCapable(short destinationId) {
+            return binary;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}
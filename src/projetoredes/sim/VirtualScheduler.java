@@ -0,0 +1,204 @@
+package projetoredes.sim;
+
+import java.time.Instant;
+import java.time.InstantSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RunnableScheduledFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+// Agendador sobre um relogio virtual, para simulaçoes deterministicas.
+//
+// Nenhuma tarefa roda sozinha: quem conduz a simulaçao chama runUntil(), que
+// executa as tarefas em ordem de instante (e, no mesmo instante, em ordem de
+// agendamento), avançando o relogio para o instante de cada uma. O tempo so
+// passa entre tarefas, entao uma execuçao com as mesmas entradas sempre produz
+// a mesma sequencia de eventos.
+//
+// Tambem serve de relogio (InstantSource) para os RIPNodes simulados.
+// Nao e thread-safe: deve ser usado apenas pela thread da simulaçao.
+public class VirtualScheduler extends AbstractExecutorService implements ScheduledExecutorService, InstantSource {
+
+    private final PriorityQueue<VirtualTask<?>> queue = new PriorityQueue<>();
+    private long nowNanos;
+    private long sequence;
+    private long executedTasks;
+    private boolean shutdown;
+
+    // Relogio
+
+    public long nowNanos() {
+        return nowNanos;
+    }
+
+    @Override
+    public long millis() {
+        return TimeUnit.NANOSECONDS.toMillis(nowNanos);
+    }
+
+    @Override
+    public Instant instant() {
+        return Instant.ofEpochSecond(0, nowNanos);
+    }
+
+    public long executedTasks() {
+        return executedTasks;
+    }
+
+    public int pendingTasks() {
+        return queue.size();
+    }
+
+    // Execuçao
+
+    // Executa, em ordem, todas as tarefas agendadas ate 'timeMs' (inclusive) e
+    // deixa o relogio em 'timeMs'. Tarefas agendadas durante a execuçao tambem
+    // rodam se cairem dentro do intervalo.
+    public void runUntil(long timeMs) {
+        long limit = TimeUnit.MILLISECONDS.toNanos(timeMs);
+        VirtualTask<?> task;
+        while ((task = queue.peek()) != null && task.time <= limit) {
+            queue.poll();
+            if (task.isCancelled()) {
+                continue;
+            }
+            nowNanos = Math.max(nowNanos, task.time);
+            executedTasks++;
+            task.run();
+        }
+        nowNanos = Math.max(nowNanos, limit);
+    }
+
+    // Agendamento
+
+    @Override
+    public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+        return enqueue(new VirtualTask<>(Executors.callable(command, null), triggerTime(delay, unit), 0));
+    }
+
+    @Override
+    public <V> ScheduledFuture<V> schedule(Callable<V> callable, long delay, TimeUnit unit) {
+        return enqueue(new VirtualTask<>(callable, triggerTime(delay, unit), 0));
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleAtFixedRate(Runnable command, long initialDelay, long period, TimeUnit unit) {
+        if (period <= 0) {
+            throw new IllegalArgumentException("Período deve ser positivo");
+        }
+        return enqueue(new VirtualTask<>(Executors.callable(command, null), triggerTime(initialDelay, unit),
+                unit.toNanos(period)));
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleWithFixedDelay(Runnable command, long initialDelay, long delay, TimeUnit unit) {
+        if (delay <= 0) {
+            throw new IllegalArgumentException("Atraso deve ser positivo");
+        }
+        // Sem tempo de execuçao no relogio virtual, atraso fixo e taxa fixa coincidem
+        return scheduleAtFixedRate(command, initialDelay, delay, unit);
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        schedule(command, 0, TimeUnit.NANOSECONDS);
+    }
+
+    private long triggerTime(long delay, TimeUnit unit) {
+        return nowNanos + Math.max(0, unit.toNanos(delay));
+    }
+
+    private <V> VirtualTask<V> enqueue(VirtualTask<V> task) {
+        if (shutdown) {
+            task.cancel(false);
+            return task;
+        }
+        queue.add(task);
+        return task;
+    }
+
+    // Ciclo de vida
+
+    @Override
+    public void shutdown() {
+        shutdown = true;
+        queue.clear();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        shutdown = true;
+        List<Runnable> pending = new ArrayList<>(queue);
+        queue.clear();
+        return pending;
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return shutdown;
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) {
+        return shutdown;
+    }
+
+    // Tarefa agendada. 'period' > 0 indica uma tarefa periodica.
+    private final class VirtualTask<V> extends FutureTask<V> implements RunnableScheduledFuture<V> {
+        private long time;
+        private final long period;
+        private final long order = sequence++;
+
+        VirtualTask(Callable<V> callable, long time, long period) {
+            super(callable);
+            this.time = time;
+            this.period = period;
+        }
+
+        @Override
+        public boolean isPeriodic() {
+            return period > 0;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(time - nowNanos, TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            if (other == this) {
+                return 0;
+            }
+            if (other instanceof VirtualTask<?> task) {
+                int byTime = Long.compare(time, task.time);
+                return (byTime != 0) ? byTime : Long.compare(order, task.order);
+            }
+            return Long.compare(getDelay(TimeUnit.NANOSECONDS), other.getDelay(TimeUnit.NANOSECONDS));
+        }
+
+        @Override
+        public void run() {
+            if (!isPeriodic()) {
+                super.run();
+            } else if (super.runAndReset() && !shutdown) {
+                // Como no ScheduledThreadPoolExecutor, uma exceçao encerra a repetiçao
+                time += period;
+                queue.add(this);
+            }
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package projetoredes.unicast;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+
+// Pool limitado de ByteBuffers diretos de tamanho fixo.
+// Quando o pool esta vazio um novo buffer e criado; quando esta cheio o buffer
+// devolvido e simplesmente descartado.
+public final class BufferPool {
+    private final int bufferSize;
+    private final ArrayBlockingQueue<ByteBuffer> freeBuffers;
+
+    public BufferPool(int bufferSize, int capacity) {
+        this.bufferSize = bufferSize;
+        this.freeBuffers = new ArrayBlockingQueue<>(capacity);
+    }
+
+    public ByteBuffer acquire() {
+        ByteBuffer buffer = freeBuffers.poll();
+        if (buffer == null) {
+            buffer = ByteBuffer.allocateDirect(bufferSize);
+        }
+        buffer.clear();
+        return buffer;
+    }
+
+    public void release(ByteBuffer buffer) {
+        if (buffer != null && buffer.capacity() == bufferSize) {
+            freeBuffers.offer(buffer);
+        }
+    }
+
+    public int bufferSize() {
+        return bufferSize;
+    }
+}
@@ -0,0 +1,11 @@
+package projetoredes.unicast;
+
+// Garantia de entrega escolhida a cada envio (UPDataReq)
+public enum Delivery {
+    // Um unico datagrama, sem confirmaçao (comportamento original)
+    BEST_EFFORT,
+    // Numerada, confirmada por ACK, retransmitida ate ser confirmada e entregue
+    // uma unica vez. So e possivel com destinos que falam o formato binario
+    // (UnicastServiceInterface.supportsReliable); com os demais o envio e recusado.
+    RELIABLE
+}
@@ -0,0 +1,34 @@
+package projetoredes.unicast;
+
+import java.util.Locale;
+
+// Como o UnicastProtocol entrega as PDUs recebidas ao usuario (UPDataInd).
+// Fora do modo INLINE o payload e copiado (ou, se remontado, repassado) e entregue
+// por outra thread, para que um usuario lento nao bloqueie a recepçao.
+public enum DispatchMode {
+    // Na propria thread do laço de eventos (comportamento original)
+    INLINE,
+    // Fila limitada para uma unica thread de entrega: mantem a ordem de chegada
+    WORKER,
+    // Uma fila limitada por thread, escolhida pelo remetente: mantem a ordem de cada
+    // remetente e entrega remetentes diferentes em paralelo
+    PER_SOURCE,
+    // Uma thread virtual por PDU, limitada pelo numero de entregas pendentes. Nao
+    // mantem a ordem; exige Java 21 (nas versoes anteriores usa WORKER)
+    VIRTUAL_THREADS;
+
+    // Pode ser alterado com -Dprojetoredes.unicast.dispatch=inline|worker|per_source|virtual_threads
+    public static final DispatchMode DEFAULT = fromProperty(System.getProperty("projetoredes.unicast.dispatch"));
+
+    private static DispatchMode fromProperty(String value) {
+        if (value == null || value.isBlank()) {
+            return INLINE;
+        }
+        try {
+            return valueOf(value.trim().replace('-', '_').toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            System.err.println("Aviso: Modo de entrega desconhecido '" + value + "'. Usando INLINE.");
+            return INLINE;
+        }
+    }
+}
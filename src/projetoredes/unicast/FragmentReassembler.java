@@ -0,0 +1,181 @@
+package projetoredes.unicast;
+
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Remontagem das mensagens fragmentadas do UnicastProtocol.
+//
+// Cada remetente tem um limite de bytes em mensagens parciais; ao estoura-lo, as
+// mais antigas sao descartadas. Uma mensagem que nao se completa em
+// REASSEMBLY_TIMEOUT (contado a partir do primeiro fragmento) e descartada pela
+// roda de temporizaçao. Fragmentos repetidos sao ignorados.
+final class FragmentReassembler {
+
+    // Podem ser alterados com -Dprojetoredes.unicast.maxMessageSize=<bytes>,
+    // -Dprojetoredes.unicast.reassemblyBytes=<bytes> e -Dprojetoredes.unicast.reassemblyTimeoutMs=<ms>
+    static final int MAX_MESSAGE_SIZE = Math.max(UnicastProtocol.MAX_PAYLOAD_SIZE,
+            Integer.getInteger("projetoredes.unicast.maxMessageSize", 64 * 1024));
+    static final int MAX_BYTES_PER_SENDER = Math.max(MAX_MESSAGE_SIZE,
+            Integer.getInteger("projetoredes.unicast.reassemblyBytes", 256 * 1024));
+    static final long REASSEMBLY_TIMEOUT_MS = Math.max(1, Long.getLong("projetoredes.unicast.reassemblyTimeoutMs", 5_000));
+
+    private final TimingWheel timingWheel;
+    private final Map<Short, Sender> senders = new ConcurrentHashMap<>();
+    private final AtomicLong evicted = new AtomicLong();
+
+    FragmentReassembler(TimingWheel timingWheel) {
+        this.timingWheel = timingWheel;
+    }
+
+    private static final class Partial {
+        final int messageId;
+        final byte[] data;
+        final boolean[] received;
+        final int chunkSize;
+        int missing;
+        TimingWheel.Timeout timeout;
+
+        Partial(int messageId, int count, int totalLength) {
+            this.messageId = messageId;
+            this.data = new byte[totalLength];
+            this.received = new boolean[count];
+            this.chunkSize = chunkSize(totalLength, count);
+            this.missing = count;
+        }
+    }
+
+    // Mensagens parciais de um remetente, da mais antiga para a mais nova
+    private static final class Sender {
+        final LinkedHashMap<Integer, Partial> partials = new LinkedHashMap<>();
+        int bytes;
+    }
+
+    // Tamanho dos trechos (o ultimo pode ser menor)
+    static int chunkSize(int totalLength, int count) {
+        return (totalLength + count - 1) / count;
+    }
+
+    // Recebe um fragmento ('frame' posicionado no cabeçalho de fragmento). Retorna a
+    // mensagem completa quando este for o ultimo fragmento que faltava, ou null.
+    // Uma mensagem de um unico fragmento e o proprio 'frame', posicionado nos dados.
+    ByteBuffer accept(short sourceId, ByteBuffer frame) {
+        int messageId = frame.getInt();
+        int index = frame.getShort() & 0xFFFF;
+        int count = frame.getShort() & 0xFFFF;
+        int totalLength = frame.getInt();
+
+        if (count == 0 || index >= count || totalLength < count || totalLength > MAX_MESSAGE_SIZE) {
+            System.err.println("Aviso: Fragmento inválido de " + sourceId + ". Ignorando.");
+            return null;
+        }
+        int chunkSize = chunkSize(totalLength, count);
+        int offset = index * chunkSize;
+        int length = Math.min(chunkSize, totalLength - offset);
+        if (length <= 0 || frame.remaining() != length) {
+            System.err.println("Aviso: Fragmento com tamanho incorreto de " + sourceId + ". Ignorando.");
+            return null;
+        }
+
+        Sender sender = senders.computeIfAbsent(sourceId, k -> new Sender());
+        synchronized (sender) {
+            Partial partial = sender.partials.get(messageId);
+            if (partial == null) {
+                if (count == 1) {
+                    return frame; // Nada a remontar
+                }
+                partial = new Partial(messageId, count, totalLength);
+                makeRoom(sourceId, sender, totalLength);
+                sender.partials.put(messageId, partial);
+                sender.bytes += totalLength;
+                Partial scheduled = partial;
+                partial.timeout = timingWheel.schedule(() -> expire(sourceId, scheduled),
+                        REASSEMBLY_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            } else if (partial.received.length != count || partial.data.length != totalLength) {
+                System.err.println("Aviso: Fragmento inconsistente da mensagem " + messageId + " de " + sourceId + ". Ignorando.");
+                return null;
+            }
+
+            if (partial.received[index]) {
+                return null; // Repetido
+            }
+            partial.received[index] = true;
+            frame.get(partial.data, offset, length);
+            if (--partial.missing > 0) {
+                return null;
+            }
+
+            remove(sender, partial);
+            return ByteBuffer.wrap(partial.data);
+        }
+    }
+
+    // Descarta as mensagens parciais mais antigas ate caber 'needed' bytes
+    private void makeRoom(short sourceId, Sender sender, int needed) {
+        Iterator<Partial> oldest = sender.partials.values().iterator();
+        while (sender.bytes + needed > MAX_BYTES_PER_SENDER && oldest.hasNext()) {
+            Partial partial = oldest.next();
+            oldest.remove();
+            partial.timeout.cancel();
+            sender.bytes -= partial.data.length;
+            evicted.incrementAndGet();
+            System.err.println("Aviso: Mensagem fragmentada " + partial.messageId + " de " + sourceId
+                    + " descartada (limite de memória de remontagem).");
+        }
+    }
+
+    private void expire(short sourceId, Partial partial) {
+        Sender sender = senders.get(sourceId);
+        if (sender == null) {
+            return;
+        }
+        synchronized (sender) {
+            if (sender.partials.get(partial.messageId) != partial) {
+                return; // Completada ou ja descartada
+            }
+            sender.partials.remove(partial.messageId);
+            sender.bytes -= partial.data.length;
+        }
+        evicted.incrementAndGet();
+        System.err.println("Aviso: Mensagem fragmentada " + partial.messageId + " de " + sourceId
+                + " incompleta após " + REASSEMBLY_TIMEOUT_MS + " ms. Descartada.");
+    }
+
+    private static void remove(Sender sender, Partial partial) {
+        sender.partials.remove(partial.messageId);
+        sender.bytes -= partial.data.length;
+        partial.timeout.cancel();
+    }
+
+    // Mensagens parciais descartadas (por tempo ou por memoria)
+    long evicted() {
+        return evicted.get();
+    }
+
+    // Bytes reservados para mensagens parciais, somando todos os remetentes
+    int pendingBytes() {
+        int total = 0;
+        for (Sender sender : senders.values()) {
+            synchronized (sender) {
+                total += sender.bytes;
+            }
+        }
+        return total;
+    }
+
+    void close() {
+        for (Sender sender : senders.values()) {
+            synchronized (sender) {
+                for (Partial partial : sender.partials.values()) {
+                    partial.timeout.cancel();
+                }
+                sender.partials.clear();
+                sender.bytes = 0;
+            }
+        }
+    }
+}
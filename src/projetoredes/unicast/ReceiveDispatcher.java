@@ -0,0 +1,280 @@
+package projetoredes.unicast;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import projetoredes.utils.LatencyHistogram;
+
+// Entrega as PDUs recebidas ao usuario segundo um DispatchMode.
+//
+// A thread do laço de eventos e a unica produtora. Fora do modo INLINE o payload e
+// copiado para um buffer do pool (a visao do buffer de recepçao so vale durante a
+// chamada) e colocado em uma fila limitada; com a fila cheia a PDU e descartada e
+// contada, em vez de bloquear a recepçao. O tempo entre a leitura do datagrama e o
+// inicio da entrega e registrado em 'latency'.
+final class ReceiveDispatcher implements AutoCloseable {
+
+    // Podem ser alterados com -Dprojetoredes.unicast.dispatchQueue=<pdus> (por fila)
+    // e -Dprojetoredes.unicast.dispatchWorkers=<threads> (modo PER_SOURCE)
+    static final int QUEUE_CAPACITY = Math.max(1, Integer.getInteger("projetoredes.unicast.dispatchQueue", 1024));
+    static final int WORKERS = Math.max(1, Integer.getInteger("projetoredes.unicast.dispatchWorkers",
+            Math.min(4, Runtime.getRuntime().availableProcessors())));
+
+    // 'pooled' e o buffer a devolver ao pool depois da entrega (null se o payload nao veio do pool)
+    private record Indication(short sourceId, ByteBuffer payload, ByteBuffer pooled, long receivedNanos) {}
+
+    private final DispatchMode mode;
+    private final UnicastServiceUserInterface user;
+    private final BufferPool bufferPool;
+    private final LatencyHistogram latency;
+
+    // WORKER: uma fila; PER_SOURCE: uma por thread
+    private final ArrayBlockingQueue<Indication>[] queues;
+    private final Thread[] workers;
+    // VIRTUAL_THREADS: as permissoes limitam as entregas pendentes
+    private final ExecutorService virtualThreads;
+    private final Semaphore virtualPermits;
+
+    private final AtomicInteger pending = new AtomicInteger(); // Apenas VIRTUAL_THREADS
+    private final AtomicInteger maxPending = new AtomicInteger();
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder deferred = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private boolean dropping; // So acessado pela thread produtora
+    private volatile boolean closed;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    ReceiveDispatcher(DispatchMode mode, UnicastServiceUserInterface user, BufferPool bufferPool,
+                      LatencyHistogram latency, String threadName) {
+        this.user = user;
+        this.bufferPool = bufferPool;
+        this.latency = latency;
+
+        ExecutorService executor = null;
+        if (mode == DispatchMode.VIRTUAL_THREADS) {
+            executor = newVirtualThreadExecutor();
+            if (executor == null) {
+                System.err.println("Aviso: Threads virtuais indisponíveis nesta JVM. Usando o modo WORKER.");
+                mode = DispatchMode.WORKER;
+            }
+        }
+        this.mode = mode;
+        this.virtualThreads = executor;
+        this.virtualPermits = (executor != null) ? new Semaphore(QUEUE_CAPACITY) : null;
+
+        int threads = switch (mode) {
+            case WORKER -> 1;
+            case PER_SOURCE -> WORKERS;
+            default -> 0;
+        };
+        this.queues = new ArrayBlockingQueue[threads];
+        this.workers = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            ArrayBlockingQueue<Indication> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+            queues[i] = queue;
+            workers[i] = new Thread(() -> drain(queue), threads == 1 ? threadName : threadName + "-" + i);
+            workers[i].setDaemon(true);
+            workers[i].start();
+        }
+    }
+
+    // Executors.newVirtualThreadPerTaskExecutor() existe a partir do Java 21; o
+    // projeto compila para o Java 17, por isso a chamada e feita por reflexao.
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    DispatchMode mode() {
+        return mode;
+    }
+
+    // Indica se ha espaço para mais uma PDU do remetente. Usado antes de confirmar uma
+    // PDU confiavel: sem espaço ela nao e confirmada e o remetente a retransmite depois.
+    boolean hasRoom(short sourceId) {
+        boolean room = switch (mode) {
+            case INLINE -> true;
+            case VIRTUAL_THREADS -> virtualPermits.availablePermits() > 0;
+            default -> queueFor(sourceId).remainingCapacity() > 0;
+        };
+        if (!room) {
+            deferred.increment();
+        }
+        return room;
+    }
+
+    // Entrega 'payload' ao usuario. 'owned' indica que o payload ja e uma copia
+    // exclusiva (ex.: mensagem remontada) e pode ser repassado sem copiar.
+    // 'receivedNanos' e o System.nanoTime() da leitura do datagrama.
+    void dispatch(short sourceId, ByteBuffer payload, boolean owned, long receivedNanos) {
+        if (mode == DispatchMode.INLINE) {
+            latency.record(System.nanoTime() - receivedNanos);
+            // Executa na thread do laço de eventos: uma exceçao do usuario nao pode escapar
+            try {
+                user.UPDataInd(sourceId, payload);
+                delivered.increment();
+            } catch (RuntimeException e) {
+                failed.increment();
+                System.err.println("Erro ao entregar PDU de " + sourceId + ": " + e.getMessage());
+            }
+            return;
+        }
+        if (closed) {
+            return;
+        }
+
+        ByteBuffer pooled = null;
+        if (!owned) {
+            pooled = bufferPool.acquire();
+            pooled.put(payload).flip();
+            payload = pooled.asReadOnlyBuffer();
+        }
+        Indication indication = new Indication(sourceId, payload, pooled, receivedNanos);
+
+        boolean accepted;
+        if (mode == DispatchMode.VIRTUAL_THREADS) {
+            accepted = submitVirtual(indication);
+        } else {
+            ArrayBlockingQueue<Indication> queue = queueFor(sourceId);
+            accepted = queue.offer(indication);
+            if (accepted) {
+                maxPending.accumulateAndGet(queue.size(), Math::max);
+            }
+        }
+
+        if (accepted) {
+            dropping = false;
+            return;
+        }
+        bufferPool.release(pooled);
+        dropped.increment();
+        if (!dropping) {
+            // Um aviso por rajada; o total fica em dropped()
+            dropping = true;
+            System.err.println("Aviso: Fila de entrega cheia (" + QUEUE_CAPACITY + " PDUs). Descartando PDUs recebidas.");
+        }
+    }
+
+    private boolean submitVirtual(Indication indication) {
+        if (!virtualPermits.tryAcquire()) {
+            return false;
+        }
+        maxPending.accumulateAndGet(pending.incrementAndGet(), Math::max);
+        try {
+            virtualThreads.execute(() -> {
+                pending.decrementAndGet();
+                try {
+                    deliver(indication);
+                } finally {
+                    virtualPermits.release();
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            pending.decrementAndGet();
+            virtualPermits.release();
+            return false;
+        }
+    }
+
+    private ArrayBlockingQueue<Indication> queueFor(short sourceId) {
+        return queues[(sourceId & 0xFFFF) % queues.length];
+    }
+
+    private void drain(ArrayBlockingQueue<Indication> queue) {
+        while (!closed) {
+            Indication indication;
+            try {
+                indication = queue.take();
+            } catch (InterruptedException e) {
+                return; // Encerrando
+            }
+            deliver(indication);
+        }
+    }
+
+    private void deliver(Indication indication) {
+        try {
+            if (!closed) {
+                latency.record(System.nanoTime() - indication.receivedNanos());
+                user.UPDataInd(indication.sourceId(), indication.payload());
+                delivered.increment();
+            }
+        } catch (RuntimeException e) {
+            failed.increment();
+            System.err.println("Erro ao entregar PDU de " + indication.sourceId() + ": " + e.getMessage());
+        } finally {
+            bufferPool.release(indication.pooled());
+        }
+    }
+
+    // PDUs aguardando entrega (nas filas ou em threads virtuais ainda nao iniciadas)
+    int pending() {
+        if (virtualThreads != null) {
+            return pending.get();
+        }
+        int total = 0;
+        for (ArrayBlockingQueue<Indication> queue : queues) {
+            total += queue.size();
+        }
+        return total;
+    }
+
+    // Maior numero de PDUs aguardando entrega ao mesmo tempo
+    int maxPending() {
+        return maxPending.get();
+    }
+
+    long delivered() {
+        return delivered.sum();
+    }
+
+    // PDUs descartadas por falta de espaço nas filas
+    long dropped() {
+        return dropped.sum();
+    }
+
+    // PDUs confiaveis deixadas sem confirmaçao por falta de espaço (serao retransmitidas)
+    long deferred() {
+        return deferred.sum();
+    }
+
+    // Entregas em que o usuario lançou exceçao
+    long failed() {
+        return failed.sum();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        for (Thread worker : workers) {
+            worker.interrupt();
+        }
+        for (int i = 0; i < workers.length; i++) {
+            try {
+                if (Thread.currentThread() != workers[i]) {
+                    workers[i].join();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                System.err.println("Thread de entrega interrompida durante o fechamento.");
+            }
+            Indication indication;
+            while ((indication = queues[i].poll()) != null) {
+                bufferPool.release(indication.pooled());
+            }
+        }
+        if (virtualThreads != null) {
+            virtualThreads.shutdown();
+        }
+    }
+}
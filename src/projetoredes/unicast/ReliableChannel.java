@@ -0,0 +1,316 @@
+package projetoredes.unicast;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Entrega confiavel do UnicastProtocol (Delivery.RELIABLE), ao lado do modo best-effort.
+//
+// Envio: cada destino tem numeros de sequencia proprios e uma janela deslizante de
+// WINDOW PDUs nao confirmadas, guardadas em um array circular (memoria limitada).
+// Cada PDU e retransmitida pela roda de temporizaçao ate receber o ACK, com RTO
+// adaptativo por destino (Jacobson/Karels, RFC 6298: SRTT + 4 * RTTVAR, sem amostras
+// de PDUs retransmitidas), que dobra a cada retransmissao da mesma PDU. Apos MAX_RETRANSMISSIONS
+// a PDU e descartada e contada como falha. Com a janela cheia o envio e recusado.
+//
+// Recepçao: todo RELIABLE_DATA e confirmado; o mapa de bits dos
+// numeros ja recebidos suprime as duplicatas (retransmissoes cujo ACK se perdeu).
+// A entrega nao e ordenada. A epoca aleatoria do remetente distingue as PDUs de uma
+// nova execuçao do mesmo no, que recomeça a numeraçao em 0.
+final class ReliableChannel {
+
+    // Podem ser alterados com -Dprojetoredes.unicast.reliableWindow=<n>,
+    // -Dprojetoredes.unicast.maxRetransmissions=<n> e -Dprojetoredes.unicast.minRtoMs=<ms>
+    static final int WINDOW = Math.max(1, Integer.getInteger("projetoredes.unicast.reliableWindow", 32));
+    static final int MAX_RETRANSMISSIONS = Math.max(0, Integer.getInteger("projetoredes.unicast.maxRetransmissions", 8));
+    static final long MIN_RTO_NANOS = TimeUnit.MILLISECONDS.toNanos(
+            Math.max(1, Long.getLong("projetoredes.unicast.minRtoMs", 100)));
+    static final long INITIAL_RTO_NANOS = TimeUnit.SECONDS.toNanos(1);
+    static final long MAX_RTO_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    // Numeros recebidos lembrados alem do primeiro ainda nao recebido
+    private static final int RECEIVE_WINDOW = 2 * WINDOW;
+
+    @FunctionalInterface
+    interface FrameTransmitter {
+        boolean transmit(short destinationId, ByteBuffer frame);
+    }
+
+    // Escreve em 'frame' a PDU 'index' de um envio, com a epoca e o seq dados
+    @FunctionalInterface
+    interface FrameEncoder {
+        void encode(ByteBuffer frame, int epoch, int seq, int index);
+    }
+
+    private final short selfId;
+    private final int epoch = ThreadLocalRandom.current().nextInt();
+    private final TimingWheel timingWheel;
+    private final FrameTransmitter transmitter;
+    private final Map<Short, Peer> peers = new ConcurrentHashMap<>();
+    private volatile boolean closed;
+
+    private final AtomicLong retransmissions = new AtomicLong();
+    private final AtomicLong duplicates = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+
+    ReliableChannel(short selfId, TimingWheel timingWheel, FrameTransmitter transmitter) {
+        this.selfId = selfId;
+        this.timingWheel = timingWheel;
+        this.transmitter = transmitter;
+    }
+
+    // PDU enviada e ainda nao confirmada
+    private static final class Outstanding {
+        final int seq;
+        final byte[] frame;
+        long sentAtNanos;
+        long rtoNanos; // Dobra a cada retransmissao desta PDU
+        int retransmits;
+        TimingWheel.Timeout timeout;
+
+        Outstanding(int seq, byte[] frame) {
+            this.seq = seq;
+            this.frame = frame;
+        }
+    }
+
+    // Estado de um destino/remetente, protegido pelo seu proprio monitor
+    private static final class Peer {
+        // Envio
+        final Outstanding[] window = new Outstanding[WINDOW];
+        int nextSeq;
+        int base; // Menor seq ainda nao confirmado (ou nextSeq)
+        long srttNanos = -1;
+        long rttvarNanos;
+        long rtoNanos = INITIAL_RTO_NANOS;
+
+        // Recepçao
+        boolean receiving;
+        int receiveEpoch;
+        int receiveBase; // Menor seq ainda nao recebido
+        final boolean[] received = new boolean[RECEIVE_WINDOW];
+    }
+
+    private Peer peer(short id) {
+        return peers.computeIfAbsent(id, k -> new Peer());
+    }
+
+    // Envia 'payload' (position ate limit) e retorna false se a janela do destino
+    // estiver cheia ou a PDU nao couber em 'frame'
+    boolean send(short destinationId, ByteBuffer payload, ByteBuffer frame) {
+        int payloadStart = payload.position();
+        try {
+            return send(destinationId, 1, frame,
+                    (out, epoch, seq, index) -> UnicastPDUCodec.encodeReliableData(out, selfId, epoch, seq, payload));
+        } catch (BufferOverflowException e) {
+            payload.position(payloadStart);
+            System.err.println("ERRO: Mensagem muito longa para ser enviada.");
+            return false;
+        }
+    }
+
+    // Envia 'count' PDUs numeradas em sequencia (os fragmentos de uma mensagem), todas ou
+    // nenhuma: se a janela nao tiver espaço para todas, nada e enviado. 'frame' e reutilizado
+    // para cada PDU. BufferOverflowException do 'encoder' e repassada antes de qualquer envio.
+    boolean send(short destinationId, int count, ByteBuffer frame, FrameEncoder encoder) {
+        if (closed) {
+            return false;
+        }
+        if (count > WINDOW) {
+            System.err.println("ERRO: Mensagem com " + count + " fragmentos excede a janela de entrega confiável.");
+            return false;
+        }
+        Peer peer = peer(destinationId);
+        Outstanding[] sent = new Outstanding[count];
+        synchronized (peer) {
+            if (peer.nextSeq - peer.base > WINDOW - count) {
+                System.err.println("ERRO: Janela de entrega confiável para " + destinationId + " cheia. Mensagem recusada.");
+                return false;
+            }
+            // Codifica tudo antes de ocupar a janela
+            for (int i = 0; i < count; i++) {
+                frame.clear();
+                encoder.encode(frame, epoch, peer.nextSeq + i, i);
+                frame.flip();
+                byte[] copy = new byte[frame.remaining()];
+                frame.get(copy);
+                sent[i] = new Outstanding(peer.nextSeq + i, copy);
+            }
+            long now = System.nanoTime();
+            for (Outstanding outstanding : sent) {
+                peer.window[Math.floorMod(outstanding.seq, WINDOW)] = outstanding;
+                outstanding.sentAtNanos = now;
+                outstanding.rtoNanos = peer.rtoNanos;
+                outstanding.timeout = timingWheel.schedule(() -> onTimeout(destinationId, outstanding),
+                        outstanding.rtoNanos, TimeUnit.NANOSECONDS);
+            }
+            peer.nextSeq += count;
+        }
+        // Uma falha local aqui e tratada como perda: o temporizador retransmite
+        for (Outstanding outstanding : sent) {
+            transmitter.transmit(destinationId, ByteBuffer.wrap(outstanding.frame));
+        }
+        return true;
+    }
+
+    private void onTimeout(short destinationId, Outstanding outstanding) {
+        Peer peer = peer(destinationId);
+        synchronized (peer) {
+            int slot = Math.floorMod(outstanding.seq, WINDOW);
+            if (closed || peer.window[slot] != outstanding) {
+                return; // Ja confirmada
+            }
+            if (outstanding.retransmits >= MAX_RETRANSMISSIONS) {
+                peer.window[slot] = null;
+                advanceBase(peer);
+                failures.incrementAndGet();
+                System.err.println("ERRO: Mensagem confiável " + outstanding.seq + " para " + destinationId
+                        + " não confirmada após " + outstanding.retransmits + " retransmissões. Descartada.");
+                return;
+            }
+            outstanding.retransmits++;
+            outstanding.rtoNanos = Math.min(MAX_RTO_NANOS, outstanding.rtoNanos * 2); // Recuo exponencial
+            outstanding.timeout = timingWheel.schedule(() -> onTimeout(destinationId, outstanding),
+                    outstanding.rtoNanos, TimeUnit.NANOSECONDS);
+        }
+        retransmissions.incrementAndGet();
+        transmitter.transmit(destinationId, ByteBuffer.wrap(outstanding.frame));
+    }
+
+    // ACK recebido: 'body' contem epoca e seq
+    void onAck(short sourceId, ByteBuffer body) {
+        int ackEpoch = body.getInt();
+        int seq = body.getInt();
+        if (ackEpoch != epoch) {
+            return; // Confirmaçao de uma execuçao anterior
+        }
+        Peer peer = peers.get(sourceId);
+        if (peer == null) {
+            return;
+        }
+        synchronized (peer) {
+            int slot = Math.floorMod(seq, WINDOW);
+            Outstanding outstanding = peer.window[slot];
+            if (outstanding == null || outstanding.seq != seq) {
+                return; // ACK repetido
+            }
+            outstanding.timeout.cancel();
+            peer.window[slot] = null;
+            if (outstanding.retransmits == 0) {
+                updateRto(peer, System.nanoTime() - outstanding.sentAtNanos); // Algoritmo de Karn
+            }
+            advanceBase(peer);
+        }
+    }
+
+    private static void advanceBase(Peer peer) {
+        while (peer.base != peer.nextSeq && peer.window[Math.floorMod(peer.base, WINDOW)] == null) {
+            peer.base++;
+        }
+    }
+
+    private static void updateRto(Peer peer, long rttNanos) {
+        if (peer.srttNanos < 0) {
+            peer.srttNanos = rttNanos;
+            peer.rttvarNanos = rttNanos / 2;
+        } else {
+            peer.rttvarNanos += (Math.abs(peer.srttNanos - rttNanos) - peer.rttvarNanos) / 4;
+            peer.srttNanos += (rttNanos - peer.srttNanos) / 8;
+        }
+        long rto = peer.srttNanos + 4 * peer.rttvarNanos;
+        peer.rtoNanos = Math.max(MIN_RTO_NANOS, Math.min(MAX_RTO_NANOS, rto));
+    }
+
+    // RELIABLE_DATA recebido: 'body' começa na epoca. Confirma a PDU e retorna true se
+    // ela deve ser entregue ao usuario (nesse caso 'body' fica posicionado nos dados).
+    boolean onData(short sourceId, ByteBuffer body, ByteBuffer ackFrame) {
+        int dataEpoch = body.getInt();
+        int seq = body.getInt();
+        boolean deliver;
+
+        Peer peer = peer(sourceId);
+        synchronized (peer) {
+            if (!peer.receiving || peer.receiveEpoch != dataEpoch) {
+                // Primeira PDU desta execuçao do remetente, que numera a partir de 0
+                peer.receiving = true;
+                peer.receiveEpoch = dataEpoch;
+                peer.receiveBase = Math.max(0, seq - RECEIVE_WINDOW + 1);
+                Arrays.fill(peer.received, false);
+            }
+
+            int distance = seq - peer.receiveBase;
+            if (distance >= RECEIVE_WINDOW) {
+                // O remetente ja nao espera confirmaçao de nada abaixo de seq - WINDOW
+                // (PDUs que ele desistiu de enviar): desliza a janela ate 'seq'
+                int newBase = seq - RECEIVE_WINDOW + 1;
+                if (newBase - peer.receiveBase >= RECEIVE_WINDOW) {
+                    Arrays.fill(peer.received, false);
+                } else {
+                    for (int s = peer.receiveBase; s != newBase; s++) {
+                        peer.received[Math.floorMod(s, RECEIVE_WINDOW)] = false;
+                    }
+                }
+                peer.receiveBase = newBase;
+                distance = RECEIVE_WINDOW - 1;
+            }
+            int slot = Math.floorMod(seq, RECEIVE_WINDOW);
+            deliver = distance >= 0 && !peer.received[slot];
+            if (deliver) {
+                peer.received[slot] = true;
+                while (peer.received[Math.floorMod(peer.receiveBase, RECEIVE_WINDOW)]) {
+                    peer.received[Math.floorMod(peer.receiveBase, RECEIVE_WINDOW)] = false;
+                    peer.receiveBase++;
+                }
+            }
+        }
+
+        if (!deliver) {
+            duplicates.incrementAndGet();
+        }
+        UnicastPDUCodec.encodeAck(ackFrame, selfId, dataEpoch, seq);
+        ackFrame.flip();
+        transmitter.transmit(sourceId, ackFrame);
+        return deliver;
+    }
+
+    long retransmissions() {
+        return retransmissions.get();
+    }
+
+    long duplicates() {
+        return duplicates.get();
+    }
+
+    long failures() {
+        return failures.get();
+    }
+
+    // PDUs enviadas e ainda nao confirmadas, somando todos os destinos
+    int outstanding() {
+        int total = 0;
+        for (Peer peer : peers.values()) {
+            synchronized (peer) {
+                total += peer.nextSeq - peer.base;
+            }
+        }
+        return total;
+    }
+
+    void close() {
+        closed = true;
+        for (Peer peer : peers.values()) {
+            synchronized (peer) {
+                for (Outstanding outstanding : peer.window) {
+                    if (outstanding != null) {
+                        outstanding.timeout.cancel();
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package projetoredes.unicast;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+// Roda de temporizaçao (hashed timing wheel): os temporizadores ficam em listas
+// indexadas pelo tick de expiraçao modulo o tamanho da roda, e uma unica thread
+// avança um balde por tick. Agendar e cancelar custam O(1), independente do numero
+// de temporizadores, e nao ha uma thread nem uma tarefa de executor por mensagem.
+//
+// A precisao e de um tick. Sem temporizadores pendentes a thread fica parada.
+public final class TimingWheel implements AutoCloseable {
+
+    public static final class Timeout {
+        private final Runnable task;
+        private final long deadlineNanos;
+        private long rounds;
+        private Timeout next;
+        private volatile boolean cancelled;
+
+        private Timeout(Runnable task, long deadlineNanos) {
+            this.task = task;
+            this.deadlineNanos = deadlineNanos;
+        }
+
+        // A tarefa nao sera executada (se ainda nao foi)
+        public void cancel() {
+            cancelled = true;
+        }
+    }
+
+    private final long tickNanos;
+    private final Timeout[] buckets; // Listas encadeadas, acessadas so pela thread da roda
+    private final int mask;
+    private final long startNanos = System.nanoTime();
+    private final ConcurrentLinkedQueue<Timeout> incoming = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final Thread worker;
+    private volatile boolean running = true;
+    private long tick; // Proximo tick a processar (thread da roda)
+
+    // 'wheelSize' e arredondado para uma potencia de dois
+    public TimingWheel(String threadName, long tickDuration, TimeUnit unit, int wheelSize) {
+        if (tickDuration <= 0 || wheelSize <= 0) {
+            throw new IllegalArgumentException("Parâmetros da roda de temporização inválidos");
+        }
+        this.tickNanos = unit.toNanos(tickDuration);
+        int size = Integer.highestOneBit(Math.max(1, wheelSize - 1)) << 1;
+        this.buckets = new Timeout[size];
+        this.mask = size - 1;
+        this.worker = new Thread(this::run, threadName);
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    // Pode ser chamado de qualquer thread
+    public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        Timeout timeout = new Timeout(task, System.nanoTime() + unit.toNanos(Math.max(0, delay)));
+        incoming.add(timeout);
+        if (pending.getAndIncrement() == 0) {
+            LockSupport.unpark(worker);
+        }
+        return timeout;
+    }
+
+    // Temporizadores agendados e ainda nao expirados (inclui os cancelados ainda nao descartados)
+    public int pendingTimeouts() {
+        return pending.get();
+    }
+
+    private void run() {
+        while (running) {
+            if (pending.get() == 0) {
+                LockSupport.park(this);
+                // Nada ficou nos baldes: retoma a contagem a partir de agora
+                tick = currentTick();
+                continue;
+            }
+
+            long wait = startNanos + (tick + 1) * tickNanos - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(this, wait);
+                continue;
+            }
+
+            transferIncoming();
+            expireBucket(buckets[(int) (tick & mask)]);
+            tick++;
+        }
+    }
+
+    private long currentTick() {
+        return (System.nanoTime() - startNanos) / tickNanos;
+    }
+
+    private void transferIncoming() {
+        Timeout timeout;
+        while ((timeout = incoming.poll()) != null) {
+            if (timeout.cancelled) {
+                pending.decrementAndGet();
+                continue;
+            }
+            // Arredonda para cima: nunca expira antes do prazo
+            long deadlineTick = Math.max(tick, (timeout.deadlineNanos - startNanos + tickNanos - 1) / tickNanos);
+            timeout.rounds = (deadlineTick - tick) / buckets.length;
+            int index = (int) (deadlineTick & mask);
+            timeout.next = buckets[index];
+            buckets[index] = timeout;
+        }
+    }
+
+    private void expireBucket(Timeout head) {
+        int index = (int) (tick & mask);
+        Timeout previous = null;
+        Timeout timeout = head;
+        while (timeout != null) {
+            Timeout next = timeout.next;
+            boolean expired = timeout.cancelled || timeout.rounds == 0;
+            if (expired) {
+                // Remove da lista
+                if (previous == null) {
+                    buckets[index] = next;
+                } else {
+                    previous.next = next;
+                }
+                timeout.next = null;
+                pending.decrementAndGet();
+                if (!timeout.cancelled) {
+                    runTask(timeout.task);
+                }
+            } else {
+                timeout.rounds--;
+                previous = timeout;
+            }
+            timeout = next;
+        }
+    }
+
+    private static void runTask(Runnable task) {
+        try {
+            task.run();
+        } catch (RuntimeException e) {
+            System.err.println("Erro em tarefa da roda de temporização: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(worker);
+        try {
+            if (Thread.currentThread() != worker) {
+                worker.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
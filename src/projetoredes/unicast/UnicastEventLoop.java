@@ -0,0 +1,137 @@
+package projetoredes.unicast;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+// Laço de eventos baseado em Selector que atende varios UnicastProtocol
+// (um DatagramChannel por UCSAP local) com uma unica thread.
+public class UnicastEventLoop implements AutoCloseable {
+
+    // Numero maximo de datagramas lidos de um canal por rodada, para que um
+    // canal muito ativo nao monopolize o laço
+    private static final int MAX_READS_PER_WAKEUP = 64;
+    private static final int POOL_CAPACITY = 256;
+    // Roda dos temporizadores de retransmissao: 10ms por tick, 512 baldes (~5s por volta)
+    private static final long TIMER_TICK_MS = 10;
+    private static final int TIMER_WHEEL_SIZE = 512;
+
+    private final Selector selector;
+    private final Thread loopThread;
+    private final BufferPool bufferPool = new BufferPool(UnicastProtocol.MAX_PDU_SIZE, POOL_CAPACITY);
+    // Um byte a mais que a maior PDU: datagramas que o preenchem sao grandes demais
+    // (foram truncados) e sao descartados em vez de decodificados pela metade
+    private final ByteBuffer receiveBuffer = ByteBuffer.allocateDirect(UnicastProtocol.MAX_PDU_SIZE + 1);
+    private final TimingWheel timingWheel;
+
+    // Registros pendentes, aplicados pela propria thread do laço
+    private final ConcurrentLinkedQueue<Registration> pendingRegistrations = new ConcurrentLinkedQueue<>();
+
+    private volatile boolean running = true;
+
+    private record Registration(DatagramChannel channel, UnicastProtocol protocol) {}
+
+    public UnicastEventLoop() throws IOException {
+        this("UnicastEventLoop");
+    }
+
+    public UnicastEventLoop(String threadName) throws IOException {
+        this.selector = Selector.open();
+        this.timingWheel = new TimingWheel(threadName + "-Timer", TIMER_TICK_MS, TimeUnit.MILLISECONDS, TIMER_WHEEL_SIZE);
+        this.loopThread = new Thread(this::run, threadName);
+        this.loopThread.start();
+    }
+
+    public BufferPool bufferPool() {
+        return bufferPool;
+    }
+
+    // Compartilhada pelas entregas confiaveis de todos os protocolos do laço
+    public TimingWheel timingWheel() {
+        return timingWheel;
+    }
+
+    void register(DatagramChannel channel, UnicastProtocol protocol) {
+        pendingRegistrations.add(new Registration(channel, protocol));
+        selector.wakeup();
+    }
+
+    private void run() {
+        while (running) {
+            try {
+                selector.select();
+                applyPendingRegistrations();
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    handleReadable(key);
+                }
+            } catch (IOException e) {
+                System.err.println("Erro de I/O no laço de eventos: " + e.getMessage());
+            }
+        }
+
+        try {
+            selector.close();
+        } catch (IOException e) {
+            System.err.println("Erro ao fechar o seletor: " + e.getMessage());
+        }
+    }
+
+    private void applyPendingRegistrations() {
+        Registration registration;
+        while ((registration = pendingRegistrations.poll()) != null) {
+            try {
+                registration.channel().register(selector, SelectionKey.OP_READ, registration.protocol());
+            } catch (ClosedChannelException e) {
+                // Canal fechado antes de ser registrado; nada a fazer
+            }
+        }
+    }
+
+    private void handleReadable(SelectionKey key) {
+        UnicastProtocol protocol = (UnicastProtocol) key.attachment();
+        DatagramChannel channel = (DatagramChannel) key.channel();
+
+        try {
+            if (!key.isReadable()) {
+                return;
+            }
+            for (int i = 0; i < MAX_READS_PER_WAKEUP; i++) {
+                receiveBuffer.clear();
+                if (!protocol.receive(channel, receiveBuffer)) {
+                    break;
+                }
+            }
+        } catch (CancelledKeyException e) {
+            // Canal fechado durante a leitura
+        } catch (RuntimeException e) {
+            // Uma falha num endpoint nao pode encerrar o laço compartilhado pelos demais
+            System.err.println("Erro ao processar datagrama no laço de eventos: " + e);
+        }
+    }
+
+    @Override
+    public void close() {
+        timingWheel.close();
+        running = false;
+        selector.wakeup();
+        try {
+            if (Thread.currentThread() != loopThread) {
+                loopThread.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.err.println("Thread do laço de eventos interrompida durante o fechamento.");
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package projetoredes.unicast;
+
+import java.util.concurrent.atomic.LongAdder;
+import projetoredes.utils.LatencyHistogram;
+
+// Contadores do UnicastProtocol. Sao LongAdders (celulas por thread) para que a
+// recepçao e as threads de entrega nao disputem a mesma variavel.
+final class UnicastMetrics {
+    final LongAdder pdusSent = new LongAdder();
+    final LongAdder bytesSent = new LongAdder();
+    final LongAdder pdusReceived = new LongAdder();
+    final LongAdder bytesReceived = new LongAdder();
+    // Datagramas descartados antes da entrega
+    final LongAdder droppedUnknownSender = new LongAdder(); // Endereço ou ID de origem desconhecido
+    final LongAdder droppedMalformed = new LongAdder();
+    final LongAdder droppedOversize = new LongAdder();      // Maiores que MAX_PDU_SIZE
+    // Envios Delivery.RELIABLE que nao chegaram a ser feitos com entrega confiavel
+    final LongAdder reliableRefused = new LongAdder();
+    // Da leitura do datagrama ate o inicio do UPDataInd, em nanossegundos
+    final LatencyHistogram dispatchLatency = new LatencyHistogram();
+
+    void sent(int bytes) {
+        pdusSent.increment();
+        bytesSent.add(bytes);
+    }
+
+    void received(int bytes) {
+        pdusReceived.increment();
+        bytesReceived.add(bytes);
+    }
+}
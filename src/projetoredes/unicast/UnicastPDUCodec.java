@@ -0,0 +1,231 @@
+package projetoredes.unicast;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+// Codificador/decodificador das PDUs do UnicastProtocol.
+//
+// Existem dois formatos no fio:
+//  - Texto (legado): "UPDREQPDU <tamanho> <dados>"
+//  - Binario:        [versao:1][tipo:1][id_origem:2][tamanho:2][dados]
+//
+// O primeiro byte distingue os formatos: PDUs de texto sempre comecam com 'U',
+// enquanto as binarias comecam com o byte de versao. Assim nos novos e antigos
+// convivem durante a migracao.
+//
+// Entrega confiavel (so no formato binario), com 'epoca' aleatoria escolhida pelo
+// remetente ao iniciar e 'seq' numerado por destino a partir de 0:
+//   RELIABLE_DATA: [cabeçalho][epoca:4][seq:4][dados]
+//   ACK:           [cabeçalho][epoca:4][seq:4]   (epoca e seq da PDU confirmada)
+//
+// Payloads maiores que uma PDU sao fragmentados (tambem so no formato binario):
+// o bit FLAG_FRAGMENT no tipo de DATA/RELIABLE_DATA indica um cabeçalho de
+// fragmento antes dos dados (depois de epoca e seq, no caso confiavel):
+//   [id_mensagem:4][indice:2][fragmentos:2][tamanho_total:4][trecho]
+// Todos os trechos, exceto o ultimo, tem ceil(tamanho_total / fragmentos) bytes.
+public final class UnicastPDUCodec {
+
+    public static final byte VERSION = 0x01;
+
+    // Tipos de PDU binaria
+    public static final byte TYPE_DATA = 0x01;
+    public static final byte TYPE_PROBE = 0x02; // Anuncia suporte ao formato binario
+    public static final byte TYPE_RELIABLE_DATA = 0x03;
+    public static final byte TYPE_ACK = 0x04;
+    public static final byte FLAG_FRAGMENT = 0x40;
+
+    // Retornos do decode que nao sao tipos binarios
+    public static final int TYPE_TEXT_DATA = 0x7F;
+    public static final int MALFORMED = -1;
+
+    public static final int BINARY_HEADER_SIZE = 6;
+    public static final int RELIABLE_HEADER_SIZE = 8; // epoca + seq
+    public static final int FRAGMENT_HEADER_SIZE = 12;
+
+    private static final byte[] TEXT_PREFIX = {'U', 'P', 'D', 'R', 'E', 'Q', 'P', 'D', 'U', ' '};
+
+    private UnicastPDUCodec() {}
+
+    // Codificaçao
+
+    public static void encodeData(ByteBuffer out, short sourceId, ByteBuffer payload) {
+        int length = payload.remaining();
+        out.put(VERSION).put(TYPE_DATA).putShort(sourceId).putShort((short) length);
+        out.put(payload);
+    }
+
+    public static void encodeReliableData(ByteBuffer out, short sourceId, int epoch, int seq, ByteBuffer payload) {
+        int length = RELIABLE_HEADER_SIZE + payload.remaining();
+        out.put(VERSION).put(TYPE_RELIABLE_DATA).putShort(sourceId).putShort((short) length);
+        out.putInt(epoch).putInt(seq);
+        out.put(payload);
+    }
+
+    public static void encodeFragment(ByteBuffer out, short sourceId, int messageId, int index, int count,
+                                      int totalLength, ByteBuffer chunk) {
+        int length = FRAGMENT_HEADER_SIZE + chunk.remaining();
+        out.put(VERSION).put((byte) (TYPE_DATA | FLAG_FRAGMENT)).putShort(sourceId).putShort((short) length);
+        putFragmentHeader(out, messageId, index, count, totalLength);
+        out.put(chunk);
+    }
+
+    public static void encodeReliableFragment(ByteBuffer out, short sourceId, int epoch, int seq, int messageId,
+                                              int index, int count, int totalLength, ByteBuffer chunk) {
+        int length = RELIABLE_HEADER_SIZE + FRAGMENT_HEADER_SIZE + chunk.remaining();
+        out.put(VERSION).put((byte) (TYPE_RELIABLE_DATA | FLAG_FRAGMENT)).putShort(sourceId).putShort((short) length);
+        out.putInt(epoch).putInt(seq);
+        putFragmentHeader(out, messageId, index, count, totalLength);
+        out.put(chunk);
+    }
+
+    private static void putFragmentHeader(ByteBuffer out, int messageId, int index, int count, int totalLength) {
+        out.putInt(messageId).putShort((short) index).putShort((short) count).putInt(totalLength);
+    }
+
+    public static void encodeAck(ByteBuffer out, short sourceId, int epoch, int seq) {
+        out.put(VERSION).put(TYPE_ACK).putShort(sourceId).putShort((short) RELIABLE_HEADER_SIZE);
+        out.putInt(epoch).putInt(seq);
+    }
+
+    public static void encodeProbe(ByteBuffer out, short sourceId) {
+        out.put(VERSION).put(TYPE_PROBE).putShort(sourceId).putShort((short) 0);
+    }
+
+    // O tamanho declarado no formato texto e o numero de caracteres (como no
+    // formato original), que coincide com o numero de bytes para payloads ASCII.
+    public static void encodeText(ByteBuffer out, ByteBuffer payload, int declaredLength) {
+        out.put(TEXT_PREFIX);
+        putAsciiInt(out, declaredLength);
+        out.put((byte) ' ');
+        out.put(payload);
+    }
+
+    // Decodificaçao
+
+    // Valida a PDU contida entre position e limit de 'frame'. Em caso de sucesso,
+    // ajusta position/limit para a janela do payload e retorna o tipo da PDU.
+    // Em RELIABLE_DATA e ACK a janela começa na epoca. O tipo retornado nao inclui
+    // FLAG_FRAGMENT (ver isFragment); nos fragmentos, o cabeçalho de fragmento vem a seguir.
+    public static int decode(ByteBuffer frame) {
+        if (!frame.hasRemaining()) {
+            return MALFORMED;
+        }
+
+        byte first = frame.get(frame.position());
+        if (first == VERSION) {
+            return decodeBinary(frame);
+        }
+        if (first == TEXT_PREFIX[0]) {
+            return decodeText(frame);
+        }
+        return MALFORMED;
+    }
+
+    // Le o ID de origem do cabecalho binario (antes de chamar decode).
+    public static short binarySourceId(ByteBuffer frame) {
+        return frame.getShort(frame.position() + 2);
+    }
+
+    // Indica se a PDU binaria e um fragmento (antes de chamar decode)
+    public static boolean isFragment(ByteBuffer frame) {
+        return (frame.get(frame.position() + 1) & FLAG_FRAGMENT) != 0;
+    }
+
+    private static int decodeBinary(ByteBuffer frame) {
+        if (frame.remaining() < BINARY_HEADER_SIZE) {
+            return MALFORMED;
+        }
+
+        int start = frame.position();
+        byte flags = frame.get(start + 1);
+        byte type = (byte) (flags & ~FLAG_FRAGMENT);
+        boolean fragment = (flags & FLAG_FRAGMENT) != 0;
+        int length = frame.getShort(start + 4) & 0xFFFF;
+
+        if (type != TYPE_DATA && type != TYPE_PROBE && type != TYPE_RELIABLE_DATA && type != TYPE_ACK) {
+            return MALFORMED;
+        }
+        if (fragment && type != TYPE_DATA && type != TYPE_RELIABLE_DATA) {
+            return MALFORMED;
+        }
+        if (length != frame.remaining() - BINARY_HEADER_SIZE) {
+            return MALFORMED;
+        }
+        int minimum = (type == TYPE_RELIABLE_DATA ? RELIABLE_HEADER_SIZE : 0) + (fragment ? FRAGMENT_HEADER_SIZE : 0);
+        if (length < minimum || (type == TYPE_ACK && length != RELIABLE_HEADER_SIZE)) {
+            return MALFORMED;
+        }
+
+        frame.position(start + BINARY_HEADER_SIZE);
+        return type;
+    }
+
+    private static int decodeText(ByteBuffer frame) {
+        int start = frame.position();
+        int end = frame.limit();
+
+        if (end - start < TEXT_PREFIX.length + 2) {
+            return MALFORMED;
+        }
+        for (int i = 0; i < TEXT_PREFIX.length; i++) {
+            if (frame.get(start + i) != TEXT_PREFIX[i]) {
+                return MALFORMED;
+            }
+        }
+
+        // Le o tamanho declarado ate o proximo espaco
+        int i = start + TEXT_PREFIX.length;
+        int declaredLength = 0;
+        int digits = 0;
+        while (i < end && frame.get(i) != ' ') {
+            byte b = frame.get(i);
+            if (b < '0' || b > '9' || digits >= 9) {
+                return MALFORMED;
+            }
+            declaredLength = declaredLength * 10 + (b - '0');
+            digits++;
+            i++;
+        }
+        if (digits == 0 || i >= end) {
+            return MALFORMED;
+        }
+
+        int payloadStart = i + 1;
+        int payloadLength = end - payloadStart;
+
+        // Nos legados declaram o numero de caracteres; so decodificamos para
+        // String quando o payload tem bytes multi-byte e o tamanho nao bate.
+        // Este projeto envia texto em ISO-8859-1 (tamanhos sempre iguais); o charset
+        // padrao aqui so serve para aceitar o que os nos legados codificaram com ele.
+        if (payloadLength != declaredLength && !matchesCharLength(frame, payloadStart, end, declaredLength)) {
+            return MALFORMED;
+        }
+
+        frame.position(payloadStart);
+        return TYPE_TEXT_DATA;
+    }
+
+    private static boolean matchesCharLength(ByteBuffer frame, int from, int to, int declaredLength) {
+        ByteBuffer view = frame.duplicate();
+        view.limit(to).position(from);
+        return Charset.defaultCharset().decode(view).length() == declaredLength;
+    }
+
+    // Escreve um inteiro em ASCII sem criar Strings intermediarias
+    private static void putAsciiInt(ByteBuffer out, int value) {
+        // Trabalha com a magnitude negativa: -Integer.MIN_VALUE nao cabe em um int
+        if (value < 0) {
+            out.put((byte) '-');
+        } else {
+            value = -value;
+        }
+        int divisor = 1;
+        while (value / divisor <= -10) {
+            divisor *= 10;
+        }
+        while (divisor > 0) {
+            out.put((byte) ('0' - (value / divisor) % 10));
+            divisor /= 10;
+        }
+    }
+}
@@ -2,152 +2,897 @@ package projetoredes.unicast;
 
 import java.io.IOException;
 import java.net.*;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import projetoredes.metrics.MetricsRegistry;
+import projetoredes.metrics.MetricsSource;
+import projetoredes.metrics.MetricsWriter;
+import projetoredes.utils.LatencyHistogram;
 import projetoredes.utils.Utils;
 
 public class UnicastProtocol implements UnicastServiceInterface, AutoCloseable {
 
-    private static final int MAX_PDU_SIZE = 1024;
-    private final DatagramSocket socket;
+    public static final int MAX_PDU_SIZE = 1024;
+    // Maior payload que cabe em uma PDU em qualquer formato (o cabeçalho de texto
+    // "UPDREQPDU <tamanho> " e o maior deles)
+    public static final int MAX_PAYLOAD_SIZE = MAX_PDU_SIZE - 16;
+    // Maior trecho de payload em um fragmento best-effort e em um confiavel
+    private static final int MAX_FRAGMENT_DATA = MAX_PDU_SIZE - UnicastPDUCodec.BINARY_HEADER_SIZE
+            - UnicastPDUCodec.FRAGMENT_HEADER_SIZE;
+    private static final int MAX_RELIABLE_FRAGMENT_DATA = MAX_FRAGMENT_DATA - UnicastPDUCodec.RELIABLE_HEADER_SIZE;
+    private static final int MAX_RELIABLE_PAYLOAD = Math.min(FragmentReassembler.MAX_MESSAGE_SIZE,
+            ReliableChannel.WINDOW * MAX_RELIABLE_FRAGMENT_DATA);
+    // Espera pela resposta ao anuncio do formato binario antes de desistir das mensagens
+    // confiaveis guardadas para o destino. Pode ser alterado com -Dprojetoredes.unicast.probeWaitMs=<ms>
+    static final long PROBE_WAIT_MS = Math.max(1, Long.getLong("projetoredes.unicast.probeWaitMs", 2_000));
+    private final DatagramChannel channel;
     private final UnicastServiceUserInterface user;
+    private final short selfId;
+    private final WireFormat wireFormat;
 
-    // Mapa de IDs - Enderecos
-    private final Map<Short, UCSAP> knownEntities = new HashMap<>();
+    // Laço de eventos que atende o canal; so e fechado aqui se foi criado por nos
+    private final UnicastEventLoop eventLoop;
+    private final boolean ownsEventLoop;
+    private final BufferPool bufferPool;
+    private final ReliableChannel reliableChannel;
+    private final FragmentReassembler reassembler;
+    private final ReceiveDispatcher dispatcher;
+    private final AtomicInteger lastMessageId = new AtomicInteger();
+    private final UnicastMetrics metrics = new UnicastMetrics();
+    private final MetricsSource metricsSource = this::writeMetrics;
 
-    // Mapa de Enderecos - IDs
-    private final Map<SocketAddress, Short> knownAddresses = new HashMap<>();
+    // Visao somente leitura do buffer de recepçao entregue ao usuario. E criada uma
+    // unica vez por buffer e reposicionada a cada datagrama, para que a entrega nao
+    // aloque nada. So e usada pela thread que chama processPDU.
+    private ByteBuffer deliveryView;
+    private ByteBuffer deliveryViewSource;
 
-    private final Thread receiverThread;
+    // Mapa de IDs - Enderecos (resolvidos na inicializaçao e a cada recarga)
+    // e mapa de Enderecos - IDs. Nunca sao alterados: uma recarga publica mapas
+    // novos, para que o envio e a recepçao os leiam sem travas.
+    private volatile Map<Short, InetSocketAddress> knownEntities;
+    private volatile Map<SocketAddress, Short> knownAddresses;
+
+    // Negociaçao do formato binario: destinos que ja anunciaram suporte
+    // e destinos para os quais ja anunciamos o nosso
+    private final Set<Short> binaryPeers = ConcurrentHashMap.newKeySet();
+    private final Set<Short> probedPeers = ConcurrentHashMap.newKeySet();
+    // Destinos que nao responderam ao anuncio em PROBE_WAIT_MS: tratados como somente
+    // texto (sem entrega confiavel) ate anunciarem o suporte
+    private final Set<Short> textPeers = ConcurrentHashMap.newKeySet();
+
+    // Mensagens confiaveis para destinos ainda negociando o formato (ver awaitProbe)
+    private final Map<Short, AwaitingProbe> awaitingProbe = new ConcurrentHashMap<>();
+
+    // Protegido pelo monitor da propria instancia. Depois de enviada ou descartada
+    // ('done'), uma nova espera pelo mesmo destino cria outra instancia.
+    private static final class AwaitingProbe {
+        final List<byte[]> messages = new ArrayList<>();
+        TimingWheel.Timeout timeout;
+        boolean done;
+    }
 
     public UnicastProtocol(UnicastServiceUserInterface user, short userId, String configPath)
             throws IOException, IllegalArgumentException {
+        this(user, userId, configPath, WireFormat.AUTO);
+    }
+
+    public UnicastProtocol(UnicastServiceUserInterface user, short userId, String configPath, WireFormat wireFormat)
+            throws IOException, IllegalArgumentException {
+        this(user, userId, configPath, wireFormat, null);
+    }
+
+    // Se 'eventLoop' for nulo, a instancia cria (e fecha) o seu proprio laço.
+    // Passar um laço compartilhado permite atender varios UCSAPs com uma unica thread.
+    public UnicastProtocol(UnicastServiceUserInterface user, short userId, String configPath, WireFormat wireFormat,
+            UnicastEventLoop eventLoop) throws IOException, IllegalArgumentException {
+        this(user, userId, Utils.loadConfiguration(configPath), wireFormat, eventLoop);
+    }
+
+    // Recebe a configuraçao ja carregada, para que varias instancias no mesmo
+    // processo nao precisem ler e resolver o arquivo cada uma.
+    public UnicastProtocol(UnicastServiceUserInterface user, short userId, List<UCSAP> addresses, WireFormat wireFormat,
+            UnicastEventLoop eventLoop) throws IOException, IllegalArgumentException {
+        this(user, userId, addresses, wireFormat, eventLoop, DispatchMode.DEFAULT);
+    }
+
+    // 'dispatchMode' define a thread que chama user.UPDataInd (ver DispatchMode)
+    public UnicastProtocol(UnicastServiceUserInterface user, short userId, List<UCSAP> addresses, WireFormat wireFormat,
+            UnicastEventLoop eventLoop, DispatchMode dispatchMode) throws IOException, IllegalArgumentException {
         if (user == null) {
             throw new IllegalArgumentException("O usuario do serviço nao pode ser nulo.");
         }
         this.user = user;
+        this.selfId = userId;
+        this.wireFormat = (wireFormat == null) ? WireFormat.AUTO : wireFormat;
+
+        this.knownEntities = resolve(addresses);
+        this.knownAddresses = inverse(knownEntities);
+
+        InetSocketAddress selfDescription = knownEntities.get(userId);
+        if (selfDescription == null) {
+            throw new IllegalArgumentException("ID " + userId + " não encontrado na configuração.");
+        }
+
+        try {
+            this.channel = DatagramChannel.open();
+            this.channel.bind(new InetSocketAddress(selfDescription.getPort()));
+            this.channel.configureBlocking(false);
+        } catch (IOException e) {
+            throw new IOException("Não foi possível criar ou vincular o canal na porta " + selfDescription.getPort(), e);
+        }
+
+        this.ownsEventLoop = (eventLoop == null);
+        this.eventLoop = ownsEventLoop ? new UnicastEventLoop("UnicastEventLoop-" + userId) : eventLoop;
+        this.bufferPool = this.eventLoop.bufferPool();
+        this.reliableChannel = new ReliableChannel(selfId, this.eventLoop.timingWheel(), this::transmit);
+        this.reassembler = new FragmentReassembler(this.eventLoop.timingWheel());
+        this.dispatcher = new ReceiveDispatcher(dispatchMode == null ? DispatchMode.DEFAULT : dispatchMode,
+                user, bufferPool, metrics.dispatchLatency, "UnicastDispatch-" + userId);
+        MetricsRegistry.register("UnicastProtocol", selfId, new Management(), metricsSource);
+        this.eventLoop.register(channel, this);
+    }
 
-        List<UCSAP> addresses = Utils.loadConfiguration(configPath);
+    private static Map<Short, InetSocketAddress> resolve(List<UCSAP> addresses) {
+        Map<Short, InetSocketAddress> entities = new HashMap<>();
         for (UCSAP ucsap : addresses) {
-            knownEntities.put(ucsap.id(), ucsap);
             try {
                 InetAddress address = InetAddress.getByName(ucsap.host());
-                SocketAddress socketAddr = new InetSocketAddress(address, ucsap.port());
-                knownAddresses.put(socketAddr, ucsap.id());
+                entities.put(ucsap.id(), new InetSocketAddress(address, ucsap.port()));
             } catch (UnknownHostException e) {
                 System.err.println("Aviso: Host desconhecido " + ucsap.host() + ". Ignorando esta entrada.");
             }
         }
+        return entities;
+    }
 
-        UCSAP selfDescription = knownEntities.get(userId);
-        if (selfDescription == null) {
-            throw new IllegalArgumentException("ID " + userId + " não encontrado na configuração.");
+    private static Map<SocketAddress, Short> inverse(Map<Short, InetSocketAddress> entities) {
+        Map<SocketAddress, Short> addresses = new HashMap<>();
+        for (Map.Entry<Short, InetSocketAddress> entry : entities.entrySet()) {
+            addresses.put(entry.getValue(), entry.getKey());
+        }
+        return addresses;
+    }
+
+    // Aplica uma nova lista de UCSAPs: entradas novas passam a ser aceitas, as
+    // removidas deixam de ser, e as que mudaram de endereço renegociam o formato.
+    // O canal continua vinculado a porta original: uma mudança do proprio endereço
+    // so vale apos reiniciar.
+    @Override
+    public void reloadAddresses(List<UCSAP> addresses) {
+        Map<Short, InetSocketAddress> previous = knownEntities;
+        Map<Short, InetSocketAddress> entities = resolve(addresses);
+        InetSocketAddress self = previous.get(selfId);
+        if (!self.equals(entities.get(selfId))) {
+            System.err.println("Aviso: Endereço do ID " + selfId + " alterado ou removido da configuração. "
+                    + "Mantendo " + self + " até reiniciar.");
+            entities.put(selfId, self);
         }
 
-        try {
-            this.socket = new DatagramSocket(selfDescription.port());
-        } catch (SocketException e) {
-            throw new IOException("Não foi possível criar ou vincular o socket na porta " + selfDescription.port(), e);
+        int added = 0;
+        int changed = 0;
+        int removed = 0;
+        List<Short> renegotiate = new ArrayList<>();
+        for (Map.Entry<Short, InetSocketAddress> entry : entities.entrySet()) {
+            InetSocketAddress old = previous.get(entry.getKey());
+            if (old == null) {
+                added++;
+            } else if (!old.equals(entry.getValue())) {
+                changed++;
+                renegotiate.add(entry.getKey());
+            }
+        }
+        for (Short id : previous.keySet()) {
+            if (!entities.containsKey(id)) {
+                removed++;
+                renegotiate.add(id);
+            }
+        }
+        if (added + changed + removed == 0) {
+            return;
         }
 
-        this.receiverThread = new Thread(this::startReceiverThread);
-        this.receiverThread.start();
+        this.knownAddresses = inverse(entities);
+        this.knownEntities = entities;
+        for (short id : renegotiate) {
+            binaryPeers.remove(id);
+            probedPeers.remove(id);
+            textPeers.remove(id);
+        }
+        System.out.println("UCSAP " + selfId + ": Configuração recarregada (" + added + " novo(s), " + changed
+                + " alterado(s), " + removed + " removido(s)).");
     }
 
+    // Texto e convertido em ISO-8859-1, como em todo o projeto: um byte por caractere,
+    // de modo que o tamanho declarado e o do payload coincidem
     @Override
     public boolean UPDataReq(short destinationId, String data) {
-        UCSAP destination = knownEntities.get(destinationId);
+        return send(destinationId, ByteBuffer.wrap(data.getBytes(StandardCharsets.ISO_8859_1)), data.length());
+    }
+
+    @Override
+    public boolean UPDataReq(short destinationId, ByteBuffer data) {
+        return send(destinationId, data, data.remaining());
+    }
+
+    // Delivery.RELIABLE nunca vira best-effort: sem suporte no destino (supportsReliable)
+    // o envio e recusado e contado; com o formato ainda em negociaçao a mensagem espera
+    // a resposta ao anuncio (ver awaitProbe)
+    @Override
+    public boolean UPDataReq(short destinationId, ByteBuffer data, Delivery delivery) {
+        if (delivery != Delivery.RELIABLE) {
+            return send(destinationId, data, data.remaining());
+        }
+        if (!knownEntities.containsKey(destinationId)) {
+            System.err.println("ERRO: Destino com ID " + destinationId + " desconhecido.");
+            return false;
+        }
+        if (!isBinaryCapable(destinationId)) {
+            return awaitProbe(destinationId, data);
+        }
+        return sendReliable(destinationId, data);
+    }
+
+    private boolean sendReliable(short destinationId, ByteBuffer data) {
+        ByteBuffer frame = bufferPool.acquire();
+        try {
+            int total = data.remaining();
+            if (total + UnicastPDUCodec.BINARY_HEADER_SIZE + UnicastPDUCodec.RELIABLE_HEADER_SIZE <= MAX_PDU_SIZE) {
+                return reliableChannel.send(destinationId, data, frame);
+            }
+            if (total > MAX_RELIABLE_PAYLOAD) {
+                System.err.println("ERRO: Mensagem muito longa para ser enviada.");
+                return false;
+            }
+
+            // Todos os fragmentos entram juntos na janela de entrega confiavel
+            int count = fragmentCount(total, MAX_RELIABLE_FRAGMENT_DATA);
+            int messageId = lastMessageId.incrementAndGet();
+            int start = data.position();
+            boolean sent = reliableChannel.send(destinationId, count, frame,
+                    (out, epoch, seq, index) -> UnicastPDUCodec.encodeReliableFragment(out, selfId, epoch, seq,
+                            messageId, index, count, total, chunk(data, start, index, count, total)));
+            if (sent) {
+                data.position(start + total);
+            }
+            return sent;
+        } finally {
+            bufferPool.release(frame);
+        }
+    }
+
+    // Maior payload aceito por UPDataReq para o destino. Destinos que falam o formato
+    // binario recebem mensagens fragmentadas; no modo confiavel o limite tambem depende
+    // da janela, ja que todos os fragmentos sao enviados de uma vez.
+    @Override
+    public int maxPayloadSize(short destinationId, Delivery delivery) {
+        if (!isBinaryCapable(destinationId)) {
+            return MAX_PAYLOAD_SIZE;
+        }
+        if (delivery == Delivery.RELIABLE) {
+            return MAX_RELIABLE_PAYLOAD;
+        }
+        return FragmentReassembler.MAX_MESSAGE_SIZE;
+    }
+
+    // Binario, ou em modo AUTO enquanto o destino nao se mostrar somente texto
+    @Override
+    public boolean supportsReliable(short destinationId) {
+        return wireFormat == WireFormat.BINARY
+                || (wireFormat == WireFormat.AUTO
+                        && (binaryPeers.contains(destinationId) || !textPeers.contains(destinationId)));
+    }
+
+    // Envio confiavel para um destino que ainda nao anunciou o formato binario: a
+    // mensagem e copiada e enviada quando ele responder ao anuncio (markBinaryPeer).
+    // Sem resposta em PROBE_WAIT_MS as mensagens sao descartadas e contadas, e o
+    // destino passa a recusar a entrega confiavel ate anunciar o suporte.
+    private boolean awaitProbe(short destinationId, ByteBuffer data) {
+        if (!supportsReliable(destinationId)) {
+            metrics.reliableRefused.increment();
+            System.err.println("ERRO: Destino " + destinationId + " não suporta entrega confiável. Mensagem não enviada.");
+            return false;
+        }
+        if (data.remaining() > MAX_RELIABLE_PAYLOAD) {
+            System.err.println("ERRO: Mensagem muito longa para ser enviada.");
+            return false;
+        }
+
+        byte[] message = new byte[data.remaining()];
+        data.get(message);
+        while (true) {
+            AwaitingProbe awaiting = awaitingProbe.computeIfAbsent(destinationId, id -> new AwaitingProbe());
+            synchronized (awaiting) {
+                if (awaiting.done) {
+                    awaitingProbe.remove(destinationId, awaiting);
+                    continue;
+                }
+                if (binaryPeers.contains(destinationId)) {
+                    break; // Respondeu nesse meio tempo: markBinaryPeer envia o que ja estava guardado
+                }
+                if (awaiting.messages.size() >= ReliableChannel.WINDOW) {
+                    metrics.reliableRefused.increment();
+                    System.err.println("ERRO: Muitas mensagens confiáveis aguardando o destino " + destinationId
+                            + ". Mensagem não enviada.");
+                    return false;
+                }
+                awaiting.messages.add(message);
+                if (awaiting.timeout == null) {
+                    awaiting.timeout = eventLoop.timingWheel().schedule(
+                            () -> probeExpired(destinationId, awaiting), PROBE_WAIT_MS, TimeUnit.MILLISECONDS);
+                    // Anuncia de novo: o primeiro anuncio (ou a resposta) pode ter se perdido
+                    InetSocketAddress destination = knownEntities.get(destinationId);
+                    if (destination != null) {
+                        probedPeers.add(destinationId);
+                        sendProbe(destination);
+                    }
+                }
+                return true;
+            }
+        }
+        return sendReliable(destinationId, ByteBuffer.wrap(message));
+    }
+
+    // O destino respondeu ao anuncio: envia as mensagens confiaveis que o aguardavam
+    private void sendAwaitingProbe(short destinationId) {
+        AwaitingProbe awaiting = awaitingProbe.remove(destinationId);
+        if (awaiting == null) {
+            return;
+        }
+        synchronized (awaiting) {
+            awaiting.done = true;
+            if (awaiting.timeout != null) {
+                awaiting.timeout.cancel();
+            }
+        }
+        for (byte[] message : awaiting.messages) {
+            if (!sendReliable(destinationId, ByteBuffer.wrap(message))) {
+                metrics.reliableRefused.increment();
+                System.err.println("ERRO: Falha ao enviar mensagem confiável guardada para o destino " + destinationId + ".");
+            }
+        }
+    }
+
+    private void probeExpired(short destinationId, AwaitingProbe awaiting) {
+        int dropped;
+        synchronized (awaiting) {
+            if (awaiting.done) {
+                return;
+            }
+            awaiting.done = true;
+            dropped = awaiting.messages.size();
+        }
+        awaitingProbe.remove(destinationId, awaiting);
+        textPeers.add(destinationId);
+        probedPeers.remove(destinationId); // O proximo envio anuncia de novo
+        metrics.reliableRefused.add(dropped);
+        System.err.println("Aviso: Destino " + destinationId + " não respondeu ao anúncio do formato binário em "
+                + PROBE_WAIT_MS + " ms. " + dropped + " mensagem(ns) confiável(is) descartada(s).");
+    }
+
+    @Override
+    public boolean isBinaryCapable(short destinationId) {
+        return wireFormat == WireFormat.BINARY
+                || (wireFormat == WireFormat.AUTO && binaryPeers.contains(destinationId));
+    }
+
+    private boolean send(short destinationId, ByteBuffer payload, int declaredLength) {
+        InetSocketAddress destination = knownEntities.get(destinationId);
 
         if (destination == null) {
             System.err.println("ERRO: Destino com ID " + destinationId + " desconhecido.");
             return false;
         }
 
-        String pduString = "UPDREQPDU " + data.length() + " " + data;
-        byte[] buffer = pduString.getBytes();
+        // Anuncia o suporte binario na primeira vez que falamos com o destino
+        if (wireFormat == WireFormat.AUTO && !binaryPeers.contains(destinationId)
+                && probedPeers.add(destinationId)) {
+            sendProbe(destination);
+        }
 
-        if (buffer.length > MAX_PDU_SIZE) {
+        boolean binary = isBinaryCapable(destinationId);
+        if (binary && payload.remaining() > MAX_PDU_SIZE - UnicastPDUCodec.BINARY_HEADER_SIZE) {
+            return sendFragments(destination, payload);
+        }
+
+        int payloadStart = payload.position();
+        ByteBuffer frame = bufferPool.acquire();
+
+        try {
+            if (binary) {
+                UnicastPDUCodec.encodeData(frame, selfId, payload);
+            } else {
+                UnicastPDUCodec.encodeText(frame, payload, declaredLength);
+            }
+            frame.flip();
+            return transmit(destination, frame);
+        } catch (BufferOverflowException e) {
+            payload.position(payloadStart);
+            System.err.println("ERRO: Mensagem muito longa para ser enviada.");
+            return false;
+        } finally {
+            bufferPool.release(frame);
+        }
+    }
+
+    // Envia um payload maior que uma PDU em fragmentos best-effort
+    private boolean sendFragments(InetSocketAddress destination, ByteBuffer payload) {
+        int total = payload.remaining();
+        if (total > FragmentReassembler.MAX_MESSAGE_SIZE) {
             System.err.println("ERRO: Mensagem muito longa para ser enviada.");
             return false;
         }
 
+        int count = fragmentCount(total, MAX_FRAGMENT_DATA);
+        int messageId = lastMessageId.incrementAndGet();
+        int start = payload.position();
+        ByteBuffer frame = bufferPool.acquire();
         try {
-            InetAddress address = InetAddress.getByName(destination.host());
-            DatagramPacket packet = new DatagramPacket(buffer, buffer.length, address, destination.port());
-            socket.send(packet);
+            boolean sent = true;
+            for (int index = 0; index < count; index++) {
+                frame.clear();
+                UnicastPDUCodec.encodeFragment(frame, selfId, messageId, index, count, total,
+                        chunk(payload, start, index, count, total));
+                frame.flip();
+                sent &= transmit(destination, frame);
+            }
+            payload.position(start + total);
+            return sent;
+        } finally {
+            bufferPool.release(frame);
+        }
+    }
+
+    private static int fragmentCount(int total, int maxChunk) {
+        return (total + maxChunk - 1) / maxChunk;
+    }
+
+    // Trecho 'index' do payload que começa em 'start' (sem copiar)
+    private static ByteBuffer chunk(ByteBuffer payload, int start, int index, int count, int total) {
+        int chunkSize = FragmentReassembler.chunkSize(total, count);
+        int from = start + index * chunkSize;
+        int to = start + Math.min(total, (index + 1) * chunkSize);
+        return payload.duplicate().limit(to).position(from);
+    }
+
+    private void sendProbe(InetSocketAddress destination) {
+        ByteBuffer frame = bufferPool.acquire();
+        try {
+            UnicastPDUCodec.encodeProbe(frame, selfId);
+            frame.flip();
+            transmit(destination, frame);
+        } finally {
+            bufferPool.release(frame);
+        }
+    }
+
+    private boolean transmit(short destinationId, ByteBuffer frame) {
+        InetSocketAddress destination = knownEntities.get(destinationId);
+        return destination != null && transmit(destination, frame);
+    }
+
+    private boolean transmit(InetSocketAddress destination, ByteBuffer frame) {
+        int bytes = frame.remaining();
+        try {
+            // Canal nao bloqueante: 0 bytes enviados indica buffer do socket cheio
+            if (channel.send(frame, destination) == 0) {
+                System.err.println("ERRO: Buffer de envio cheio. Pacote descartado.");
+                return false;
+            }
+            metrics.sent(bytes);
             return true;
+        } catch (ClosedChannelException e) {
+            return false; // Protocolo sendo encerrado
         } catch (IOException e) {
             System.err.println("Erro de I/O ao enviar pacote: " + e.getMessage());
             return false;
         }
     }
 
-    private void startReceiverThread() {
-        byte[] buffer = new byte[MAX_PDU_SIZE];
-        while (!socket.isClosed()) {
-            try {
-                DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
-                // Bloqueia ate receber pacote
-                socket.receive(packet);
+    // Chamado pelo laço de eventos quando o canal esta pronto para leitura.
+    // Retorna false quando nao ha mais datagramas pendentes.
+    boolean receive(DatagramChannel readyChannel, ByteBuffer buffer) {
+        SocketAddress senderAddress;
+        try {
+            senderAddress = readyChannel.receive(buffer);
+        } catch (ClosedChannelException e) {
+            return false;
+        } catch (IOException e) {
+            System.err.println("Erro de I/O ao receber pacote: " + e.getMessage());
+            return false;
+        }
+        if (senderAddress == null) {
+            return false;
+        }
+        long receivedNanos = System.nanoTime();
+        buffer.flip();
+        metrics.received(buffer.remaining());
 
-                // Identificar o remetente pelo mapa de enderecos
-                SocketAddress senderAddress = packet.getSocketAddress();
-                Short sourceId = knownAddresses.get(senderAddress);
+        // Identificar o remetente pelo mapa de enderecos
+        Short sourceId = knownAddresses.get(senderAddress);
+        if (sourceId == null) {
+            metrics.droppedUnknownSender.increment();
+            System.err.println("Aviso: Pacote recebido de endereço desconhecido " + senderAddress + ". Ignorando.");
+            return true;
+        }
 
-                if (sourceId == null) {
-                    System.err.println(
-                            "Aviso: Pacote recebido de endereço desconhecido " + senderAddress + ". Ignorando.");
-                    continue;
-                }
+        // O buffer tem um byte a mais que a maior PDU: cheio, o datagrama foi truncado
+        if (buffer.remaining() > MAX_PDU_SIZE) {
+            metrics.droppedOversize.increment();
+            System.err.println("Aviso: PDU maior que " + MAX_PDU_SIZE + " bytes recebida de ID " + sourceId + ". Ignorando.");
+            return true;
+        }
+
+        // Processar a PDU recebida
+        processPDU(sourceId, buffer, receivedNanos);
+        return true;
+    }
+
+    // Visivel no pacote para os benchmarks (benchmarks/)
+    void processPDU(short sourceId, ByteBuffer frame) {
+        processPDU(sourceId, frame, System.nanoTime());
+    }
+
+    private void processPDU(short sourceId, ByteBuffer frame, long receivedNanos) {
+        if (frame.hasRemaining() && frame.get(frame.position()) == UnicastPDUCodec.VERSION
+                && frame.remaining() >= UnicastPDUCodec.BINARY_HEADER_SIZE
+                && UnicastPDUCodec.binarySourceId(frame) != sourceId) {
+            metrics.droppedUnknownSender.increment();
+            System.err.println("Aviso: ID de origem na PDU não corresponde ao remetente " + sourceId + ". Ignorando.");
+            return;
+        }
 
-                // Processar a PDU recebida
-                String receivedData = new String(packet.getData(), 0, packet.getLength());
-                processPDU(sourceId, receivedData);
-            } catch (SocketException e) {
-                System.err.println("Socket fechado inesperadamente: " + e.getMessage());
+        boolean fragment = frame.remaining() >= UnicastPDUCodec.BINARY_HEADER_SIZE
+                && frame.get(frame.position()) == UnicastPDUCodec.VERSION && UnicastPDUCodec.isFragment(frame);
+        int type = UnicastPDUCodec.decode(frame);
+        switch (type) {
+            case UnicastPDUCodec.TYPE_PROBE:
+                markBinaryPeer(sourceId);
                 break;
-            } catch (IOException e) {
-                System.err.println("Erro de I/O ao receber pacote: " + e.getMessage());
-            }
+            case UnicastPDUCodec.TYPE_DATA:
+                markBinaryPeer(sourceId);
+                deliver(sourceId, frame, fragment, receivedNanos);
+                break;
+            case UnicastPDUCodec.TYPE_TEXT_DATA:
+                dispatcher.dispatch(sourceId, view(frame), false, receivedNanos);
+                break;
+            case UnicastPDUCodec.TYPE_RELIABLE_DATA:
+                markBinaryPeer(sourceId);
+                // Sem espaço para entregar, a PDU nao e confirmada e sera retransmitida
+                if (dispatcher.hasRoom(sourceId) && acceptReliable(sourceId, frame)) {
+                    deliver(sourceId, frame, fragment, receivedNanos);
+                }
+                break;
+            case UnicastPDUCodec.TYPE_ACK:
+                reliableChannel.onAck(sourceId, frame);
+                break;
+            default:
+                metrics.droppedMalformed.increment();
+                System.err.println("ERRO: PDU mal formatada recebida de ID " + sourceId + ". Ignorando.");
+        }
+    }
+
+    // Entrega o payload, ou guarda o fragmento ate a mensagem estar completa
+    private void deliver(short sourceId, ByteBuffer frame, boolean fragment, long receivedNanos) {
+        if (!fragment) {
+            dispatcher.dispatch(sourceId, view(frame), false, receivedNanos);
+            return;
+        }
+        ByteBuffer message = reassembler.accept(sourceId, frame);
+        if (message == frame) {
+            dispatcher.dispatch(sourceId, view(frame), false, receivedNanos); // Mensagem de um unico fragmento
+        } else if (message != null) {
+            dispatcher.dispatch(sourceId, message.asReadOnlyBuffer(), true, receivedNanos);
         }
     }
 
-    private void processPDU(short sourceId, String pdu) {
-        String[] parts = pdu.split(" ", 3);
+    // Visao somente leitura de 'frame' entre a sua posiçao e o seu limite, sem copiar
+    private ByteBuffer view(ByteBuffer frame) {
+        if (deliveryViewSource != frame) {
+            deliveryViewSource = frame;
+            deliveryView = frame.asReadOnlyBuffer();
+        }
+        return deliveryView.limit(frame.limit()).position(frame.position());
+    }
 
-        if (parts.length == 3 && parts[0].equals("UPDREQPDU")) {
-            try {
-                int declaredLength = Integer.parseInt(parts[1]);
-                String data = parts[2];
+    // Confirma a PDU e deixa 'frame' nos dados se ela ainda nao foi entregue
+    private boolean acceptReliable(short sourceId, ByteBuffer frame) {
+        ByteBuffer ackFrame = bufferPool.acquire();
+        try {
+            return reliableChannel.onData(sourceId, frame, ackFrame);
+        } finally {
+            bufferPool.release(ackFrame);
+        }
+    }
 
-                if (data.length() != declaredLength) {
-                    System.err.println("Aviso: Comprimento declarado (" + declaredLength
-                            + ") não corresponde ao comprimento real (" + data.length() + "). Ignorando PDU.");
-                    return;
-                }
+    // Datagramas e bytes enviados e recebidos (todas as PDUs, inclusive anuncios e confirmaçoes)
+    public long pdusSent() {
+        return metrics.pdusSent.sum();
+    }
+
+    public long bytesSent() {
+        return metrics.bytesSent.sum();
+    }
+
+    public long pdusReceived() {
+        return metrics.pdusReceived.sum();
+    }
+
+    public long bytesReceived() {
+        return metrics.bytesReceived.sum();
+    }
+
+    // Datagramas descartados por remetente desconhecido, PDU mal formatada ou tamanho excessivo
+    public long droppedUnknownSender() {
+        return metrics.droppedUnknownSender.sum();
+    }
+
+    public long droppedMalformed() {
+        return metrics.droppedMalformed.sum();
+    }
+
+    public long droppedOversize() {
+        return metrics.droppedOversize.sum();
+    }
+
+    // Tempo (ns) entre a leitura de cada datagrama e o inicio da sua entrega ao usuario
+    public LatencyHistogram dispatchLatency() {
+        return metrics.dispatchLatency;
+    }
+
+    // Contadores da entrega confiavel
+    public long reliableRetransmissions() {
+        return reliableChannel.retransmissions();
+    }
+
+    public long reliableDuplicates() {
+        return reliableChannel.duplicates();
+    }
+
+    public long reliableFailures() {
+        return reliableChannel.failures();
+    }
+
+    public int reliableOutstanding() {
+        return reliableChannel.outstanding();
+    }
+
+    // Envios confiaveis recusados ou descartados sem chegar a ser confiaveis (destino
+    // somente texto, sem resposta ao anuncio ou com muitas mensagens aguardando)
+    public long reliableRefused() {
+        return metrics.reliableRefused.sum();
+    }
+
+    // Contadores da remontagem de mensagens fragmentadas
+    public long reassemblyEvictions() {
+        return reassembler.evicted();
+    }
+
+    public int reassemblyPendingBytes() {
+        return reassembler.pendingBytes();
+    }
+
+    // Metricas da entrega ao usuario (ver DispatchMode)
+    public DispatchMode dispatchMode() {
+        return dispatcher.mode();
+    }
 
-                user.UPDataInd(sourceId, data);
-            } catch (NumberFormatException e) {
-                System.err.println("Aviso: Comprimento inválido na PDU recebida. Ignorando.");
+    public int dispatchQueueDepth() {
+        return dispatcher.pending();
+    }
+
+    public int dispatchMaxQueueDepth() {
+        return dispatcher.maxPending();
+    }
+
+    public long dispatchDelivered() {
+        return dispatcher.delivered();
+    }
+
+    public long dispatchDropped() {
+        return dispatcher.dropped();
+    }
+
+    public long dispatchDeferred() {
+        return dispatcher.deferred();
+    }
+
+    public long dispatchFailed() {
+        return dispatcher.failed();
+    }
+
+    // Registra que o remetente fala o formato binario e, se ainda nao o fizemos,
+    // responde com o nosso anuncio para completar a negociaçao.
+    private void markBinaryPeer(short sourceId) {
+        if (wireFormat == WireFormat.TEXT) {
+            return;
+        }
+        if (binaryPeers.add(sourceId)) {
+            textPeers.remove(sourceId);
+            InetSocketAddress destination = knownEntities.get(sourceId);
+            if (destination != null && probedPeers.add(sourceId)) {
+                sendProbe(destination);
             }
-        } else {
-            System.err.println("ERRO: PDU mal formatada recebida de ID " + sourceId + ". Ignorando.");
+            sendAwaitingProbe(sourceId);
+        }
+    }
+
+    private void writeMetrics(MetricsWriter out) {
+        String node = MetricsWriter.label("node", selfId);
+        out.counter("projetoredes_unicast_pdus_sent_total", "Datagramas enviados", node, pdusSent());
+        out.counter("projetoredes_unicast_bytes_sent_total", "Bytes enviados", node, bytesSent());
+        out.counter("projetoredes_unicast_pdus_received_total", "Datagramas recebidos", node, pdusReceived());
+        out.counter("projetoredes_unicast_bytes_received_total", "Bytes recebidos", node, bytesReceived());
+        String dropped = "projetoredes_unicast_dropped_total";
+        String droppedHelp = "Datagramas descartados por motivo";
+        out.counter(dropped, droppedHelp, MetricsWriter.labels(node, MetricsWriter.label("reason", "unknown_sender")),
+                droppedUnknownSender());
+        out.counter(dropped, droppedHelp, MetricsWriter.labels(node, MetricsWriter.label("reason", "malformed")),
+                droppedMalformed());
+        out.counter(dropped, droppedHelp, MetricsWriter.labels(node, MetricsWriter.label("reason", "oversize")),
+                droppedOversize());
+        out.counter(dropped, droppedHelp, MetricsWriter.labels(node, MetricsWriter.label("reason", "dispatch_queue_full")),
+                dispatchDropped());
+        out.summary("projetoredes_unicast_dispatch_latency_seconds",
+                "Tempo entre a leitura do datagrama e a entrega ao usuario", node, metrics.dispatchLatency);
+        out.gauge("projetoredes_unicast_dispatch_queue_depth", "PDUs aguardando entrega", node, dispatchQueueDepth());
+        out.counter("projetoredes_unicast_dispatch_delivered_total", "PDUs entregues ao usuario", node, dispatchDelivered());
+        out.counter("projetoredes_unicast_dispatch_deferred_total",
+                "PDUs confiaveis nao confirmadas por falta de espaco na fila", node, dispatchDeferred());
+        out.counter("projetoredes_unicast_dispatch_failed_total", "Entregas em que o usuario lancou excecao", node,
+                dispatchFailed());
+        out.counter("projetoredes_unicast_reliable_retransmissions_total", "Retransmissoes da entrega confiavel", node,
+                reliableRetransmissions());
+        out.counter("projetoredes_unicast_reliable_failures_total", "PDUs confiaveis abandonadas", node, reliableFailures());
+        out.counter("projetoredes_unicast_reliable_refused_total",
+                "Envios confiaveis recusados ou descartados sem entrega confiavel", node, reliableRefused());
+        out.gauge("projetoredes_unicast_reliable_outstanding", "PDUs confiaveis aguardando confirmacao", node,
+                reliableOutstanding());
+        out.counter("projetoredes_unicast_reassembly_evictions_total", "Mensagens fragmentadas descartadas", node,
+                reassemblyEvictions());
+    }
+
+    // Adaptador JMX (os getters do protocolo nao seguem a convençao getX)
+    private final class Management implements UnicastProtocolMXBean {
+        @Override
+        public long getPdusSent() {
+            return pdusSent();
+        }
+
+        @Override
+        public long getBytesSent() {
+            return bytesSent();
+        }
+
+        @Override
+        public long getPdusReceived() {
+            return pdusReceived();
+        }
+
+        @Override
+        public long getBytesReceived() {
+            return bytesReceived();
+        }
+
+        @Override
+        public long getDroppedUnknownSender() {
+            return droppedUnknownSender();
+        }
+
+        @Override
+        public long getDroppedMalformed() {
+            return droppedMalformed();
+        }
+
+        @Override
+        public long getDroppedOversize() {
+            return droppedOversize();
+        }
+
+        @Override
+        public String getDispatchMode() {
+            return dispatchMode().name();
+        }
+
+        @Override
+        public int getDispatchQueueDepth() {
+            return dispatchQueueDepth();
+        }
+
+        @Override
+        public long getDispatchDelivered() {
+            return dispatchDelivered();
+        }
+
+        @Override
+        public long getDispatchDropped() {
+            return dispatchDropped();
+        }
+
+        @Override
+        public long getDispatchDeferred() {
+            return dispatchDeferred();
+        }
+
+        @Override
+        public long getDispatchFailed() {
+            return dispatchFailed();
+        }
+
+        @Override
+        public double getDispatchLatencyMeanMicros() {
+            return metrics.dispatchLatency.mean() / 1000.0;
+        }
+
+        @Override
+        public double getDispatchLatencyP99Micros() {
+            return metrics.dispatchLatency.percentile(99) / 1000.0;
+        }
+
+        @Override
+        public double getDispatchLatencyMaxMicros() {
+            return metrics.dispatchLatency.max() / 1000.0;
+        }
+
+        @Override
+        public long getReliableRetransmissions() {
+            return reliableRetransmissions();
+        }
+
+        @Override
+        public long getReliableFailures() {
+            return reliableFailures();
+        }
+
+        @Override
+        public long getReliableRefused() {
+            return reliableRefused();
+        }
+
+        @Override
+        public int getReliableOutstanding() {
+            return reliableOutstanding();
+        }
+
+        @Override
+        public long getReassemblyEvictions() {
+            return reassemblyEvictions();
         }
     }
 
     @Override
     public void close() {
-        if (socket != null && !socket.isClosed()) {
-            socket.close();
+        MetricsRegistry.unregister("UnicastProtocol", selfId, metricsSource);
+        for (AwaitingProbe awaiting : awaitingProbe.values()) {
+            synchronized (awaiting) {
+                awaiting.done = true;
+                if (awaiting.timeout != null) {
+                    awaiting.timeout.cancel();
+                }
+            }
         }
+        awaitingProbe.clear();
+        reliableChannel.close();
+        reassembler.close();
         try {
-            if (receiverThread != null && receiverThread.isAlive()) {
-                receiverThread.join();
-            }
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            System.err.println("Thread de recepção interrompida durante o fechamento.");
+            channel.close();
+        } catch (IOException e) {
+            System.err.println("Erro ao fechar o canal: " + e.getMessage());
+        }
+        if (ownsEventLoop) {
+            eventLoop.close();
         }
+        dispatcher.close();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,47 @@
+package projetoredes.unicast;
+
+// Metricas de um UnicastProtocol via JMX (projetoredes:type=UnicastProtocol,id=<id>)
+public interface UnicastProtocolMXBean {
+    long getPdusSent();
+
+    long getBytesSent();
+
+    long getPdusReceived();
+
+    long getBytesReceived();
+
+    long getDroppedUnknownSender();
+
+    long getDroppedMalformed();
+
+    long getDroppedOversize();
+
+    String getDispatchMode();
+
+    int getDispatchQueueDepth();
+
+    long getDispatchDelivered();
+
+    long getDispatchDropped();
+
+    long getDispatchDeferred();
+
+    long getDispatchFailed();
+
+    // Latencia da leitura do datagrama ate a entrega ao usuario, em microssegundos
+    double getDispatchLatencyMeanMicros();
+
+    double getDispatchLatencyP99Micros();
+
+    double getDispatchLatencyMaxMicros();
+
+    long getReliableRetransmissions();
+
+    long getReliableFailures();
+
+    long getReliableRefused();
+
+    int getReliableOutstanding();
+
+    long getReassemblyEvictions();
+}
@@ -0,0 +1,10 @@
+package projetoredes.unicast;
+
+import java.io.IOException;
+
+// Cria a camada de transporte de um usuario. Permite que quem instancia o usuario
+// escolha o transporte (ex.: UnicastProtocol em um laço de eventos compartilhado).
+@FunctionalInterface
+public interface UnicastServiceFactory {
+    UnicastServiceInterface open(UnicastServiceUserInterface user) throws IOException;
+}
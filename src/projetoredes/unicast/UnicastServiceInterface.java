@@ -1,5 +1,43 @@
 package projetoredes.unicast;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
 public interface UnicastServiceInterface {
     boolean UPDataReq(short destinationId, String data);
-}
\ No newline at end of file
+
+    // Envia os bytes entre position e limit de 'data'. Implementaçoes sem suporte
+    // binario so conseguem transportar payloads de texto (ASCII).
+    default boolean UPDataReq(short destinationId, ByteBuffer data) {
+        return UPDataReq(destinationId, StandardCharsets.ISO_8859_1.decode(data).toString());
+    }
+
+    // Envia com a garantia de entrega escolhida. Delivery.RELIABLE so e aceita para
+    // destinos com supportsReliable; para os demais o envio e recusado (false), e quem
+    // chama escolhe se envia como Delivery.BEST_EFFORT.
+    default boolean UPDataReq(short destinationId, ByteBuffer data, Delivery delivery) {
+        return delivery != Delivery.RELIABLE && UPDataReq(destinationId, data);
+    }
+
+    // Indica se UPDataReq aceita Delivery.RELIABLE para o destino
+    default boolean supportsReliable(short destinationId) {
+        return false;
+    }
+
+    // Maior payload aceito por UPDataReq para o destino com a garantia dada.
+    // Implementaçoes com fragmentaçao aceitam mais que uma PDU.
+    default int maxPayloadSize(short destinationId, Delivery delivery) {
+        return UnicastProtocol.MAX_PAYLOAD_SIZE;
+    }
+
+    // Indica se o destino aceita payloads binarios arbitrarios
+    default boolean isBinaryCapable(short destinationId) {
+        return false;
+    }
+
+    // Troca os UCSAPs conhecidos sem reabrir o canal (recarga da configuraçao).
+    // Implementaçoes sem enderecos proprios (ex.: simulador) ignoram a chamada.
+    default void reloadAddresses(List<UCSAP> addresses) {
+    }
+}
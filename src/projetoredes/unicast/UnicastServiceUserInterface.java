@@ -1,5 +1,17 @@
 package projetoredes.unicast;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
 public interface UnicastServiceUserInterface {
     void UPDataInd(short sourceId, String data);
-}
\ No newline at end of file
+
+    // Entrega o payload como bytes, entre a posiçao e o limite de 'data'. O buffer e uma
+    // visao somente leitura do buffer de recepçao (sem copia) e so e valido durante a
+    // chamada: quem precisar guardar o payload deve copia-lo.
+    // Por padrao converte para String (ISO-8859-1, como UnicastServiceInterface.UPDataReq)
+    // e delega para a versao de texto.
+    default void UPDataInd(short sourceId, ByteBuffer data) {
+        UPDataInd(sourceId, StandardCharsets.ISO_8859_1.decode(data).toString());
+    }
+}
@@ -0,0 +1,11 @@
+package projetoredes.unicast;
+
+// Formato usado pelo UnicastProtocol para enviar PDUs.
+public enum WireFormat {
+    // Sempre o formato de texto original (compativel com nos antigos)
+    TEXT,
+    // Sempre o formato binario
+    BINARY,
+    // Texto ate que o destino anuncie suporte ao formato binario
+    AUTO
+}
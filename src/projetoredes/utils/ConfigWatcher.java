@@ -0,0 +1,97 @@
+package projetoredes.utils;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+// Observa arquivos de configuraçao e chama 'onChange' quando algum deles muda.
+// Usa o WatchService do diretorio de cada arquivo; criaçoes tambem contam, pois muitos
+// editores gravam um arquivo novo e o renomeiam. Eventos seguidos (ex.: um arquivo
+// gravado em partes, ou os dois arquivos salvos juntos) sao agrupados: 'onChange' so
+// e chamado depois de QUIET_MS sem eventos novos, na thread (daemon) do observador.
+public final class ConfigWatcher implements AutoCloseable {
+    private static final long QUIET_MS = 200;
+
+    private final WatchService watchService;
+    private final Set<Path> files = new HashSet<>();
+    private final Runnable onChange;
+    private final Thread thread;
+    private volatile boolean closed;
+
+    public ConfigWatcher(String threadName, Runnable onChange, String... paths) throws IOException {
+        this.onChange = onChange;
+        this.watchService = FileSystems.getDefault().newWatchService();
+        Set<Path> directories = new HashSet<>();
+        try {
+            for (String path : paths) {
+                Path file = Path.of(path).toAbsolutePath().normalize();
+                files.add(file);
+                if (directories.add(file.getParent())) {
+                    file.getParent().register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                            StandardWatchEventKinds.ENTRY_MODIFY);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            watchService.close();
+            throw e;
+        }
+
+        this.thread = new Thread(this::run, threadName);
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    private void run() {
+        try {
+            while (!closed) {
+                boolean changed = drain(watchService.take());
+                WatchKey key;
+                while ((key = watchService.poll(QUIET_MS, TimeUnit.MILLISECONDS)) != null) {
+                    changed |= drain(key);
+                }
+                if (changed && !closed) {
+                    try {
+                        onChange.run();
+                    } catch (RuntimeException e) {
+                        System.err.println("Erro ao recarregar a configuração: " + e.getMessage());
+                    }
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Encerrando
+        }
+    }
+
+    // Retorna true se algum evento for de um arquivo observado (ou se eventos foram perdidos)
+    private boolean drain(WatchKey key) {
+        Path directory = (Path) key.watchable();
+        boolean changed = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW
+                    || files.contains(directory.resolve((Path) event.context()))) {
+                changed = true;
+            }
+        }
+        key.reset();
+        return changed;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        thread.interrupt();
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            System.err.println("Erro ao encerrar o observador da configuração: " + e.getMessage());
+        }
+    }
+}
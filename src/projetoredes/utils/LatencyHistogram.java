@@ -0,0 +1,97 @@
+package projetoredes.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// Histograma de latencias no estilo HDR: faixas em potencias de 2, cada uma dividida
+// em SUB_BUCKETS/2 partes iguais, o que mantem o erro relativo abaixo de 2/SUB_BUCKETS
+// (~1,6%) com memoria fixa. Valores ate SUB_BUCKETS sao exatos.
+// O registro nao usa travas e pode ser feito por varias threads ao mesmo tempo; o total
+// e a soma sao LongAdders, para nao disputar uma mesma variavel no caminho de recepçao.
+public final class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 7;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int HALF = SUB_BUCKETS / 2;
+    // Maior bit significativo registrado (2^44 ns sao mais de 4 horas); acima disso satura
+    private static final int MAX_BIT = 44;
+    private static final long MAX_VALUE = (1L << (MAX_BIT + 1)) - 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(SUB_BUCKETS + (MAX_BIT - SUB_BUCKET_BITS + 1) * HALF);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    // Valores negativos (ex.: relogios dessincronizados) contam como 0
+    public void record(long value) {
+        value = Math.min(Math.max(0, value), MAX_VALUE);
+        counts.incrementAndGet(bucketOf(value));
+        count.increment();
+        sum.add(value);
+        if (value > max.get()) {
+            max.accumulateAndGet(value, Math::max);
+        }
+    }
+
+    private static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = (63 - Long.numberOfLeadingZeros(value)) - SUB_BUCKET_BITS + 1;
+        return SUB_BUCKETS + (shift - 1) * HALF + (int) ((value >>> shift) - HALF);
+    }
+
+    // Maior valor que cai no mesmo bucket de 'bucket'
+    private static long highestValueOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = (bucket - SUB_BUCKETS) / HALF + 1;
+        long sub = (bucket - SUB_BUCKETS) % HALF + HALF;
+        return ((sub + 1) << shift) - 1;
+    }
+
+    public long count() {
+        return count.sum();
+    }
+
+    public long sum() {
+        return sum.sum();
+    }
+
+    public long max() {
+        return max.get();
+    }
+
+    public double mean() {
+        long n = count.sum();
+        return (n == 0) ? 0 : (double) sum.sum() / n;
+    }
+
+    // Valor abaixo do qual (ou igual) estao 'percentile' por cento das amostras,
+    // arredondado para cima ate o limite do bucket (nunca acima do maximo registrado)
+    public long percentile(double percentile) {
+        long n = count.sum();
+        if (n == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * n));
+        long seen = 0;
+        for (int bucket = 0; bucket < counts.length(); bucket++) {
+            seen += counts.get(bucket);
+            if (seen >= rank) {
+                return Math.min(highestValueOf(bucket), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    public void reset() {
+        for (int bucket = 0; bucket < counts.length(); bucket++) {
+            counts.set(bucket, 0);
+        }
+        count.reset();
+        sum.reset();
+        max.set(0);
+    }
+}
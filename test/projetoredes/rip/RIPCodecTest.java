@@ -0,0 +1,197 @@
+package projetoredes.rip;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+// Ida e volta das PDUs RIP nos dois formatos
+class RIPCodecTest {
+
+    private static final int I = RIPConfig.INFINITY;
+
+    private final ByteBuffer buffer = ByteBuffer.allocate(4096);
+    private final RIPMessage message = new RIPMessage();
+
+    private int decode() {
+        buffer.flip();
+        return RIPCodec.decode(buffer, message);
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void indRoundTrip(boolean binary) {
+        int[] vector = {0, 3, I, 15, 200, Integer.MAX_VALUE};
+        int next = RIPCodec.encodeInd(buffer, binary, (short) 7, vector, 0, 42);
+
+        assertEquals(vector.length, next);
+        assertEquals(RIPCodec.IND, decode());
+        assertEquals(7, message.nodeId());
+        assertEquals(0, message.offset());
+        assertEquals(vector.length, message.total());
+        // So o formato binario leva o numero de sequencia
+        assertEquals(binary ? 42 : RIPMessage.NO_SEQUENCE, message.sequence());
+        int[] decoded = new int[message.columns()];
+        message.copyRow(0, decoded);
+        assertArrayEquals(vector, decoded);
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void indSegmentsRebuildTheVector(boolean binary) {
+        int[] vector = new int[300];
+        for (int i = 0; i < vector.length; i++) {
+            vector[i] = (i % 7 == 0) ? I : i * 37;
+        }
+
+        int[] rebuilt = new int[vector.length];
+        int offset = 0;
+        int segments = 0;
+        ByteBuffer small = ByteBuffer.allocate(128);
+        while (offset < vector.length) {
+            small.clear();
+            int next = RIPCodec.encodeInd(small, binary, (short) 3, vector, offset, 9);
+            small.flip();
+            assertEquals(RIPCodec.IND, RIPCodec.decode(small, message));
+            assertEquals(offset, message.offset());
+            assertEquals(vector.length, message.total());
+            assertEquals(next - offset, message.columns());
+            for (int i = 0; i < message.columns(); i++) {
+                rebuilt[message.offset() + i] = message.cost(0, i);
+            }
+            offset = next;
+            segments++;
+        }
+
+        assertArrayEquals(vector, rebuilt);
+        assertEquals(true, segments > 1);
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void deltaRoundTrip(boolean binary) {
+        int[] destinations = {1, 4, 9};
+        int[] costs = {5, I, 12};
+        RIPCodec.encodeDelta(buffer, binary, (short) 2, 77, 10, destinations, costs, destinations.length);
+
+        assertEquals(RIPCodec.DLT, decode());
+        assertEquals(2, message.nodeId());
+        assertEquals(77, message.sequence());
+        assertEquals(10, message.total());
+        assertEquals(destinations.length, message.deltaEntries());
+        for (int i = 0; i < destinations.length; i++) {
+            assertEquals(destinations[i], message.deltaDestination(i));
+            assertEquals(costs[i], message.deltaCost(i));
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void deltaWithDestinationOutsideTheVectorIsMalformed(boolean binary) {
+        RIPCodec.encodeDelta(buffer, binary, (short) 2, 1, 4, new int[] {4}, new int[] {1}, 1);
+        assertEquals(RIPCodec.MALFORMED, decode());
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void linkCostRequestsKeepTheRequestId(boolean binary) {
+        RIPCodec.encodeSet(buffer, binary, (short) 1, (short) 2, 9, 1234);
+        assertEquals(RIPCodec.SET, decode());
+        assertEquals(1, message.nodeId());
+        assertEquals(2, message.peerId());
+        assertEquals(9, message.cost());
+        assertEquals(1234, message.requestId());
+
+        buffer.clear();
+        RIPCodec.encodeNtf(buffer, binary, (short) 1, (short) 2, I, RIPMessage.NO_REQUEST);
+        assertEquals(RIPCodec.NTF, decode());
+        assertEquals(I, message.cost());
+        assertEquals(RIPMessage.NO_REQUEST, message.requestId());
+
+        buffer.clear();
+        RIPCodec.encodeGet(buffer, binary, (short) 5, (short) 6, Integer.MAX_VALUE);
+        assertEquals(RIPCodec.GET, decode());
+        assertEquals(5, message.nodeId());
+        assertEquals(6, message.peerId());
+        assertEquals(Integer.MAX_VALUE, message.requestId());
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void batchRoundTrip(boolean binary) {
+        int[] peers = {2, 3, 11};
+        int[] costs = {1, I, 14};
+        RIPCodec.encodeSetBatch(buffer, binary, (short) 1, peers, costs, peers.length, 8);
+
+        assertEquals(RIPCodec.SET_BATCH, decode());
+        assertEquals(1, message.nodeId());
+        assertEquals(peers.length, message.batchEntries());
+        for (int i = 0; i < peers.length; i++) {
+            assertEquals(peers[i], message.batchPeer(i));
+            assertEquals(costs[i], message.batchCost(i));
+        }
+        assertEquals(8, message.requestId());
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void rspRoundTrip(boolean binary) {
+        int[][] table = {{0, 2, I}, {2, 0, 5}, {I, 5, 0}};
+        RIPCodec.encodeRsp(buffer, binary, (short) 4, table, 99);
+
+        assertEquals(RIPCodec.RSP, decode());
+        assertEquals(4, message.nodeId());
+        assertEquals(99, message.requestId());
+        assertArrayEquals(table, message.toTable());
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void dataLeavesThePayloadInPlace(boolean binary) {
+        byte[] payload = "ola 123 :#".getBytes(StandardCharsets.ISO_8859_1);
+        RIPCodec.encodeData(buffer, binary, (short) 1, (short) 9, 63, ByteBuffer.wrap(payload));
+
+        assertEquals(RIPCodec.DATA, decode());
+        assertEquals(1, message.nodeId());
+        assertEquals(9, message.peerId());
+        assertEquals(63, message.ttl());
+        byte[] received = new byte[buffer.remaining()];
+        buffer.get(received);
+        assertArrayEquals(payload, received);
+    }
+
+    @Test
+    void textEncodesTheWholeIntRange() {
+        int[][] table = {{Integer.MIN_VALUE, -10, -1, 0, 9, 10, Integer.MAX_VALUE}};
+        RIPCodec.encodeRsp(buffer, false, (short) 1, table, RIPMessage.NO_REQUEST);
+
+        buffer.flip();
+        String text = StandardCharsets.ISO_8859_1.decode(buffer.duplicate()).toString();
+        assertEquals("RIPRSP 1 -2147483648:-10:-1:0:9:10:2147483647", text);
+        assertEquals(RIPCodec.RSP, RIPCodec.decode(buffer, message));
+        assertArrayEquals(table, message.toTable());
+    }
+
+    @Test
+    void legacyTextIndWithoutSegmentIsAccepted() {
+        buffer.put("RIPIND 2 0:1:-1".getBytes(StandardCharsets.ISO_8859_1));
+
+        assertEquals(RIPCodec.IND, decode());
+        assertEquals(2, message.nodeId());
+        assertEquals(0, message.offset());
+        assertEquals(3, message.total());
+        assertEquals(I, message.cost(0, 2));
+    }
+
+    @Test
+    void truncatedBinaryPduIsMalformed() {
+        RIPCodec.encodeSet(buffer, true, (short) 1, (short) 2, 9, RIPMessage.NO_REQUEST);
+        buffer.flip();
+        buffer.limit(buffer.limit() - 2);
+        assertEquals(RIPCodec.MALFORMED, RIPCodec.decode(buffer, message));
+    }
+}
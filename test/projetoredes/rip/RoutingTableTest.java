@@ -0,0 +1,240 @@
+package projetoredes.rip;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+// Convergencia das tabelas de uma pequena rede trocando vetores em rodadas sincronas,
+// como o RIPNode faria (vetor anunciado com poisoned reverse, codificado e decodificado)
+class RoutingTableTest {
+
+    private static final int I = RIPConfig.INFINITY;
+    private static final int MAX_ROUNDS = 50;
+
+    // Enlaces (custo): 1-2 (1), 2-3 (2), 3-4 (1), 1-4 (6), 2-4 (3), 4-5 (2)
+    private final Map<Short, Map<Short, Integer>> links = new TreeMap<>();
+    private final Map<Short, RoutingTable> tables = new TreeMap<>();
+    private NodeIndex nodeIndex;
+
+    private void link(int a, int b, int cost) {
+        links.computeIfAbsent((short) a, k -> new HashMap<>()).put((short) b, cost);
+        links.computeIfAbsent((short) b, k -> new HashMap<>()).put((short) a, cost);
+    }
+
+    @BeforeEach
+    void setUp() {
+        link(1, 2, 1);
+        link(2, 3, 2);
+        link(3, 4, 1);
+        link(1, 4, 6);
+        link(2, 4, 3);
+        link(4, 5, 2);
+        nodeIndex = new NodeIndex(links.keySet());
+        for (Map.Entry<Short, Map<Short, Integer>> node : links.entrySet()) {
+            tables.put(node.getKey(), new RoutingTable(nodeIndex, node.getKey(), node.getValue()));
+        }
+    }
+
+    // Cada no envia a cada vizinho o vetor anunciado a ele. Retorna true se alguma tabela mudou.
+    private boolean exchangeRound() {
+        int n = nodeIndex.size();
+        Map<Short, int[]> costs = new HashMap<>();
+        Map<Short, int[]> nextHops = new HashMap<>();
+        for (Map.Entry<Short, RoutingTable> entry : tables.entrySet()) {
+            int[] c = new int[n];
+            int[] h = new int[n];
+            entry.getValue().copyRoutes(c, h);
+            costs.put(entry.getKey(), c);
+            nextHops.put(entry.getKey(), h);
+        }
+
+        boolean changed = false;
+        ByteBuffer pdu = ByteBuffer.allocate(1024);
+        RIPMessage message = new RIPMessage();
+        for (Map.Entry<Short, RoutingTable> entry : tables.entrySet()) {
+            short sender = entry.getKey();
+            RoutingTable table = entry.getValue();
+            for (int slot = 0; slot < table.neighborCount(); slot++) {
+                if (table.linkCost(slot) == I) {
+                    continue;
+                }
+                int[] advertised = new int[n];
+                for (int dest = 0; dest < n; dest++) {
+                    advertised[dest] = RoutingTable.advertisedCost(costs.get(sender), nextHops.get(sender), slot, dest);
+                }
+                pdu.clear();
+                RIPCodec.encodeInd(pdu, true, sender, advertised, 0, 1);
+                pdu.flip();
+                assertEquals(RIPCodec.IND, RIPCodec.decode(pdu, message));
+
+                RoutingTable receiver = tables.get(table.neighborId(slot));
+                changed |= receiver.applyNeighborVector(receiver.neighborSlot(sender), message);
+            }
+        }
+        return changed;
+    }
+
+    private int converge() {
+        for (int round = 1; round <= MAX_ROUNDS; round++) {
+            if (!exchangeRound()) {
+                return round;
+            }
+        }
+        throw new AssertionError("Sem convergência em " + MAX_ROUNDS + " rodadas");
+    }
+
+    private void setLink(int a, int b, int cost) {
+        RoutingTable tableA = tables.get((short) a);
+        RoutingTable tableB = tables.get((short) b);
+        tableA.setLinkCost(tableA.neighborSlot((short) b), cost);
+        tableB.setLinkCost(tableB.neighborSlot((short) a), cost);
+        if (cost == I) {
+            links.get((short) a).remove((short) b);
+            links.get((short) b).remove((short) a);
+        } else {
+            link(a, b, cost);
+        }
+    }
+
+    // Menores distancias (Floyd-Warshall) sobre os enlaces atuais, limitadas por MAX_METRIC
+    private int[][] shortestPaths() {
+        int n = nodeIndex.size();
+        long[][] d = new long[n][n];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                d[i][j] = (i == j) ? 0 : Long.MAX_VALUE / 4;
+            }
+        }
+        for (Map.Entry<Short, Map<Short, Integer>> node : links.entrySet()) {
+            for (Map.Entry<Short, Integer> peer : node.getValue().entrySet()) {
+                d[nodeIndex.indexOf(node.getKey())][nodeIndex.indexOf(peer.getKey())] = peer.getValue();
+            }
+        }
+        for (int k = 0; k < n; k++) {
+            for (int i = 0; i < n; i++) {
+                for (int j = 0; j < n; j++) {
+                    d[i][j] = Math.min(d[i][j], d[i][k] + d[k][j]);
+                }
+            }
+        }
+        int[][] result = new int[n][n];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                result[i][j] = (d[i][j] >= RIPConfig.MAX_METRIC) ? I : (int) d[i][j];
+            }
+        }
+        return result;
+    }
+
+    private void assertShortestPaths() {
+        int[][] expected = shortestPaths();
+        for (Map.Entry<Short, RoutingTable> entry : tables.entrySet()) {
+            int self = nodeIndex.indexOf(entry.getKey());
+            RoutingTable table = entry.getValue();
+            int[] vector = table.distanceVector();
+            assertArrayEquals(expected[self], vector, "Vetor do nó " + entry.getKey());
+
+            // O proximo salto de cada destino alcançavel esta num caminho minimo
+            for (int dest = 0; dest < vector.length; dest++) {
+                int slot = table.nextHop(dest);
+                if (dest == self || vector[dest] == I) {
+                    assertEquals(RoutingTable.NO_NEXT_HOP, slot);
+                    continue;
+                }
+                int neighbor = nodeIndex.indexOf(table.neighborId(slot));
+                assertEquals(vector[dest], table.linkCost(slot) + expected[neighbor][dest],
+                        "Próximo salto do nó " + entry.getKey() + " para " + nodeIndex.idAt(dest));
+            }
+        }
+    }
+
+    @Test
+    void initialVectorHasOnlyDirectLinks() {
+        assertArrayEquals(new int[] {0, 1, I, 6, I}, tables.get((short) 1).distanceVector());
+    }
+
+    @Test
+    void convergesToShortestPaths() {
+        converge();
+        assertShortestPaths();
+        assertArrayEquals(new int[] {0, 1, 3, 4, 6}, tables.get((short) 1).distanceVector());
+    }
+
+    @Test
+    void poisonedReverseAdvertisesRoutesBackAsInfinite() {
+        converge();
+        RoutingTable table = tables.get((short) 1);
+        int[] costs = new int[nodeIndex.size()];
+        int[] nextHops = new int[nodeIndex.size()];
+        table.copyRoutes(costs, nextHops);
+
+        int viaTwo = table.neighborSlot((short) 2);
+        int viaFour = table.neighborSlot((short) 4);
+        int toFive = nodeIndex.indexOf((short) 5);
+        // 1 chega a 5 por 2: anuncia infinito a 2 e o custo real a 4
+        assertEquals(viaTwo, nextHops[toFive]);
+        assertEquals(I, RoutingTable.advertisedCost(costs, nextHops, viaTwo, toFive));
+        assertEquals(6, RoutingTable.advertisedCost(costs, nextHops, viaFour, toFive));
+        // O proprio no nunca e envenenado
+        int self = nodeIndex.indexOf((short) 1);
+        assertEquals(0, RoutingTable.advertisedCost(costs, nextHops, viaTwo, self));
+    }
+
+    @Test
+    void reroutesAfterLinkCostIncrease() {
+        converge();
+        setLink(2, 3, 9);
+        converge();
+        assertShortestPaths();
+    }
+
+    @Test
+    void partitionedNodeBecomesUnreachable() {
+        converge();
+        setLink(4, 5, I);
+        int rounds = converge();
+        assertShortestPaths();
+        for (Map.Entry<Short, RoutingTable> entry : tables.entrySet()) {
+            if (entry.getKey() != 5) {
+                assertEquals(I, entry.getValue().distanceVector()[nodeIndex.indexOf((short) 5)]);
+            }
+        }
+        // A metrica maxima limita a contagem ao infinito
+        assertTrue(rounds <= RIPConfig.MAX_METRIC, "Rodadas: " + rounds);
+    }
+
+    @Test
+    void nextHopChangeAtSameCostIsReported() {
+        // 1 alcança 3 por 2 (1 + 2); 4 anuncia 3 com custo 1, e o custo via 4 e 6 + 1 = 7
+        converge();
+        RoutingTable table = tables.get((short) 1);
+        int toThree = nodeIndex.indexOf((short) 3);
+        assertEquals(table.neighborSlot((short) 2), table.nextHop(toThree));
+
+        // Com o enlace 1-4 custando 2, a rota por 4 empata (2 + 1) com a rota por 2
+        table.setLinkCost(table.neighborSlot((short) 4), 2);
+        assertEquals(table.neighborSlot((short) 2), table.nextHop(toThree));
+
+        // 2 perde a rota para 3: o custo continua 3, mas o proximo salto passa a ser 4
+        int[] fromTwo = {I, 0, I, I, I};
+        fromTwo[nodeIndex.indexOf((short) 1)] = I;
+        ByteBuffer pdu = ByteBuffer.allocate(256);
+        RIPCodec.encodeInd(pdu, true, (short) 2, fromTwo, 0, 1);
+        pdu.flip();
+        RIPMessage message = new RIPMessage();
+        RIPCodec.decode(pdu, message);
+
+        assertTrue(table.applyNeighborVector(table.neighborSlot((short) 2), message));
+        assertEquals(3, table.distanceVector()[toThree]);
+        assertEquals(table.neighborSlot((short) 4), table.nextHop(toThree));
+        assertFalse(table.applyNeighborVector(table.neighborSlot((short) 2), message));
+    }
+}
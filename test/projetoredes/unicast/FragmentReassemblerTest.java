@@ -0,0 +1,166 @@
+package projetoredes.unicast;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class FragmentReassemblerTest {
+
+    private static final short SENDER = 5;
+
+    private TimingWheel timingWheel;
+    private FragmentReassembler reassembler;
+
+    @BeforeEach
+    void setUp() {
+        timingWheel = new TimingWheel("TesteRemontagem", 10, TimeUnit.MILLISECONDS, 64);
+        reassembler = new FragmentReassembler(timingWheel);
+    }
+
+    @AfterEach
+    void tearDown() {
+        reassembler.close();
+        timingWheel.close();
+    }
+
+    private static byte[] message(int length) {
+        byte[] data = new byte[length];
+        for (int i = 0; i < length; i++) {
+            data[i] = (byte) (i * 31 + 7);
+        }
+        return data;
+    }
+
+    // Fragmento 'index' de 'data' dividida em 'count' trechos, posicionado no cabeçalho de fragmento
+    private static ByteBuffer fragment(int messageId, byte[] data, int index, int count) {
+        int chunkSize = FragmentReassembler.chunkSize(data.length, count);
+        int offset = index * chunkSize;
+        int length = Math.min(chunkSize, data.length - offset);
+        ByteBuffer frame = ByteBuffer.allocate(UnicastPDUCodec.FRAGMENT_HEADER_SIZE + length);
+        frame.putInt(messageId).putShort((short) index).putShort((short) count).putInt(data.length);
+        frame.put(data, offset, length);
+        return frame.flip();
+    }
+
+    private static byte[] toArray(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return bytes;
+    }
+
+    @Test
+    void outOfOrderFragmentsAreReassembled() {
+        byte[] data = message(1000);
+
+        assertNull(reassembler.accept(SENDER, fragment(1, data, 2, 4)));
+        assertNull(reassembler.accept(SENDER, fragment(1, data, 0, 4)));
+        assertNull(reassembler.accept(SENDER, fragment(1, data, 3, 4)));
+        ByteBuffer complete = reassembler.accept(SENDER, fragment(1, data, 1, 4));
+
+        assertNotNull(complete);
+        assertArrayEquals(data, toArray(complete));
+        assertEquals(0, reassembler.pendingBytes());
+    }
+
+    @Test
+    void duplicateFragmentsAreIgnored() {
+        byte[] data = message(300);
+
+        assertNull(reassembler.accept(SENDER, fragment(2, data, 0, 3)));
+        assertNull(reassembler.accept(SENDER, fragment(2, data, 0, 3)));
+        assertNull(reassembler.accept(SENDER, fragment(2, data, 1, 3)));
+        assertNull(reassembler.accept(SENDER, fragment(2, data, 1, 3)));
+        ByteBuffer complete = reassembler.accept(SENDER, fragment(2, data, 2, 3));
+
+        assertNotNull(complete);
+        assertArrayEquals(data, toArray(complete));
+    }
+
+    @Test
+    void interleavedMessagesFromDifferentSendersStaySeparate() {
+        byte[] first = message(200);
+        byte[] second = new byte[200];
+        Arrays.fill(second, (byte) 9);
+
+        assertNull(reassembler.accept((short) 1, fragment(7, first, 0, 2)));
+        assertNull(reassembler.accept((short) 2, fragment(7, second, 1, 2)));
+        assertArrayEquals(first, toArray(reassembler.accept((short) 1, fragment(7, first, 1, 2))));
+        assertArrayEquals(second, toArray(reassembler.accept((short) 2, fragment(7, second, 0, 2))));
+    }
+
+    @Test
+    void singleFragmentIsReturnedWithoutCopy() {
+        byte[] data = message(50);
+        ByteBuffer frame = fragment(3, data, 0, 1);
+
+        ByteBuffer complete = reassembler.accept(SENDER, frame);
+
+        assertTrue(complete == frame);
+        assertArrayEquals(data, toArray(complete));
+        assertEquals(0, reassembler.pendingBytes());
+    }
+
+    @Test
+    void oversizeMessageIsRejected() {
+        ByteBuffer frame = ByteBuffer.allocate(UnicastPDUCodec.FRAGMENT_HEADER_SIZE + 16);
+        frame.putInt(4).putShort((short) 0).putShort((short) 2).putInt(FragmentReassembler.MAX_MESSAGE_SIZE + 1);
+        frame.put(new byte[16]).flip();
+
+        assertNull(reassembler.accept(SENDER, frame));
+        assertEquals(0, reassembler.pendingBytes());
+    }
+
+    @Test
+    void invalidHeadersAreRejected() {
+        byte[] data = message(100);
+
+        ByteBuffer indexOutOfRange = fragment(5, data, 0, 2);
+        indexOutOfRange.putShort(4, (short) 2);
+        assertNull(reassembler.accept(SENDER, indexOutOfRange));
+
+        ByteBuffer truncated = fragment(5, data, 0, 2);
+        truncated.limit(truncated.limit() - 1);
+        assertNull(reassembler.accept(SENDER, truncated));
+
+        assertEquals(0, reassembler.pendingBytes());
+    }
+
+    @Test
+    void inconsistentFragmentDoesNotCorruptTheMessage() {
+        byte[] data = message(400);
+
+        assertNull(reassembler.accept(SENDER, fragment(6, data, 0, 4)));
+        // Mesmo identificador com outra contagem de fragmentos: ignorado
+        assertNull(reassembler.accept(SENDER, fragment(6, message(400), 1, 2)));
+        assertNull(reassembler.accept(SENDER, fragment(6, data, 1, 4)));
+        assertNull(reassembler.accept(SENDER, fragment(6, data, 2, 4)));
+        assertArrayEquals(data, toArray(reassembler.accept(SENDER, fragment(6, data, 3, 4))));
+    }
+
+    @Test
+    void oldestPartialsAreEvictedAtTheMemoryLimit() {
+        int size = FragmentReassembler.MAX_MESSAGE_SIZE;
+        int partials = FragmentReassembler.MAX_BYTES_PER_SENDER / size + 1;
+        byte[] data = message(size);
+
+        for (int id = 0; id < partials; id++) {
+            assertNull(reassembler.accept(SENDER, fragment(id, data, 0, 2)));
+        }
+
+        assertEquals(1, reassembler.evicted());
+        assertTrue(reassembler.pendingBytes() <= FragmentReassembler.MAX_BYTES_PER_SENDER);
+        // A mais antiga foi descartada: o seu ultimo fragmento recomeça a remontagem
+        assertNull(reassembler.accept(SENDER, fragment(0, data, 1, 2)));
+        // A mais nova continua completa
+        assertArrayEquals(data, toArray(reassembler.accept(SENDER, fragment(partials - 1, data, 1, 2))));
+    }
+}
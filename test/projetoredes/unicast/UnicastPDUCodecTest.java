@@ -0,0 +1,123 @@
+package projetoredes.unicast;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+
+// Ida e volta das PDUs do UnicastProtocol nos formatos texto e binario
+class UnicastPDUCodecTest {
+
+    private final ByteBuffer frame = ByteBuffer.allocate(2048);
+
+    private static ByteBuffer bytes(String text) {
+        return ByteBuffer.wrap(text.getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    private static String text(ByteBuffer payload) {
+        return StandardCharsets.ISO_8859_1.decode(payload).toString();
+    }
+
+    @Test
+    void textRoundTrip() {
+        UnicastPDUCodec.encodeText(frame, bytes("RIPIND 1 0:2"), 12);
+        frame.flip();
+
+        assertEquals(UnicastPDUCodec.TYPE_TEXT_DATA, UnicastPDUCodec.decode(frame));
+        assertEquals("RIPIND 1 0:2", text(frame));
+    }
+
+    @Test
+    void textWithWrongLengthIsMalformed() {
+        UnicastPDUCodec.encodeText(frame, bytes("abc"), 5);
+        frame.flip();
+        assertEquals(UnicastPDUCodec.MALFORMED, UnicastPDUCodec.decode(frame));
+    }
+
+    @Test
+    void textWithoutLengthIsMalformed() {
+        frame.put(bytes("UPDREQPDU x abc")).flip();
+        assertEquals(UnicastPDUCodec.MALFORMED, UnicastPDUCodec.decode(frame));
+    }
+
+    @Test
+    void binaryDataRoundTrip() {
+        byte[] payload = {0, 1, (byte) 0xFF, 'U', 0x01};
+        UnicastPDUCodec.encodeData(frame, (short) 300, ByteBuffer.wrap(payload));
+        frame.flip();
+
+        assertEquals(300, UnicastPDUCodec.binarySourceId(frame));
+        assertFalse(UnicastPDUCodec.isFragment(frame));
+        assertEquals(UnicastPDUCodec.TYPE_DATA, UnicastPDUCodec.decode(frame));
+        byte[] received = new byte[frame.remaining()];
+        frame.get(received);
+        assertArrayEquals(payload, received);
+    }
+
+    @Test
+    void reliableDataAndAckCarryEpochAndSequence() {
+        UnicastPDUCodec.encodeReliableData(frame, (short) 2, 0xCAFEBABE, -5, bytes("x"));
+        frame.flip();
+        assertEquals(UnicastPDUCodec.TYPE_RELIABLE_DATA, UnicastPDUCodec.decode(frame));
+        assertEquals(0xCAFEBABE, frame.getInt());
+        assertEquals(-5, frame.getInt());
+        assertEquals("x", text(frame));
+
+        frame.clear();
+        UnicastPDUCodec.encodeAck(frame, (short) 3, 17, 18);
+        frame.flip();
+        assertEquals(UnicastPDUCodec.TYPE_ACK, UnicastPDUCodec.decode(frame));
+        assertEquals(17, frame.getInt());
+        assertEquals(18, frame.getInt());
+        assertFalse(frame.hasRemaining());
+    }
+
+    @Test
+    void probeHasNoPayload() {
+        UnicastPDUCodec.encodeProbe(frame, (short) 9);
+        frame.flip();
+        assertEquals(UnicastPDUCodec.TYPE_PROBE, UnicastPDUCodec.decode(frame));
+        assertFalse(frame.hasRemaining());
+    }
+
+    @Test
+    void fragmentHeaderFollowsTheReliableHeader() {
+        UnicastPDUCodec.encodeReliableFragment(frame, (short) 4, 1, 2, 77, 3, 5, 1000, bytes("trecho"));
+        frame.flip();
+
+        assertTrue(UnicastPDUCodec.isFragment(frame));
+        assertEquals(UnicastPDUCodec.TYPE_RELIABLE_DATA, UnicastPDUCodec.decode(frame));
+        assertEquals(1, frame.getInt());
+        assertEquals(2, frame.getInt());
+        assertEquals(77, frame.getInt());
+        assertEquals(3, frame.getShort());
+        assertEquals(5, frame.getShort());
+        assertEquals(1000, frame.getInt());
+        assertEquals("trecho", text(frame));
+    }
+
+    @Test
+    void binaryWithWrongLengthIsMalformed() {
+        UnicastPDUCodec.encodeData(frame, (short) 1, bytes("abcd"));
+        frame.flip();
+        frame.limit(frame.limit() - 1);
+        assertEquals(UnicastPDUCodec.MALFORMED, UnicastPDUCodec.decode(frame));
+    }
+
+    @Test
+    void ackWithPayloadIsMalformed() {
+        frame.put(UnicastPDUCodec.VERSION).put(UnicastPDUCodec.TYPE_ACK).putShort((short) 1).putShort((short) 9);
+        frame.putInt(1).putInt(2).put((byte) 0).flip();
+        assertEquals(UnicastPDUCodec.MALFORMED, UnicastPDUCodec.decode(frame));
+    }
+
+    @Test
+    void unknownFirstByteIsMalformed() {
+        frame.put((byte) 0x42).put(bytes("lixo")).flip();
+        assertEquals(UnicastPDUCodec.MALFORMED, UnicastPDUCodec.decode(frame));
+    }
+}